@@ -0,0 +1,27 @@
+package com.hesoun;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks selected by standard JMH command line options, always with {@link GCProfiler}, so every result
+ * contains allocations per operation next to the throughput. Benchmarked code logs only warnings, so logging is not
+ * measured.
+ *
+ * @author Jakub Hesoun
+ */
+public class BenchmarkRunner {
+
+    public static void main(String... args) throws CommandLineOptionException, RunnerException {
+        new Runner(new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .jvmArgsAppend("-Dlogback.configurationFile=logback-benchmark.xml")
+                .build())
+                .run();
+    }
+}
@@ -0,0 +1,124 @@
+package com.hesoun.data;
+
+import com.hesoun.model.PriceSeries;
+import com.hesoun.model.PriceWindow;
+import com.hesoun.trading.BenchmarkData;
+import com.hesoun.trading.MarketData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.sql.rowset.CachedRowSet;
+import javax.sql.rowset.RowSetMetaDataImpl;
+import javax.sql.rowset.RowSetProvider;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding of the prices of all the stocks into {@link PriceSeries}: rows of {@code historical_eod_price} read by
+ * {@link HistoricalDailyPriceDao} and blocks of columns copied out of the {@link PriceStore} file.
+ * <p>
+ * Rows are served from memory by a {@link CachedRowSet} with the values the JDBC driver returns, so the benchmark
+ * measures the decoding of the DAO and not the DB or the network.
+ *
+ * @author Jakub Hesoun
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PriceDecodingBenchmark {
+    private static final int DAYS = 2500;
+    private static final int COLUMNS = 10;
+
+    @Param({"100"})
+    public int stockCount;
+
+    private CachedRowSet rows;
+    private Path file;
+    private PriceStore store;
+    private LocalDate to;
+
+    @Setup
+    public void setUp() throws SQLException, IOException {
+        MarketData marketData = BenchmarkData.createMarketData(stockCount, DAYS, 23);
+        to = BenchmarkData.START.plusDays(DAYS);
+        rows = createRows(marketData);
+        file = Files.createTempFile("benchmark", ".store");
+        PriceStore.write(file, marketData.getStocks(), marketData.getPriceSeries());
+        store = PriceStore.open(file);
+        if (decodeRows().get(1L).size() != DAYS || readStore().size() != stockCount) {
+            throw new IllegalStateException("Decoded prices differ from the generated ones");
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException, IOException {
+        rows.close();
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public Map<Long, PriceSeries> decodeRows() throws SQLException {
+        rows.beforeFirst();
+        return HistoricalDailyPriceDao.readPriceSeries(rows);
+    }
+
+    @Benchmark
+    public Map<Long, PriceSeries> readStore() {
+        return store.getPriceSeries(BenchmarkData.START, to, 0);
+    }
+
+    /**
+     * @return rows of all the prices ordered by stock id and date with the columns of {@code historical_eod_price}
+     */
+    private static CachedRowSet createRows(MarketData marketData) throws SQLException {
+        RowSetMetaDataImpl metaData = new RowSetMetaDataImpl();
+        metaData.setColumnCount(COLUMNS);
+        int[] types = {Types.BIGINT, Types.DATE, Types.NUMERIC, Types.NUMERIC, Types.NUMERIC, Types.NUMERIC,
+                Types.INTEGER, Types.NUMERIC, Types.NUMERIC, Types.BIGINT};
+        for (int column = 1; column <= COLUMNS; column++) {
+            metaData.setColumnType(column, types[column - 1]);
+        }
+        CachedRowSet rows = RowSetProvider.newFactory().createCachedRowSet();
+        rows.setMetaData(metaData);
+        long id = 0;
+        for (long stockId = 1; stockId <= marketData.getStocks().size(); stockId++) {
+            PriceWindow prices = marketData.getPriceSeries().get(stockId).getLastPrices(LocalDate.MAX, Integer.MAX_VALUE);
+            for (int i = prices.size() - 1; i >= 0; i--) {
+                rows.moveToInsertRow();
+                rows.updateLong(1, ++id);
+                rows.updateDate(2, Date.valueOf(prices.getDate(i)));
+                rows.updateBigDecimal(3, prices.getPrice(i).getOpen());
+                rows.updateBigDecimal(4, prices.getPrice(i).getHigh());
+                rows.updateBigDecimal(5, prices.getPrice(i).getLow());
+                rows.updateBigDecimal(6, prices.getPrice(i).getClose());
+                rows.updateInt(7, prices.getPrice(i).getVolume());
+                rows.updateBigDecimal(8, prices.getAdjustedClose(i));
+                rows.updateBigDecimal(9, prices.getPrice(i).getUnadjustedClose());
+                rows.updateLong(10, stockId);
+                rows.insertRow();
+            }
+        }
+        rows.moveToCurrentRow();
+        return rows;
+    }
+}
@@ -0,0 +1,62 @@
+package com.hesoun.extracting;
+
+import com.hesoun.model.Stock;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of a year of daily prices of one stock ({@code data.json}) by the tree parser from a string and by the
+ * streaming parser from a stream.
+ *
+ * @author Jakub Hesoun
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class JsonParsingBenchmark {
+    private static final Pair<String, String> MSFT = new Pair<>("MSFT", "Microsoft Corp.");
+
+    private byte[] json;
+    private String jsonString;
+
+    @Setup
+    public void setUp() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream in = JsonParsingBenchmark.class.getResourceAsStream("/data.json")) {
+            byte[] buffer = new byte[8192];
+            for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+                out.write(buffer, 0, read);
+            }
+        }
+        json = out.toByteArray();
+        jsonString = new String(json, StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public Stock parseTree() throws IOException {
+        return JsonHelper.parseJsonAndCreateStock(jsonString, MSFT);
+    }
+
+    @Benchmark
+    public Stock parseStream() throws IOException {
+        return JsonHelper.parseJsonAndCreateStock(new ByteArrayInputStream(json), MSFT);
+    }
+}
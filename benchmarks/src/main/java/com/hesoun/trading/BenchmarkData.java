@@ -0,0 +1,56 @@
+package com.hesoun.trading;
+
+import com.hesoun.Config;
+import com.hesoun.model.PriceSeries;
+import com.hesoun.model.Stock;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Synthetic in-memory data of the benchmarks, generated from a fixed seed, so every run measures the same work.
+ *
+ * @author Jakub Hesoun
+ */
+public final class BenchmarkData {
+    public static final LocalDate START = LocalDate.of(2000, 1, 1);
+
+    private BenchmarkData() {
+        throw new AssertionError("No BenchmarkData instance for you! This is static helper class.");
+    }
+
+    /**
+     * @return config of a simulation between {@param from} and {@param to} which needs no DB, the same one as the
+     * tests use
+     */
+    public static Config createConfig(LocalDate from, LocalDate to) {
+        return SimulationFixtures.createConfig(from, to);
+    }
+
+    /**
+     * @return {@param stockCount} stocks with daily prices of {@param days} days from {@link #START}, prices follow a
+     * random walk with a small drift
+     */
+    public static MarketData createMarketData(int stockCount, int days, long seed) {
+        Random random = new Random(seed);
+        List<Stock> stocks = new ArrayList<>();
+        Map<Long, PriceSeries> priceSeries = new HashMap<>();
+        for (long id = 1; id <= stockCount; id++) {
+            stocks.add(Stock.builder().id(id).symbol("S" + id).name("Stock " + id).exchange("NMS").build());
+            PriceSeries.Builder builder = PriceSeries.builder(id);
+            double price = 20 + random.nextInt(100);
+            for (int day = 0; day < days; day++) {
+                price = Math.max(1, price * (1.0005 + random.nextGaussian() * 0.02));
+                BigDecimal close = BigDecimal.valueOf(price).setScale(6, BigDecimal.ROUND_HALF_UP);
+                builder.add(START.plusDays(day), close, close, close, close, 1000, close, close);
+            }
+            priceSeries.put(id, builder.build());
+        }
+        return new MarketData(stocks, priceSeries);
+    }
+}
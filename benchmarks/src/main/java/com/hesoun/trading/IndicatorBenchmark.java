@@ -0,0 +1,79 @@
+package com.hesoun.trading;
+
+import com.hesoun.model.Indicators;
+import com.hesoun.model.PriceSeries;
+import com.hesoun.model.PriceWindow;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SMA200, SMA5 and RSI2 of one stock and one day, calculated from the whole window of 200 prices and updated
+ * incrementally by one new price by the {@link IndicatorState} of the simulator and the signal walking a reused
+ * window. Run with {@code -prof gc} to see the allocations per day.
+ *
+ * @author Jakub Hesoun
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class IndicatorBenchmark {
+    private static final int DAYS = 1000;
+
+    private PriceWindow window;
+    private PriceSeries series;
+    private LocalDate[] dates;
+    private IndicatorGraph graph;
+    private IndicatorState state;
+    private PriceWindow stateWindow;
+    private int nextDay;
+
+    @Setup
+    public void setUp() {
+        series = BenchmarkData.createMarketData(1, DAYS, 11).getPriceSeries().get(1L);
+        window = series.getLastPrices(BenchmarkData.START.plusDays(DAYS), 200);
+
+        dates = new LocalDate[DAYS];
+        for (int i = 0; i < DAYS; i++) {
+            dates[i] = BenchmarkData.START.plusDays(i);
+        }
+        graph = new IndicatorGraph(Arrays.asList(IndicatorSpec.sma(200), IndicatorSpec.sma(5), IndicatorSpec.rsi(2)));
+        startState();
+    }
+
+    private void startState() {
+        state = graph.newState();
+        stateWindow = series.getLastPrices(dates[199], Integer.MAX_VALUE);
+        state.update(stateWindow);
+        nextDay = 200;
+    }
+
+    @Benchmark
+    public Indicators calculateFromWindow() {
+        return new IndicatorCalculatorService(window).calculateIndicators();
+    }
+
+    @Benchmark
+    public IndicatorState updateState() {
+        state.update(series.getLastPrices(dates[nextDay], Integer.MAX_VALUE, stateWindow));
+        if (++nextDay == DAYS) {
+            //prices cannot be added again, so the state is warmed up from the start
+            startState();
+        }
+        return state;
+    }
+}
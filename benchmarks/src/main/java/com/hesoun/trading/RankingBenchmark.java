@@ -0,0 +1,73 @@
+package com.hesoun.trading;
+
+import com.hesoun.model.Indicators;
+import com.hesoun.model.RSIComparator;
+import com.hesoun.model.Stock;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.Random;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Daily ranking of buy candidates by RSI2. Candidates are either added into a set ordered by {@link RSIComparator}
+ * or into the reused {@link CandidateHeap} of the simulator, then the one with the lowest RSI is taken.
+ *
+ * @author Jakub Hesoun
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RankingBenchmark {
+    @Param({"100", "500"})
+    public int candidateCount;
+
+    private Stock[] candidates;
+    private CandidateHeap heap;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(5);
+        candidates = new Stock[candidateCount];
+        for (int i = 0; i < candidateCount; i++) {
+            BigDecimal price = BigDecimal.valueOf(random.nextInt(100_000), 2);
+            candidates[i] = Stock.builder().id(i).symbol("S" + i).name("Stock " + i).exchange("NMS").build();
+            //RSI2 is rounded to integer by the calculator
+            candidates[i].setCurrentIndicators(new Indicators(price, BigDecimal.valueOf(random.nextInt(101)), price));
+        }
+        heap = new CandidateHeap(candidateCount);
+    }
+
+    @Benchmark
+    public Stock rankCandidates() {
+        SortedSet<Stock> possibleBuys = new TreeSet<>(new RSIComparator());
+        for (Stock candidate : candidates) {
+            possibleBuys.add(candidate);
+        }
+        return possibleBuys.first();
+    }
+
+    @Benchmark
+    public Stock rankCandidatesInHeap() {
+        heap.clear();
+        for (int i = 0; i < candidates.length; i++) {
+            heap.add(i, candidates[i].getCurrentIndicators().getRsi2());
+        }
+        return candidates[heap.poll()];
+    }
+}
@@ -0,0 +1,73 @@
+package com.hesoun.trading;
+
+import com.hesoun.Config;
+import com.hesoun.model.TradingCalendar;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One trading day of the default strategy over synthetic in-memory stocks: indicators and signals of all the stocks,
+ * sells, ranking of the candidates, a buy and the end of day valuation.
+ * <p>
+ * Every invocation simulates the next day. When the data runs out, the simulation starts again from the first day,
+ * so indicators are warmed up from 200 prices once per {@value #DAYS} days.
+ *
+ * @author Jakub Hesoun
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SimulatorBenchmark {
+    private static final int DAYS = 5000;
+
+    //time per day should grow linearly with the size of the universe
+    @Param({"100", "500", "3000"})
+    public int stockCount;
+
+    private MarketData marketData;
+    private Config config;
+    private StrategyParameters parameters;
+    private Simulator simulator;
+    private LocalDate today;
+
+    @Setup(Level.Trial)
+    public void createData() {
+        marketData = BenchmarkData.createMarketData(stockCount, DAYS, 17);
+        config = BenchmarkData.createConfig(BenchmarkData.START.plusDays(300), BenchmarkData.START.plusDays(DAYS));
+        parameters = StrategyParameters.defaults(config.getInitialBalance());
+    }
+
+    @Setup(Level.Iteration)
+    public void startSimulation() {
+        simulator = new Simulator(config, parameters, new InMemoryPortfolio(parameters), 1);
+        simulator.prepare(marketData);
+        today = marketData.getCalendar().firstTradingDayFrom(config.getFrom());
+    }
+
+    @Benchmark
+    public LocalDate simulateTradingDay() {
+        simulator.simulateTradingDay(today);
+        TradingCalendar calendar = marketData.getCalendar();
+        today = calendar.nextTradingDay(today);
+        if (today == null || !today.isBefore(config.getTo())) {
+            startSimulation();
+        }
+        return today;
+    }
+}
@@ -1,29 +1,103 @@
 package com.hesoun;
 
+import com.hesoun.data.DailyIndicatorDao;
+import com.hesoun.data.PriceStore;
+import com.hesoun.data.Storage;
 import com.hesoun.extracting.DataExtractor;
+import com.hesoun.metrics.Metrics;
+import com.hesoun.synthetic.MarketGenerator;
+import com.hesoun.synthetic.YahooStub;
+import com.hesoun.trading.SignalGenerator;
 import com.hesoun.trading.Simulator;
+import com.hesoun.trading.SweepRunner;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.nio.file.Paths;
 import java.sql.SQLException;
+import java.time.LocalDate;
 import java.util.Properties;
 
 /**
  * @author Jakub Hesoun
  */
 public class AosBot {
+    private static final Logger LOG = LoggerFactory.getLogger(AosBot.class);
 
     public static void main(String... args) throws IOException, SQLException {
         Properties props = new Properties();
         props.load(DataExtractor.class.getResourceAsStream("/app.properties"));
         Config config = new Config(props);
-        for (String arg : args) {
+        try {
+            run(props, config, args);
+        } finally {
+            LOG.info("Metrics:\n{}", Metrics.INSTANCE.getSummary());
+            if (config.getMetricsFile() != null) {
+                Metrics.INSTANCE.writeJson(Paths.get(config.getMetricsFile()));
+                LOG.info("Metrics have been written into {}", config.getMetricsFile());
+            }
+        }
+    }
+
+    private static void run(Properties props, Config config, String... args) throws IOException, SQLException {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
             if (arg.equals("extract")) {
                 new DataExtractor(config).extract();
                 break;
+            } else if (arg.equals("reingest")) {
+                new DataExtractor(config).reingest();
+                break;
+            } else if (arg.equals("rebuild-indicators")) {
+                new DailyIndicatorDao(config).rebuild();
+                break;
             } else if (arg.equals("simulate")) {
                 new Simulator(config).simulate();
                 break;
+            } else if (arg.equals("signal")) {
+                //signal of the last close up to given day, today by default
+                LocalDate date = i + 1 < args.length ? LocalDate.parse(args[i + 1]) : LocalDate.now();
+                new SignalGenerator(config).generate(date);
+                break;
+            } else if (arg.equals("export-store")) {
+                if (i + 1 >= args.length) {
+                    throw new AosException("Usage: export-store <file>");
+                }
+                PriceStore.export(config, Paths.get(args[i + 1]));
+                break;
+            } else if (arg.equals("generate")) {
+                //the generated market can be exported, the in-memory storage does not outlive the process
+                Storage storage = Storage.open(config);
+                createGenerator(config).populate(storage.getStocks(), config.getSyntheticSymbols(), config.getTo());
+                if (i + 1 < args.length) {
+                    PriceStore.export(config, Paths.get(args[i + 1]));
+                }
+                break;
+            } else if (arg.equals("stub-server")) {
+                //threads of the server keep the process running
+                YahooStub.start(createGenerator(config), config.getSyntheticPort(), config.getExtractParallelism());
+                break;
+            } else if (arg.equals("synthetic-extract")) {
+                try (YahooStub stub = YahooStub.start(createGenerator(config), 0, config.getExtractParallelism())) {
+                    Properties stubProps = new Properties();
+                    stubProps.putAll(props);
+                    stubProps.setProperty("yahoo.url", stub.getUrl());
+                    new DataExtractor(new Config(stubProps))
+                            .extract(MarketGenerator.getComponents(config.getSyntheticSymbols()));
+                }
+                break;
+            } else if (arg.equals("sweep")) {
+                if (i + 1 >= args.length) {
+                    throw new AosException("Usage: sweep <grid-file>");
+                }
+                new SweepRunner(config).sweep(Paths.get(args[i + 1]));
+                break;
             }
         }
     }
+
+    private static MarketGenerator createGenerator(Config config) {
+        return new MarketGenerator(config.getSyntheticSeed(), config.getSyntheticStart());
+    }
 }
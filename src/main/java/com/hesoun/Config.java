@@ -16,7 +16,38 @@ public class Config {
     private final String databaseUrl;
     private final String getDatabaseUser;
     private final String databasePassword;
+    private final int databasePoolSize;
+    private final long databasePoolTimeout;
+    private final int databaseBatchSize;
+    private final boolean databaseCopy;
+    private final String storage;
     private final int initialBalance;
+    private final int simulationParallelism;
+    private final int sweepParallelism;
+    private final boolean simulationInMemory;
+    private final boolean simulationPersistPositions;
+    private final int extractParallelism;
+    private final int extractParseWorkers;
+    private final int extractPersistWorkers;
+    private final int extractQueueCapacity;
+    private final int extractShards;
+    private final int simulationShards;
+    private final String universeFile;
+    private final double extractRate;
+    private final int extractRetries;
+    private final long extractRetryBackoff;
+    private final boolean extractIncremental;
+    private final String cacheDirectory;
+    private final String priceStore;
+    private final boolean indicatorsDatabase;
+    private final String metricsFile;
+    private final String signalStateFile;
+    private final long cacheTtl;
+    private final long cacheMaxSize;
+    private final long syntheticSeed;
+    private final LocalDate syntheticStart;
+    private final int syntheticSymbols;
+    private final int syntheticPort;
 
     public Config(Properties properties) {
         yahooUrl = properties.getProperty("yahoo.url");
@@ -26,6 +57,42 @@ public class Config {
         databaseUrl = properties.getProperty("database.url");
         getDatabaseUser = properties.getProperty("database.user");
         databasePassword = properties.getProperty("database.password");
+        databasePoolSize = Integer.parseInt(properties.getProperty("database.pool.size", "8"));
+        databasePoolTimeout = Long.parseLong(properties.getProperty("database.pool.timeout", "30000"));
+        databaseBatchSize = Integer.parseInt(properties.getProperty("database.batch.size", "1000"));
+        databaseCopy = Boolean.parseBoolean(properties.getProperty("database.copy", "false"));
+        storage = properties.getProperty("storage", "postgres").trim().toLowerCase();
         initialBalance = Integer.parseInt(properties.getProperty("initial.balance"));
+        simulationParallelism = Integer.parseInt(properties.getProperty("simulation.parallelism", "1"));
+        simulationInMemory = Boolean.parseBoolean(properties.getProperty("simulation.in.memory", "true"));
+        simulationPersistPositions = Boolean.parseBoolean(properties.getProperty("simulation.persist.positions", "true"));
+        extractParallelism = Integer.parseInt(properties.getProperty("extract.parallelism", "4"));
+        extractParseWorkers = Integer.parseInt(properties.getProperty("extract.parse.workers", "2"));
+        extractPersistWorkers = Integer.parseInt(properties.getProperty("extract.persist.workers", "2"));
+        extractQueueCapacity = Integer.parseInt(properties.getProperty("extract.queue.capacity", "16"));
+        extractShards = Integer.parseInt(properties.getProperty("extract.shards", "1"));
+        simulationShards = Integer.parseInt(properties.getProperty("simulation.shards", "0"));
+        String universe = properties.getProperty("universe.file", "").trim();
+        universeFile = universe.isEmpty() ? null : universe;
+        extractRate = Double.parseDouble(properties.getProperty("extract.rate", "5"));
+        extractRetries = Integer.parseInt(properties.getProperty("extract.retries", "3"));
+        extractRetryBackoff = Long.parseLong(properties.getProperty("extract.retry.backoff", "1000"));
+        extractIncremental = Boolean.parseBoolean(properties.getProperty("extract.incremental", "true"));
+        String cache = properties.getProperty("cache.directory", "").trim();
+        cacheDirectory = cache.isEmpty() ? null : cache;
+        cacheTtl = Long.parseLong(properties.getProperty("cache.ttl.hours", "24"));
+        cacheMaxSize = Long.parseLong(properties.getProperty("cache.max.size.mb", "1024"));
+        String store = properties.getProperty("price.store", "").trim();
+        priceStore = store.isEmpty() ? null : store;
+        indicatorsDatabase = Boolean.parseBoolean(properties.getProperty("indicators.database", "false"));
+        String metrics = properties.getProperty("metrics.file", "").trim();
+        metricsFile = metrics.isEmpty() ? null : metrics;
+        signalStateFile = properties.getProperty("signal.state.file", "signal.state").trim();
+        syntheticSeed = Long.parseLong(properties.getProperty("synthetic.seed", "1"));
+        syntheticStart = LocalDate.parse(properties.getProperty("synthetic.start", "1990-01-01"));
+        syntheticSymbols = Integer.parseInt(properties.getProperty("synthetic.symbols", "3000"));
+        syntheticPort = Integer.parseInt(properties.getProperty("synthetic.port", "8099"));
+        sweepParallelism = Integer.parseInt(properties.getProperty("sweep.parallelism",
+                String.valueOf(Runtime.getRuntime().availableProcessors())));
     }
 }
@@ -0,0 +1,116 @@
+package com.hesoun.data;
+
+import com.hesoun.AosException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static java.text.MessageFormat.format;
+
+/**
+ * Fixed size pool of DB connections which can be shared by threads. Connections are opened lazily, a thread asking
+ * for a connection when all of them are taken waits until one is released or the timeout elapses.
+ * Every {@link PooledConnection} caches its prepared statements, so a DAO method called repeatedly prepares its SQL
+ * only once per connection.
+ *
+ * @author Jakub Hesoun
+ */
+class ConnectionPool implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(ConnectionPool.class);
+
+    private final ConnectionFactory connectionFactory;
+    private final int size;
+    private final long timeoutMillis;
+    private final Semaphore permits;
+    private final BlockingQueue<PooledConnection> idleConnections = new LinkedBlockingQueue<>();
+    private volatile boolean closed;
+
+    /**
+     * @param connectionFactory opens a new physical connection
+     * @param size              maximal number of connections opened at the same time
+     * @param timeoutMillis     how long to wait for a free connection before failing
+     */
+    ConnectionPool(ConnectionFactory connectionFactory, int size, long timeoutMillis) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Pool size has to be positive, was " + size);
+        }
+        this.connectionFactory = connectionFactory;
+        this.size = size;
+        this.timeoutMillis = timeoutMillis;
+        this.permits = new Semaphore(size, true);
+    }
+
+    /**
+     * Borrows a connection, it has to be closed to return it back to the pool.
+     *
+     * @throws AosException if no connection is released in time or a new one cannot be opened
+     */
+    PooledConnection getConnection() {
+        if (closed) {
+            throw new AosException("Connection pool is closed");
+        }
+        try {
+            if (!permits.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new AosException(format("No DB connection released in {0}ms, all {1} connections are in use",
+                        timeoutMillis, size));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AosException("Interrupted while waiting for DB connection", e);
+        }
+        try {
+            PooledConnection connection = idleConnections.poll();
+            if (connection == null) {
+                connection = new PooledConnection(this, connectionFactory.open());
+                LOG.debug("Opened new DB connection");
+            }
+            return connection;
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw new AosException("Unable to obtain connection to the database", e);
+        }
+    }
+
+    /**
+     * Called by {@link PooledConnection#close()}. The connection is reset into auto-commit mode, connections which
+     * cannot be reset are discarded and replaced by a new one next time.
+     */
+    void release(PooledConnection connection) {
+        try {
+            if (closed || !connection.reset()) {
+                connection.closePhysically();
+            } else {
+                idleConnections.add(connection);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    int getIdleCount() {
+        return idleConnections.size();
+    }
+
+    /**
+     * Closes all the idle connections, borrowed ones are closed when they are released.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        PooledConnection connection;
+        while ((connection = idleConnections.poll()) != null) {
+            connection.closePhysically();
+        }
+    }
+
+    @FunctionalInterface
+    interface ConnectionFactory {
+        Connection open() throws SQLException;
+    }
+}
@@ -0,0 +1,179 @@
+package com.hesoun.data;
+
+import com.hesoun.AosException;
+import com.hesoun.Config;
+import com.hesoun.model.IndicatorSeries;
+import com.hesoun.model.Indicators;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.text.MessageFormat;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Computes SMA200, SMA5 and RSI2 of the stored prices inside the DB by window functions into {@code daily_indicator}
+ * table and loads them for the simulation.
+ * <p>
+ * Values are rounded the same way as by {@link com.hesoun.trading.IndicatorCalculatorService}: averages keep the
+ * scale of the sum of the prices (the maximal scale of the prices) and are rounded half up, RSI is rounded to
+ * integer and it is 0 without gains and 1 without loses.
+ *
+ * @author Jakub Hesoun
+ */
+public class DailyIndicatorDao {
+    private static final Logger LOG = LoggerFactory.getLogger(DailyIndicatorDao.class);
+    private static final int FETCH_SIZE = 10_000;
+
+    //only stocks with prices after their last indicator are refreshed, their prices are read from the 199th price
+    //before the last indicator, so the windows of the new days are complete
+    private static final String REFRESH = "WITH last_indicator AS (" +
+            "SELECT stock_id,max(date) AS last_date FROM daily_indicator GROUP BY stock_id" +
+            "), refreshed_stock AS (" +
+            "SELECT s.id AS stock_id," +
+            "COALESCE(l.last_date,'-infinity'::DATE) AS last_date," +
+            "COALESCE((SELECT h.date FROM historical_eod_price AS h " +
+            "WHERE h.stock_id = s.id AND h.date <= l.last_date " +
+            "ORDER BY h.date DESC OFFSET 199 LIMIT 1),'-infinity'::DATE) AS window_start " +
+            "FROM stock AS s " +
+            "LEFT JOIN last_indicator AS l ON l.stock_id = s.id " +
+            "WHERE EXISTS (SELECT 1 FROM historical_eod_price AS h " +
+            "WHERE h.stock_id = s.id AND h.date > COALESCE(l.last_date,'-infinity'::DATE))" +
+            ") " +
+            "INSERT INTO daily_indicator (stock_id,date,sma200,sma5,rsi2) " +
+            "SELECT stock_id,date," +
+            "round(sum200 / 200,scale(sum200))," +
+            "round(sum5 / 5,scale(sum5))," +
+            "CASE WHEN gains = 0 THEN 0 " +
+            "WHEN round(loses / 2,scale(loses)) = 0 THEN 1 " +
+            "ELSE 100 - round(100 / (1 + round(round(gains / 2,scale(gains)) / round(loses / 2,scale(loses))," +
+            "scale(gains))),0) END " +
+            "FROM (" +
+            "SELECT stock_id,date,last_date," +
+            "count(*) OVER w200 AS prices," +
+            "sum(adjclose) OVER w200 AS sum200," +
+            "sum(adjclose) OVER w5 AS sum5," +
+            "sum(gain) OVER w2 AS gains," +
+            "sum(loss) OVER w2 AS loses " +
+            "FROM (" +
+            "SELECT p.stock_id,p.date,p.adjclose,r.last_date," +
+            "CASE WHEN p.adjclose > lag(p.adjclose) OVER w THEN p.adjclose - lag(p.adjclose) OVER w ELSE 0 END AS gain," +
+            "CASE WHEN p.adjclose > lag(p.adjclose) OVER w THEN 0 ELSE lag(p.adjclose) OVER w - p.adjclose END AS loss " +
+            "FROM historical_eod_price AS p " +
+            "JOIN refreshed_stock AS r ON r.stock_id = p.stock_id " +
+            "WHERE p.date >= r.window_start " +
+            "WINDOW w AS (PARTITION BY p.stock_id ORDER BY p.date)" +
+            ") AS price_change " +
+            "WINDOW w200 AS (PARTITION BY stock_id ORDER BY date ROWS BETWEEN 199 PRECEDING AND CURRENT ROW)," +
+            "w5 AS (PARTITION BY stock_id ORDER BY date ROWS BETWEEN 4 PRECEDING AND CURRENT ROW)," +
+            "w2 AS (PARTITION BY stock_id ORDER BY date ROWS BETWEEN 1 PRECEDING AND CURRENT ROW)" +
+            ") AS window_sums " +
+            "WHERE prices = 200 AND date > last_date " +
+            "ON CONFLICT (stock_id,date) DO UPDATE " +
+            "SET sma200=EXCLUDED.sma200,sma5=EXCLUDED.sma5,rsi2=EXCLUDED.rsi2";
+
+    private final ConnectionPool pool;
+
+    public DailyIndicatorDao(Config config) {
+        pool = Database.INSTANCE.connect(config);
+    }
+
+    /**
+     * Computes indicators of all the days after the last computed indicator of every stock. Prices stored before
+     * the last computed indicator are not taken into account, use {@link #rebuild()} after such change.
+     *
+     * @return number of computed rows
+     */
+    public int refresh() {
+        long startTime = System.currentTimeMillis();
+        try (PooledConnection conn = pool.getConnection()) {
+            int rows = conn.prepareStatement(REFRESH).executeUpdate();
+            LOG.info("Computed {} rows of daily indicators in {}ms", rows, System.currentTimeMillis() - startTime);
+            return rows;
+        } catch (SQLException e) {
+            throw new AosException("Cannot refresh daily indicators", e);
+        }
+    }
+
+    /**
+     * Deletes all the indicators and computes them again from all the stored prices in one transaction.
+     *
+     * @return number of computed rows
+     */
+    public int rebuild() {
+        long startTime = System.currentTimeMillis();
+        //an unfinished transaction is rolled back when the connection is released
+        try (PooledConnection conn = pool.getConnection()) {
+            conn.setAutoCommit(false);
+            conn.prepareStatement("DELETE FROM daily_indicator").executeUpdate();
+            int rows = conn.prepareStatement(REFRESH).executeUpdate();
+            conn.commit();
+            LOG.info("Rebuilt {} rows of daily indicators in {}ms", rows, System.currentTimeMillis() - startTime);
+            return rows;
+        } catch (SQLException e) {
+            throw new AosException("Cannot rebuild daily indicators", e);
+        }
+    }
+
+    /**
+     * Loads indicators of all the stocks between {@param from} and {@param to} (both inclusive) and the last
+     * indicators before {@param from}, which belong to the last price before the start.
+     *
+     * @return map of stock id to its {@link IndicatorSeries}
+     */
+    public Map<Long, IndicatorSeries> getIndicatorSeries(LocalDate from, LocalDate to) {
+        long startTime = System.currentTimeMillis();
+        try (PooledConnection conn = pool.getConnection()) {
+            //postgres streams the result set only when the fetch size is set and the transaction is open
+            conn.setAutoCommit(false);
+            PreparedStatement ps = conn.prepareStatement(
+                    "SELECT stock_id,date,sma200,sma5,rsi2 FROM (" +
+                            "SELECT stock_id,date,sma200,sma5,rsi2," +
+                            "row_number() OVER (PARTITION BY stock_id ORDER BY date DESC) AS rn " +
+                            "FROM daily_indicator " +
+                            "WHERE date < ?) AS warm_up " +
+                            "WHERE rn = 1 " +
+                            "UNION ALL " +
+                            "SELECT stock_id,date,sma200,sma5,rsi2 " +
+                            "FROM daily_indicator " +
+                            "WHERE date >= ? AND date <= ? " +
+                            "ORDER BY stock_id, date");
+            ps.setFetchSize(FETCH_SIZE);
+            ps.setDate(1, Date.valueOf(from));
+            ps.setDate(2, Date.valueOf(from));
+            ps.setDate(3, Date.valueOf(to));
+
+            Map<Long, IndicatorSeries> result = new HashMap<>();
+            try (ResultSet rs = ps.executeQuery()) {
+                IndicatorSeries.Builder builder = null;
+                long lastStockId = -1;
+                while (rs.next()) {
+                    long stockId = rs.getLong(1);
+                    if (stockId != lastStockId) {
+                        if (builder != null) {
+                            result.put(lastStockId, builder.build());
+                        }
+                        builder = IndicatorSeries.builder(stockId);
+                        lastStockId = stockId;
+                    }
+                    builder.add(rs.getDate(2).toLocalDate(),
+                            new Indicators(rs.getBigDecimal(3), rs.getBigDecimal(5), rs.getBigDecimal(4)));
+                }
+                if (builder != null) {
+                    result.put(lastStockId, builder.build());
+                }
+            }
+            conn.commit();
+            LOG.info("Loaded daily indicators of {} stocks between {} and {} in {}ms", result.size(), from, to,
+                    System.currentTimeMillis() - startTime);
+            return result;
+        } catch (SQLException e) {
+            throw new AosException(MessageFormat.format("Cannot load daily indicators between {0} and {1}", from, to), e);
+        }
+    }
+}
@@ -5,23 +5,21 @@ import com.hesoun.Config;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.sql.Connection;
 import java.sql.DriverManager;
-import java.sql.SQLException;
 
 /**
- * Singleton representing a DB
+ * Singleton representing a DB. All the DAOs share one {@link ConnectionPool}.
  * @author Jakub Hesoun
  */
 enum Database {
     INSTANCE;
 
     private static final Logger LOG = LoggerFactory.getLogger(Database.class);
-    private Connection connection;
+    private ConnectionPool pool;
 
-    synchronized Connection connect(Config config) {
-        if(connection != null) {
-            return connection;
+    synchronized ConnectionPool connect(Config config) {
+        if(pool != null) {
+            return pool;
         }
         try {
             Class.forName("org.postgresql.Driver");
@@ -30,17 +28,10 @@ enum Database {
             throw new AosException(e);
         }
 
-        try {
-            connection = DriverManager.getConnection(config.getDatabaseUrl(), config.getGetDatabaseUser(), config.getDatabasePassword());
-        } catch (SQLException e) {
-            LOG.error("Unable to obtain connection to the database");
-            throw new AosException(e);
-        }
-
-        if (connection == null) {
-            LOG.error("Unable to obtain connection to the database");
-            throw new AosException("Unable to obtain connection to the database");
-        }
-        return connection;
+        pool = new ConnectionPool(
+                () -> DriverManager.getConnection(config.getDatabaseUrl(), config.getGetDatabaseUser(), config.getDatabasePassword()),
+                config.getDatabasePoolSize(), config.getDatabasePoolTimeout());
+        LOG.info("Created pool of {} DB connections", config.getDatabasePoolSize());
+        return pool;
     }
 }
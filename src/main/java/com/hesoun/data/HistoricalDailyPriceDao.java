@@ -3,22 +3,29 @@ package com.hesoun.data;
 import com.hesoun.AosException;
 import com.hesoun.Config;
 import com.hesoun.model.HistoricalDailyPrice;
+import com.hesoun.model.PriceSeries;
+import com.hesoun.model.TradingCalendar;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.sql.*;
 import java.text.MessageFormat;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * @author Jakub Hesoun
  */
-//TODO extract connection to commonDao and make it thread-safe
-public class HistoricalDailyPriceDao {
-    private Connection conn;
+public class HistoricalDailyPriceDao implements PriceRepository {
+    private static final Logger LOG = LoggerFactory.getLogger(HistoricalDailyPriceDao.class);
+    private static final int FETCH_SIZE = 10_000;
+    private final ConnectionPool pool;
 
     public HistoricalDailyPriceDao(Config config) {
-        conn = Database.INSTANCE.connect(config);
+        pool = Database.INSTANCE.connect(config);
     }
 
     /**
@@ -26,31 +33,33 @@ public class HistoricalDailyPriceDao {
      * from days before {@param date} which are ordered by this date descending.
      */
     public List<HistoricalDailyPrice> getLastPricesForStock(long stockId, int days, LocalDate lastDate) {
-        try (PreparedStatement ps = conn.prepareStatement(
-                "SELECT id,date,open,high,low,close,volume,adjclose,unadjclose,stock_id " +
-                        "FROM historical_eod_price " +
-                        "WHERE stock_id = ? AND date <= ? " +
-                        "ORDER BY date DESC " +
-                        "LIMIT ?")) {
+        try (PooledConnection conn = pool.getConnection()) {
+            PreparedStatement ps = conn.prepareStatement(
+                    "SELECT id,date,open,high,low,close,volume,adjclose,unadjclose,stock_id " +
+                            "FROM historical_eod_price " +
+                            "WHERE stock_id = ? AND date <= ? " +
+                            "ORDER BY date DESC " +
+                            "LIMIT ?");
             ps.setLong(1, stockId);
             ps.setDate(2, Date.valueOf(lastDate));
             ps.setInt(3, days);
 
-            ResultSet rs = ps.executeQuery();
             List<HistoricalDailyPrice> result = new ArrayList<>(days);
-            while (rs.next()) {
-                HistoricalDailyPrice price = HistoricalDailyPrice.builder()
-                        .id(rs.getInt(1))
-                        .date(rs.getTimestamp(2).toLocalDateTime())
-                        .open(rs.getBigDecimal(3))
-                        .high(rs.getBigDecimal(4))
-                        .low(rs.getBigDecimal(5))
-                        .close(rs.getBigDecimal(6))
-                        .volume(rs.getInt(7))
-                        .adjustedClose(rs.getBigDecimal(8))
-                        .unadjustedClose(rs.getBigDecimal(9))
-                        .build();
-                result.add(price);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    HistoricalDailyPrice price = HistoricalDailyPrice.builder()
+                            .id(rs.getInt(1))
+                            .date(rs.getTimestamp(2).toLocalDateTime())
+                            .open(rs.getBigDecimal(3))
+                            .high(rs.getBigDecimal(4))
+                            .low(rs.getBigDecimal(5))
+                            .close(rs.getBigDecimal(6))
+                            .volume(rs.getInt(7))
+                            .adjustedClose(rs.getBigDecimal(8))
+                            .unadjustedClose(rs.getBigDecimal(9))
+                            .build();
+                    result.add(price);
+                }
             }
             return result;
         } catch (SQLException e) {
@@ -59,6 +68,131 @@ public class HistoricalDailyPriceDao {
         }
     }
 
+    /**
+     * Loads prices of all the stocks between {@param from} and {@param to} (both inclusive) in one streamed query.
+     * For every stock also {@param warmUpDays} prices before {@param from} are loaded, so indicators can be computed
+     * already for the first day.
+     *
+     * @return map of stock id to its {@link PriceSeries} ordered by date ascending
+     */
+    @Override
+    public Map<Long, PriceSeries> getPriceSeries(LocalDate from, LocalDate to, int warmUpDays) {
+        long startTime = System.currentTimeMillis();
+        //the pool rolls back and restores auto-commit when the connection is released
+        try (PooledConnection conn = pool.getConnection()) {
+            //postgres streams the result set only when the fetch size is set and the transaction is open
+            conn.setAutoCommit(false);
+            PreparedStatement ps = conn.prepareStatement(
+                    "SELECT id,date,open,high,low,close,volume,adjclose,unadjclose,stock_id FROM (" +
+                            "SELECT id,date,open,high,low,close,volume,adjclose,unadjclose,stock_id," +
+                            "row_number() OVER (PARTITION BY stock_id ORDER BY date DESC) AS rn " +
+                            "FROM historical_eod_price " +
+                            "WHERE date < ?) AS warm_up " +
+                            "WHERE rn <= ? " +
+                            "UNION ALL " +
+                            "SELECT id,date,open,high,low,close,volume,adjclose,unadjclose,stock_id " +
+                            "FROM historical_eod_price " +
+                            "WHERE date >= ? AND date <= ? " +
+                            "ORDER BY stock_id, date");
+            ps.setFetchSize(FETCH_SIZE);
+            ps.setDate(1, Date.valueOf(from));
+            ps.setInt(2, warmUpDays);
+            ps.setDate(3, Date.valueOf(from));
+            ps.setDate(4, Date.valueOf(to));
+
+            Map<Long, PriceSeries> result = readPriceSeries(ps);
+            conn.commit();
+            LOG.info("Loaded prices of {} stocks between {} and {} in {}ms", result.size(), from, to,
+                    System.currentTimeMillis() - startTime);
+            return result;
+        } catch (SQLException e) {
+            throw new AosException(MessageFormat.format("Cannot load prices between {0} and {1}", from, to), e);
+        }
+    }
+
+    /**
+     * Loads all the stored prices of all the stocks in one streamed query.
+     *
+     * @return map of stock id to its {@link PriceSeries} ordered by date ascending
+     */
+    @Override
+    public Map<Long, PriceSeries> getAllPriceSeries() {
+        long startTime = System.currentTimeMillis();
+        try (PooledConnection conn = pool.getConnection()) {
+            conn.setAutoCommit(false);
+            PreparedStatement ps = conn.prepareStatement(
+                    "SELECT id,date,open,high,low,close,volume,adjclose,unadjclose,stock_id " +
+                            "FROM historical_eod_price " +
+                            "ORDER BY stock_id, date");
+            ps.setFetchSize(FETCH_SIZE);
+
+            Map<Long, PriceSeries> result = readPriceSeries(ps);
+            conn.commit();
+            LOG.info("Loaded all prices of {} stocks in {}ms", result.size(), System.currentTimeMillis() - startTime);
+            return result;
+        } catch (SQLException e) {
+            throw new AosException("Cannot load all the prices", e);
+        }
+    }
+
+    /**
+     * Executes the query returning price rows ordered by stock id and date and groups them into series.
+     */
+    private static Map<Long, PriceSeries> readPriceSeries(PreparedStatement ps) throws SQLException {
+        try (ResultSet rs = ps.executeQuery()) {
+            return readPriceSeries(rs);
+        }
+    }
+
+    /**
+     * Decodes price rows of {@code historical_eod_price} ordered by stock id and date into series, the columns are in
+     * the order of the table.
+     */
+    static Map<Long, PriceSeries> readPriceSeries(ResultSet rs) throws SQLException {
+        Map<Long, PriceSeries> result = new HashMap<>();
+        PriceSeries.Builder builder = null;
+        long lastStockId = -1;
+        while (rs.next()) {
+            long stockId = rs.getLong(10);
+            if (stockId != lastStockId) {
+                if (builder != null) {
+                    result.put(lastStockId, builder.build());
+                }
+                builder = PriceSeries.builder(stockId);
+                lastStockId = stockId;
+            }
+            builder.add(rs.getDate(2).toLocalDate(),
+                    rs.getBigDecimal(3),
+                    rs.getBigDecimal(4),
+                    rs.getBigDecimal(5),
+                    rs.getBigDecimal(6),
+                    rs.getInt(7),
+                    rs.getBigDecimal(8),
+                    rs.getBigDecimal(9));
+        }
+        if (builder != null) {
+            result.put(lastStockId, builder.build());
+        }
+        return result;
+    }
+
+    /**
+     * Builds {@link TradingCalendar} of all the days for which any price exists.
+     */
+    @Override
+    public TradingCalendar getTradingCalendar() {
+        try (PooledConnection conn = pool.getConnection();
+             ResultSet rs = conn.prepareStatement("SELECT DISTINCT date FROM historical_eod_price").executeQuery()) {
+            List<LocalDate> dates = new ArrayList<>();
+            while (rs.next()) {
+                dates.add(rs.getDate(1).toLocalDate());
+            }
+            return TradingCalendar.of(dates);
+        } catch (SQLException e) {
+            throw new AosException("Cannot load trading days from DB", e);
+        }
+    }
+
     /**
      * Returns true if any {@link HistoricalDailyPrice} entity exists with given{@param date}.
      * This method should help to skip non-trading days.
@@ -66,12 +200,14 @@ public class HistoricalDailyPriceDao {
      * @return id of given entry or -1 if not found
      */
     public boolean hasPriceForGivenDate(LocalDate date) throws SQLException {
-        try (PreparedStatement ps = conn.prepareStatement(
-                "SELECT id FROM historical_eod_price " +
-                        "WHERE date = ? ")) {
+        try (PooledConnection conn = pool.getConnection()) {
+            PreparedStatement ps = conn.prepareStatement(
+                    "SELECT id FROM historical_eod_price " +
+                            "WHERE date = ? ");
             ps.setDate(1, Date.valueOf(date));
-            ResultSet rs = ps.executeQuery();
-            return rs.next();
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next();
+            }
         }
     }
 }
@@ -0,0 +1,214 @@
+package com.hesoun.data;
+
+import com.hesoun.model.HistoricalDailyPrice;
+import com.hesoun.model.Money;
+import com.hesoun.model.Position;
+import com.hesoun.model.PriceSeries;
+import com.hesoun.model.Stock;
+import com.hesoun.model.TradingCalendar;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Stocks, prices and positions held only in memory, it behaves the same way as the DB: stocks are identified by
+ * symbol and exchange, prices by stock and date, ids are generated and the stored entities are copies, so callers
+ * cannot modify them without going through the repository.
+ * <p>
+ * All the operations are synchronized, it is meant for backtests and tests which do not need a DB process, not for
+ * concurrent heavy writing.
+ *
+ * @author Jakub Hesoun
+ */
+public class InMemoryStorage implements StockRepository, PriceRepository, PositionRepository {
+    private final Map<Long, Stock> stocks = new LinkedHashMap<>();
+    //symbol and exchange to stock id
+    private final Map<List<String>, Long> stockIds = new HashMap<>();
+    private final Map<Long, NavigableMap<LocalDate, HistoricalDailyPrice>> prices = new HashMap<>();
+    private final Map<Long, Position> positions = new LinkedHashMap<>();
+    private long lastPriceId;
+
+    @Override
+    public synchronized Stock persist(Stock stock) {
+        List<String> key = Arrays.asList(stock.getSymbol(), stock.getExchange());
+        Long id = stockIds.get(key);
+        Stock stored = stock.toBuilder()
+                .historicalDailyPrices(null)
+                .openPositions(null)
+                .build();
+        if (id == null) {
+            id = (long) stocks.size() + 1;
+            stockIds.put(key, id);
+            stored.setInserted(LocalDateTime.now());
+        } else {
+            stored.setInserted(stocks.get(id).getInserted());
+        }
+        stored.setId(id);
+        stored.setPriceWindow(null);
+        stored.setCurrentIndicators(null);
+        stored.setRank(null);
+        stocks.put(id, stored);
+        stock.setId(id);
+
+        if (stock.getHistoricalDailyPrices() != null) {
+            NavigableMap<LocalDate, HistoricalDailyPrice> stockPrices = prices.computeIfAbsent(id, k -> new TreeMap<>());
+            for (HistoricalDailyPrice price : stock.getHistoricalDailyPrices()) {
+                price.setStockId(id);
+                HistoricalDailyPrice replaced = stockPrices.get(price.getDate().toLocalDate());
+                price.setId(replaced == null ? ++lastPriceId : replaced.getId());
+                stockPrices.put(price.getDate().toLocalDate(), price.toBuilder().build());
+            }
+        }
+        return stock;
+    }
+
+    @Override
+    public synchronized Map<String, LocalDate> getLastPriceDates() {
+        Map<String, LocalDate> lastDates = new HashMap<>();
+        for (Map.Entry<Long, NavigableMap<LocalDate, HistoricalDailyPrice>> entry : prices.entrySet()) {
+            if (!entry.getValue().isEmpty()) {
+                lastDates.put(stocks.get(entry.getKey()).getSymbol(), entry.getValue().lastKey());
+            }
+        }
+        return lastDates;
+    }
+
+    @Override
+    public synchronized List<Stock> getAllStock() {
+        List<Stock> result = new ArrayList<>(stocks.size());
+        for (Stock stock : stocks.values()) {
+            result.add(stock.toBuilder().build());
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized Map<Long, PriceSeries> getPriceSeries(LocalDate from, LocalDate to, int warmUpDays) {
+        Map<Long, PriceSeries> result = new HashMap<>();
+        for (Map.Entry<Long, NavigableMap<LocalDate, HistoricalDailyPrice>> entry : prices.entrySet()) {
+            NavigableMap<LocalDate, HistoricalDailyPrice> stockPrices = entry.getValue();
+            List<HistoricalDailyPrice> warmUp = new ArrayList<>(Math.min(warmUpDays, stockPrices.size()));
+            Iterator<HistoricalDailyPrice> before = stockPrices.headMap(from, false).descendingMap().values().iterator();
+            while (warmUp.size() < warmUpDays && before.hasNext()) {
+                warmUp.add(before.next());
+            }
+            Collections.reverse(warmUp);
+            NavigableMap<LocalDate, HistoricalDailyPrice> period = to.isBefore(from)
+                    ? Collections.emptyNavigableMap()
+                    : stockPrices.subMap(from, true, to, true);
+            if (warmUp.isEmpty() && period.isEmpty()) {
+                continue;
+            }
+            PriceSeries.Builder builder = PriceSeries.builder(entry.getKey());
+            warmUp.forEach(builder::add);
+            period.values().forEach(builder::add);
+            result.put(entry.getKey(), builder.build());
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized Map<Long, PriceSeries> getAllPriceSeries() {
+        Map<Long, PriceSeries> result = new HashMap<>();
+        for (Map.Entry<Long, NavigableMap<LocalDate, HistoricalDailyPrice>> entry : prices.entrySet()) {
+            if (!entry.getValue().isEmpty()) {
+                PriceSeries.Builder builder = PriceSeries.builder(entry.getKey());
+                entry.getValue().values().forEach(builder::add);
+                result.put(entry.getKey(), builder.build());
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized TradingCalendar getTradingCalendar() {
+        TreeSet<LocalDate> dates = new TreeSet<>();
+        for (NavigableMap<LocalDate, HistoricalDailyPrice> stockPrices : prices.values()) {
+            dates.addAll(stockPrices.keySet());
+        }
+        return TradingCalendar.of(dates);
+    }
+
+    @Override
+    public synchronized Map<Long, List<Position>> getOpenPositions() {
+        Map<Long, List<Position>> openPositions = new HashMap<>();
+        Map<Long, Stock> positionStocks = new HashMap<>();
+        for (Position position : positions.values()) {
+            if (position.getStatus() != Position.Status.OPEN) {
+                continue;
+            }
+            Stock stock = positionStocks.computeIfAbsent(position.getStock().getId(), id -> {
+                Stock copy = stocks.containsKey(id) ? stocks.get(id).toBuilder().build() : position.getStock().toBuilder().build();
+                copy.setOpenPositions(new ArrayList<>());
+                openPositions.put(id, copy.getOpenPositions());
+                return copy;
+            });
+            stock.getOpenPositions().add(position.toBuilder().stock(stock).build());
+        }
+        return openPositions;
+    }
+
+    @Override
+    public synchronized Map<Position.Slice, Integer> getOpenSliceCounts() {
+        Map<Position.Slice, Integer> sliceCounts = new EnumMap<>(Position.Slice.class);
+        for (Position position : positions.values()) {
+            if (position.getStatus() == Position.Status.OPEN) {
+                sliceCounts.merge(position.getSlice(), 1, Integer::sum);
+            }
+        }
+        return sliceCounts;
+    }
+
+    @Override
+    public synchronized void buyPosition(Position position) {
+        position.setId(store(position.toBuilder().status(Position.Status.OPEN).build()));
+    }
+
+    @Override
+    public synchronized void sellPosition(Position position, Money sellPrice, LocalDate sellDate) {
+        Position stored = positions.get(position.getId());
+        if (stored == null) {
+            throw new IllegalArgumentException("Position " + position.getId() + " is not stored");
+        }
+        stored.setSellPrice(sellPrice);
+        stored.setSellDate(sellDate);
+        stored.setStatus(Position.Status.CLOSED);
+    }
+
+    @Override
+    public synchronized void insertPositions(List<Position> positions) {
+        for (Position position : positions) {
+            store(position.toBuilder().build());
+        }
+    }
+
+    /**
+     * @return copies of all the stored positions, open and closed ones, in the order they were stored
+     */
+    public synchronized List<Position> getPositions() {
+        List<Position> result = new ArrayList<>(positions.size());
+        for (Position position : positions.values()) {
+            result.add(position.toBuilder().build());
+        }
+        return result;
+    }
+
+    private long store(Position position) {
+        long id = positions.size() + 1;
+        position.setId(id);
+        positions.put(id, position);
+        return id;
+    }
+}
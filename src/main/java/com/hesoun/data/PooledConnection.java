@@ -0,0 +1,125 @@
+package com.hesoun.data;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Connection borrowed from {@link ConnectionPool}, closing it returns it back to the pool. It is meant to be used by
+ * one thread at a time.
+ * <p>
+ * Prepared statements are cached by their SQL and stay open as long as the physical connection, so they must not be
+ * closed by callers. Result sets still have to be closed.
+ *
+ * @author Jakub Hesoun
+ */
+class PooledConnection implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(PooledConnection.class);
+
+    private final ConnectionPool pool;
+    private final Connection connection;
+    private final Map<String, PreparedStatement> statements = new HashMap<>();
+    private final Map<String, PreparedStatement> statementsWithKeys = new HashMap<>();
+
+    PooledConnection(ConnectionPool pool, Connection connection) {
+        this.pool = pool;
+        this.connection = connection;
+    }
+
+    PreparedStatement prepareStatement(String sql) throws SQLException {
+        return getStatement(statements, sql, Statement.NO_GENERATED_KEYS);
+    }
+
+    /**
+     * @param autoGeneratedKeys one of {@link Statement#RETURN_GENERATED_KEYS} or {@link Statement#NO_GENERATED_KEYS}
+     */
+    PreparedStatement prepareStatement(String sql, int autoGeneratedKeys) throws SQLException {
+        if (autoGeneratedKeys == Statement.NO_GENERATED_KEYS) {
+            return prepareStatement(sql);
+        }
+        return getStatement(statementsWithKeys, sql, autoGeneratedKeys);
+    }
+
+    /**
+     * Executes a statement which runs only once, e.g. DDL. It is not cached and it is closed right away.
+     */
+    void execute(String sql) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    void setAutoCommit(boolean autoCommit) throws SQLException {
+        connection.setAutoCommit(autoCommit);
+    }
+
+    void commit() throws SQLException {
+        connection.commit();
+    }
+
+    void rollback() throws SQLException {
+        connection.rollback();
+    }
+
+    /**
+     * Gives access to driver specific API of the physical connection.
+     */
+    <T> T unwrap(Class<T> type) throws SQLException {
+        return connection.unwrap(type);
+    }
+
+    @Override
+    public void close() {
+        pool.release(this);
+    }
+
+    private PreparedStatement getStatement(Map<String, PreparedStatement> cache, String sql, int autoGeneratedKeys)
+            throws SQLException {
+        PreparedStatement statement = cache.get(sql);
+        if (statement == null || statement.isClosed()) {
+            statement = connection.prepareStatement(sql, autoGeneratedKeys);
+            cache.put(sql, statement);
+        } else {
+            statement.clearParameters();
+            statement.clearBatch();
+        }
+        return statement;
+    }
+
+    /**
+     * Prepares the connection for the next borrower, an open transaction is rolled back.
+     *
+     * @return false if the connection is not usable anymore
+     */
+    boolean reset() {
+        try {
+            if (connection.isClosed()) {
+                return false;
+            }
+            if (!connection.getAutoCommit()) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+            return true;
+        } catch (SQLException e) {
+            LOG.warn("Discarding DB connection which cannot be reset", e);
+            return false;
+        }
+    }
+
+    void closePhysically() {
+        statements.clear();
+        statementsWithKeys.clear();
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            LOG.warn("Cannot close DB connection", e);
+        }
+    }
+}
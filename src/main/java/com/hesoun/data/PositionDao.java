@@ -2,38 +2,94 @@ package com.hesoun.data;
 
 import com.hesoun.AosException;
 import com.hesoun.Config;
+import com.hesoun.model.Money;
 import com.hesoun.model.Position;
+import com.hesoun.model.Stock;
 
-import java.math.BigDecimal;
 import java.sql.*;
 import java.text.MessageFormat;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * @author Jakub Hesoun
  */
-public class PositionDao {
-    private final Connection connection;
+public class PositionDao implements PositionRepository {
+    private final ConnectionPool pool;
 
     public PositionDao(Config config) {
-        this.connection = Database.INSTANCE.connect(config);
+        this.pool = Database.INSTANCE.connect(config);
     }
 
     /**
-     * Get the total amount of all the open positions.
+     * Loads open positions with their stocks, every stock has its {@link com.hesoun.model.Stock#getOpenPositions()}
+     * populated.
      */
-    public int getTotalAllocation() {
-        try (PreparedStatement ps = connection.prepareStatement(
-                "SELECT slice " +
-                        "FROM position " +
-                        "WHERE status = 'O'::STATUS_TYPE")) {
-            ResultSet rs = ps.executeQuery();
-            int totalAllocation = 0;
-            while (rs.next()) {
-                totalAllocation += Position.Slice.getAmountFromPercentage(rs.getInt(1));
+    @Override
+    public Map<Long, List<Position>> getOpenPositions() {
+        try (PooledConnection conn = pool.getConnection()) {
+            PreparedStatement ps = conn.prepareStatement(
+                    "SELECT s.id,s.symbol,s.name,s.exchange,s.currency_code,s.first_traded_date,s.inserted," +
+                            "p.id,p.buy_price,p.status,p.buy_date,p.slice,p.shares,p.basket_uuid " +
+                            "FROM stock AS s " +
+                            "JOIN position AS p ON s.id = p.stock_id " +
+                            "WHERE status = ?::STATUS_TYPE " +
+                            "ORDER BY s.id,p.slice");
+            ps.setString(1, "O");
+            Map<Long, List<Position>> openPositions = new HashMap<>();
+            try (ResultSet rs = ps.executeQuery()) {
+                Stock stock = null;
+                while (rs.next()) {
+                    //rows are ordered by stock, so a new stock starts when the id changes
+                    if (stock == null || stock.getId() != rs.getLong(1)) {
+                        stock = Stock.builder()
+                                .id(rs.getLong(1))
+                                .symbol(rs.getString(2))
+                                .name(rs.getString(3))
+                                .exchange(rs.getString(4))
+                                .currencyCode(rs.getString(5))
+                                .firstTradedDate(rs.getDate(6).toLocalDate())
+                                .inserted(rs.getTimestamp(7).toLocalDateTime())
+                                .openPositions(new ArrayList<>())
+                                .build();
+                        openPositions.put(stock.getId(), stock.getOpenPositions());
+                    }
+                    Position position = Position.builder()
+                            .id(rs.getLong(8))
+                            .buyPrice(Money.of(rs.getBigDecimal(9)))
+                            .status(Position.Status.getStatusFromSymbol(rs.getString(10)))
+                            .buyDate(rs.getDate(11).toLocalDate())
+                            .slice(Position.Slice.getSliceFromPercentage(rs.getInt(12)))
+                            .shares(rs.getInt(13))
+                            .basketUUID(rs.getString(14))
+                            .stock(stock)
+                            .build();
+                    stock.getOpenPositions().add(position);
+                }
             }
-            return totalAllocation;
+            return openPositions;
+        } catch (SQLException e) {
+            throw new AosException("Cannot load open positions from DB", e);
+        }
+    }
 
+    @Override
+    public Map<Position.Slice, Integer> getOpenSliceCounts() {
+        try (PooledConnection connection = pool.getConnection();
+             ResultSet rs = connection.prepareStatement(
+                     "SELECT slice,count(*) " +
+                             "FROM position " +
+                             "WHERE status = 'O'::STATUS_TYPE " +
+                             "GROUP BY slice").executeQuery()) {
+            Map<Position.Slice, Integer> sliceCounts = new EnumMap<>(Position.Slice.class);
+            while (rs.next()) {
+                sliceCounts.put(Position.Slice.getSliceFromPercentage(rs.getInt(1)), rs.getInt(2));
+            }
+            return sliceCounts;
         } catch (SQLException e) {
             throw new AosException("Cannot load open positions from DB", e);
         }
@@ -42,12 +98,14 @@ public class PositionDao {
     /**
      * Insert position into DB with respective buyDate and buyPrice
      */
+    @Override
     public void buyPosition(Position position) {
         //TODO JH set basketId and strategyId
-        try (PreparedStatement ps = connection.prepareStatement(
-                "INSERT INTO position (buy_price, status, buy_date, slice,shares, stock_id) " +
-                        "VALUES (?,?::STATUS_TYPE,?,?::SLICE_TYPE,?, ?)")) {
-            ps.setBigDecimal(1, position.getBuyPrice());
+        try (PooledConnection connection = pool.getConnection()) {
+            PreparedStatement ps = connection.prepareStatement(
+                    "INSERT INTO position (buy_price, status, buy_date, slice,shares, stock_id) " +
+                            "VALUES (?,?::STATUS_TYPE,?,?::SLICE_TYPE,?, ?)");
+            ps.setBigDecimal(1, position.getBuyPrice().toBigDecimal());
             ps.setString(2, Position.Status.OPEN.getSymbol());
             ps.setDate(3, Date.valueOf(position.getBuyDate()));
             ps.setString(4, position.getSlice().getPositionPercentageAsString());
@@ -64,11 +122,13 @@ public class PositionDao {
      * Performs DB update of a position that is already bought. This operation will change its status to CLOSED and
      * adds sellPrice and sellDate.
      */
-    public void sellPosition(Position position, BigDecimal sellPrice, LocalDate sellDate) {
-        try (PreparedStatement ps = connection.prepareStatement(
-                "UPDATE position SET sell_price=?,sell_date=?,status=?::STATUS_TYPE " +
-                        "WHERE id=?")) {
-            ps.setBigDecimal(1, sellPrice);
+    @Override
+    public void sellPosition(Position position, Money sellPrice, LocalDate sellDate) {
+        try (PooledConnection connection = pool.getConnection()) {
+            PreparedStatement ps = connection.prepareStatement(
+                    "UPDATE position SET sell_price=?,sell_date=?,status=?::STATUS_TYPE " +
+                            "WHERE id=?");
+            ps.setBigDecimal(1, sellPrice.toBigDecimal());
             ps.setDate(2, Date.valueOf(sellDate));
             ps.setString(3, "C");
             ps.setLong(4, position.getId());
@@ -78,4 +138,33 @@ public class PositionDao {
             throw new AosException(MessageFormat.format("Cannot sell position {0} for stock {1}", position.getSlice().getAmount(), position.getStock().getName()), e);
         }
     }
+
+    /**
+     * Inserts all the {@param positions}, open and closed ones, in one batch and one transaction.
+     */
+    @Override
+    public void insertPositions(List<Position> positions) {
+        //an unfinished transaction is rolled back when the connection is released
+        try (PooledConnection connection = pool.getConnection()) {
+            connection.setAutoCommit(false);
+            PreparedStatement ps = connection.prepareStatement(
+                    "INSERT INTO position (buy_price, sell_price, status, buy_date, sell_date, slice, shares, stock_id) " +
+                            "VALUES (?,?,?::STATUS_TYPE,?,?,?::SLICE_TYPE,?,?)");
+            for (Position position : positions) {
+                ps.setBigDecimal(1, position.getBuyPrice().toBigDecimal());
+                ps.setBigDecimal(2, position.getSellPrice() == null ? null : position.getSellPrice().toBigDecimal());
+                ps.setString(3, position.getStatus().getSymbol());
+                ps.setDate(4, Date.valueOf(position.getBuyDate()));
+                ps.setDate(5, position.getSellDate() == null ? null : Date.valueOf(position.getSellDate()));
+                ps.setString(6, position.getSlice().getPositionPercentageAsString());
+                ps.setInt(7, position.getShares());
+                ps.setLong(8, position.getStock().getId());
+                ps.addBatch();
+            }
+            ps.executeBatch();
+            connection.commit();
+        } catch (SQLException e) {
+            throw new AosException(MessageFormat.format("Cannot persist {0} positions", positions.size()), e);
+        }
+    }
 }
@@ -0,0 +1,42 @@
+package com.hesoun.data;
+
+import com.hesoun.model.Money;
+import com.hesoun.model.Position;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Storage of bought positions.
+ *
+ * @author Jakub Hesoun
+ */
+public interface PositionRepository {
+
+    /**
+     * @return open positions of all the stocks keyed by stock id, positions reference shallow stocks
+     */
+    Map<Long, List<Position>> getOpenPositions();
+
+    /**
+     * @return number of open positions of every slice, slices without an open position are missing; the amounts are
+     * given by the parameters of the strategy, so they are not stored
+     */
+    Map<Position.Slice, Integer> getOpenSliceCounts();
+
+    /**
+     * Stores a newly bought open position.
+     */
+    void buyPosition(Position position);
+
+    /**
+     * Closes already bought position with given {@param sellPrice} and {@param sellDate}.
+     */
+    void sellPosition(Position position, Money sellPrice, LocalDate sellDate);
+
+    /**
+     * Inserts all the {@param positions}, open and closed ones, at once.
+     */
+    void insertPositions(List<Position> positions);
+}
@@ -0,0 +1,34 @@
+package com.hesoun.data;
+
+import com.hesoun.model.PriceSeries;
+import com.hesoun.model.TradingCalendar;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+/**
+ * Read access to the stored prices, prices are written together with their stock by {@link StockRepository}.
+ *
+ * @author Jakub Hesoun
+ */
+public interface PriceRepository {
+
+    /**
+     * Loads prices of all the stocks between {@param from} and {@param to} (both inclusive). For every stock also
+     * {@param warmUpDays} prices before {@param from} are loaded, so indicators can be computed already for the first
+     * day.
+     *
+     * @return map of stock id to its {@link PriceSeries} ordered by date ascending
+     */
+    Map<Long, PriceSeries> getPriceSeries(LocalDate from, LocalDate to, int warmUpDays);
+
+    /**
+     * @return map of stock id to the {@link PriceSeries} of all its stored prices
+     */
+    Map<Long, PriceSeries> getAllPriceSeries();
+
+    /**
+     * Builds {@link TradingCalendar} of all the days for which any price exists.
+     */
+    TradingCalendar getTradingCalendar();
+}
@@ -0,0 +1,29 @@
+package com.hesoun.data;
+
+import com.hesoun.model.PriceSeries;
+import com.hesoun.model.Stock;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read-only source of stocks and their prices for simulations.
+ *
+ * @author Jakub Hesoun
+ */
+public interface PriceSource {
+
+    /**
+     * Returns shallow stocks, no prices or positions are loaded.
+     */
+    List<Stock> getAllStock();
+
+    /**
+     * Gets prices of all the stocks between {@param from} and {@param to} (both inclusive) including
+     * {@param warmUpDays} prices before {@param from}.
+     *
+     * @return map of stock id to its {@link PriceSeries} ordered by date ascending
+     */
+    Map<Long, PriceSeries> getPriceSeries(LocalDate from, LocalDate to, int warmUpDays);
+}
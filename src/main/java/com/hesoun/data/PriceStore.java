@@ -0,0 +1,258 @@
+package com.hesoun.data;
+
+import com.hesoun.AosException;
+import com.hesoun.Config;
+import com.hesoun.model.PriceSeries;
+import com.hesoun.model.Stock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.text.MessageFormat.format;
+
+/**
+ * Read-only {@link PriceSource} backed by a memory-mapped file, so simulations do not need a running DB and the file
+ * is shared by all the processes through the OS page cache.
+ * <p>
+ * The file starts with a header (magic number, version and offset of the directory), then a block of columns of
+ * every stock follows in the layout of {@link PriceSeries#writeTo(ByteBuffer)} and at the end there is the directory
+ * of stocks with offsets and sizes of their blocks. Blocks start at offsets aligned to 8 bytes.
+ *
+ * @author Jakub Hesoun
+ */
+public class PriceStore implements PriceSource {
+    private static final Logger LOG = LoggerFactory.getLogger(PriceStore.class);
+    private static final int MAGIC = 0x414F5350;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final long NULL_VALUE = Long.MIN_VALUE;
+
+    private final ByteBuffer buffer;
+    private final List<Entry> entries;
+
+    private PriceStore(ByteBuffer buffer, List<Entry> entries) {
+        this.buffer = buffer;
+        this.entries = entries;
+    }
+
+    /**
+     * Maps the store file into memory and reads its directory.
+     */
+    public static PriceStore open(Path file) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new AosException(format("Price store {0} is bigger than 2GB", file));
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new AosException(format("{0} is not a price store", file));
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new AosException(format("Price store {0} has unsupported version {1}", file, buffer.getInt(4)));
+        }
+
+        ByteBuffer directory = buffer.duplicate();
+        directory.position((int) buffer.getLong(8));
+        int count = directory.getInt();
+        List<Entry> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            entries.add(Entry.read(directory));
+        }
+        LOG.info("Opened price store {} with {} stocks", file, count);
+        return new PriceStore(buffer, entries);
+    }
+
+    /**
+     * Loads all the stocks and their prices from {@link Storage} and writes them into {@param file}.
+     */
+    public static void export(Config config, Path file) throws IOException {
+        long startTime = System.currentTimeMillis();
+        Storage storage = Storage.open(config);
+        List<Stock> stocks = storage.getStocks().getAllStock();
+        Map<Long, PriceSeries> priceSeries = storage.getPrices().getAllPriceSeries();
+        write(file, stocks, priceSeries);
+        LOG.info("Exported {} stocks into {} in {}ms", stocks.size(), file, System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * Writes the {@param stocks} and their {@param priceSeries} into {@param file}. The file is written aside and moved
+     * into its place, so a store being read is never seen partially written.
+     */
+    public static void write(Path file, List<Stock> stocks, Map<Long, PriceSeries> priceSeries) throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, "store", ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            channel.position(HEADER_SIZE);
+            List<Entry> entries = new ArrayList<>(stocks.size());
+            for (Stock stock : stocks) {
+                PriceSeries series = priceSeries.get(stock.getId());
+                int size = series == null ? 0 : series.size();
+                long blockSize = PriceSeries.getBlockSize(size);
+                long offset = channel.position();
+                if (size > 0) {
+                    ByteBuffer block = ByteBuffer.allocate((int) align(blockSize));
+                    series.writeTo(block);
+                    block.rewind();
+                    writeFully(channel, block);
+                }
+                entries.add(new Entry(stock, offset, size));
+            }
+
+            long directoryOffset = channel.position();
+            if (directoryOffset > Integer.MAX_VALUE) {
+                throw new AosException(format("Prices of {0} stocks do not fit into 2GB", stocks.size()));
+            }
+            ByteBuffer directoryBuffer = ByteBuffer.allocate(Integer.BYTES + entries.size() * Entry.MAX_SIZE);
+            directoryBuffer.putInt(entries.size());
+            for (Entry entry : entries) {
+                entry.write(directoryBuffer);
+            }
+            directoryBuffer.flip();
+            writeFully(channel, directoryBuffer);
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putLong(directoryOffset).flip();
+            channel.position(0);
+            writeFully(channel, header);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public List<Stock> getAllStock() {
+        List<Stock> stocks = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            stocks.add(entry.stock.toBuilder().build());
+        }
+        return stocks;
+    }
+
+    /**
+     * Copies the selected range of the columns of every stock out of the mapped file, no decimal is parsed.
+     */
+    @Override
+    public Map<Long, PriceSeries> getPriceSeries(LocalDate from, LocalDate to, int warmUpDays) {
+        long startTime = System.currentTimeMillis();
+        Map<Long, PriceSeries> result = new HashMap<>();
+        for (Entry entry : entries) {
+            if (entry.size == 0) {
+                continue;
+            }
+            ByteBuffer block = buffer.duplicate();
+            block.position((int) entry.offset);
+            block.limit((int) (entry.offset + PriceSeries.getBlockSize(entry.size)));
+            PriceSeries series = PriceSeries.readFrom(block.slice(), entry.stock.getId(), entry.size, from, to, warmUpDays);
+            if (series != null) {
+                result.put(entry.stock.getId(), series);
+            }
+        }
+        LOG.info("Loaded prices of {} stocks between {} and {} from price store in {}ms", result.size(), from, to,
+                System.currentTimeMillis() - startTime);
+        return Collections.unmodifiableMap(result);
+    }
+
+    private static long align(long size) {
+        return (size + 7) & ~7L;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Stock of the directory with the position of its block.
+     */
+    private static class Entry {
+        private static final int MAX_STRING_BYTES = 256;
+        private static final int MAX_SIZE = 2 * Long.BYTES + Integer.BYTES + 2 * Long.BYTES
+                + 4 * (Short.BYTES + MAX_STRING_BYTES);
+
+        private final Stock stock;
+        private final long offset;
+        private final int size;
+
+        private Entry(Stock stock, long offset, int size) {
+            this.stock = stock;
+            this.offset = offset;
+            this.size = size;
+        }
+
+        private void write(ByteBuffer buffer) {
+            buffer.putLong(stock.getId());
+            buffer.putLong(offset);
+            buffer.putInt(size);
+            putString(buffer, stock.getSymbol());
+            putString(buffer, stock.getName());
+            putString(buffer, stock.getExchange());
+            putString(buffer, stock.getCurrencyCode());
+            buffer.putLong(stock.getFirstTradedDate() == null ? NULL_VALUE : stock.getFirstTradedDate().toEpochDay());
+            buffer.putLong(stock.getInserted() == null ? NULL_VALUE : stock.getInserted().toEpochSecond(ZoneOffset.UTC));
+        }
+
+        private static Entry read(ByteBuffer buffer) {
+            long id = buffer.getLong();
+            long offset = buffer.getLong();
+            int size = buffer.getInt();
+            Stock stock = Stock.builder()
+                    .id(id)
+                    .symbol(getString(buffer))
+                    .name(getString(buffer))
+                    .exchange(getString(buffer))
+                    .currencyCode(getString(buffer))
+                    .build();
+            long firstTradedDate = buffer.getLong();
+            stock.setFirstTradedDate(firstTradedDate == NULL_VALUE ? null : LocalDate.ofEpochDay(firstTradedDate));
+            long inserted = buffer.getLong();
+            stock.setInserted(inserted == NULL_VALUE ? null : LocalDateTime.ofEpochSecond(inserted, 0, ZoneOffset.UTC));
+            return new Entry(stock, offset, size);
+        }
+
+        private static void putString(ByteBuffer buffer, String value) {
+            if (value == null) {
+                buffer.putShort((short) -1);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length > MAX_STRING_BYTES) {
+                throw new AosException(format("Value {0} is too long for price store", value));
+            }
+            buffer.putShort((short) bytes.length);
+            buffer.put(bytes);
+        }
+
+        private static String getString(ByteBuffer buffer) {
+            short length = buffer.getShort();
+            if (length < 0) {
+                return null;
+            }
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+}
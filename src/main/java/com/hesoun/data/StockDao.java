@@ -3,11 +3,14 @@ package com.hesoun.data;
 import com.hesoun.AosException;
 import com.hesoun.Config;
 import com.hesoun.model.HistoricalDailyPrice;
-import com.hesoun.model.Position;
 import com.hesoun.model.Stock;
+import org.postgresql.copy.CopyManager;
+import org.postgresql.core.BaseConnection;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.StringReader;
 import java.sql.*;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -21,67 +24,122 @@ import java.util.Map;
  *
  * @author Jakub Hesoun
  */
-public class StockDao {
+public class StockDao implements StockRepository {
     private final Logger LOG = LoggerFactory.getLogger(this.getClass());
-    private final Connection conn;
+    private static final String PRICE_CONFLICT_UPDATE = "ON CONFLICT (stock_id,date) DO UPDATE " +
+            "SET open=EXCLUDED.open,close=EXCLUDED.close,high=EXCLUDED.high,low=EXCLUDED.low,volume=EXCLUDED.volume," +
+            "adjclose=EXCLUDED.adjclose,unadjclose=EXCLUDED.unadjclose";
+
+    private final ConnectionPool pool;
+    private final int batchSize;
+    private final boolean copy;
 
     public StockDao(Config config) {
-        conn = Database.INSTANCE.connect(config);
+        this(Database.INSTANCE.connect(config), config.getDatabaseBatchSize(), config.isDatabaseCopy());
+    }
+
+    StockDao(ConnectionPool pool, int batchSize, boolean copy) {
+        this.pool = pool;
+        this.batchSize = batchSize;
+        this.copy = copy;
     }
 
     /**
-     * Insert stock entity into the database along with all the historical daily prices.
+     * Insert or update stock entity in the database along with all the historical daily prices. Ids of the prices
+     * are not obtained.
      */
+    @Override
     public Stock persist(Stock stock) {
-        LOG.info("Starting to persist {} with {} days of price data", stock.getName(), stock.getHistoricalDailyPrices().size());
-        persistStockFlat(stock);
-        int i = 0;
-        for (HistoricalDailyPrice price : stock.getHistoricalDailyPrices()) {
-            price.setStockId(stock.getId());
-            persistHistoricalDailyPriceFlat(price);
-            if (++i % 1000 == 0) {
-                LOG.info("Persisted {} days of price data for {}", i, stock.getName());
-            }
-        }
-        return stock;
+        return persist(stock, false);
     }
 
-    private Stock persistStockFlat(Stock stock) {
-        try (PreparedStatement st = conn.prepareStatement("INSERT INTO stock (symbol,name,exchange,currency_code,first_traded_date,inserted) " +
-                "VALUES (?,?,?,?,?,?)", Statement.RETURN_GENERATED_KEYS)) {
-            st.setString(1, stock.getSymbol());
-            st.setString(2, stock.getName());
-            st.setString(3, stock.getExchange());
-            st.setString(4, stock.getCurrencyCode());
-            st.setDate(5, Date.valueOf(stock.getFirstTradedDate()));
-            st.setTimestamp(6, Timestamp.valueOf(LocalDateTime.now()));
-
-            int affectedRows = st.executeUpdate();
-            if (affectedRows == 0) {
-                throw new AosException("Inserting stock " + stock.getName() + " failed.");
+    /**
+     * Insert stock entity into the database along with all the historical daily prices in one transaction. Prices
+     * are inserted in batches of {@link Config#getDatabaseBatchSize()} rows, or by {@code COPY} if
+     * {@link Config#isDatabaseCopy()} is set and price ids are not needed.
+     * <p>
+     * Persisting is idempotent, an already stored stock is updated and so are its prices of the same dates.
+     *
+     * @param withPriceIds whether generated ids have to be set into the persisted prices
+     */
+    public Stock persist(Stock stock, boolean withPriceIds) {
+        List<HistoricalDailyPrice> prices = stock.getHistoricalDailyPrices();
+        LOG.info("Starting to persist {} with {} days of price data", stock.getName(), prices.size());
+        long startTime = System.currentTimeMillis();
+        //an unfinished transaction is rolled back when the connection is released
+        try (PooledConnection conn = pool.getConnection()) {
+            conn.setAutoCommit(false);
+            persistStockFlat(conn, stock);
+            for (HistoricalDailyPrice price : prices) {
+                price.setStockId(stock.getId());
             }
-            try (ResultSet generatedKeys = st.getGeneratedKeys()) {
-                if (generatedKeys.next()) {
-                    long id = generatedKeys.getLong(1);
-                    stock.setId(id);
-                } else {
-                    throw new AosException("Inserting stock " + stock.getName() + " failed, no ID obtained.");
-                }
+            if (copy && !withPriceIds) {
+                copyHistoricalDailyPrices(conn, prices);
+            } else {
+                persistHistoricalDailyPrices(conn, prices, withPriceIds);
             }
-
+            conn.commit();
         } catch (SQLException e) {
             throw new AosException("Cannot persist stock " + stock.getName(), e);
         }
+        LOG.info("Persisted {} days of price data for {} in {}ms", prices.size(), stock.getName(),
+                System.currentTimeMillis() - startTime);
+        return stock;
+    }
 
+    private Stock persistStockFlat(PooledConnection conn, Stock stock) throws SQLException {
+        PreparedStatement st = conn.prepareStatement("INSERT INTO stock (symbol,name,exchange,currency_code,first_traded_date,inserted) " +
+                "VALUES (?,?,?,?,?,?) " +
+                "ON CONFLICT (symbol,exchange) DO UPDATE " +
+                "SET name=EXCLUDED.name,currency_code=EXCLUDED.currency_code,first_traded_date=EXCLUDED.first_traded_date",
+                Statement.RETURN_GENERATED_KEYS);
+        st.setString(1, stock.getSymbol());
+        st.setString(2, stock.getName());
+        st.setString(3, stock.getExchange());
+        st.setString(4, stock.getCurrencyCode());
+        st.setDate(5, Date.valueOf(stock.getFirstTradedDate()));
+        st.setTimestamp(6, Timestamp.valueOf(LocalDateTime.now()));
+
+        int affectedRows = st.executeUpdate();
+        if (affectedRows == 0) {
+            throw new AosException("Inserting stock " + stock.getName() + " failed.");
+        }
+        try (ResultSet generatedKeys = st.getGeneratedKeys()) {
+            if (generatedKeys.next()) {
+                long id = generatedKeys.getLong(1);
+                stock.setId(id);
+            } else {
+                throw new AosException("Inserting stock " + stock.getName() + " failed, no ID obtained.");
+            }
+        }
         return stock;
     }
 
+    @Override
+    public Map<String, LocalDate> getLastPriceDates() {
+        try (PooledConnection conn = pool.getConnection();
+             ResultSet rs = conn.prepareStatement("SELECT s.symbol,max(p.date) " +
+                     "FROM stock AS s " +
+                     "JOIN historical_eod_price AS p ON s.id = p.stock_id " +
+                     "GROUP BY s.symbol").executeQuery()) {
+            Map<String, LocalDate> lastDates = new HashMap<>();
+            while (rs.next()) {
+                lastDates.put(rs.getString(1), rs.getDate(2).toLocalDate());
+            }
+            return lastDates;
+        } catch (SQLException e) {
+            throw new AosException("Cannot load last price dates from DB", e);
+        }
+    }
+
     /**
      * Returns a shallow stock, no entites are eagerly loaded.
      */
+    @Override
     public List<Stock> getAllStock() {
-        try (PreparedStatement ps = conn.prepareStatement("SELECT id,symbol,name,exchange,currency_code,first_traded_date, inserted FROM stock")) {
-            ResultSet rs = ps.executeQuery();
+        try (PooledConnection conn = pool.getConnection();
+             ResultSet rs = conn.prepareStatement("SELECT id,symbol,name,exchange,currency_code,first_traded_date, inserted FROM stock")
+                     .executeQuery()) {
             List<Stock> stocks = new ArrayList<>();
             while (rs.next()) {
                 Stock stock = Stock.builder()
@@ -101,91 +159,74 @@ public class StockDao {
         }
     }
 
-    /**
-     * Retrieve a Map of stock to stock with openPosition field populated. A Map is used because Set do not contain
-     * get method.
-     */
-    public Map<Stock, Stock> getStockWithOpenPosition() {
-        try (PreparedStatement ps = conn.prepareStatement(
-                "SELECT s.id,s.symbol,s.name,s.exchange,s.currency_code,s.first_traded_date,s.inserted," +
-                        "p.id,p.buy_price,p.status,p.buy_date,p.slice,p.shares,p.basket_uuid " +
-                        "FROM stock AS s " +
-                        "LEFT JOIN position AS p ON s.id = p.stock_id " +
-                        "WHERE status = ?::STATUS_TYPE " +
-                        "ORDER BY s.id,p.slice")) {
-            ps.setString(1, "O");
-            ResultSet rs = ps.executeQuery();
-            Map<Stock, Stock> stocksMap = new HashMap<>();
-            while (rs.next()) {
-                Stock stock = Stock.builder()
-                        .id(rs.getLong(1))
-                        .symbol(rs.getString(2))
-                        .name(rs.getString(3))
-                        .exchange(rs.getString(4))
-                        .currencyCode(rs.getString(5))
-                        .firstTradedDate(rs.getDate(6).toLocalDate())
-                        .inserted(rs.getTimestamp(7).toLocalDateTime())
-                        .openPositions(new ArrayList<>())
-                        .build();
-                if (stocksMap.containsKey(stock)) {
-                    stock = stocksMap.get(stock);
+    private void persistHistoricalDailyPrices(PooledConnection conn, List<HistoricalDailyPrice> prices,
+                                              boolean withPriceIds) throws SQLException {
+        PreparedStatement st = conn.prepareStatement("INSERT INTO historical_eod_price " +
+                        "(date,open,close,high,low,volume,adjclose,unadjclose,stock_id) " +
+                        "VALUES (?,?,?,?,?,?,?,?,?) " +
+                        PRICE_CONFLICT_UPDATE,
+                withPriceIds ? Statement.RETURN_GENERATED_KEYS : Statement.NO_GENERATED_KEYS);
+        for (int start = 0; start < prices.size(); start += batchSize) {
+            List<HistoricalDailyPrice> batch = prices.subList(start, Math.min(start + batchSize, prices.size()));
+            for (HistoricalDailyPrice price : batch) {
+                st.setTimestamp(1, Timestamp.valueOf(price.getDate()));
+                st.setBigDecimal(2, price.getOpen());
+                st.setBigDecimal(3, price.getClose());
+                st.setBigDecimal(4, price.getHigh());
+                st.setBigDecimal(5, price.getLow());
+                st.setInt(6, price.getVolume());
+                st.setBigDecimal(7, price.getAdjustedClose());
+                st.setBigDecimal(8, price.getUnadjustedClose());
+                st.setLong(9, price.getStockId());
+                st.addBatch();
+            }
+            st.executeBatch();
+            if (withPriceIds) {
+                try (ResultSet generatedKeys = st.getGeneratedKeys()) {
+                    for (HistoricalDailyPrice price : batch) {
+                        if (!generatedKeys.next()) {
+                            throw new AosException("Inserting price " + price + " failed, no ID obtained.");
+                        }
+                        price.setId(generatedKeys.getLong(1));
+                    }
                 }
-
-                List<Position> positionList = stock.getOpenPositions();
-                Position position = Position.builder()
-                        .id(rs.getLong(8))
-                        .buyPrice(rs.getBigDecimal(9))
-                        .status(Position.Status.getStatusFromSymbol(rs.getString(10)))
-                        .buyDate(rs.getDate(11).toLocalDate())
-                        .slice(Position.Slice.getSliceFromPercentage(rs.getInt(12)))
-                        .shares(rs.getInt(13))
-                        .basketUUID(rs.getString(14))
-                        .stock(stock)
-                        .build();
-                positionList.add(position);
-                stocksMap.put(stock, stock);
             }
-            return stocksMap;
-        } catch (SQLException e) {
-            throw new AosException("Cannot load open positions from DB", e);
         }
     }
 
-    private HistoricalDailyPrice persistHistoricalDailyPriceFlat(HistoricalDailyPrice price) {
-        try (PreparedStatement st = conn.prepareStatement("INSERT INTO historical_eod_price " +
-                "(date,open,close,high,low,volume,adjclose,unadjclose,stock_id) " +
-                "VALUES (?,?,?,?,?,?,?,?,?)", Statement.RETURN_GENERATED_KEYS)) {
-            st.setTimestamp(1, Timestamp.valueOf(price.getDate()));
-            st.setBigDecimal(2, price.getOpen());
-            st.setBigDecimal(3, price.getClose());
-            st.setBigDecimal(4, price.getHigh());
-            st.setBigDecimal(5, price.getLow());
-            st.setInt(6, price.getVolume());
-            st.setBigDecimal(7, price.getAdjustedClose());
-            st.setBigDecimal(8, price.getUnadjustedClose());
-            st.setLong(9, price.getStockId());
-
-            int affectedRows = st.executeUpdate();
-            if (affectedRows == 0) {
-                LOG.error("Inserting historical daily price {} failed", price);
-                throw new AosException("Inserting stock failed");
-            }
-            try (ResultSet generatedKeys = st.getGeneratedKeys()) {
-                if (generatedKeys.next()) {
-                    long id = generatedKeys.getLong(1);
-                    price.setId(id);
-                } else {
-                    LOG.error("Inserting price {} failed. No ID obtained", price);
-                    throw new AosException("Inserting stock failed, no ID obtained.");
-                }
-            }
-
-        } catch (SQLException e) {
-            LOG.error("Exception when persisting {}, {}", price, e);
-            throw new AosException("Cannot persist price");
+    /**
+     * Streams the prices into DB by {@code COPY} in CSV format, which avoids a round trip per batch. The rows are
+     * copied into a temporary table first, {@code COPY} itself cannot update already stored prices. The temporary
+     * table has only the copied columns, ids are generated when the rows are inserted into the prices.
+     */
+    private void copyHistoricalDailyPrices(PooledConnection conn, List<HistoricalDailyPrice> prices) throws SQLException {
+        StringBuilder csv = new StringBuilder(prices.size() * 80);
+        for (HistoricalDailyPrice price : prices) {
+            csv.append(price.getDate().toLocalDate()).append(',')
+                    .append(price.getOpen().toPlainString()).append(',')
+                    .append(price.getClose().toPlainString()).append(',')
+                    .append(price.getHigh().toPlainString()).append(',')
+                    .append(price.getLow().toPlainString()).append(',')
+                    .append(price.getVolume()).append(',')
+                    .append(price.getAdjustedClose().toPlainString()).append(',')
+                    .append(price.getUnadjustedClose().toPlainString()).append(',')
+                    .append(price.getStockId()).append('\n');
         }
-
-        return price;
+        conn.execute("CREATE TEMPORARY TABLE IF NOT EXISTS copied_eod_price (" +
+                "date DATE NOT NULL,open NUMERIC NOT NULL,close NUMERIC NOT NULL,high NUMERIC NOT NULL," +
+                "low NUMERIC NOT NULL,volume BIGINT NOT NULL,adjclose NUMERIC NOT NULL,unadjclose NUMERIC NOT NULL," +
+                "stock_id BIGINT NOT NULL) ON COMMIT DELETE ROWS");
+        try {
+            new CopyManager(conn.unwrap(BaseConnection.class)).copyIn("COPY copied_eod_price " +
+                    "(date,open,close,high,low,volume,adjclose,unadjclose,stock_id) " +
+                    "FROM STDIN WITH (FORMAT csv)", new StringReader(csv.toString()));
+        } catch (IOException e) {
+            throw new AosException("Cannot copy prices into DB", e);
+        }
+        conn.execute("INSERT INTO historical_eod_price " +
+                "(date,open,close,high,low,volume,adjclose,unadjclose,stock_id) " +
+                "SELECT date,open,close,high,low,volume,adjclose,unadjclose,stock_id FROM copied_eod_price " +
+                PRICE_CONFLICT_UPDATE);
     }
 
 }
@@ -0,0 +1,33 @@
+package com.hesoun.data;
+
+import com.hesoun.model.Stock;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Storage of stocks together with their prices.
+ *
+ * @author Jakub Hesoun
+ */
+public interface StockRepository {
+
+    /**
+     * Inserts or updates the stock along with all its historical daily prices, prices of already stored dates are
+     * replaced. Id of the stock is set, ids of the prices may not be.
+     */
+    Stock persist(Stock stock);
+
+    /**
+     * Gets date of the last stored price of every stock, stocks without prices are not included.
+     *
+     * @return map of stock symbol to the date of its last price
+     */
+    Map<String, LocalDate> getLastPriceDates();
+
+    /**
+     * Returns shallow stocks, no prices or positions are loaded.
+     */
+    List<Stock> getAllStock();
+}
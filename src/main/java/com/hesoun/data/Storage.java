@@ -0,0 +1,86 @@
+package com.hesoun.data;
+
+import com.hesoun.AosException;
+import com.hesoun.Config;
+import com.hesoun.model.PriceSeries;
+import com.hesoun.model.Stock;
+import lombok.Getter;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Repositories of stocks, prices and positions selected by {@link Config#getStorage()}: {@code postgres} stores
+ * everything in DB by the DAOs, {@code memory} holds everything in one {@link InMemoryStorage}. The in-memory storage
+ * is shared by all the components of the process, the same way as they share one DB, and it is lost when the process
+ * ends.
+ * <p>
+ * Indicators precomputed in DB ({@link Config#isIndicatorsDatabase()}) are available only with {@code postgres}.
+ *
+ * @author Jakub Hesoun
+ */
+@Getter
+public class Storage implements PriceSource {
+    public static final String POSTGRES = "postgres";
+    public static final String MEMORY = "memory";
+
+    private static InMemoryStorage memory;
+
+    private final StockRepository stocks;
+    private final PriceRepository prices;
+    private final PositionRepository positions;
+
+    public Storage(StockRepository stocks, PriceRepository prices, PositionRepository positions) {
+        this.stocks = stocks;
+        this.prices = prices;
+        this.positions = positions;
+    }
+
+    public static Storage open(Config config) {
+        switch (config.getStorage()) {
+            case POSTGRES:
+                return new Storage(new StockDao(config), new HistoricalDailyPriceDao(config), new PositionDao(config));
+            case MEMORY:
+                if (config.isIndicatorsDatabase()) {
+                    throw new AosException("Indicators cannot be precomputed in DB with in-memory storage");
+                }
+                InMemoryStorage storage = getMemory();
+                return new Storage(storage, storage, storage);
+            default:
+                throw new AosException("Unknown storage " + config.getStorage() + ", use " + POSTGRES + " or " + MEMORY);
+        }
+    }
+
+    /**
+     * Opens the storage for a command which reads stocks and prices stored by an earlier run, e.g. a simulation or
+     * a signal. The in-memory storage is empty when the process starts, so such a command has to read its prices from
+     * {@link Config#getPriceStore()} instead.
+     *
+     * @throws AosException if the storage is in memory and no price store is set
+     */
+    public static Storage openStored(Config config) {
+        if (MEMORY.equals(config.getStorage()) && config.getPriceStore() == null) {
+            throw new AosException("Storage " + MEMORY + " is empty when the process starts, set price.store to "
+                    + "read the stored prices from");
+        }
+        return open(config);
+    }
+
+    private static synchronized InMemoryStorage getMemory() {
+        if (memory == null) {
+            memory = new InMemoryStorage();
+        }
+        return memory;
+    }
+
+    @Override
+    public List<Stock> getAllStock() {
+        return stocks.getAllStock();
+    }
+
+    @Override
+    public Map<Long, PriceSeries> getPriceSeries(LocalDate from, LocalDate to, int warmUpDays) {
+        return prices.getPriceSeries(from, to, warmUpDays);
+    }
+}
@@ -0,0 +1,217 @@
+package com.hesoun.data;
+
+import com.hesoun.AosException;
+import com.hesoun.Config;
+import com.hesoun.extracting.Pair;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static java.text.MessageFormat.format;
+
+/**
+ * Set of stocks which are extracted and traded, with their membership in time. A stock may join and leave the
+ * universe more times, a simulation buys it only on the days it is a member, so the backtest does not trade stocks
+ * which were added into an index later (survivorship bias).
+ * <p>
+ * Universe file has one membership period per line: {@code symbol,from,to,name}. The period starts on {@code from}
+ * and ends before {@code to}, both can be empty for an open period, and the name can contain commas. A line with only
+ * the symbol is a member for all the time. Empty lines and lines starting with {@code #} are skipped.
+ * <p>
+ * Members are ordered by symbol and the universe can be split into shards of consecutive symbols.
+ *
+ * @author Jakub Hesoun
+ */
+public class Universe {
+    private final String name;
+    private final Map<String, Member> members;
+    private final List<Pair<String, String>> components;
+
+    private Universe(String name, Map<String, Member> members) {
+        this.name = name;
+        this.members = Collections.unmodifiableMap(members);
+        List<Pair<String, String>> allComponents = new ArrayList<>(members.size());
+        for (Member member : members.values()) {
+            allComponents.add(new Pair<>(member.symbol, member.name));
+        }
+        this.components = Collections.unmodifiableList(allComponents);
+    }
+
+    /**
+     * Loads the universe of {@link Config#getUniverseFile()}, or S&P100 if it is not set.
+     */
+    public static Universe load(Config config) throws IOException {
+        return config.getUniverseFile() == null ? sp100() : load(Paths.get(config.getUniverseFile()));
+    }
+
+    /**
+     * @return universe of {@link SP100Components}, the stocks are members for all the time
+     */
+    public static Universe sp100() {
+        return of("S&P100", SP100Components.load());
+    }
+
+    /**
+     * @return universe of the {@param components} given as pairs of symbol and name, which are members for all the
+     * time
+     */
+    public static Universe of(String name, List<Pair<String, String>> components) {
+        Map<String, Member> members = new TreeMap<>();
+        for (Pair<String, String> component : components) {
+            members.computeIfAbsent(component.getLeft(), symbol -> new Member(symbol, component.getRight()))
+                    .addPeriod(null, null);
+        }
+        return new Universe(name, members);
+    }
+
+    public static Universe load(Path file) throws IOException {
+        Map<String, Member> members = new TreeMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            int lineNumber = 0;
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split(",", 4);
+                String symbol = fields[0].trim();
+                if (symbol.isEmpty()) {
+                    throw new AosException(format("There is no symbol on line {0} of universe {1}", lineNumber, file));
+                }
+                try {
+                    LocalDate from = fields.length > 1 ? parseDate(fields[1]) : null;
+                    LocalDate to = fields.length > 2 ? parseDate(fields[2]) : null;
+                    String name = fields.length > 3 && !fields[3].trim().isEmpty() ? fields[3].trim() : symbol;
+                    members.computeIfAbsent(symbol, key -> new Member(symbol, name)).addPeriod(from, to);
+                } catch (DateTimeParseException | IllegalArgumentException e) {
+                    throw new AosException(format("Invalid line {0} of universe {1}: {2}", lineNumber, file,
+                            e.getMessage()), e);
+                }
+            }
+        }
+        return new Universe(file.getFileName().toString(), members);
+    }
+
+    private static LocalDate parseDate(String value) {
+        return value.trim().isEmpty() ? null : LocalDate.parse(value.trim());
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int size() {
+        return members.size();
+    }
+
+    /**
+     * @return pairs of symbol and name of all the stocks which have ever been members, ordered by symbol
+     */
+    public List<Pair<String, String>> getComponents() {
+        return components;
+    }
+
+    /**
+     * @return pairs of symbol and name of the members on {@param date}, ordered by symbol
+     */
+    public List<Pair<String, String>> getComponents(LocalDate date) {
+        List<Pair<String, String>> result = new ArrayList<>();
+        for (Member member : members.values()) {
+            if (member.isMember(date)) {
+                result.add(new Pair<>(member.symbol, member.name));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return membership of the {@param symbol} or null if it has never been a member
+     */
+    public Member getMember(String symbol) {
+        return members.get(symbol);
+    }
+
+    public boolean contains(String symbol) {
+        return members.containsKey(symbol);
+    }
+
+    /**
+     * Splits the components into at most {@param shards} ranges of consecutive symbols of about the same size.
+     */
+    public List<List<Pair<String, String>>> shard(int shards) {
+        return shard(components, shards);
+    }
+
+    /**
+     * Splits the {@param components} ordered by symbol into at most {@param shards} ranges of consecutive symbols of
+     * about the same size.
+     */
+    public static List<List<Pair<String, String>>> shard(List<Pair<String, String>> components, int shards) {
+        if (shards <= 0) {
+            throw new IllegalArgumentException("Number of shards has to be positive, it is " + shards);
+        }
+        List<Pair<String, String>> sorted = new ArrayList<>(components);
+        sorted.sort((first, second) -> first.getLeft().compareTo(second.getLeft()));
+        int count = Math.min(shards, Math.max(1, sorted.size()));
+        List<List<Pair<String, String>>> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            result.add(sorted.subList(i * sorted.size() / count, (i + 1) * sorted.size() / count));
+        }
+        return result;
+    }
+
+    /**
+     * Periods in which one stock is a member of the universe.
+     */
+    public static class Member {
+        private final String symbol;
+        private final String name;
+        //periods as epoch days, start inclusive and end exclusive
+        private final List<long[]> periods = new ArrayList<>(1);
+
+        private Member(String symbol, String name) {
+            this.symbol = symbol;
+            this.name = name;
+        }
+
+        private void addPeriod(LocalDate from, LocalDate to) {
+            if (from != null && to != null && !from.isBefore(to)) {
+                throw new IllegalArgumentException(format("membership of {0} ends {1} before it starts {2}",
+                        symbol, to, from));
+            }
+            periods.add(new long[]{from == null ? Long.MIN_VALUE : from.toEpochDay(),
+                    to == null ? Long.MAX_VALUE : to.toEpochDay()});
+        }
+
+        public String getSymbol() {
+            return symbol;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public boolean isMember(LocalDate date) {
+            long epochDay = date.toEpochDay();
+            for (int i = 0; i < periods.size(); i++) {
+                long[] period = periods.get(i);
+                if (epochDay >= period[0] && epochDay < period[1]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
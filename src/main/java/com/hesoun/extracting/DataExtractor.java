@@ -1,9 +1,18 @@
 package com.hesoun.extracting;
 
 import com.hesoun.*;
-import com.hesoun.data.SP100Components;
-import com.hesoun.data.StockDao;
+import com.hesoun.data.DailyIndicatorDao;
+import com.hesoun.data.PriceRepository;
+import com.hesoun.data.StockRepository;
+import com.hesoun.data.Storage;
+import com.hesoun.data.Universe;
+import com.hesoun.metrics.Counter;
+import com.hesoun.metrics.Gauge;
+import com.hesoun.metrics.Histogram;
+import com.hesoun.metrics.Metrics;
+import com.hesoun.model.HistoricalDailyPrice;
 import com.hesoun.model.Stock;
+import com.hesoun.model.TradingCalendar;
 import org.apache.http.HttpStatus;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
@@ -13,67 +22,463 @@ import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.Properties;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * Main class which responsibility is to load all S&P stock names and for every one of them obtain data from given endpoint,
- * parse it and persist into DB.
+ * Main class which responsibility is to load all the stocks of the {@link Universe} and for every one of them obtain data
+ * from given endpoint, parse it and persist it into {@link Storage}.
+ * <p>
+ * Every stock passes through three stages, each of them with its own threads: it is fetched by
+ * {@link Config#getExtractParallelism()} threads, parsed by {@link Config#getExtractParseWorkers()} and persisted by
+ * {@link Config#getExtractPersistWorkers()} threads. Stocks wait for the next stage in queues bounded by
+ * {@link Config#getExtractQueueCapacity()}, so a slow stage holds the previous ones back and only a limited number of
+ * response bodies is held in memory. Requests are limited to {@link Config#getExtractRate()} per second. Failed
+ * requests are retried with exponential backoff, a stock which cannot be obtained or persisted is logged and skipped.
+ * <p>
+ * In the incremental mode ({@link Config#isExtractIncremental()}) only prices after the last stored one are requested
+ * and persisted for every stock, the whole period is requested only for stocks without any price.
+ * <p>
+ * Responses are cached in {@link Config#getCacheDirectory()} if it is set, so the prices can be {@link #reingest()
+ * reingested} later without any request.
+ * <p>
+ * If {@link Config#isIndicatorsDatabase()} is set, indicators of the new prices are computed in DB when the
+ * extraction finishes.
+ * <p>
+ * Phases of every stock are measured in {@link Metrics}. HTTP fetch takes until the whole body is read from Yahoo or
+ * from the cache, the depths of the queues are exposed as {@code extract.queue.parse} and
+ * {@code extract.queue.persist} gauges. With more {@link Config#getExtractShards() shards} every range of symbols has
+ * its own pipeline and gauges, e.g. {@code extract.shard2.queue.parse}.
  *
  * @author Jakub Hesoun
  */
 public class DataExtractor {
 
     private static final Logger LOG = LoggerFactory.getLogger(DataExtractor.class);
+    private static final Histogram STOCK_TIME = Metrics.INSTANCE.histogram("extract.stock");
+    private static final Histogram RATE_WAIT_TIME = Metrics.INSTANCE.histogram("extract.rate.wait");
+    private static final Histogram FETCH_TIME = Metrics.INSTANCE.histogram("extract.fetch");
+    private static final Histogram PARSE_TIME = Metrics.INSTANCE.histogram("extract.parse");
+    private static final Histogram PERSIST_TIME = Metrics.INSTANCE.histogram("extract.persist");
+    private static final Histogram INDICATOR_TIME = Metrics.INSTANCE.histogram("extract.indicators");
+    private static final Counter REQUESTS = Metrics.INSTANCE.counter("extract.requests");
+    private static final Counter RETRIES = Metrics.INSTANCE.counter("extract.retries");
+    private static final Counter CACHE_HITS = Metrics.INSTANCE.counter("extract.cache.hits");
+    private static final Counter PERSISTED_STOCKS = Metrics.INSTANCE.counter("extract.stocks.persisted");
+    private static final Counter SKIPPED_STOCKS = Metrics.INSTANCE.counter("extract.stocks.skipped");
+    private static final Counter FAILED_STOCKS = Metrics.INSTANCE.counter("extract.stocks.failed");
+    private static final Counter PERSISTED_PRICES = Metrics.INSTANCE.counter("extract.prices.persisted");
+    private static final Gauge STOCKS_IN_PROGRESS = Metrics.INSTANCE.gauge("extract.stocks.in.progress");
 
     private final Config config;
-    private final StockDao dao;
+    private final StockRepository stockRepository;
+    private final PriceRepository priceRepository;
+    private final RateLimiter rateLimiter;
+    private final ResponseCache cache;
+    private final DailyIndicatorDao indicatorDao;
+    private TradingCalendar calendar;
+    private Map<String, LocalDate> lastPriceDates = Collections.emptyMap();
 
     public DataExtractor(Config config) throws IOException {
+        this(config, Storage.open(config));
+    }
+
+    private DataExtractor(Config config, Storage storage) {
+        this(config, storage.getStocks(), storage.getPrices());
+    }
+
+    DataExtractor(Config config, StockRepository stockRepository, PriceRepository priceRepository) {
         this.config = config;
-        this.dao = new StockDao(config);
+        this.stockRepository = stockRepository;
+        this.priceRepository = priceRepository;
+        this.rateLimiter = new RateLimiter(config.getExtractRate(), config.getExtractParallelism());
+        this.cache = config.getCacheDirectory() == null ? null : new ResponseCache(Paths.get(config.getCacheDirectory()),
+                Duration.ofHours(config.getCacheTtl()), config.getCacheMaxSize() * 1024 * 1024);
+        this.indicatorDao = config.isIndicatorsDatabase() ? new DailyIndicatorDao(config) : null;
     }
 
+    /**
+     * Extracts all the stocks which have ever been members of {@link Universe#load(Config) the universe}.
+     */
     public void extract() throws IOException {
-        //fill S&P100 components
-        List<Pair<String, String>> sp100Components = SP100Components.load();
-
-        CloseableHttpClient httpClient = HttpClients.createDefault();
-
-        for (Pair<String, String> component : sp100Components) {
-            long startTime = System.currentTimeMillis();
-            try {
-                getProcessAndSaveData(httpClient, component);
-            } catch (Exception e) {
-                //if an error happens when processing, log it and proceed with the next stock
-                LOG.error("Persisting of data for stock {} failed.", component.getRight(), e);
-                continue;
+        extract(Universe.load(config).getComponents());
+    }
+
+    /**
+     * Rebuilds prices of all the stocks of {@link Universe#load(Config) the universe} from the cached responses, no
+     * request is sent.
+     */
+    public void reingest() throws IOException {
+        reingest(Universe.load(config).getComponents());
+    }
+
+    /**
+     * Extracts the {@param components} given as pairs of symbol and name.
+     *
+     * @return number of stocks which have been persisted
+     */
+    public int extract(List<Pair<String, String>> components) throws IOException {
+        //trading days of already stored prices, used to detect gaps in the obtained data
+        calendar = priceRepository.getTradingCalendar();
+        if (config.isExtractIncremental()) {
+            lastPriceDates = stockRepository.getLastPriceDates();
+        }
+
+        //every shard has its own fetch threads
+        int parallelism = config.getExtractParallelism() * config.getExtractShards();
+        try (CloseableHttpClient httpClient = HttpClients.custom()
+                .setMaxConnTotal(parallelism)
+                .setMaxConnPerRoute(parallelism)
+                .build()) {
+            int persisted = processAll(components, job -> fetch(httpClient, job));
+            if (indicatorDao != null && persisted > 0) {
+                long startTime = System.nanoTime();
+                indicatorDao.refresh();
+                INDICATOR_TIME.recordSince(startTime);
+            }
+            return persisted;
+        }
+    }
+
+    /**
+     * @return number of stocks which have been persisted
+     */
+    int reingest(List<Pair<String, String>> components) throws IOException {
+        if (cache == null) {
+            throw new AosException("Cache directory is not configured, there is nothing to reingest");
+        }
+        calendar = priceRepository.getTradingCalendar();
+        int persisted = processAll(components, this::loadCached);
+        if (indicatorDao != null && persisted > 0) {
+            //reingested prices may replace the ones indicators have been computed from
+            long startTime = System.nanoTime();
+            indicatorDao.rebuild();
+            INDICATOR_TIME.recordSince(startTime);
+        }
+        return persisted;
+    }
+
+    /**
+     * Passes all the {@param components} through the {@param obtain} stage, which reads their responses, and through
+     * the parse and persist stages. Components are split into {@link Config#getExtractShards()} ranges of symbols,
+     * every range is processed by its own pipeline at the same time.
+     */
+    private int processAll(List<Pair<String, String>> components, Pipeline.StageFunction<Job> obtain) {
+        long startTime = System.currentTimeMillis();
+        AtomicInteger persisted = new AtomicInteger();
+        List<List<Pair<String, String>>> shards = Universe.shard(components, config.getExtractShards());
+        try {
+            if (shards.size() == 1) {
+                processShard("extract", shards.get(0), obtain, persisted);
+            } else {
+                processShards(shards, obtain, persisted);
             }
-            LOG.info("All data for {} has been saved into DB in {}ms", component.getRight(), System.currentTimeMillis() - startTime);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AosException("Extraction has been interrupted", e);
         }
+        LOG.info("{} of {} stocks have been saved into DB in {}ms", persisted.get(), components.size(),
+                System.currentTimeMillis() - startTime);
+        return persisted.get();
     }
 
-    private void getProcessAndSaveData(CloseableHttpClient httpClient, Pair<String, String> component) throws IOException {
-        LocalDate from = config.getFrom();
+    private void processShards(List<List<Pair<String, String>>> shards, Pipeline.StageFunction<Job> obtain,
+                               AtomicInteger persisted) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(shards.size());
+        try {
+            List<Future<Void>> results = new ArrayList<>(shards.size());
+            for (int i = 0; i < shards.size(); i++) {
+                String name = "extract.shard" + (i + 1);
+                List<Pair<String, String>> shard = shards.get(i);
+                results.add(executor.submit(() -> {
+                    processShard(name, shard, obtain, persisted);
+                    return null;
+                }));
+            }
+            for (Future<Void> result : results) {
+                result.get();
+            }
+        } catch (ExecutionException e) {
+            throw new AosException("Extraction failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Runs the {@param components} through a pipeline named {@param name}, the name prefixes its threads and gauges.
+     */
+    private void processShard(String name, List<Pair<String, String>> components, Pipeline.StageFunction<Job> obtain,
+                              AtomicInteger persisted) throws InterruptedException {
+        if (components.isEmpty()) {
+            return;
+        }
+        LOG.info("Extracting {} stocks from {} to {} by {}", components.size(), components.get(0).getLeft(),
+                components.get(components.size() - 1).getLeft(), name);
+        Pipeline<Job> pipeline = new Pipeline<Job>(name, config.getExtractQueueCapacity(), this::fail)
+                .addStage("fetch", config.getExtractParallelism(), job -> {
+                    start(job);
+                    if (obtain.process(job)) {
+                        return true;
+                    }
+                    skip(job);
+                    return false;
+                })
+                .addStage("parse", config.getExtractParseWorkers(), job -> {
+                    parse(job);
+                    return true;
+                })
+                .addStage("persist", config.getExtractPersistWorkers(), job -> {
+                    persist(job.stock);
+                    complete(job, persisted);
+                    return false;
+                });
+        List<Job> jobs = new ArrayList<>(components.size());
+        for (Pair<String, String> component : components) {
+            jobs.add(new Job(component));
+        }
+        pipeline.run(jobs);
+    }
+
+    private void start(Job job) {
+        job.startTime = System.currentTimeMillis();
+        job.startNanos = System.nanoTime();
+        STOCKS_IN_PROGRESS.increment();
+    }
+
+    private void complete(Job job, AtomicInteger persisted) {
+        STOCKS_IN_PROGRESS.decrement();
+        STOCK_TIME.recordSince(job.startNanos);
+        PERSISTED_STOCKS.increment();
+        persisted.incrementAndGet();
+        LOG.info("All data for {} has been saved into DB in {}ms", job.component.getRight(),
+                System.currentTimeMillis() - job.startTime);
+    }
+
+    /**
+     * Finishes the {@param job} of a stock whose prices are up to date, nothing has been persisted for it.
+     */
+    private void skip(Job job) {
+        STOCKS_IN_PROGRESS.decrement();
+        STOCK_TIME.recordSince(job.startNanos);
+        SKIPPED_STOCKS.increment();
+        LOG.info("Nothing to save for {}, skipped in {}ms", job.component.getRight(),
+                System.currentTimeMillis() - job.startTime);
+    }
+
+    private void fail(Job job, Exception e) {
+        //if an error happens when processing, log it and proceed with the next stock
+        STOCKS_IN_PROGRESS.decrement();
+        STOCK_TIME.recordSince(job.startNanos);
+        LOG.error("Persisting of data for stock {} failed.", job.component.getRight(), e);
+        FAILED_STOCKS.increment();
+    }
+
+    /**
+     * Reads the response of the {@param job} from the cache or from Yahoo.
+     *
+     * @return false if the prices are up to date and there is nothing to request
+     */
+    private boolean fetch(CloseableHttpClient httpClient, Job job) throws IOException, InterruptedException {
+        Pair<String, String> component = job.component;
+        LocalDate lastPriceDate = lastPriceDates.get(component.getLeft());
+        LocalDate from = lastPriceDate == null || lastPriceDate.isBefore(config.getFrom())
+                ? config.getFrom()
+                : lastPriceDate.plusDays(1);
         LocalDate to = config.getTo();
+        if (!from.isBefore(to)) {
+            LOG.info("Prices of {} are up to date", component.getRight());
+            return false;
+        }
         LOG.info("Starting to get and process data for {} between {} and {}", component.getRight(), from, to);
-        String query = component.getLeft() + "?period1=" + from.atStartOfDay().atZone(ZoneId.systemDefault()).toInstant().getEpochSecond() + "&period2=" + to.atStartOfDay().atZone(ZoneId.systemDefault()).toInstant().getEpochSecond() + "&interval=1d";
-        HttpGet get = new HttpGet(config.getYahooUrl() + query);
-
-        String json;
-        //fetch stock and prices from yahoo
-        try (CloseableHttpResponse response = httpClient.execute(get)) {
-            if (response.getStatusLine().getStatusCode() == HttpStatus.SC_OK) {
-                LOG.info("Data obtained from Yahoo endpoint.");
+        job.lastPriceDate = lastPriceDate;
+        job.query = component.getLeft() + "?period1=" + from.atStartOfDay().atZone(ZoneId.systemDefault()).toInstant().getEpochSecond() + "&period2=" + to.atStartOfDay().atZone(ZoneId.systemDefault()).toInstant().getEpochSecond() + "&interval=1d";
+
+        if (cache != null) {
+            long startTime = System.nanoTime();
+            try (InputStream cached = cache.get(component.getLeft(), job.query)) {
+                if (cached != null) {
+                    LOG.info("Data obtained from cache.");
+                    CACHE_HITS.increment();
+                    job.bodies.add(readFully(cached));
+                    FETCH_TIME.recordSince(startTime);
+                    return true;
+                }
+            }
+        }
+        fetch(httpClient, job.query, job);
+        return true;
+    }
+
+    /**
+     * Reads all the cached responses of the {@param job} for reingesting.
+     */
+    private boolean loadCached(Job job) throws IOException {
+        List<Path> entries = cache.getEntries(job.component.getLeft());
+        if (entries.isEmpty()) {
+            throw new AosException("There is no cached response for " + job.component.getLeft());
+        }
+        long startTime = System.nanoTime();
+        for (Path entry : entries) {
+            try (InputStream in = cache.open(entry)) {
+                job.bodies.add(readFully(in));
+            }
+        }
+        FETCH_TIME.recordSince(startTime);
+        return true;
+    }
+
+    /**
+     * Parses the stock from the bodies of the {@param job}, prices of the same day from a later body replace the
+     * earlier ones. A fetched body is cached only after it has been parsed, so a response which cannot be parsed is
+     * not cached.
+     */
+    private void parse(Job job) throws IOException {
+        Stock stock = null;
+        Map<LocalDate, HistoricalDailyPrice> prices = new TreeMap<>();
+        for (byte[] body : job.bodies) {
+            stock = parse(new ByteArrayInputStream(body), job.component);
+            for (HistoricalDailyPrice price : stock.getHistoricalDailyPrices()) {
+                prices.put(price.getDate().toLocalDate(), price);
             }
-            json = EntityUtils.toString(response.getEntity());
         }
-        //extract data from JSON reponse
-        Stock stock = JsonHelper.parseJsonAndCreateStock(json, component);
-        //persist into DB
-        dao.persist(stock);
+        stock.setHistoricalDailyPrices(new ArrayList<>(prices.values()));
+        if (job.cacheable) {
+            cache.put(job.component.getLeft(), job.query, job.bodies.get(0));
+        }
+        //the bodies are not needed anymore, the stock may wait for persisting
+        job.bodies.clear();
+        LocalDate lastPriceDate = job.lastPriceDate;
+        if (lastPriceDate != null) {
+            //yahoo may return also the last stored day
+            stock.getHistoricalDailyPrices().removeIf(price -> !price.getDate().toLocalDate().isAfter(lastPriceDate));
+        }
+        checkGaps(stock);
+        job.stock = stock;
+    }
+
+    /**
+     * Sends the request and reads the body of the response into the {@param job}. Requests failing on I/O or with a
+     * status which may go away (429 or 5xx) are retried after a backoff doubled with every attempt. Bodies of responses
+     * with other statuses are kept too, Yahoo describes the error in the body. Successful responses are marked to be
+     * cached.
+     */
+    private void fetch(CloseableHttpClient httpClient, String query, Job job) throws IOException, InterruptedException {
+        long backoff = config.getExtractRetryBackoff();
+        for (int attempt = 0; ; attempt++) {
+            long waitStartTime = System.nanoTime();
+            rateLimiter.acquire();
+            RATE_WAIT_TIME.recordSince(waitStartTime);
+            REQUESTS.increment();
+            IOException failure;
+            long fetchStartTime = System.nanoTime();
+            try (CloseableHttpResponse response = httpClient.execute(new HttpGet(config.getYahooUrl() + query))) {
+                int status = response.getStatusLine().getStatusCode();
+                if (!isRetryable(status)) {
+                    if (status == HttpStatus.SC_OK) {
+                        LOG.info("Data obtained from Yahoo endpoint.");
+                    }
+                    job.bodies.add(EntityUtils.toByteArray(response.getEntity()));
+                    job.cacheable = status == HttpStatus.SC_OK && cache != null;
+                    FETCH_TIME.recordSince(fetchStartTime);
+                    return;
+                }
+                EntityUtils.consume(response.getEntity());
+                failure = new IOException("Yahoo endpoint responded with status " + status);
+            } catch (IOException e) {
+                failure = e;
+            }
+            if (attempt >= config.getExtractRetries()) {
+                throw failure;
+            }
+            LOG.warn("Request for {} failed: {}, retrying in {}ms", job.component.getRight(), failure.getMessage(), backoff);
+            RETRIES.increment();
+            Thread.sleep(backoff);
+            backoff *= 2;
+        }
+    }
+
+    private static Stock parse(InputStream in, Pair<String, String> component) throws IOException {
+        long startTime = System.nanoTime();
+        try {
+            return JsonHelper.parseJsonAndCreateStock(in, component);
+        } finally {
+            PARSE_TIME.recordSince(startTime);
+        }
+    }
+
+    private void persist(Stock stock) {
+        long startTime = System.nanoTime();
+        stockRepository.persist(stock);
+        PERSIST_TIME.recordSince(startTime);
+        PERSISTED_PRICES.add(stock.getHistoricalDailyPrices().size());
+    }
+
+    private static boolean isRetryable(int status) {
+        return status == 429 || status >= HttpStatus.SC_INTERNAL_SERVER_ERROR;
+    }
+
+    /**
+     * Logs a warning if the obtained prices do not cover all the known trading days between the first and the last
+     * obtained price.
+     */
+    private void checkGaps(Stock stock) {
+        List<HistoricalDailyPrice> prices = stock.getHistoricalDailyPrices();
+        if (prices.isEmpty() || calendar.size() == 0) {
+            return;
+        }
+        LocalDate first = prices.get(0).getDate().toLocalDate();
+        LocalDate last = prices.get(prices.size() - 1).getDate().toLocalDate();
+        int tradingDays = calendar.tradingDaysBetween(first, last.plusDays(1));
+        if (prices.size() < tradingDays) {
+            LOG.warn("There are {} prices of {} between {} and {} but {} trading days", prices.size(), stock.getName(),
+                    first, last, tradingDays);
+        }
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Stock passing through the stages of the extraction.
+     */
+    private static class Job {
+        private final Pair<String, String> component;
+        //bodies of the responses, more of them when reingesting
+        private final List<byte[]> bodies = new ArrayList<>(1);
+        private long startTime;
+        private long startNanos;
+        private LocalDate lastPriceDate;
+        private String query;
+        private boolean cacheable;
+        private Stock stock;
+
+        private Job(Pair<String, String> component) {
+            this.component = component;
+        }
     }
 }
@@ -9,6 +9,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.math.BigDecimal;
 import java.time.Instant;
 import java.time.LocalDateTime;
@@ -91,6 +92,16 @@ public class JsonHelper {
         return stock;
     }
 
+    /**
+     * Parses the response as it is read from {@param in} by {@link YahooChartParser}, which creates the same stock as
+     * {@link #parseJsonAndCreateStock(String, Pair)} without building the JSON tree.
+     */
+    public static Stock parseJsonAndCreateStock(InputStream in, Pair<String, String> component) throws IOException {
+        LOG.info("Parsing JSON response for {}", component.getRight());
+        Stock stock = YahooChartParser.parse(in, component);
+        LOG.info("JSON parsed successfully");
+        return stock;
+    }
 
     private static List<BigDecimal> getBigDecimalList(JsonNode node, String fieldName) {
         JsonNode foundNode = findLastNode(node, fieldName);
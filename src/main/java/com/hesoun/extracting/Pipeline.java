@@ -0,0 +1,179 @@
+package com.hesoun.extracting;
+
+import com.hesoun.AosException;
+import com.hesoun.metrics.Gauge;
+import com.hesoun.metrics.Metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Items processed by a chain of stages, every stage has its own worker threads and takes the items from a bounded
+ * queue filled by the previous stage. A stage which is slower than the previous one fills its queue and blocks the
+ * previous stage, so the items in flight are limited and all the stages work at the same time.
+ * <p>
+ * A stage passes an item further when it returns true. An item which fails is given to the failure handler and is
+ * not passed further, the other items go on. Depths of the queues are exposed in {@link Metrics} as gauges named
+ * {@code <pipeline>.queue.<stage>}.
+ *
+ * @author Jakub Hesoun
+ */
+class Pipeline<T> {
+    //passed behind the last item, every worker of a stage takes one
+    private static final Object END = new Object();
+
+    private final String name;
+    private final int queueCapacity;
+    private final FailureHandler<T> failureHandler;
+    private final List<Stage<T>> stages = new ArrayList<>();
+
+    Pipeline(String name, int queueCapacity, FailureHandler<T> failureHandler) {
+        this.name = name;
+        this.queueCapacity = queueCapacity;
+        this.failureHandler = failureHandler;
+    }
+
+    Pipeline<T> addStage(String stageName, int workers, StageFunction<T> function) {
+        if (workers <= 0) {
+            throw new IllegalArgumentException("Stage " + stageName + " has to have at least one worker");
+        }
+        stages.add(new Stage<>(stageName, workers, new ArrayBlockingQueue<>(queueCapacity), function,
+                Metrics.INSTANCE.gauge(name + ".queue." + stageName)));
+        return this;
+    }
+
+    /**
+     * Passes all the {@param items} through the stages and waits until all of them are processed. If a worker dies
+     * (it is interrupted or the failure handler throws), the others are interrupted and the pipeline fails.
+     */
+    void run(Iterable<T> items) throws InterruptedException {
+        List<ExecutorService> executors = new ArrayList<>(stages.size() + 1);
+        BlockingQueue<Future<Void>> finished = new LinkedBlockingQueue<>();
+        int workers = 0;
+        try {
+            Stage<T> first = stages.get(0);
+            CompletionService<Void> feeder = new ExecutorCompletionService<>(newExecutor(executors, "feed", 1), finished);
+            feeder.submit(() -> {
+                for (T item : items) {
+                    first.put(item);
+                }
+                first.end();
+                return null;
+            });
+            workers++;
+            for (int i = 0; i < stages.size(); i++) {
+                Stage<T> stage = stages.get(i);
+                Stage<T> next = i + 1 < stages.size() ? stages.get(i + 1) : null;
+                CompletionService<Void> completion = new ExecutorCompletionService<>(
+                        newExecutor(executors, stage.name, stage.workers), finished);
+                for (int worker = 0; worker < stage.workers; worker++) {
+                    completion.submit(() -> work(stage, next));
+                    workers++;
+                }
+            }
+            for (int i = 0; i < workers; i++) {
+                finished.take().get();
+            }
+        } catch (ExecutionException e) {
+            throw new AosException("Pipeline " + name + " failed", e.getCause());
+        } finally {
+            for (ExecutorService executor : executors) {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    private ExecutorService newExecutor(List<ExecutorService> executors, String stageName, int threads) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable ->
+                new Thread(runnable, name + "-" + stageName + "-" + threadNumber.incrementAndGet()));
+        executors.add(executor);
+        return executor;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Void work(Stage<T> stage, Stage<T> next) throws InterruptedException {
+        while (true) {
+            Object taken = stage.take();
+            if (taken == END) {
+                break;
+            }
+            T item = (T) taken;
+            boolean passed;
+            try {
+                passed = stage.function.process(item);
+            } catch (InterruptedException e) {
+                throw e;
+            } catch (Exception e) {
+                failureHandler.onFailure(item, e);
+                passed = false;
+            }
+            if (passed && next != null) {
+                next.put(item);
+            }
+        }
+        //the last worker of the stage ends the next one
+        if (stage.running.decrementAndGet() == 0 && next != null) {
+            next.end();
+        }
+        return null;
+    }
+
+    private static class Stage<T> {
+        private final String name;
+        private final int workers;
+        private final BlockingQueue<Object> queue;
+        private final StageFunction<T> function;
+        private final Gauge depth;
+        private final AtomicInteger running;
+
+        private Stage(String name, int workers, BlockingQueue<Object> queue, StageFunction<T> function, Gauge depth) {
+            this.name = name;
+            this.workers = workers;
+            this.queue = queue;
+            this.function = function;
+            this.depth = depth;
+            this.running = new AtomicInteger(workers);
+        }
+
+        private void put(Object item) throws InterruptedException {
+            queue.put(item);
+            depth.set(queue.size());
+        }
+
+        private Object take() throws InterruptedException {
+            Object item = queue.take();
+            depth.set(queue.size());
+            return item;
+        }
+
+        private void end() throws InterruptedException {
+            for (int i = 0; i < workers; i++) {
+                put(END);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    interface StageFunction<T> {
+        /**
+         * @return true if the item should be passed to the next stage
+         */
+        boolean process(T item) throws Exception;
+    }
+
+    @FunctionalInterface
+    interface FailureHandler<T> {
+        void onFailure(T item, Exception e);
+    }
+}
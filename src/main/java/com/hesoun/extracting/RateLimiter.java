@@ -0,0 +1,54 @@
+package com.hesoun.extracting;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket limiting how often requests are sent. The bucket holds up to {@code burst} tokens and is refilled by
+ * {@code permitsPerSecond} tokens every second, every request takes one token. Threads which find the bucket empty
+ * reserve a future token and sleep until it is refilled, so they are served in the order they came.
+ *
+ * @author Jakub Hesoun
+ */
+class RateLimiter {
+    private final double tokensPerNano;
+    private final double burst;
+    private double tokens;
+    private long lastRefill;
+
+    /**
+     * @param permitsPerSecond number of requests allowed per second, zero or less means no limit
+     * @param burst            number of requests which can be sent at once after a quiet period
+     */
+    RateLimiter(double permitsPerSecond, int burst) {
+        this.tokensPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.burst = Math.max(1, burst);
+        this.tokens = this.burst;
+        this.lastRefill = System.nanoTime();
+    }
+
+    /**
+     * Blocks until the request can be sent.
+     */
+    void acquire() throws InterruptedException {
+        long waitNanos = reserve();
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    /**
+     * Takes one token, the bucket may go into debt which later callers have to wait out.
+     *
+     * @return nanoseconds to wait before the token is available
+     */
+    synchronized long reserve() {
+        if (tokensPerNano <= 0) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        tokens = Math.min(burst, tokens + (now - lastRefill) * tokensPerNano);
+        lastRefill = now;
+        tokens -= 1;
+        return tokens >= 0 ? 0 : (long) Math.ceil(-tokens / tokensPerNano);
+    }
+}
@@ -0,0 +1,220 @@
+package com.hesoun.extracting;
+
+import com.hesoun.AosException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * On-disk cache of raw responses of the Yahoo endpoint. Every response is stored gzipped in a directory of its symbol
+ * under the SHA-256 hash of its query, which contains the symbol, the requested period and the interval.
+ * <p>
+ * Entries older than the TTL are not returned by {@link #get(String, String)}, but they stay on disk until
+ * {@link #put(String, String, byte[])} replaces them, so a failed request does not lose the only copy. All the entries
+ * of a symbol, expired ones too, can be replayed by {@link #getEntries(String)}.
+ * <p>
+ * The size of the cache is tracked on every put, the directory is scanned only once at the first put and then when
+ * the cache grows over its maximal size. The oldest entries are deleted then until it fits into 90% of the size, so
+ * the following puts do not scan it again. Files deleted by another thread or process during a scan are skipped.
+ *
+ * @author Jakub Hesoun
+ */
+class ResponseCache {
+    private static final Logger LOG = LoggerFactory.getLogger(ResponseCache.class);
+    private static final String SUFFIX = ".json.gz";
+    private static final double EVICTED_SIZE = 0.9;
+
+    private final Path directory;
+    private final Duration ttl;
+    private final long maxBytes;
+    //bytes of all the entries, -1 until the directory is scanned
+    private long size = -1;
+
+    ResponseCache(Path directory, Duration ttl, long maxBytes) {
+        this.directory = directory;
+        this.ttl = ttl;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @return uncompressed response of {@param query} or null if it is not cached or has expired
+     */
+    InputStream get(String symbol, String query) throws IOException {
+        Path entry = getPath(symbol, query);
+        if (!Files.exists(entry)) {
+            return null;
+        }
+        if (isExpired(entry)) {
+            //the entry is kept for reingest until a new response replaces it
+            LOG.debug("Cached response of {} has expired", query);
+            return null;
+        }
+        try {
+            return open(entry);
+        } catch (NoSuchFileException e) {
+            //evicted meanwhile
+            return null;
+        }
+    }
+
+    /**
+     * Stores the response of {@param query}, the file is written aside and moved into its place, so readers never see
+     * a partially written entry.
+     */
+    void put(String symbol, String query, byte[] response) throws IOException {
+        Path entry = getPath(symbol, query);
+        Files.createDirectories(entry.getParent());
+        Path temp = Files.createTempFile(entry.getParent(), "response", ".tmp");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(temp))) {
+            out.write(response);
+        }
+        long addedBytes = Files.size(temp);
+        synchronized (this) {
+            long replacedBytes = size(entry);
+            Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            if (size < 0) {
+                size = 0;
+                for (Entry cached : scan(directory, Integer.MAX_VALUE)) {
+                    size += cached.size;
+                }
+            } else {
+                size += addedBytes - replacedBytes;
+            }
+            if (size > maxBytes) {
+                evict();
+            }
+        }
+    }
+
+    /**
+     * @return all the cached responses of {@param symbol} from the oldest one
+     */
+    List<Path> getEntries(String symbol) throws IOException {
+        Path symbolDirectory = directory.resolve(symbol);
+        if (!Files.isDirectory(symbolDirectory)) {
+            return new ArrayList<>();
+        }
+        List<Path> paths = new ArrayList<>();
+        for (Entry entry : scan(symbolDirectory, 1)) {
+            paths.add(entry.path);
+        }
+        return paths;
+    }
+
+    InputStream open(Path entry) throws IOException {
+        return new GZIPInputStream(Files.newInputStream(entry));
+    }
+
+    /**
+     * Deletes the oldest entries until the cache fits into {@value #EVICTED_SIZE} of its maximal size.
+     */
+    private void evict() throws IOException {
+        List<Entry> entries = scan(directory, Integer.MAX_VALUE);
+        size = 0;
+        for (Entry entry : entries) {
+            size += entry.size;
+        }
+        long evictedSize = (long) (maxBytes * EVICTED_SIZE);
+        for (int i = 0; size > evictedSize && i < entries.size(); i++) {
+            Entry entry = entries.get(i);
+            if (Files.deleteIfExists(entry.path)) {
+                LOG.debug("Evicted cached response {}", entry.path);
+            }
+            size -= entry.size;
+        }
+    }
+
+    /**
+     * @return entries up to {@param depth} levels below {@param root} from the oldest one, files which disappear
+     * during the scan are skipped
+     */
+    private static List<Entry> scan(Path root, int depth) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        Files.walkFileTree(root, Collections.emptySet(), depth, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                if (attributes.isRegularFile() && file.getFileName().toString().endsWith(SUFFIX)) {
+                    entries.add(new Entry(file, attributes.lastModifiedTime().toMillis(), attributes.size()));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) throws IOException {
+                if (e instanceof NoSuchFileException) {
+                    return FileVisitResult.CONTINUE;
+                }
+                throw e;
+            }
+        });
+        entries.sort(Comparator.comparingLong(entry -> entry.lastModified));
+        return entries;
+    }
+
+    private boolean isExpired(Path entry) throws IOException {
+        try {
+            return System.currentTimeMillis() - Files.getLastModifiedTime(entry).toMillis() > ttl.toMillis();
+        } catch (NoSuchFileException e) {
+            //evicted meanwhile
+            return true;
+        }
+    }
+
+    private Path getPath(String symbol, String query) {
+        return directory.resolve(symbol).resolve(sha256(query) + SUFFIX);
+    }
+
+    private static long size(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            //not cached yet or deleted by another thread
+            return 0;
+        }
+    }
+
+    private static String sha256(String value) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new AosException(e);
+        }
+    }
+
+    private static class Entry {
+        private final Path path;
+        private final long lastModified;
+        private final long size;
+
+        private Entry(Path path, long lastModified, long size) {
+            this.path = path;
+            this.lastModified = lastModified;
+            this.size = size;
+        }
+    }
+}
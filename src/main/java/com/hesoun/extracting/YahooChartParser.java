@@ -0,0 +1,230 @@
+package com.hesoun.extracting;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.hesoun.AosException;
+import com.hesoun.model.HistoricalDailyPrice;
+import com.hesoun.model.Stock;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Single pass streaming parser of Yahoo chart JSON. Values are read token by token straight into primitive arrays,
+ * neither the whole response nor a tree of its nodes is kept in memory.
+ * <p>
+ * It produces the same {@link Stock} as {@link JsonHelper#parseJsonAndCreateStock(String, Pair)}: metadata are taken
+ * from their first occurrence, price arrays from their last (innermost) one, prices have to be floating point numbers
+ * and volumes and timestamps integers.
+ *
+ * @author Jakub Hesoun
+ */
+class YahooChartParser {
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final ZoneId UTC = ZoneId.of("UTC");
+
+    private String currency;
+    private String symbol;
+    private String exchangeName;
+    private Integer firstTradeDate;
+    private String errorCode;
+    private String errorDescription;
+    private boolean error;
+    private int[] timestamps;
+    private double[] low;
+    private double[] high;
+    private double[] close;
+    private double[] open;
+    private double[] adjClose;
+    private double[] unadjClose;
+    private int[] volumes;
+
+    private YahooChartParser() {
+    }
+
+    static Stock parse(InputStream in, Pair<String, String> component) throws IOException {
+        YahooChartParser chart = new YahooChartParser();
+        try (JsonParser parser = JSON_FACTORY.createParser(in)) {
+            if (parser.nextToken() != null) {
+                chart.readValue(parser, null);
+            }
+        }
+        return chart.createStock(component);
+    }
+
+    /**
+     * Reads the value the parser points at, {@param fieldName} is the name of the field holding it.
+     */
+    private void readValue(JsonParser parser, String fieldName) throws IOException {
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.START_OBJECT) {
+            if ("error".equals(fieldName)) {
+                readError(parser);
+                return;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                parser.nextToken();
+                readValue(parser, name);
+            }
+        } else if (token == JsonToken.START_ARRAY) {
+            readArray(parser, fieldName);
+        } else if (token.isScalarValue()) {
+            readScalar(parser, fieldName);
+        }
+    }
+
+    private void readArray(JsonParser parser, String fieldName) throws IOException {
+        JsonToken first = parser.nextToken();
+        if (fieldName == null || first.isStructStart()) {
+            //not a column of values, columns nested deeper are read by their own field names
+            readElements(parser, first);
+            return;
+        }
+        switch (fieldName) {
+            case "timestamp":
+                timestamps = readIntArray(parser, fieldName, first);
+                break;
+            case "volume":
+                volumes = readIntArray(parser, fieldName, first);
+                break;
+            case "low":
+                low = readDoubleArray(parser, fieldName, first);
+                break;
+            case "high":
+                high = readDoubleArray(parser, fieldName, first);
+                break;
+            case "close":
+                close = readDoubleArray(parser, fieldName, first);
+                break;
+            case "open":
+                open = readDoubleArray(parser, fieldName, first);
+                break;
+            case "adjclose":
+                adjClose = readDoubleArray(parser, fieldName, first);
+                break;
+            case "unadjclose":
+                unadjClose = readDoubleArray(parser, fieldName, first);
+                break;
+            default:
+                readElements(parser, first);
+        }
+    }
+
+    private void readElements(JsonParser parser, JsonToken first) throws IOException {
+        for (JsonToken token = first; token != JsonToken.END_ARRAY; token = parser.nextToken()) {
+            readValue(parser, null);
+        }
+    }
+
+    private void readScalar(JsonParser parser, String fieldName) throws IOException {
+        if (fieldName == null || parser.currentToken() == JsonToken.VALUE_NULL) {
+            return;
+        }
+        switch (fieldName) {
+            case "currency":
+                currency = currency == null ? parser.getText() : currency;
+                break;
+            case "symbol":
+                symbol = symbol == null ? parser.getText() : symbol;
+                break;
+            case "exchangeName":
+                exchangeName = exchangeName == null ? parser.getText() : exchangeName;
+                break;
+            case "firstTradeDate":
+                firstTradeDate = firstTradeDate == null ? parser.getValueAsInt() : firstTradeDate;
+                break;
+            default:
+        }
+    }
+
+    private void readError(JsonParser parser) throws IOException {
+        error = true;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if (token.isStructStart()) {
+                parser.skipChildren();
+            } else if ("code".equals(name)) {
+                errorCode = parser.getText();
+            } else if ("description".equals(name)) {
+                errorDescription = parser.getText();
+            }
+        }
+    }
+
+    private static double[] readDoubleArray(JsonParser parser, String fieldName, JsonToken first) throws IOException {
+        double[] values = new double[256];
+        int size = 0;
+        for (JsonToken token = first; token != JsonToken.END_ARRAY; token = parser.nextToken()) {
+            if (token != JsonToken.VALUE_NUMBER_FLOAT) {
+                throw new IllegalStateException("Parsed node " + fieldName + " contains value which is not double: " + parser.getText());
+            }
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = parser.getDoubleValue();
+        }
+        return Arrays.copyOf(values, size);
+    }
+
+    private static int[] readIntArray(JsonParser parser, String fieldName, JsonToken first) throws IOException {
+        int[] values = new int[256];
+        int size = 0;
+        for (JsonToken token = first; token != JsonToken.END_ARRAY; token = parser.nextToken()) {
+            if (token != JsonToken.VALUE_NUMBER_INT || parser.getNumberType() != JsonParser.NumberType.INT) {
+                throw new IllegalStateException("Parsed node " + fieldName + " contains value which is not int: " + parser.getText());
+            }
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = parser.getIntValue();
+        }
+        return Arrays.copyOf(values, size);
+    }
+
+    private Stock createStock(Pair<String, String> component) {
+        //check if there is no error
+        if (error) {
+            throw new AosException("Error when obtaining data for " + component.getLeft() + ":\n " +
+                    "errorCode=" + errorCode + "\n" +
+                    "errorDescription=" + errorDescription);
+        }
+        if (firstTradeDate == null || low == null) {
+            throw new AosException("Response for " + component.getLeft() + " does not contain chart data");
+        }
+
+        Stock stock = Stock.builder()
+                .exchange(exchangeName)
+                .symbol(symbol)
+                .currencyCode(currency)
+                .firstTradedDate(Instant.ofEpochSecond(firstTradeDate).atZone(UTC).toLocalDate())
+                .build();
+
+        List<HistoricalDailyPrice> dailyPrices = new ArrayList<>(low.length);
+        for (int i = 0; i < low.length; i++) {
+            dailyPrices.add(HistoricalDailyPrice.builder()
+                    .date(Instant.ofEpochSecond(timestamps[i]).atZone(UTC).toLocalDateTime())
+                    .low(BigDecimal.valueOf(low[i]))
+                    .high(BigDecimal.valueOf(high[i]))
+                    .close(BigDecimal.valueOf(close[i]))
+                    .open(BigDecimal.valueOf(open[i]))
+                    .volume(volumes[i])
+                    .adjustedClose(BigDecimal.valueOf(adjClose[i]))
+                    .unadjustedClose(BigDecimal.valueOf(unadjClose[i]))
+                    .build()
+            );
+        }
+
+        stock.setHistoricalDailyPrices(dailyPrices);
+        stock.setName(component.getRight());
+        return stock;
+    }
+}
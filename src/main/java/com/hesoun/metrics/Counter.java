@@ -0,0 +1,24 @@
+package com.hesoun.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Monotonic count of events, cheap to increment from many threads at once.
+ *
+ * @author Jakub Hesoun
+ */
+public class Counter {
+    private final LongAdder count = new LongAdder();
+
+    public void increment() {
+        count.increment();
+    }
+
+    public void add(long value) {
+        count.add(value);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+}
@@ -0,0 +1,38 @@
+package com.hesoun.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Current value of something which goes up and down, like number of requests in flight.
+ *
+ * @author Jakub Hesoun
+ */
+public class Gauge {
+    private final AtomicLong value = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    public void set(long newValue) {
+        value.set(newValue);
+        max.accumulateAndGet(newValue, Math::max);
+    }
+
+    public void increment() {
+        long newValue = value.incrementAndGet();
+        max.accumulateAndGet(newValue, Math::max);
+    }
+
+    public void decrement() {
+        value.decrementAndGet();
+    }
+
+    public long getValue() {
+        return value.get();
+    }
+
+    /**
+     * @return the highest value the gauge has had
+     */
+    public long getMax() {
+        return max.get();
+    }
+}
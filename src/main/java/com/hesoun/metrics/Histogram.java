@@ -0,0 +1,98 @@
+package com.hesoun.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Distribution of non-negative values (usually durations in nanoseconds) in log-linear buckets the way HDR histograms
+ * do it. Values below 128 have a bucket of their own, every higher power of two range is split into 64 buckets, so
+ * a value is reported with a relative error below 1/64 while the whole long range fits into a few thousand buckets.
+ * <p>
+ * Recording takes constant time and no lock, percentiles are read by walking the buckets.
+ *
+ * @author Jakub Hesoun
+ */
+public class Histogram {
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    //values below 2 * SUB_BUCKETS are stored exactly
+    private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long value) {
+        long recorded = Math.max(0, value);
+        counts.incrementAndGet(index(recorded));
+        count.increment();
+        sum.add(recorded);
+        max.accumulateAndGet(recorded, Math::max);
+    }
+
+    /**
+     * Records nanoseconds elapsed since {@param startNanos} obtained from {@link System#nanoTime()}.
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getSum() {
+        return sum.sum();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public double getMean() {
+        long currentCount = getCount();
+        return currentCount == 0 ? 0 : (double) getSum() / currentCount;
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the lowest value of the bucket containing given percentile of the recorded values, 0 if nothing has
+     * been recorded
+     */
+    public long getPercentile(double percentile) {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += counts.get(i);
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(lowestValue(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    static int index(long value) {
+        if (value < 2 * SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = Long.SIZE - 1 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return shift * SUB_BUCKETS + (int) (value >>> shift);
+    }
+
+    static long lowestValue(int index) {
+        if (index < 2 * SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        return (long) (index % SUB_BUCKETS + SUB_BUCKETS) << shift;
+    }
+}
@@ -0,0 +1,124 @@
+package com.hesoun.metrics;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Singleton registry of all the metrics of the process. Metrics are created on the first request of their name and
+ * live until the process ends, so they are usually held in static fields of the measured classes.
+ * <p>
+ * Histograms hold durations in nanoseconds, the summary and the JSON dump report them in milliseconds.
+ *
+ * @author Jakub Hesoun
+ */
+public enum Metrics {
+    INSTANCE;
+
+    private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final ConcurrentMap<String, Counter> counters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Gauge> gauges = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Histogram> histograms = new ConcurrentHashMap<>();
+
+    public Counter counter(String name) {
+        return counters.computeIfAbsent(name, key -> new Counter());
+    }
+
+    public Gauge gauge(String name) {
+        return gauges.computeIfAbsent(name, key -> new Gauge());
+    }
+
+    public Histogram histogram(String name) {
+        return histograms.computeIfAbsent(name, key -> new Histogram());
+    }
+
+    /**
+     * @return table of all the metrics which have been used, ordered by name
+     */
+    public String getSummary() {
+        StringBuilder summary = new StringBuilder();
+        String timeFormat = "%-28s %10s %12s %12s %12s %12s %12s %12s%n";
+        summary.append(String.format(timeFormat, "timer [ms]", "count", "total", "mean", "p50", "p90", "p99", "max"));
+        for (Map.Entry<String, Map<String, Number>> entry : getHistogramSnapshots().entrySet()) {
+            Map<String, Number> values = entry.getValue();
+            summary.append(String.format(timeFormat, entry.getKey(), values.get("count"),
+                    formatMillis(values.get("total")), formatMillis(values.get("mean")), formatMillis(values.get("p50")), formatMillis(values.get("p90")),
+                    formatMillis(values.get("p99")), formatMillis(values.get("max"))));
+        }
+        String valueFormat = "%-28s %10s %12s%n";
+        summary.append(String.format(valueFormat, "counter/gauge", "value", "max"));
+        for (Map.Entry<String, Long> entry : getCounterSnapshots().entrySet()) {
+            summary.append(String.format(valueFormat, entry.getKey(), entry.getValue(), ""));
+        }
+        for (Map.Entry<String, Map<String, Long>> entry : getGaugeSnapshots().entrySet()) {
+            summary.append(String.format(valueFormat, entry.getKey(), entry.getValue().get("value"),
+                    entry.getValue().get("max")));
+        }
+        return summary.toString();
+    }
+
+    /**
+     * Writes all the metrics which have been used into {@param file} as JSON object with counters, gauges and
+     * timers (in milliseconds).
+     */
+    public void writeJson(Path file) throws IOException {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("counters", getCounterSnapshots());
+        snapshot.put("gauges", getGaugeSnapshots());
+        snapshot.put("timers", getHistogramSnapshots());
+        if (file.toAbsolutePath().getParent() != null) {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+        }
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(file.toFile(), snapshot);
+    }
+
+    private Map<String, Long> getCounterSnapshots() {
+        Map<String, Long> snapshots = new TreeMap<>();
+        counters.forEach((name, counter) -> snapshots.put(name, counter.getCount()));
+        return snapshots;
+    }
+
+    private Map<String, Map<String, Long>> getGaugeSnapshots() {
+        Map<String, Map<String, Long>> snapshots = new TreeMap<>();
+        gauges.forEach((name, gauge) -> {
+            Map<String, Long> values = new LinkedHashMap<>();
+            values.put("value", gauge.getValue());
+            values.put("max", gauge.getMax());
+            snapshots.put(name, values);
+        });
+        return snapshots;
+    }
+
+    private Map<String, Map<String, Number>> getHistogramSnapshots() {
+        Map<String, Map<String, Number>> snapshots = new TreeMap<>();
+        histograms.forEach((name, histogram) -> {
+            if (histogram.getCount() == 0) {
+                return;
+            }
+            Map<String, Number> values = new LinkedHashMap<>();
+            values.put("count", histogram.getCount());
+            values.put("total", histogram.getSum() / NANOS_PER_MILLI);
+            values.put("mean", histogram.getMean() / NANOS_PER_MILLI);
+            values.put("p50", histogram.getPercentile(50) / NANOS_PER_MILLI);
+            values.put("p90", histogram.getPercentile(90) / NANOS_PER_MILLI);
+            values.put("p99", histogram.getPercentile(99) / NANOS_PER_MILLI);
+            values.put("max", histogram.getMax() / NANOS_PER_MILLI);
+            snapshots.put(name, values);
+        });
+        return snapshots;
+    }
+
+    private static String formatMillis(Number millis) {
+        return String.format("%.3f", millis.doubleValue());
+    }
+}
@@ -2,8 +2,6 @@ package com.hesoun.model;
 
 import lombok.Data;
 
-import java.math.BigDecimal;
-
 /**
  * @author Jakub Hesoun
  */
@@ -11,6 +9,6 @@ import java.math.BigDecimal;
 public class Account {
     //TODO JH Could this be replaced by non-static field?
     public static final int INITIAL_BALANCE = 30_000; //e.g.30_000
-    private BigDecimal balance = BigDecimal.valueOf(INITIAL_BALANCE); //lever 2:1
-    private BigDecimal allocation = BigDecimal.ZERO;
+    private Money balance = Money.of(INITIAL_BALANCE); //lever 2:1
+    private Money allocation = Money.ZERO;
 }
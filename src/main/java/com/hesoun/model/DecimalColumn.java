@@ -0,0 +1,58 @@
+package com.hesoun.model;
+
+import com.hesoun.AosException;
+
+import java.math.BigDecimal;
+import java.text.MessageFormat;
+import java.util.Arrays;
+
+/**
+ * Growable column of decimal numbers stored as unscaled longs and their scales. A value read from the column is equal
+ * (including its scale) to the one which has been stored, so calculations on top of it give the same results as on
+ * the original {@link BigDecimal}s.
+ *
+ * @author Jakub Hesoun
+ */
+class DecimalColumn {
+    private long[] unscaledValues;
+    private byte[] scales;
+
+    DecimalColumn(int capacity) {
+        unscaledValues = new long[capacity];
+        scales = new byte[capacity];
+    }
+
+    DecimalColumn(long[] unscaledValues, byte[] scales) {
+        this.unscaledValues = unscaledValues;
+        this.scales = scales;
+    }
+
+    void set(int index, BigDecimal value) {
+        if (value.scale() < Byte.MIN_VALUE || value.scale() > Byte.MAX_VALUE || value.unscaledValue().bitLength() > 63) {
+            throw new AosException(MessageFormat.format("Value {0} cannot be stored in decimal column", value));
+        }
+        unscaledValues[index] = value.unscaledValue().longValue();
+        scales[index] = (byte) value.scale();
+    }
+
+    BigDecimal get(int index) {
+        return BigDecimal.valueOf(unscaledValues[index], scales[index]);
+    }
+
+    long getUnscaledValue(int index) {
+        return unscaledValues[index];
+    }
+
+    int getScale(int index) {
+        return scales[index];
+    }
+
+    void grow(int capacity) {
+        unscaledValues = Arrays.copyOf(unscaledValues, capacity);
+        scales = Arrays.copyOf(scales, capacity);
+    }
+
+    DecimalColumn trim(int size) {
+        return new DecimalColumn(Arrays.copyOf(unscaledValues, size), Arrays.copyOf(scales, size));
+    }
+}
@@ -11,7 +11,7 @@ import java.time.LocalDateTime;
  *
  * @author Jakub Hesoun
  */
-@Builder
+@Builder(toBuilder = true)
 @Data
 public class HistoricalDailyPrice {
     private long id;
@@ -0,0 +1,82 @@
+package com.hesoun.model;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * Precomputed {@link Indicators} of one stock ordered by date ascending, one entry per trading day of the stock. It is
+ * loaded from DB once for the whole simulation and looked up by the date of the last price.
+ *
+ * @author Jakub Hesoun
+ */
+public class IndicatorSeries {
+    private final long stockId;
+    private final int[] epochDays;
+    private final Indicators[] indicators;
+
+    private IndicatorSeries(Builder builder) {
+        this.stockId = builder.stockId;
+        this.epochDays = Arrays.copyOf(builder.epochDays, builder.size);
+        this.indicators = Arrays.copyOf(builder.indicators, builder.size);
+    }
+
+    public static Builder builder(long stockId) {
+        return new Builder(stockId);
+    }
+
+    public long getStockId() {
+        return stockId;
+    }
+
+    public int size() {
+        return epochDays.length;
+    }
+
+    /**
+     * @return indicators of the day given as {@param epochDay} or null if they have not been computed for this day
+     */
+    public Indicators get(int epochDay) {
+        int index = Arrays.binarySearch(epochDays, epochDay);
+        return index < 0 ? null : indicators[index];
+    }
+
+    public Indicators get(LocalDate date) {
+        return get((int) date.toEpochDay());
+    }
+
+    /**
+     * Appends indicators of one stock. Indicators have to be added ordered by date ascending.
+     */
+    public static class Builder {
+        private static final int INITIAL_CAPACITY = 256;
+
+        private final long stockId;
+        private int size;
+        private int[] epochDays = new int[INITIAL_CAPACITY];
+        private Indicators[] indicators = new Indicators[INITIAL_CAPACITY];
+
+        private Builder(long stockId) {
+            this.stockId = stockId;
+        }
+
+        public Builder add(LocalDate date, Indicators dailyIndicators) {
+            int epochDay = (int) date.toEpochDay();
+            if (size > 0 && epochDays[size - 1] >= epochDay) {
+                throw new IllegalArgumentException("Indicators of stock " + stockId + " are not ordered by date, "
+                        + date + " added after " + LocalDate.ofEpochDay(epochDays[size - 1]));
+            }
+            if (size == epochDays.length) {
+                epochDays = Arrays.copyOf(epochDays, size * 2);
+                indicators = Arrays.copyOf(indicators, size * 2);
+            }
+            epochDays[size] = epochDay;
+            indicators[size] = dailyIndicators;
+            size++;
+            return this;
+        }
+
+        public IndicatorSeries build() {
+            return new IndicatorSeries(this);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.hesoun.model;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Amount of money or price held as a {@code long} number of millionths, e.g. 12.5 is held as 12_500_000. The
+ * precision is enough for the adjusted prices and the maximal amount is about 9.2 trillion.
+ * <p>
+ * Rounding rules:
+ * <ul>
+ * <li>values with more than {@value #SCALE} decimal places are rounded half up (away from zero on ties) when they
+ * are converted into money, other conversions, additions, subtractions and multiplications by a number of shares are
+ * exact</li>
+ * <li>{@link #divideToIntegral(Money)} rounds down, so only whole shares affordable for the amount are bought</li>
+ * <li>every operation which would overflow throws {@link ArithmeticException} instead</li>
+ * </ul>
+ * Money is written into DB and JSON as {@link BigDecimal} by {@link #toBigDecimal()} and read by
+ * {@link #of(BigDecimal)}.
+ *
+ * @author Jakub Hesoun
+ */
+public final class Money implements Comparable<Money> {
+    public static final int SCALE = 6;
+    public static final Money ZERO = new Money(0);
+    private static final long[] POWERS_OF_TEN = new long[19];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private final long units;
+
+    private Money(long units) {
+        this.units = units;
+    }
+
+    /**
+     * @param units number of millionths
+     */
+    public static Money ofUnits(long units) {
+        return units == 0 ? ZERO : new Money(units);
+    }
+
+    /**
+     * @return money of whole {@param amount}, e.g. dollars
+     */
+    public static Money of(long amount) {
+        return ofUnits(Math.multiplyExact(amount, POWERS_OF_TEN[SCALE]));
+    }
+
+    /**
+     * @return {@param value} rounded half up to {@value #SCALE} decimal places
+     */
+    @JsonCreator
+    public static Money of(BigDecimal value) {
+        return ofUnits(value.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact());
+    }
+
+    /**
+     * Converts decimal given by its {@param unscaledValue} and {@param scale} without creating a {@link BigDecimal},
+     * it is rounded the same way as by {@link #of(BigDecimal)}.
+     */
+    public static Money of(long unscaledValue, int scale) {
+        if (scale == SCALE) {
+            return ofUnits(unscaledValue);
+        }
+        if (scale < SCALE && SCALE - scale < POWERS_OF_TEN.length) {
+            return ofUnits(Math.multiplyExact(unscaledValue, POWERS_OF_TEN[SCALE - scale]));
+        }
+        if (scale > SCALE && scale - SCALE < POWERS_OF_TEN.length) {
+            long divisor = POWERS_OF_TEN[scale - SCALE];
+            long quotient = unscaledValue / divisor;
+            long remainder = unscaledValue % divisor;
+            //remainder is smaller than the divisor, so it cannot overflow
+            if (Math.abs(remainder) >= divisor - Math.abs(remainder)) {
+                quotient += Long.signum(unscaledValue);
+            }
+            return ofUnits(quotient);
+        }
+        return of(BigDecimal.valueOf(unscaledValue, scale));
+    }
+
+    /**
+     * @return number of millionths
+     */
+    public long getUnits() {
+        return units;
+    }
+
+    public int signum() {
+        return Long.signum(units);
+    }
+
+    public Money add(Money other) {
+        return ofUnits(Math.addExact(units, other.units));
+    }
+
+    public Money subtract(Money other) {
+        return ofUnits(Math.subtractExact(units, other.units));
+    }
+
+    /**
+     * @return this price multiplied by {@param quantity}, e.g. number of shares
+     */
+    public Money multiply(long quantity) {
+        return ofUnits(Math.multiplyExact(units, quantity));
+    }
+
+    /**
+     * @return how many times {@param price} fits into this amount rounded down, e.g. number of affordable shares
+     * @throws ArithmeticException if the price is zero
+     */
+    public long divideToIntegral(Money price) {
+        if (price.units == 0) {
+            throw new ArithmeticException("Cannot divide " + this + " by zero price");
+        }
+        return units / price.units;
+    }
+
+    /**
+     * @return ratio of this amount and {@param other} amount, e.g. for returns and drawdowns
+     */
+    public double divide(Money other) {
+        return (double) units / other.units;
+    }
+
+    /**
+     * @return exact value without trailing zeros, but never with negative scale
+     */
+    @JsonValue
+    public BigDecimal toBigDecimal() {
+        BigDecimal value = BigDecimal.valueOf(units, SCALE).stripTrailingZeros();
+        return value.scale() < 0 ? value.setScale(0) : value;
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(units, other.units);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || o instanceof Money && units == ((Money) o).units;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(units);
+    }
+
+    @Override
+    public String toString() {
+        return toBigDecimal().toPlainString();
+    }
+}
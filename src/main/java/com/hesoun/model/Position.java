@@ -4,11 +4,10 @@ import com.hesoun.AosException;
 import lombok.Builder;
 import lombok.Data;
 
-import java.math.BigDecimal;
 import java.text.MessageFormat;
 import java.time.LocalDate;
 import java.util.Arrays;
-import java.util.EnumSet;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 
@@ -19,12 +18,12 @@ import static com.hesoun.model.Account.INITIAL_BALANCE;
  *
  * @author Jakub Hesoun
  */
-@Builder
+@Builder(toBuilder = true)
 @Data
 public class Position {
     private long id;
-    private BigDecimal buyPrice;
-    private BigDecimal sellPrice;
+    private Money buyPrice;
+    private Money sellPrice;
     private Status status;
     private LocalDate buyDate;
     private LocalDate sellDate;
@@ -67,7 +66,7 @@ public class Position {
 
         private int amount;
         private int positionPercentage;
-        private static List<Slice> sliceList = Arrays.asList(TEN, TWENTY, THIRTY, FOURTY);
+        private static List<Slice> sliceList = Collections.unmodifiableList(Arrays.asList(TEN, TWENTY, THIRTY, FOURTY));
 
         Slice(int amount, int positionPercentage) {
             this.amount = amount;
@@ -78,6 +77,13 @@ public class Position {
             return amount;
         }
 
+        /**
+         * @return all the slices which can be bought ordered from the smallest one
+         */
+        public static List<Slice> getSlices() {
+            return sliceList;
+        }
+
         public String getPositionPercentageAsString() {
             return String.valueOf(positionPercentage);
         }
@@ -101,7 +107,7 @@ public class Position {
         }
 
         public Slice getNext() {
-            if (EnumSet.of(NO_SLICE, FOURTY).contains(this)) {
+            if (this == NO_SLICE || this == FOURTY) {
                 return NO_SLICE;
             }
             //leave out last item in the list
@@ -0,0 +1,298 @@
+package com.hesoun.model;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * In-memory price history of one stock ordered by date ascending. It is loaded once for the whole simulation and
+ * then walked day by day, so the simulator does not have to query the DB for every stock and every day.
+ * <p>
+ * Prices are held in parallel primitive columns (dates as epoch days, decimals as unscaled longs with scales), so no
+ * objects are created per price. Use {@link #getLastPrices(LocalDate, int)} to get a window view of the series.
+ *
+ * @author Jakub Hesoun
+ */
+public class PriceSeries {
+    private static final int DECIMAL_COLUMNS = 6;
+    private static final int BYTES_PER_PRICE = 2 * Integer.BYTES + DECIMAL_COLUMNS * (Long.BYTES + Byte.BYTES);
+
+    private final long stockId;
+    private final int size;
+    private final int[] epochDays;
+    private final DecimalColumn open;
+    private final DecimalColumn high;
+    private final DecimalColumn low;
+    private final DecimalColumn close;
+    private final DecimalColumn adjustedClose;
+    private final DecimalColumn unadjustedClose;
+    private final int[] volumes;
+
+    private PriceSeries(Builder builder) {
+        this.stockId = builder.stockId;
+        this.size = builder.size;
+        this.epochDays = Arrays.copyOf(builder.epochDays, size);
+        this.open = builder.open.trim(size);
+        this.high = builder.high.trim(size);
+        this.low = builder.low.trim(size);
+        this.close = builder.close.trim(size);
+        this.adjustedClose = builder.adjustedClose.trim(size);
+        this.unadjustedClose = builder.unadjustedClose.trim(size);
+        this.volumes = Arrays.copyOf(builder.volumes, size);
+    }
+
+    private PriceSeries(long stockId, int[] epochDays, int[] volumes, DecimalColumn[] decimalColumns) {
+        this.stockId = stockId;
+        this.size = epochDays.length;
+        this.epochDays = epochDays;
+        this.volumes = volumes;
+        this.open = decimalColumns[0];
+        this.high = decimalColumns[1];
+        this.low = decimalColumns[2];
+        this.close = decimalColumns[3];
+        this.adjustedClose = decimalColumns[4];
+        this.unadjustedClose = decimalColumns[5];
+    }
+
+    public static Builder builder(long stockId) {
+        return new Builder(stockId);
+    }
+
+    public long getStockId() {
+        return stockId;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns a window of at most {@param days} prices which are not after {@param lastDate}, ordered by date
+     * descending, so the first element is the price for {@param lastDate} (or the closest older one). This is the same
+     * contract as {@link com.hesoun.data.HistoricalDailyPriceDao#getLastPricesForStock(long, int, LocalDate)}.
+     * <p>
+     * Returned window is a view backed by this series, no prices are copied. The series is not modified, so it can
+     * be shared by simulations running in different threads.
+     */
+    public PriceWindow getLastPrices(LocalDate lastDate, int days) {
+        int last = lastIndexNotAfter((int) lastDate.toEpochDay());
+        return new PriceWindow(this, last, last < 0 ? 0 : Math.min(days, last + 1));
+    }
+
+    /**
+     * Moves {@param window} of this series to the prices {@link #getLastPrices(LocalDate, int)} would return, so the
+     * window of a stock can be reused every day. The window must not be read by other threads while it is moved.
+     *
+     * @return the moved window
+     */
+    public PriceWindow getLastPrices(LocalDate lastDate, int days, PriceWindow window) {
+        if (window.getSeries() != this) {
+            throw new IllegalArgumentException("Window of stock " + window.getStockId() + " cannot be moved by series "
+                    + "of stock " + stockId);
+        }
+        int last = lastIndexNotAfter((int) lastDate.toEpochDay());
+        window.move(last, last < 0 ? 0 : Math.min(days, last + 1));
+        return window;
+    }
+
+    /**
+     * @return number of bytes taken by a series of {@param size} prices written by {@link #writeTo(ByteBuffer)}
+     */
+    public static long getBlockSize(int size) {
+        return (long) size * BYTES_PER_PRICE;
+    }
+
+    /**
+     * Writes the series as a block of columns at the position of {@param buffer}: epoch days and volumes as ints,
+     * then unscaled values of open, high, low, close, adjusted and unadjusted close as longs and finally their scales
+     * as bytes. Longs of the block are aligned if the block starts at a position aligned to 8 bytes.
+     */
+    public void writeTo(ByteBuffer buffer) {
+        for (int i = 0; i < size; i++) {
+            buffer.putInt(epochDays[i]);
+        }
+        for (int i = 0; i < size; i++) {
+            buffer.putInt(volumes[i]);
+        }
+        DecimalColumn[] decimalColumns = {open, high, low, close, adjustedClose, unadjustedClose};
+        for (DecimalColumn column : decimalColumns) {
+            for (int i = 0; i < size; i++) {
+                buffer.putLong(column.getUnscaledValue(i));
+            }
+        }
+        for (DecimalColumn column : decimalColumns) {
+            for (int i = 0; i < size; i++) {
+                buffer.put((byte) column.getScale(i));
+            }
+        }
+    }
+
+    /**
+     * Reads prices between {@param from} and {@param to} (both inclusive) and {@param warmUpDays} prices before
+     * {@param from} from a block written by {@link #writeTo(ByteBuffer)} which starts at position 0 of {@param block}.
+     * The dates are searched in the block directly and only the selected range of the columns is copied.
+     *
+     * @param size number of prices in the block
+     * @return the selected prices or null if there is no price in the range
+     */
+    public static PriceSeries readFrom(ByteBuffer block, long stockId, int size, LocalDate from, LocalDate to,
+                                       int warmUpDays) {
+        int first = Math.max(0, searchEpochDay(block, size, (int) from.toEpochDay()) - warmUpDays);
+        int end = searchEpochDay(block, size, (int) to.toEpochDay() + 1);
+        int length = end - first;
+        if (length <= 0) {
+            return null;
+        }
+
+        int[] epochDays = new int[length];
+        ((ByteBuffer) block.duplicate().position(first * Integer.BYTES)).asIntBuffer().get(epochDays);
+        int[] volumes = new int[length];
+        ((ByteBuffer) block.duplicate().position((size + first) * Integer.BYTES)).asIntBuffer().get(volumes);
+        DecimalColumn[] decimalColumns = new DecimalColumn[DECIMAL_COLUMNS];
+        int unscaledValuesStart = 2 * size * Integer.BYTES;
+        int scalesStart = unscaledValuesStart + DECIMAL_COLUMNS * size * Long.BYTES;
+        for (int column = 0; column < DECIMAL_COLUMNS; column++) {
+            long[] unscaledValues = new long[length];
+            ((ByteBuffer) block.duplicate().position(unscaledValuesStart + (column * size + first) * Long.BYTES))
+                    .asLongBuffer().get(unscaledValues);
+            byte[] scales = new byte[length];
+            ((ByteBuffer) block.duplicate().position(scalesStart + column * size + first)).get(scales);
+            decimalColumns[column] = new DecimalColumn(unscaledValues, scales);
+        }
+        return new PriceSeries(stockId, epochDays, volumes, decimalColumns);
+    }
+
+    /**
+     * @return index of the first price in the block which is not before {@param epochDay}
+     */
+    private static int searchEpochDay(ByteBuffer block, int size, int epochDay) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (block.getInt(middle * Integer.BYTES) < epochDay) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return index of the last price which is not after {@param epochDay}, -1 if there is no such price
+     */
+    private int lastIndexNotAfter(int epochDay) {
+        int index = Arrays.binarySearch(epochDays, 0, size, epochDay);
+        return index >= 0 ? index : -index - 2;
+    }
+
+    int getEpochDay(int index) {
+        return epochDays[index];
+    }
+
+    BigDecimal getOpen(int index) {
+        return open.get(index);
+    }
+
+    BigDecimal getHigh(int index) {
+        return high.get(index);
+    }
+
+    BigDecimal getLow(int index) {
+        return low.get(index);
+    }
+
+    BigDecimal getClose(int index) {
+        return close.get(index);
+    }
+
+    BigDecimal getAdjustedClose(int index) {
+        return adjustedClose.get(index);
+    }
+
+    Money getAdjustedClosePrice(int index) {
+        return Money.of(adjustedClose.getUnscaledValue(index), adjustedClose.getScale(index));
+    }
+
+    long getAdjustedCloseUnscaledValue(int index) {
+        return adjustedClose.getUnscaledValue(index);
+    }
+
+    int getAdjustedCloseScale(int index) {
+        return adjustedClose.getScale(index);
+    }
+
+    BigDecimal getUnadjustedClose(int index) {
+        return unadjustedClose.get(index);
+    }
+
+    int getVolume(int index) {
+        return volumes[index];
+    }
+
+    /**
+     * Appends prices of one stock. Prices have to be added ordered by date ascending.
+     */
+    public static class Builder {
+        private static final int INITIAL_CAPACITY = 256;
+
+        private final long stockId;
+        private int size;
+        private int[] epochDays = new int[INITIAL_CAPACITY];
+        private final DecimalColumn open = new DecimalColumn(INITIAL_CAPACITY);
+        private final DecimalColumn high = new DecimalColumn(INITIAL_CAPACITY);
+        private final DecimalColumn low = new DecimalColumn(INITIAL_CAPACITY);
+        private final DecimalColumn close = new DecimalColumn(INITIAL_CAPACITY);
+        private final DecimalColumn adjustedClose = new DecimalColumn(INITIAL_CAPACITY);
+        private final DecimalColumn unadjustedClose = new DecimalColumn(INITIAL_CAPACITY);
+        private int[] volumes = new int[INITIAL_CAPACITY];
+
+        private Builder(long stockId) {
+            this.stockId = stockId;
+        }
+
+        public Builder add(LocalDate date, BigDecimal open, BigDecimal high, BigDecimal low, BigDecimal close,
+                           int volume, BigDecimal adjustedClose, BigDecimal unadjustedClose) {
+            int epochDay = (int) date.toEpochDay();
+            if (size > 0 && epochDays[size - 1] >= epochDay) {
+                throw new IllegalArgumentException("Prices of stock " + stockId + " are not ordered by date, "
+                        + date + " added after " + LocalDate.ofEpochDay(epochDays[size - 1]));
+            }
+            if (size == epochDays.length) {
+                grow(size * 2);
+            }
+            epochDays[size] = epochDay;
+            this.open.set(size, open);
+            this.high.set(size, high);
+            this.low.set(size, low);
+            this.close.set(size, close);
+            this.adjustedClose.set(size, adjustedClose);
+            this.unadjustedClose.set(size, unadjustedClose);
+            volumes[size] = volume;
+            size++;
+            return this;
+        }
+
+        public Builder add(HistoricalDailyPrice price) {
+            return add(price.getDate().toLocalDate(), price.getOpen(), price.getHigh(), price.getLow(), price.getClose(),
+                    price.getVolume(), price.getAdjustedClose(), price.getUnadjustedClose());
+        }
+
+        private void grow(int capacity) {
+            epochDays = Arrays.copyOf(epochDays, capacity);
+            open.grow(capacity);
+            high.grow(capacity);
+            low.grow(capacity);
+            close.grow(capacity);
+            adjustedClose.grow(capacity);
+            unadjustedClose.grow(capacity);
+            volumes = Arrays.copyOf(volumes, capacity);
+        }
+
+        public PriceSeries build() {
+            return new PriceSeries(this);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.hesoun.model;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Read-only view of the last prices of a {@link PriceSeries} ordered by date descending, index 0 points to the newest
+ * price. No prices are copied when the window is created. A window walked day by day can be moved by
+ * {@link PriceSeries#getLastPrices(LocalDate, int, PriceWindow)} instead of creating a new one every day.
+ *
+ * @author Jakub Hesoun
+ */
+public class PriceWindow {
+    private final PriceSeries series;
+    //index of the newest price in the series
+    private int first;
+    private int size;
+
+    PriceWindow(PriceSeries series, int first, int size) {
+        this.series = series;
+        this.first = first;
+        this.size = size;
+    }
+
+    PriceSeries getSeries() {
+        return series;
+    }
+
+    void move(int first, int size) {
+        this.first = first;
+        this.size = size;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public long getStockId() {
+        return series.getStockId();
+    }
+
+    public int getEpochDay(int index) {
+        return series.getEpochDay(toSeriesIndex(index));
+    }
+
+    public LocalDate getDate(int index) {
+        return LocalDate.ofEpochDay(getEpochDay(index));
+    }
+
+    public BigDecimal getAdjustedClose(int index) {
+        return series.getAdjustedClose(toSeriesIndex(index));
+    }
+
+    /**
+     * @return adjusted close converted into {@link Money} straight from the stored unscaled value
+     */
+    public Money getAdjustedClosePrice(int index) {
+        return series.getAdjustedClosePrice(toSeriesIndex(index));
+    }
+
+    /**
+     * @return unscaled value of the adjusted close, it is read together with {@link #getAdjustedCloseScale(int)}
+     * by calculations which do not create {@link BigDecimal}s
+     */
+    public long getAdjustedCloseUnscaledValue(int index) {
+        return series.getAdjustedCloseUnscaledValue(toSeriesIndex(index));
+    }
+
+    public int getAdjustedCloseScale(int index) {
+        return series.getAdjustedCloseScale(toSeriesIndex(index));
+    }
+
+    public BigDecimal getHigh(int index) {
+        return series.getHigh(toSeriesIndex(index));
+    }
+
+    public BigDecimal getLow(int index) {
+        return series.getLow(toSeriesIndex(index));
+    }
+
+    public BigDecimal getClose(int index) {
+        return series.getClose(toSeriesIndex(index));
+    }
+
+    /**
+     * @return adjusted close prices of this window ordered by date descending, values are created on access
+     */
+    public List<BigDecimal> getAdjustedCloses() {
+        return new AdjustedCloses();
+    }
+
+    /**
+     * Creates {@link HistoricalDailyPrice} entity for price on given {@param index}.
+     */
+    public HistoricalDailyPrice getPrice(int index) {
+        int i = toSeriesIndex(index);
+        return HistoricalDailyPrice.builder()
+                .date(LocalDate.ofEpochDay(series.getEpochDay(i)).atStartOfDay())
+                .open(series.getOpen(i))
+                .high(series.getHigh(i))
+                .low(series.getLow(i))
+                .close(series.getClose(i))
+                .volume(series.getVolume(i))
+                .adjustedClose(series.getAdjustedClose(i))
+                .unadjustedClose(series.getUnadjustedClose(i))
+                .stockId(series.getStockId())
+                .build();
+    }
+
+    private int toSeriesIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return first - index;
+    }
+
+    private class AdjustedCloses extends AbstractList<BigDecimal> implements RandomAccess {
+        @Override
+        public BigDecimal get(int index) {
+            return getAdjustedClose(index);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.hesoun.model;
+
+import com.hesoun.AosException;
+
+import java.text.MessageFormat;
+import java.util.Comparator;
+
+/**
+ * Compares two {@link Stock}s according to their rank given by the strategy, lower rank first.
+ *
+ * @author Jakub Hesoun
+ */
+public class RankComparator implements Comparator<Stock> {
+    @Override
+    public int compare(Stock o1, Stock o2) {
+        if (o1.getRank() == null || o2.getRank() == null) {
+            throw new AosException(MessageFormat.format(
+                    "Cannot compare stock when rank is null.stock1={0},stock2={1}", o1, o2));
+        }
+        if (o1 == o2) {
+            return 0;
+        }
+        return o1.getRank().compareTo(o2.getRank());
+    }
+}
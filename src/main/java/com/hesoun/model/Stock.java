@@ -5,6 +5,7 @@ import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.ToString;
 
+import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
@@ -16,9 +17,9 @@ import static java.text.MessageFormat.format;
  *
  * @author Jakub Hesoun
  */
-@Builder
+@Builder(toBuilder = true)
 @Data
-@ToString(exclude = "openPositions")
+@ToString(exclude = {"openPositions", "priceWindow"})
 @EqualsAndHashCode(of = {"id", "symbol", "exchange"})
 public class Stock {
     private long id;
@@ -29,21 +30,42 @@ public class Stock {
     private LocalDate firstTradedDate;
     private LocalDateTime inserted;
     private List<HistoricalDailyPrice> historicalDailyPrices;
+    //last prices used by the simulation, it takes precedence over historicalDailyPrices
+    private transient PriceWindow priceWindow;
     private List<Position> openPositions;
     //not persisted @Transient from JPA would be more accurate
     private transient Indicators currentIndicators;
+    //rank of the buy candidate given by the simulated strategy, lower is bought first
+    private transient BigDecimal rank;
 
     /**
-     * @return first element in {@link #historicalDailyPrices} list. It should always point to the prices for current buyDate
+     * @return first element in {@link #priceWindow} or {@link #historicalDailyPrices} list. It should always point
+     * to the prices for current buyDate
      */
     public HistoricalDailyPrice getTodayPrices() {
-        if (historicalDailyPrices.isEmpty()) {
+        if (priceWindow != null) {
+            if (priceWindow.isEmpty()) {
+                throw new IllegalStateException(format("price window is empty for stock {0}", name));
+            }
+            return priceWindow.getPrice(0);
+        }
+        if (historicalDailyPrices == null || historicalDailyPrices.isEmpty()) {
             throw new IllegalStateException(format("historical daily prices is empty for stock {0}", name));
         }
 
         return historicalDailyPrices.get(0);
     }
 
+    /**
+     * @return today's adjusted close price, see {@link #getTodayPrices()}
+     */
+    public Money getTodayAdjustedClose() {
+        if (priceWindow != null && !priceWindow.isEmpty()) {
+            return priceWindow.getAdjustedClosePrice(0);
+        }
+        return Money.of(getTodayPrices().getAdjustedClose());
+    }
+
     public void addOpenPosition(Position position) {
         openPositions.add(position);
     }
@@ -0,0 +1,119 @@
+package com.hesoun.model;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Set of trading days, i.e. days for which at least one price exists. It is built once and then answers all the
+ * lookups in constant time, so the simulator and the extractor do not have to ask the DB whether given day is a
+ * trading day.
+ * <p>
+ * Days are held as sorted epoch days together with a table of how many trading days precede each calendar day of the
+ * covered range.
+ *
+ * @author Jakub Hesoun
+ */
+public class TradingCalendar {
+    private final int[] tradingDays;
+    private final int firstEpochDay;
+    //tradingDaysBefore[i] = number of trading days before firstEpochDay + i, length is the covered range + 1
+    private final int[] tradingDaysBefore;
+
+    private TradingCalendar(int[] sortedDistinctEpochDays) {
+        this.tradingDays = sortedDistinctEpochDays;
+        if (tradingDays.length == 0) {
+            firstEpochDay = 0;
+            tradingDaysBefore = new int[]{0};
+            return;
+        }
+        firstEpochDay = tradingDays[0];
+        int range = tradingDays[tradingDays.length - 1] - firstEpochDay + 1;
+        tradingDaysBefore = new int[range + 1];
+        int count = 0;
+        for (int offset = 0, next = 0; offset < range; offset++) {
+            tradingDaysBefore[offset] = count;
+            if (tradingDays[next] - firstEpochDay == offset) {
+                count++;
+                next++;
+            }
+        }
+        tradingDaysBefore[range] = count;
+    }
+
+    public static TradingCalendar of(Collection<LocalDate> dates) {
+        return new TradingCalendar(dates.stream()
+                .mapToInt(date -> (int) date.toEpochDay())
+                .sorted()
+                .distinct()
+                .toArray());
+    }
+
+    /**
+     * Creates calendar of all the days for which at least one of {@param series} has a price.
+     */
+    public static TradingCalendar fromPriceSeries(Iterable<PriceSeries> series) {
+        int size = 0;
+        int[] days = new int[0];
+        for (PriceSeries s : series) {
+            if (size + s.size() > days.length) {
+                days = Arrays.copyOf(days, Math.max(days.length * 2, size + s.size()));
+            }
+            for (int i = 0; i < s.size(); i++) {
+                days[size++] = s.getEpochDay(i);
+            }
+        }
+        return new TradingCalendar(Arrays.stream(days, 0, size).sorted().distinct().toArray());
+    }
+
+    /**
+     * @return number of trading days in the calendar
+     */
+    public int size() {
+        return tradingDays.length;
+    }
+
+    public boolean isTradingDay(LocalDate date) {
+        int offset = toOffset(date);
+        return offset >= 0 && offset < tradingDaysBefore.length - 1
+                && tradingDaysBefore[offset + 1] > tradingDaysBefore[offset];
+    }
+
+    /**
+     * @return the first trading day after {@param date} or {@code null} if there is none
+     */
+    public LocalDate nextTradingDay(LocalDate date) {
+        int index = countTradingDaysBefore(toOffset(date) + 1);
+        return index < tradingDays.length ? LocalDate.ofEpochDay(tradingDays[index]) : null;
+    }
+
+    /**
+     * @return {@param date} if it is a trading day, otherwise the first trading day after it or {@code null} if there
+     * is none
+     */
+    public LocalDate firstTradingDayFrom(LocalDate date) {
+        return isTradingDay(date) ? date : nextTradingDay(date);
+    }
+
+    /**
+     * @return number of trading days between {@param from} inclusive and {@param to} exclusive
+     */
+    public int tradingDaysBetween(LocalDate from, LocalDate to) {
+        return Math.max(0, countTradingDaysBefore(toOffset(to)) - countTradingDaysBefore(toOffset(from)));
+    }
+
+    private int countTradingDaysBefore(int offset) {
+        if (offset <= 0) {
+            return 0;
+        }
+        if (offset >= tradingDaysBefore.length) {
+            return tradingDays.length;
+        }
+        return tradingDaysBefore[offset];
+    }
+
+    private int toOffset(LocalDate date) {
+        long offset = date.toEpochDay() - firstEpochDay;
+        return (int) Math.max(Integer.MIN_VALUE / 2, Math.min(Integer.MAX_VALUE / 2, offset));
+    }
+}
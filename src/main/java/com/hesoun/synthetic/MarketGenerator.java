@@ -0,0 +1,255 @@
+package com.hesoun.synthetic;
+
+import com.hesoun.data.StockRepository;
+import com.hesoun.extracting.Pair;
+import com.hesoun.model.HistoricalDailyPrice;
+import com.hesoun.model.Stock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic generator of daily prices looking like Yahoo data, for load tests and benchmarks without network
+ * and DB. Prices of a symbol depend only on the seed, the symbol and the start, so any symbol can be generated
+ * independently of the others and again with the same result.
+ * <p>
+ * Every stock is listed on a random day after the start, then its close follows a geometric random walk with its own
+ * drift and volatility. Opens gap from the previous close and the gap is occasionally a jump. Volume grows with the
+ * size of the move. Trading days are weekdays without a few market holidays per year given by the seed, and a stock
+ * rarely misses a trading day. Stocks which get expensive are split, closes of the quote and the adjusted closes are
+ * split adjusted the same way Yahoo does it, unadjusted closes are not. Quarterly dividends are included only in the
+ * adjusted closes.
+ * <p>
+ * Prices are adjusted for the splits and dividends until the last generated day, so generating up to a later day
+ * keeps the quote and the unadjusted closes of the earlier days, but not their adjusted closes when a split or
+ * dividend comes in between.
+ *
+ * @author Jakub Hesoun
+ */
+public class MarketGenerator {
+    private static final Logger LOG = LoggerFactory.getLogger(MarketGenerator.class);
+    //yahoo timestamps point to the market open in UTC
+    public static final LocalTime MARKET_OPEN = LocalTime.of(13, 30);
+    public static final String EXCHANGE = "NMS";
+    public static final String CURRENCY = "USD";
+    private static final int TRADING_DAYS_PER_YEAR = 252;
+    private static final int HOLIDAYS_PER_YEAR = 9;
+    private static final double MISSING_DAY_PROBABILITY = 0.001;
+    private static final double JUMP_PROBABILITY = 0.01;
+    private static final double SPLIT_PRICE = 300;
+    private static final double SPLIT_PROBABILITY = 0.01;
+    //stocks are listed during the first ten years
+    private static final int LISTING_DAYS = 3650;
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private final long seed;
+    private final LocalDate start;
+    //holidays indexed by days since the start, extended as later days are generated
+    private final BitSet holidays = new BitSet();
+    private int holidayYears;
+
+    public MarketGenerator(long seed, LocalDate start) {
+        this.seed = seed;
+        this.start = start;
+    }
+
+    /**
+     * @return pairs of symbol and name of {@param count} stocks of the synthetic market, they are the same for every
+     * seed
+     */
+    public static List<Pair<String, String>> getComponents(int count) {
+        List<Pair<String, String>> components = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            String symbol = String.format("S%05d", i);
+            components.add(new Pair<>(symbol, getName(symbol)));
+        }
+        return components;
+    }
+
+    /**
+     * Generates {@param count} stocks with prices until {@param to} (exclusive) and persists them one by one, so
+     * only one of them is held in memory by the generator.
+     */
+    public void populate(StockRepository repository, int count, LocalDate to) {
+        long startTime = System.currentTimeMillis();
+        long prices = 0;
+        for (Pair<String, String> component : getComponents(count)) {
+            Stock stock = generate(component.getLeft(), to);
+            prices += stock.getHistoricalDailyPrices().size();
+            repository.persist(stock);
+        }
+        LOG.info("Generated {} stocks with {} prices until {} in {}ms", count, prices, to,
+                System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * @return stock of {@param symbol} with its prices from the listing until {@param to} (exclusive) ordered by
+     * date ascending, no price if it is listed later
+     */
+    public Stock generate(String symbol, LocalDate to) {
+        Random random = new Random(mix(seed ^ mix(symbol.hashCode() + GOLDEN_GAMMA)));
+        LocalDate listed = start.plusDays(random.nextInt(LISTING_DAYS));
+        double drift = (0.03 + random.nextGaussian() * 0.08) / TRADING_DAYS_PER_YEAR;
+        double volatility = (0.15 + random.nextDouble() * 0.45) / Math.sqrt(TRADING_DAYS_PER_YEAR);
+        double dividendYield = random.nextDouble() < 0.4 ? 0 : random.nextDouble() * 0.04;
+        double baseVolume = Math.exp(11 + random.nextGaussian() * 1.5);
+        double close = 10 + random.nextDouble() * 90;
+
+        List<Bar> bars = new ArrayList<>();
+        for (LocalDate date = listed; date.isBefore(to); date = date.plusDays(1)) {
+            if (!isTradingDay(date)) {
+                continue;
+            }
+            //the random numbers are drawn for every trading day, so the walk does not depend on the missing ones
+            double gap = random.nextGaussian() * volatility * 0.3;
+            if (random.nextDouble() < JUMP_PROBABILITY) {
+                gap += random.nextGaussian() * volatility * 4;
+            }
+            double move = drift - volatility * volatility / 2 + random.nextGaussian() * volatility;
+            double highMove = Math.abs(random.nextGaussian()) * volatility * 0.5;
+            double lowMove = Math.abs(random.nextGaussian()) * volatility * 0.5;
+            double volumeNoise = random.nextGaussian();
+            double splitDraw = random.nextDouble();
+            double missingDraw = random.nextDouble();
+            int splitRatio = random.nextBoolean() ? 2 : 3;
+
+            Bar bar = new Bar(date);
+            bar.open = close * Math.exp(gap);
+            close = Math.max(0.01, bar.open * Math.exp(move - gap));
+            bar.close = close;
+            bar.high = Math.max(bar.open, close) * (1 + highMove);
+            bar.low = Math.min(bar.open, close) * (1 - Math.min(0.5, lowMove));
+            double moveSize = Math.abs(Math.log(close / bar.open)) / volatility;
+            bar.volume = (int) Math.min(Integer.MAX_VALUE, baseVolume * Math.exp(0.4 * volumeNoise) * (1 + moveSize));
+            //dividend is paid at the end of every quarter, it and a split take effect from the next day
+            bar.dividend = dividendYield > 0 && isQuarterEnd(date) ? close * dividendYield / 4 : 0;
+            close -= bar.dividend;
+            if (close > SPLIT_PRICE && splitDraw < SPLIT_PROBABILITY) {
+                bar.splitRatio = splitRatio;
+                close /= splitRatio;
+            }
+            bar.missing = missingDraw < MISSING_DAY_PROBABILITY;
+            bars.add(bar);
+        }
+
+        //adjustment factors go from the last day back
+        List<HistoricalDailyPrice> prices = new ArrayList<>(bars.size());
+        double splitFactor = 1;
+        double dividendFactor = 1;
+        for (int i = bars.size() - 1; i >= 0; i--) {
+            Bar bar = bars.get(i);
+            if (!bar.missing) {
+                prices.add(HistoricalDailyPrice.builder()
+                        .date(bar.date.atTime(MARKET_OPEN))
+                        .open(round(bar.open / splitFactor, 2))
+                        .high(round(bar.high / splitFactor, 2))
+                        .low(round(bar.low / splitFactor, 2))
+                        .close(round(bar.close / splitFactor, 2))
+                        .volume((int) Math.min(Integer.MAX_VALUE, bar.volume * splitFactor))
+                        .adjustedClose(round(bar.close / splitFactor * dividendFactor, 4))
+                        .unadjustedClose(round(bar.close, 2))
+                        .build());
+            }
+            //split and dividend of the day adjust only the previous days
+            if (bar.splitRatio > 0) {
+                splitFactor *= bar.splitRatio;
+            }
+            if (bar.dividend > 0) {
+                dividendFactor *= 1 - bar.dividend / bar.close;
+            }
+        }
+        Collections.reverse(prices);
+        return Stock.builder()
+                .symbol(symbol)
+                .name(getName(symbol))
+                .exchange(EXCHANGE)
+                .currencyCode(CURRENCY)
+                .firstTradedDate(listed)
+                .historicalDailyPrices(prices)
+                .build();
+    }
+
+    /**
+     * @return true if the market is open on {@param date}
+     */
+    public synchronized boolean isTradingDay(LocalDate date) {
+        if (date.getDayOfWeek() == DayOfWeek.SATURDAY || date.getDayOfWeek() == DayOfWeek.SUNDAY) {
+            return false;
+        }
+        if (date.isBefore(start)) {
+            return true;
+        }
+        int year = date.getYear() - start.getYear();
+        while (holidayYears <= year) {
+            addHolidays(holidayYears++);
+        }
+        return !holidays.get((int) (date.toEpochDay() - start.toEpochDay()));
+    }
+
+    private void addHolidays(int year) {
+        Random random = new Random(mix(seed + year * GOLDEN_GAMMA));
+        LocalDate yearStart = start.withDayOfYear(1).plusYears(year);
+        for (int i = 0; i < HOLIDAYS_PER_YEAR; i++) {
+            long day = yearStart.plusDays(random.nextInt(yearStart.lengthOfYear())).toEpochDay() - start.toEpochDay();
+            if (day >= 0) {
+                holidays.set((int) day);
+            }
+        }
+    }
+
+    private boolean isQuarterEnd(LocalDate date) {
+        LocalDate next = date.plusDays(1);
+        while (!isTradingDay(next)) {
+            next = next.plusDays(1);
+        }
+        return next.getMonthValue() != date.getMonthValue() && date.getMonthValue() % 3 == 0;
+    }
+
+    private static String getName(String symbol) {
+        return "Synthetic " + symbol;
+    }
+
+    private static BigDecimal round(double value, int scale) {
+        //same values as parsed from the doubles of the chart JSON
+        return BigDecimal.valueOf(BigDecimal.valueOf(value).setScale(scale, BigDecimal.ROUND_HALF_UP).doubleValue());
+    }
+
+    /**
+     * Scrambles bits of {@param value}, so close seeds give unrelated random sequences.
+     */
+    private static long mix(long value) {
+        long z = value;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Prices of one day before they are adjusted.
+     */
+    private static class Bar {
+        private final LocalDate date;
+        private double open;
+        private double high;
+        private double low;
+        private double close;
+        private int volume;
+        private int splitRatio;
+        private double dividend;
+        //the stock has no price of the day, though the market is open
+        private boolean missing;
+
+        private Bar(LocalDate date) {
+            this.date = date;
+        }
+    }
+}
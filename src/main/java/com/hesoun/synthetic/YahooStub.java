@@ -0,0 +1,223 @@
+package com.hesoun.synthetic;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.hesoun.model.HistoricalDailyPrice;
+import com.hesoun.model.Stock;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Embedded HTTP server answering the chart requests of {@link com.hesoun.extracting.DataExtractor} like the Yahoo
+ * endpoint, with prices of {@link MarketGenerator}. Any symbol can be requested, {@code /<symbol>?period1=..&period2=..}
+ * returns its prices of the days between the periods, which are interpreted in the default time zone the same way the
+ * extractor creates them.
+ *
+ * @author Jakub Hesoun
+ */
+public class YahooStub implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(YahooStub.class);
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final MarketGenerator generator;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    private YahooStub(MarketGenerator generator, HttpServer server, ExecutorService executor) {
+        this.generator = generator;
+        this.server = server;
+        this.executor = executor;
+    }
+
+    /**
+     * Starts the server on {@param port} of the loopback interface, 0 means any free port.
+     *
+     * @param threads number of threads generating the responses
+     */
+    public static YahooStub start(MarketGenerator generator, int port, int threads) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        YahooStub stub = new YahooStub(generator, server, executor);
+        server.createContext("/", stub::handle);
+        server.setExecutor(executor);
+        server.start();
+        LOG.info("Yahoo stub is listening on {}", stub.getUrl());
+        return stub;
+    }
+
+    /**
+     * @return URL to be used as {@link com.hesoun.Config#getYahooUrl()}
+     */
+    public String getUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String symbol = URLDecoder.decode(exchange.getRequestURI().getPath().substring(1), StandardCharsets.UTF_8.name());
+            Map<String, String> parameters = parseQuery(exchange.getRequestURI().getRawQuery());
+            if (symbol.isEmpty() || !parameters.containsKey("period1") || !parameters.containsKey("period2")) {
+                respond(exchange, 404, writeError("Not Found", "No data found, symbol may be delisted"));
+                return;
+            }
+            LocalDate from = toDate(parameters.get("period1"));
+            LocalDate to = toDate(parameters.get("period2"));
+            respond(exchange, 200, writeChart(generator.generate(symbol, to), from));
+        } catch (RuntimeException e) {
+            LOG.error("Request {} failed", exchange.getRequestURI(), e);
+            respond(exchange, 400, writeError("Bad Request", String.valueOf(e.getMessage())));
+        }
+    }
+
+    /**
+     * Writes the chart JSON of the {@param stock} with its prices since {@param from}.
+     */
+    public static byte[] writeChart(Stock stock, LocalDate from) throws IOException {
+        List<HistoricalDailyPrice> prices = new ArrayList<>(stock.getHistoricalDailyPrices().size());
+        for (HistoricalDailyPrice price : stock.getHistoricalDailyPrices()) {
+            if (!price.getDate().toLocalDate().isBefore(from)) {
+                prices.add(price);
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64 + prices.size() * 120);
+        try (JsonGenerator json = JSON_FACTORY.createGenerator(out, JsonEncoding.UTF8)) {
+            json.writeStartObject();
+            json.writeObjectFieldStart("chart");
+            json.writeArrayFieldStart("result");
+            json.writeStartObject();
+
+            json.writeObjectFieldStart("meta");
+            json.writeStringField("currency", stock.getCurrencyCode());
+            json.writeStringField("symbol", stock.getSymbol());
+            json.writeStringField("exchangeName", stock.getExchange());
+            json.writeStringField("instrumentType", "EQUITY");
+            json.writeNumberField("firstTradeDate", toEpochSecond(stock.getFirstTradedDate()));
+            json.writeStringField("dataGranularity", "1d");
+            json.writeEndObject();
+
+            json.writeArrayFieldStart("timestamp");
+            for (HistoricalDailyPrice price : prices) {
+                json.writeNumber(price.getDate().toEpochSecond(ZoneOffset.UTC));
+            }
+            json.writeEndArray();
+
+            json.writeObjectFieldStart("indicators");
+            json.writeArrayFieldStart("quote");
+            json.writeStartObject();
+            writeDoubles(json, "low", prices, price -> price.getLow().doubleValue());
+            writeDoubles(json, "open", prices, price -> price.getOpen().doubleValue());
+            writeDoubles(json, "high", prices, price -> price.getHigh().doubleValue());
+            writeDoubles(json, "close", prices, price -> price.getClose().doubleValue());
+            json.writeArrayFieldStart("volume");
+            for (HistoricalDailyPrice price : prices) {
+                json.writeNumber(price.getVolume());
+            }
+            json.writeEndArray();
+            json.writeEndObject();
+            json.writeEndArray();
+            json.writeArrayFieldStart("unadjclose");
+            json.writeStartObject();
+            writeDoubles(json, "unadjclose", prices, price -> price.getUnadjustedClose().doubleValue());
+            json.writeEndObject();
+            json.writeEndArray();
+            json.writeArrayFieldStart("adjclose");
+            json.writeStartObject();
+            writeDoubles(json, "adjclose", prices, price -> price.getAdjustedClose().doubleValue());
+            json.writeEndObject();
+            json.writeEndArray();
+            json.writeEndObject();
+
+            json.writeEndObject();
+            json.writeEndArray();
+            json.writeNullField("error");
+            json.writeEndObject();
+            json.writeEndObject();
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] writeError(String code, String description) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonGenerator json = JSON_FACTORY.createGenerator(out, JsonEncoding.UTF8)) {
+            json.writeStartObject();
+            json.writeObjectFieldStart("chart");
+            json.writeNullField("result");
+            json.writeObjectFieldStart("error");
+            json.writeStringField("code", code);
+            json.writeStringField("description", description);
+            json.writeEndObject();
+            json.writeEndObject();
+            json.writeEndObject();
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Prices are written as doubles, the parser of the extractor accepts only floating point numbers.
+     */
+    private static void writeDoubles(JsonGenerator json, String name, List<HistoricalDailyPrice> prices,
+                                     ToDoubleFunction<HistoricalDailyPrice> value) throws IOException {
+        json.writeArrayFieldStart(name);
+        for (HistoricalDailyPrice price : prices) {
+            json.writeNumber(value.applyAsDouble(price));
+        }
+        json.writeEndArray();
+    }
+
+    private static long toEpochSecond(LocalDate date) {
+        return date.atStartOfDay(ZoneOffset.UTC).toEpochSecond();
+    }
+
+    private static LocalDate toDate(String epochSecond) {
+        return Instant.ofEpochSecond(Long.parseLong(epochSecond)).atZone(ZoneId.systemDefault()).toLocalDate();
+    }
+
+    private static Map<String, String> parseQuery(String query) throws IOException {
+        Map<String, String> parameters = new HashMap<>();
+        if (query == null) {
+            return parameters;
+        }
+        for (String parameter : query.split("&")) {
+            int separator = parameter.indexOf('=');
+            if (separator > 0) {
+                parameters.put(parameter.substring(0, separator),
+                        URLDecoder.decode(parameter.substring(separator + 1), StandardCharsets.UTF_8.name()));
+            }
+        }
+        return parameters;
+    }
+
+    private static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.hesoun.trading;
+
+import com.hesoun.model.Money;
+
+/**
+ * Provides information about the trading account, e.g. how much money is currently allocated in open positions.
+ *
+ * @author Jakub Hesoun
+ */
+public class AccountService {
+    private final int initialBalance;
+    private final Portfolio portfolio;
+
+    public AccountService(int initialBalance, Portfolio portfolio) {
+        this.initialBalance = initialBalance;
+        this.portfolio = portfolio;
+    }
+
+    /**
+     * @return total amount allocated in all the open positions
+     */
+    public Money getAllocation() {
+        return Money.of(portfolio.getTotalAllocation());
+    }
+
+    /**
+     * @return amount which can still be allocated into new positions
+     */
+    public Money getAvailableBalance() {
+        return Money.of(initialBalance).subtract(getAllocation());
+    }
+}
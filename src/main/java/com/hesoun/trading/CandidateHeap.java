@@ -0,0 +1,121 @@
+package com.hesoun.trading;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+/**
+ * Reusable min-heap of buy candidates given by the index of their stock and their rank. It holds only primitive
+ * arrays which are allocated once, so filling and polling it every day allocates nothing.
+ * <p>
+ * Candidates are polled in the same order as from a {@link java.util.TreeSet} ordered by
+ * {@link com.hesoun.model.RankComparator}: lower rank first and from candidates with equal rank only the first added
+ * one is polled.
+ *
+ * @author Jakub Hesoun
+ */
+class CandidateHeap {
+    private int[] stockIndexes;
+    private BigDecimal[] ranks;
+    //order of adding, it breaks ties of equal ranks
+    private int[] sequences;
+    private int size;
+    private int sequence;
+    private BigDecimal lastPolledRank;
+
+    CandidateHeap(int capacity) {
+        stockIndexes = new int[capacity];
+        ranks = new BigDecimal[capacity];
+        sequences = new int[capacity];
+    }
+
+    void clear() {
+        //ranks are released, so they can be garbage collected
+        Arrays.fill(ranks, 0, size, null);
+        size = 0;
+        sequence = 0;
+        lastPolledRank = null;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void add(int stockIndex, BigDecimal rank) {
+        if (size == stockIndexes.length) {
+            int capacity = Math.max(16, size * 2);
+            stockIndexes = Arrays.copyOf(stockIndexes, capacity);
+            ranks = Arrays.copyOf(ranks, capacity);
+            sequences = Arrays.copyOf(sequences, capacity);
+        }
+        set(size, stockIndex, rank, sequence++);
+        siftUp(size++);
+    }
+
+    /**
+     * @return index of the stock with the lowest rank which has not been polled yet, candidates with the same rank
+     * as the last polled one are skipped, -1 if there are no more candidates
+     */
+    int poll() {
+        while (size > 0) {
+            int stockIndex = stockIndexes[0];
+            BigDecimal rank = ranks[0];
+            size--;
+            set(0, stockIndexes[size], ranks[size], sequences[size]);
+            ranks[size] = null;
+            siftDown(0);
+            if (lastPolledRank == null || rank.compareTo(lastPolledRank) != 0) {
+                lastPolledRank = rank;
+                return stockIndex;
+            }
+        }
+        return -1;
+    }
+
+    private void siftUp(int position) {
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            if (!isLess(position, parent)) {
+                return;
+            }
+            swap(position, parent);
+            position = parent;
+        }
+    }
+
+    private void siftDown(int position) {
+        while (true) {
+            int smallest = position;
+            int left = 2 * position + 1;
+            if (left < size && isLess(left, smallest)) {
+                smallest = left;
+            }
+            if (left + 1 < size && isLess(left + 1, smallest)) {
+                smallest = left + 1;
+            }
+            if (smallest == position) {
+                return;
+            }
+            swap(position, smallest);
+            position = smallest;
+        }
+    }
+
+    private boolean isLess(int first, int second) {
+        int comparison = ranks[first].compareTo(ranks[second]);
+        return comparison < 0 || comparison == 0 && sequences[first] < sequences[second];
+    }
+
+    private void swap(int first, int second) {
+        int stockIndex = stockIndexes[first];
+        BigDecimal rank = ranks[first];
+        int addedSequence = sequences[first];
+        set(first, stockIndexes[second], ranks[second], sequences[second]);
+        set(second, stockIndex, rank, addedSequence);
+    }
+
+    private void set(int position, int stockIndex, BigDecimal rank, int addedSequence) {
+        stockIndexes[position] = stockIndex;
+        ranks[position] = rank;
+        sequences[position] = addedSequence;
+    }
+}
@@ -0,0 +1,82 @@
+package com.hesoun.trading;
+
+import com.hesoun.model.Money;
+import com.hesoun.model.Position;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Portfolio held only in memory. Open positions are indexed by stock id and the total allocation is updated on every
+ * buy and sell, so no operation needs to scan all the positions or to go to DB. Bought positions can be stored into
+ * DB at once when the simulation is finished.
+ *
+ * @author Jakub Hesoun
+ */
+public class InMemoryPortfolio implements Portfolio {
+    private final StrategyParameters parameters;
+    private final List<Position> positions = new ArrayList<>();
+    private final Map<Long, List<Position>> openPositions = new HashMap<>();
+    private final Map<Long, List<Position>> openPositionsView = Collections.unmodifiableMap(openPositions);
+    private int totalAllocation;
+
+    public InMemoryPortfolio(StrategyParameters parameters) {
+        this.parameters = parameters;
+    }
+
+    /**
+     * @return read-only view of the open positions which reflects later buys and sells
+     */
+    @Override
+    public Map<Long, List<Position>> getOpenPositions() {
+        return openPositionsView;
+    }
+
+    @Override
+    public int getTotalAllocation() {
+        return totalAllocation;
+    }
+
+    @Override
+    public void buyPosition(Position position) {
+        position.setId(positions.size() + 1);
+        positions.add(position);
+        long stockId = position.getStock().getId();
+        List<Position> stockPositions = new ArrayList<>(openPositions.getOrDefault(stockId, Collections.emptyList()));
+        stockPositions.add(position);
+        openPositions.put(stockId, Collections.unmodifiableList(stockPositions));
+        totalAllocation += parameters.getSliceAmount(position.getSlice());
+    }
+
+    @Override
+    public void sellPosition(Position position, Money sellPrice, LocalDate sellDate) {
+        if (position.getStatus() != Position.Status.OPEN) {
+            throw new IllegalStateException("Position " + position.getId() + " is not open");
+        }
+        position.setSellPrice(sellPrice);
+        position.setSellDate(sellDate);
+        position.setStatus(Position.Status.CLOSED);
+
+        //lists are replaced rather than modified, callers may be iterating the current one
+        long stockId = position.getStock().getId();
+        List<Position> stockPositions = new ArrayList<>(openPositions.getOrDefault(stockId, Collections.emptyList()));
+        stockPositions.remove(position);
+        if (stockPositions.isEmpty()) {
+            openPositions.remove(stockId);
+        } else {
+            openPositions.put(stockId, Collections.unmodifiableList(stockPositions));
+        }
+        totalAllocation -= parameters.getSliceAmount(position.getSlice());
+    }
+
+    /**
+     * @return all the bought positions, both open and closed, in the order they were bought
+     */
+    public List<Position> getPositions() {
+        return Collections.unmodifiableList(positions);
+    }
+}
@@ -2,15 +2,18 @@ package com.hesoun.trading;
 
 import com.hesoun.model.HistoricalDailyPrice;
 import com.hesoun.model.Indicators;
+import com.hesoun.model.PriceWindow;
 
 import java.math.BigDecimal;
 import java.util.List;
+import java.util.stream.Collectors;
 
 /**
  * @author Jakub Hesoun
  */
 public class IndicatorCalculatorService {
-    private List<HistoricalDailyPrice> priceList;
+    //adjusted close prices ordered by date descending
+    private final List<BigDecimal> adjustedCloses;
 
     public IndicatorCalculatorService(List<HistoricalDailyPrice> priceList) {
         //TODO check if prices are ordered
@@ -20,7 +23,13 @@ public class IndicatorCalculatorService {
 //            }
 //            LocalDateTime lastDate = price.getBuyDate();
 //        }
-        this.priceList = priceList;
+        this.adjustedCloses = priceList.stream()
+                .map(HistoricalDailyPrice::getAdjustedClose)
+                .collect(Collectors.toList());
+    }
+
+    public IndicatorCalculatorService(PriceWindow priceWindow) {
+        this.adjustedCloses = priceWindow.getAdjustedCloses();
     }
 
     public Indicators calculateIndicators() {
@@ -31,22 +40,29 @@ public class IndicatorCalculatorService {
     }
 
     private BigDecimal calculateSimpleMovingAverage(int periodLength) {
-        if (periodLength > priceList.size()) {
-            throw new IllegalArgumentException("Cannot calculate SMA for " + periodLength + " days when there is only " + priceList.size() + " prices");
+        if (periodLength > adjustedCloses.size()) {
+            throw new IllegalArgumentException("Cannot calculate SMA for " + periodLength + " days when there is only " + adjustedCloses.size() + " prices");
         }
-        return priceList.stream()
-                .limit(periodLength)
-                .map(HistoricalDailyPrice::getAdjustedClose)
-                .reduce(BigDecimal.ZERO, BigDecimal::add)
-                .divide(BigDecimal.valueOf(periodLength), BigDecimal.ROUND_HALF_UP);
+        BigDecimal sum = BigDecimal.ZERO;
+        for (int i = 0; i < periodLength; i++) {
+            sum = sum.add(adjustedCloses.get(i));
+        }
+        return average(sum, periodLength);
+    }
+
+    /**
+     * Divides sum of {@param periodLength} prices. Result keeps the scale of the sum.
+     */
+    static BigDecimal average(BigDecimal sum, int periodLength) {
+        return sum.divide(BigDecimal.valueOf(periodLength), BigDecimal.ROUND_HALF_UP);
     }
 
     private BigDecimal calculateRSI(int periodLength) {
         BigDecimal gains = BigDecimal.ZERO;
         BigDecimal loses = BigDecimal.ZERO;
-        BigDecimal lastPrice = priceList.get(periodLength).getAdjustedClose();
+        BigDecimal lastPrice = adjustedCloses.get(periodLength);
         for (int i = periodLength - 1; i >= 0; i--) {
-            BigDecimal actualPrice = priceList.get(i).getAdjustedClose();
+            BigDecimal actualPrice = adjustedCloses.get(i);
             if (actualPrice.compareTo(lastPrice) > 0) {
                 gains = gains.add(actualPrice.subtract(lastPrice));
             } else {
@@ -54,6 +70,13 @@ public class IndicatorCalculatorService {
             }
             lastPrice = actualPrice;
         }
+        return relativeStrengthIndex(gains, loses, periodLength);
+    }
+
+    /**
+     * Calculates RSI from sum of gains and sum of loses over last {@param periodLength} days.
+     */
+    static BigDecimal relativeStrengthIndex(BigDecimal gains, BigDecimal loses, int periodLength) {
         if (gains.compareTo(BigDecimal.ZERO) == 0) {
             //no gains, RSI = 0
             return BigDecimal.ZERO;
@@ -64,10 +87,12 @@ public class IndicatorCalculatorService {
         //100 - 100/(1 + (avg gains/ avg loses))
         BigDecimal avgGains = gains.divide(BigDecimal.valueOf(periodLength), BigDecimal.ROUND_HALF_UP);
         BigDecimal avgLoses = loses.divide(BigDecimal.valueOf(periodLength), BigDecimal.ROUND_HALF_UP);
+        if (avgLoses.signum() == 0) {
+            //loses are too small to be represented in the scale of the prices, same as no loses
+            return BigDecimal.ONE;
+        }
         BigDecimal relativeStrength = avgGains.divide(avgLoses, BigDecimal.ROUND_HALF_UP);
         BigDecimal fraction = BigDecimal.valueOf(100).divide(BigDecimal.ONE.add(relativeStrength), BigDecimal.ROUND_HALF_UP);
         return BigDecimal.valueOf(100).subtract(fraction);
-
-
     }
 }
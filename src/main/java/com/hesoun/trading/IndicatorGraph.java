@@ -0,0 +1,71 @@
+package com.hesoun.trading;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Distinct indicators required by all the simulated strategies together with the indicators they are calculated from.
+ * Every indicator is calculated only once per stock and day, no matter how many strategies or parameter sets use it.
+ * <p>
+ * Indicators are ordered so that inputs of every indicator precede it, the per-stock calculations are created by
+ * {@link #newState()}. The graph itself is immutable and can be shared by threads.
+ *
+ * @author Jakub Hesoun
+ */
+class IndicatorGraph {
+    private final List<IndicatorSpec> specs = new ArrayList<>();
+    private final Map<IndicatorSpec, Integer> indexes = new HashMap<>();
+
+    IndicatorGraph(Collection<IndicatorSpec> required) {
+        for (IndicatorSpec spec : required) {
+            add(spec);
+        }
+    }
+
+    private void add(IndicatorSpec spec) {
+        if (indexes.containsKey(spec)) {
+            return;
+        }
+        //inputs first, so they get lower index
+        for (IndicatorSpec input : spec.getInputs()) {
+            add(input);
+        }
+        indexes.put(spec, specs.size());
+        specs.add(spec);
+    }
+
+    /**
+     * @return all the indicators ordered by their dependencies
+     */
+    List<IndicatorSpec> getSpecs() {
+        return Collections.unmodifiableList(specs);
+    }
+
+    /**
+     * @return index of the indicator in {@link #getSpecs()} or -1 if it is not in the graph
+     */
+    int indexOf(IndicatorSpec spec) {
+        Integer index = indexes.get(spec);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * @return new calculation of all the indicators of one stock
+     */
+    IndicatorState newState() {
+        IndicatorNode[] nodes = new IndicatorNode[specs.size()];
+        for (int i = 0; i < nodes.length; i++) {
+            IndicatorSpec spec = specs.get(i);
+            List<IndicatorNode> inputs = new ArrayList<>();
+            for (IndicatorSpec input : spec.getInputs()) {
+                inputs.add(nodes[indexOf(input)]);
+            }
+            nodes[i] = spec.getType().createNode(spec, inputs);
+        }
+        return new IndicatorState(this, nodes);
+    }
+}
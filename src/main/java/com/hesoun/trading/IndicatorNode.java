@@ -0,0 +1,46 @@
+package com.hesoun.trading;
+
+import com.hesoun.model.PriceWindow;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+
+/**
+ * Stateful calculation of one indicator of one stock in {@link IndicatorGraph}. It is fed every price once, in the
+ * order of dates, after all its inputs have been fed the same price.
+ *
+ * @author Jakub Hesoun
+ */
+interface IndicatorNode {
+
+    /**
+     * Adds the price on {@param index} of {@param window}, which is the next price after the last added one. Nodes
+     * read only the columns they need, so no price object is created for nodes calculating in long arithmetic.
+     */
+    void add(PriceWindow window, int index);
+
+    /**
+     * @return value after the last added price or null if there have not been enough prices
+     */
+    BigDecimal getValue();
+
+    /**
+     * Writes the state, so the calculation can be continued by {@link #readFrom(DataInput)} in another run.
+     *
+     * @throws UnsupportedOperationException if the state of the indicator cannot be written
+     */
+    default void writeTo(DataOutput out) throws IOException {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " cannot be written");
+    }
+
+    /**
+     * Reads the state written by {@link #writeTo(DataOutput)} into this node, which has not been fed any price yet.
+     *
+     * @throws UnsupportedOperationException if the state of the indicator cannot be read
+     */
+    default void readFrom(DataInput in) throws IOException {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " cannot be read");
+    }
+}
@@ -0,0 +1,133 @@
+package com.hesoun.trading;
+
+import lombok.EqualsAndHashCode;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Identifies an indicator with its parameters, for example SMA(200). Specs are compared by value, so the same
+ * indicator required by more strategies is calculated only once by {@link IndicatorGraph}.
+ * <p>
+ * All the indicators are calculated from adjusted prices.
+ *
+ * @author Jakub Hesoun
+ */
+@EqualsAndHashCode
+public final class IndicatorSpec {
+    private final IndicatorType type;
+    private final int[] parameters;
+
+    private IndicatorSpec(IndicatorType type, int... parameters) {
+        for (int parameter : parameters) {
+            if (parameter <= 0) {
+                throw new IllegalArgumentException("Parameters of " + type + " have to be positive but were "
+                        + Arrays.toString(parameters));
+            }
+        }
+        this.type = type;
+        this.parameters = parameters;
+    }
+
+    /**
+     * Simple moving average, rounded to the scale of the prices like {@link IndicatorCalculatorService}.
+     */
+    public static IndicatorSpec sma(int period) {
+        return new IndicatorSpec(IndicatorType.SMA, period);
+    }
+
+    /**
+     * RSI from simple averages of gains and loses, rounded to integer like {@link IndicatorCalculatorService}.
+     */
+    public static IndicatorSpec rsi(int period) {
+        return new IndicatorSpec(IndicatorType.RSI, period);
+    }
+
+    /**
+     * Exponential moving average, seeded by SMA of the first {@param period} prices.
+     */
+    public static IndicatorSpec ema(int period) {
+        return new IndicatorSpec(IndicatorType.EMA, period);
+    }
+
+    /**
+     * RSI from gains and loses smoothed by Wilder's moving average.
+     */
+    public static IndicatorSpec wilderRsi(int period) {
+        return new IndicatorSpec(IndicatorType.WILDER_RSI, period);
+    }
+
+    public static IndicatorSpec trueRange() {
+        return new IndicatorSpec(IndicatorType.TRUE_RANGE);
+    }
+
+    /**
+     * Average true range, smoothed by Wilder's moving average.
+     */
+    public static IndicatorSpec atr(int period) {
+        return new IndicatorSpec(IndicatorType.ATR, period);
+    }
+
+    /**
+     * Population standard deviation of the prices.
+     */
+    public static IndicatorSpec standardDeviation(int period) {
+        return new IndicatorSpec(IndicatorType.STANDARD_DEVIATION, period);
+    }
+
+    /**
+     * SMA plus {@param width} standard deviations.
+     */
+    public static IndicatorSpec bollingerUpper(int period, int width) {
+        return new IndicatorSpec(IndicatorType.BOLLINGER_UPPER, period, width);
+    }
+
+    /**
+     * SMA minus {@param width} standard deviations.
+     */
+    public static IndicatorSpec bollingerLower(int period, int width) {
+        return new IndicatorSpec(IndicatorType.BOLLINGER_LOWER, period, width);
+    }
+
+    /**
+     * MACD line, the difference between the fast and the slow EMA.
+     */
+    public static IndicatorSpec macd(int fastPeriod, int slowPeriod) {
+        return new IndicatorSpec(IndicatorType.MACD, fastPeriod, slowPeriod);
+    }
+
+    /**
+     * EMA of the MACD line.
+     */
+    public static IndicatorSpec macdSignal(int fastPeriod, int slowPeriod, int signalPeriod) {
+        return new IndicatorSpec(IndicatorType.MACD_SIGNAL, fastPeriod, slowPeriod, signalPeriod);
+    }
+
+    /**
+     * Difference between the MACD line and its signal line.
+     */
+    public static IndicatorSpec macdHistogram(int fastPeriod, int slowPeriod, int signalPeriod) {
+        return new IndicatorSpec(IndicatorType.MACD_HISTOGRAM, fastPeriod, slowPeriod, signalPeriod);
+    }
+
+    public IndicatorType getType() {
+        return type;
+    }
+
+    public int getParameter(int index) {
+        return parameters[index];
+    }
+
+    /**
+     * @return indicators this one is calculated from
+     */
+    List<IndicatorSpec> getInputs() {
+        return type.getInputs(this);
+    }
+
+    @Override
+    public String toString() {
+        return type + Arrays.stream(parameters).mapToObj(String::valueOf).collect(Collectors.joining(",", "(", ")"));
+    }
+}
@@ -0,0 +1,100 @@
+package com.hesoun.trading;
+
+import com.hesoun.model.PriceWindow;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+
+/**
+ * Indicators of the {@link IndicatorGraph} calculated for one stock. It is fed all the new prices of the stock every
+ * day, so the cost of one update does not depend on the periods of the indicators.
+ * <p>
+ * The state of SMA and RSI can be written and read again, so the signal continues with the next price where the
+ * previous run stopped.
+ *
+ * @author Jakub Hesoun
+ */
+class IndicatorState implements IndicatorValues {
+    private final IndicatorGraph graph;
+    //ordered the same way as the specs of the graph
+    private final IndicatorNode[] nodes;
+    private int lastEpochDay = Integer.MIN_VALUE;
+    private long lastUnscaledPrice;
+    private int lastScale;
+
+    IndicatorState(IndicatorGraph graph, IndicatorNode[] nodes) {
+        this.graph = graph;
+        this.nodes = nodes;
+    }
+
+    /**
+     * Adds all the prices from {@param priceWindow} which are newer than the last added one, the oldest first.
+     */
+    void update(PriceWindow priceWindow) {
+        int newPrices = 0;
+        while (newPrices < priceWindow.size() && priceWindow.getEpochDay(newPrices) > lastEpochDay) {
+            newPrices++;
+        }
+        for (int i = newPrices - 1; i >= 0; i--) {
+            for (IndicatorNode node : nodes) {
+                node.add(priceWindow, i);
+            }
+        }
+        if (newPrices > 0) {
+            lastEpochDay = priceWindow.getEpochDay(0);
+            lastUnscaledPrice = priceWindow.getAdjustedCloseUnscaledValue(0);
+            lastScale = priceWindow.getAdjustedCloseScale(0);
+        }
+    }
+
+    /**
+     * @return epoch day of the newest added price, {@link Integer#MIN_VALUE} if there is none
+     */
+    int getLastEpochDay() {
+        return lastEpochDay;
+    }
+
+    /**
+     * @return newest added adjusted close, null if no price has been added
+     */
+    BigDecimal getLastPrice() {
+        return lastEpochDay == Integer.MIN_VALUE ? null : BigDecimal.valueOf(lastUnscaledPrice, lastScale);
+    }
+
+    /**
+     * Writes the newest price and the states of all the indicators.
+     *
+     * @throws UnsupportedOperationException if some of the indicators cannot be written
+     */
+    void writeTo(DataOutput out) throws IOException {
+        out.writeInt(lastEpochDay);
+        out.writeLong(lastUnscaledPrice);
+        out.writeInt(lastScale);
+        for (IndicatorNode node : nodes) {
+            node.writeTo(out);
+        }
+    }
+
+    /**
+     * Reads the state written by {@link #writeTo(DataOutput)} of the same graph into this new state.
+     */
+    void readFrom(DataInput in) throws IOException {
+        lastEpochDay = in.readInt();
+        lastUnscaledPrice = in.readLong();
+        lastScale = in.readInt();
+        for (IndicatorNode node : nodes) {
+            node.readFrom(in);
+        }
+    }
+
+    @Override
+    public BigDecimal get(IndicatorSpec spec) {
+        int index = graph.indexOf(spec);
+        if (index < 0) {
+            throw new IllegalArgumentException("Indicator " + spec + " is not calculated");
+        }
+        return nodes[index].getValue();
+    }
+}
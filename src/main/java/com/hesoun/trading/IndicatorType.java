@@ -0,0 +1,554 @@
+package com.hesoun.trading;
+
+import com.hesoun.model.PriceWindow;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Kinds of indicators which can be computed by {@link IndicatorGraph}. Every kind declares the indicators it is
+ * calculated from and creates its calculation, for example EMA is seeded by SMA of the same period and MACD is the
+ * difference of two EMAs, so they are shared with strategies using them directly.
+ * <p>
+ * SMA and RSI are calculated exactly the same way as by {@link IndicatorCalculatorService}, the others are rounded
+ * to 16 digits ({@link MathContext#DECIMAL64}).
+ *
+ * @author Jakub Hesoun
+ */
+public enum IndicatorType {
+    SMA {
+        @Override
+        IndicatorNode createNode(IndicatorSpec spec, List<IndicatorNode> inputs) {
+            return new Sma(spec.getParameter(0));
+        }
+    },
+    RSI {
+        @Override
+        IndicatorNode createNode(IndicatorSpec spec, List<IndicatorNode> inputs) {
+            return new Rsi(spec.getParameter(0));
+        }
+    },
+    EMA {
+        @Override
+        List<IndicatorSpec> getInputs(IndicatorSpec spec) {
+            return Collections.singletonList(IndicatorSpec.sma(spec.getParameter(0)));
+        }
+
+        @Override
+        IndicatorNode createNode(IndicatorSpec spec, List<IndicatorNode> inputs) {
+            return new Ema(spec.getParameter(0), inputs.get(0));
+        }
+    },
+    WILDER_RSI {
+        @Override
+        IndicatorNode createNode(IndicatorSpec spec, List<IndicatorNode> inputs) {
+            return new WilderRsi(spec.getParameter(0));
+        }
+    },
+    TRUE_RANGE {
+        @Override
+        IndicatorNode createNode(IndicatorSpec spec, List<IndicatorNode> inputs) {
+            return new TrueRange();
+        }
+    },
+    ATR {
+        @Override
+        List<IndicatorSpec> getInputs(IndicatorSpec spec) {
+            return Collections.singletonList(IndicatorSpec.trueRange());
+        }
+
+        @Override
+        IndicatorNode createNode(IndicatorSpec spec, List<IndicatorNode> inputs) {
+            return new Smoothed(new SmoothedAverage(spec.getParameter(0), wilderFactor(spec.getParameter(0))),
+                    inputs.get(0));
+        }
+    },
+    STANDARD_DEVIATION {
+        @Override
+        IndicatorNode createNode(IndicatorSpec spec, List<IndicatorNode> inputs) {
+            return new StandardDeviation(spec.getParameter(0));
+        }
+    },
+    BOLLINGER_UPPER {
+        @Override
+        List<IndicatorSpec> getInputs(IndicatorSpec spec) {
+            return Arrays.asList(IndicatorSpec.sma(spec.getParameter(0)),
+                    IndicatorSpec.standardDeviation(spec.getParameter(0)));
+        }
+
+        @Override
+        IndicatorNode createNode(IndicatorSpec spec, List<IndicatorNode> inputs) {
+            return new Band(inputs.get(0), inputs.get(1), spec.getParameter(1));
+        }
+    },
+    BOLLINGER_LOWER {
+        @Override
+        List<IndicatorSpec> getInputs(IndicatorSpec spec) {
+            return BOLLINGER_UPPER.getInputs(spec);
+        }
+
+        @Override
+        IndicatorNode createNode(IndicatorSpec spec, List<IndicatorNode> inputs) {
+            return new Band(inputs.get(0), inputs.get(1), -spec.getParameter(1));
+        }
+    },
+    MACD {
+        @Override
+        List<IndicatorSpec> getInputs(IndicatorSpec spec) {
+            return Arrays.asList(IndicatorSpec.ema(spec.getParameter(0)), IndicatorSpec.ema(spec.getParameter(1)));
+        }
+
+        @Override
+        IndicatorNode createNode(IndicatorSpec spec, List<IndicatorNode> inputs) {
+            return new Difference(inputs.get(0), inputs.get(1));
+        }
+    },
+    MACD_SIGNAL {
+        @Override
+        List<IndicatorSpec> getInputs(IndicatorSpec spec) {
+            return Collections.singletonList(IndicatorSpec.macd(spec.getParameter(0), spec.getParameter(1)));
+        }
+
+        @Override
+        IndicatorNode createNode(IndicatorSpec spec, List<IndicatorNode> inputs) {
+            return new Smoothed(new SmoothedAverage(spec.getParameter(2), emaFactor(spec.getParameter(2))),
+                    inputs.get(0));
+        }
+    },
+    MACD_HISTOGRAM {
+        @Override
+        List<IndicatorSpec> getInputs(IndicatorSpec spec) {
+            return Arrays.asList(IndicatorSpec.macd(spec.getParameter(0), spec.getParameter(1)),
+                    IndicatorSpec.macdSignal(spec.getParameter(0), spec.getParameter(1), spec.getParameter(2)));
+        }
+
+        @Override
+        IndicatorNode createNode(IndicatorSpec spec, List<IndicatorNode> inputs) {
+            return new Difference(inputs.get(0), inputs.get(1));
+        }
+    };
+
+    private static final MathContext MATH = MathContext.DECIMAL64;
+    private static final BigDecimal HUNDRED = BigDecimal.valueOf(100);
+
+    /**
+     * @return indicators which have to be calculated before the indicator of given {@param spec}
+     */
+    List<IndicatorSpec> getInputs(IndicatorSpec spec) {
+        return Collections.emptyList();
+    }
+
+    /**
+     * @param inputs nodes of {@link #getInputs(IndicatorSpec)} in the same order
+     */
+    abstract IndicatorNode createNode(IndicatorSpec spec, List<IndicatorNode> inputs);
+
+    private static BigDecimal emaFactor(int period) {
+        return BigDecimal.valueOf(2).divide(BigDecimal.valueOf(period + 1), MATH);
+    }
+
+    private static BigDecimal wilderFactor(int period) {
+        return BigDecimal.ONE.divide(BigDecimal.valueOf(period), MATH);
+    }
+
+    /**
+     * Square root rounded to {@link #MATH}. Java 8 has no {@code BigDecimal.sqrt}, so the double estimate is refined
+     * by Newton iterations, each of them doubles the number of correct digits.
+     *
+     * @param value non-negative number
+     */
+    static BigDecimal sqrt(BigDecimal value) {
+        if (value.signum() == 0) {
+            return BigDecimal.ZERO;
+        }
+        BigDecimal two = BigDecimal.valueOf(2);
+        BigDecimal root = BigDecimal.valueOf(Math.sqrt(value.doubleValue()));
+        //double has at least 15 correct digits, two iterations give more than the 34 digits of DECIMAL128
+        for (int i = 0; i < 2; i++) {
+            root = root.add(value.divide(root, MathContext.DECIMAL128)).divide(two, MathContext.DECIMAL128);
+        }
+        return root.round(MATH);
+    }
+
+    /**
+     * SMA calculated in long arithmetic from the unscaled prices, so the daily update creates no objects. The value is
+     * created when it is read.
+     */
+    private static class Sma implements IndicatorNode {
+        private final int period;
+        private final LongRollingSum sum;
+        private int count;
+        //value of the current day, null if it has not been read yet
+        private BigDecimal value;
+
+        private Sma(int period) {
+            this.period = period;
+            this.sum = new LongRollingSum(period);
+        }
+
+        @Override
+        public void add(PriceWindow window, int index) {
+            sum.add(window.getAdjustedCloseUnscaledValue(index), window.getAdjustedCloseScale(index));
+            count++;
+            value = null;
+        }
+
+        @Override
+        public BigDecimal getValue() {
+            if (count < period) {
+                return null;
+            }
+            //strategies may read the value concurrently, they all create the same immutable value
+            BigDecimal result = value;
+            if (result == null) {
+                result = IndicatorCalculatorService.average(sum.getSum(), period);
+                value = result;
+            }
+            return result;
+        }
+
+        @Override
+        public void writeTo(DataOutput out) throws IOException {
+            out.writeInt(count);
+            sum.writeTo(out);
+        }
+
+        @Override
+        public void readFrom(DataInput in) throws IOException {
+            count = in.readInt();
+            sum.readFrom(in);
+            value = null;
+        }
+    }
+
+    /**
+     * RSI calculated in long arithmetic the same way as {@link Sma}.
+     */
+    private static class Rsi implements IndicatorNode {
+        private final int period;
+        private final LongRollingSum gains;
+        private final LongRollingSum loses;
+        private long lastUnscaledPrice;
+        private int lastScale;
+        private int count;
+        //value of the current day, null if it has not been read yet
+        private BigDecimal value;
+
+        private Rsi(int period) {
+            this.period = period;
+            this.gains = new LongRollingSum(period);
+            this.loses = new LongRollingSum(period);
+        }
+
+        @Override
+        public void add(PriceWindow window, int index) {
+            long unscaledPrice = window.getAdjustedCloseUnscaledValue(index);
+            int scale = window.getAdjustedCloseScale(index);
+            if (count > 0) {
+                try {
+                    addChange(unscaledPrice, scale);
+                } catch (ArithmeticException e) {
+                    //the prices do not fit into a long at the same scale
+                    BigDecimal change = BigDecimal.valueOf(unscaledPrice, scale)
+                            .subtract(BigDecimal.valueOf(lastUnscaledPrice, lastScale));
+                    if (change.signum() > 0) {
+                        gains.add(change);
+                        loses.skip();
+                    } else {
+                        gains.skip();
+                        loses.add(change.negate());
+                    }
+                }
+            }
+            lastUnscaledPrice = unscaledPrice;
+            lastScale = scale;
+            count++;
+            value = null;
+        }
+
+        private void addChange(long unscaledPrice, int scale) {
+            //difference of decimals has the greater of their scales
+            int changeScale = Math.max(scale, lastScale);
+            long price = LongRollingSum.rescale(unscaledPrice, scale, changeScale);
+            long lastPrice = LongRollingSum.rescale(lastUnscaledPrice, lastScale, changeScale);
+            if (price > lastPrice) {
+                gains.add(Math.subtractExact(price, lastPrice), changeScale);
+                loses.skip();
+            } else {
+                gains.skip();
+                loses.add(Math.subtractExact(lastPrice, price), changeScale);
+            }
+        }
+
+        @Override
+        public BigDecimal getValue() {
+            if (count <= period) {
+                return null;
+            }
+            BigDecimal result = value;
+            if (result == null) {
+                result = IndicatorCalculatorService.relativeStrengthIndex(gains.getSum(), loses.getSum(), period);
+                value = result;
+            }
+            return result;
+        }
+
+        @Override
+        public void writeTo(DataOutput out) throws IOException {
+            out.writeInt(count);
+            out.writeLong(lastUnscaledPrice);
+            out.writeInt(lastScale);
+            gains.writeTo(out);
+            loses.writeTo(out);
+        }
+
+        @Override
+        public void readFrom(DataInput in) throws IOException {
+            count = in.readInt();
+            lastUnscaledPrice = in.readLong();
+            lastScale = in.readInt();
+            gains.readFrom(in);
+            loses.readFrom(in);
+            value = null;
+        }
+    }
+
+    private static class Ema implements IndicatorNode {
+        private final BigDecimal factor;
+        private final IndicatorNode sma;
+        private BigDecimal value;
+
+        private Ema(int period, IndicatorNode sma) {
+            this.factor = emaFactor(period);
+            this.sma = sma;
+        }
+
+        @Override
+        public void add(PriceWindow window, int index) {
+            if (value == null) {
+                //seeded on the first day SMA of the same period is known
+                value = sma.getValue();
+            } else {
+                BigDecimal price = window.getAdjustedClose(index);
+                value = value.add(factor.multiply(price.subtract(value), MATH), MATH);
+            }
+        }
+
+        @Override
+        public BigDecimal getValue() {
+            return value;
+        }
+    }
+
+    private static class WilderRsi implements IndicatorNode {
+        private final SmoothedAverage gains;
+        private final SmoothedAverage loses;
+        private BigDecimal lastPrice;
+        private BigDecimal value;
+
+        private WilderRsi(int period) {
+            this.gains = new SmoothedAverage(period, wilderFactor(period));
+            this.loses = new SmoothedAverage(period, wilderFactor(period));
+        }
+
+        @Override
+        public void add(PriceWindow window, int index) {
+            BigDecimal price = window.getAdjustedClose(index);
+            if (lastPrice != null) {
+                BigDecimal change = price.subtract(lastPrice);
+                gains.add(change.signum() > 0 ? change : BigDecimal.ZERO);
+                loses.add(change.signum() < 0 ? change.negate() : BigDecimal.ZERO);
+            }
+            lastPrice = price;
+            if (gains.getValue() == null) {
+                return;
+            }
+            if (loses.getValue().signum() == 0) {
+                value = HUNDRED;
+            } else {
+                BigDecimal relativeStrength = gains.getValue().divide(loses.getValue(), MATH);
+                value = HUNDRED.subtract(HUNDRED.divide(BigDecimal.ONE.add(relativeStrength), MATH));
+            }
+        }
+
+        @Override
+        public BigDecimal getValue() {
+            return value;
+        }
+    }
+
+    /**
+     * Range of the day extended to the previous close. Only close prices are adjusted, so high and low are adjusted
+     * by the ratio of the adjusted close and the close of the same day.
+     */
+    private static class TrueRange implements IndicatorNode {
+        private BigDecimal previousClose;
+        private BigDecimal value;
+
+        @Override
+        public void add(PriceWindow window, int index) {
+            BigDecimal price = window.getAdjustedClose(index);
+            BigDecimal close = window.getClose(index);
+            BigDecimal adjustment = close.signum() == 0 ? BigDecimal.ONE : price.divide(close, MATH);
+            BigDecimal high = window.getHigh(index).multiply(adjustment, MATH);
+            BigDecimal low = window.getLow(index).multiply(adjustment, MATH);
+            BigDecimal range = high.subtract(low);
+            if (previousClose != null) {
+                range = range.max(high.subtract(previousClose).abs()).max(low.subtract(previousClose).abs());
+            }
+            previousClose = price;
+            value = range;
+        }
+
+        @Override
+        public BigDecimal getValue() {
+            return value;
+        }
+    }
+
+    private static class StandardDeviation implements IndicatorNode {
+        private final int period;
+        private final LongRollingSum sum;
+        private final LongRollingSum sumOfSquares;
+        private int count;
+        private BigDecimal value;
+
+        private StandardDeviation(int period) {
+            this.period = period;
+            this.sum = new LongRollingSum(period);
+            this.sumOfSquares = new LongRollingSum(period);
+        }
+
+        @Override
+        public void add(PriceWindow window, int index) {
+            BigDecimal price = window.getAdjustedClose(index);
+            sum.add(window.getAdjustedCloseUnscaledValue(index), window.getAdjustedCloseScale(index));
+            sumOfSquares.add(price.multiply(price));
+            if (++count >= period) {
+                BigDecimal length = BigDecimal.valueOf(period);
+                BigDecimal mean = sum.getSum().divide(length, MATH);
+                BigDecimal variance = sumOfSquares.getSum().divide(length, MATH).subtract(mean.multiply(mean, MATH));
+                value = sqrt(variance.max(BigDecimal.ZERO));
+            }
+        }
+
+        @Override
+        public BigDecimal getValue() {
+            return value;
+        }
+    }
+
+    /**
+     * SMA shifted by {@code width} standard deviations.
+     */
+    private static class Band implements IndicatorNode {
+        private final IndicatorNode sma;
+        private final IndicatorNode standardDeviation;
+        private final BigDecimal width;
+        private BigDecimal value;
+
+        private Band(IndicatorNode sma, IndicatorNode standardDeviation, int width) {
+            this.sma = sma;
+            this.standardDeviation = standardDeviation;
+            this.width = BigDecimal.valueOf(width);
+        }
+
+        @Override
+        public void add(PriceWindow window, int index) {
+            if (sma.getValue() != null && standardDeviation.getValue() != null) {
+                value = sma.getValue().add(standardDeviation.getValue().multiply(width), MATH);
+            }
+        }
+
+        @Override
+        public BigDecimal getValue() {
+            return value;
+        }
+    }
+
+    private static class Difference implements IndicatorNode {
+        private final IndicatorNode minuend;
+        private final IndicatorNode subtrahend;
+        private BigDecimal value;
+
+        private Difference(IndicatorNode minuend, IndicatorNode subtrahend) {
+            this.minuend = minuend;
+            this.subtrahend = subtrahend;
+        }
+
+        @Override
+        public void add(PriceWindow window, int index) {
+            if (minuend.getValue() != null && subtrahend.getValue() != null) {
+                value = minuend.getValue().subtract(subtrahend.getValue(), MATH);
+            }
+        }
+
+        @Override
+        public BigDecimal getValue() {
+            return value;
+        }
+    }
+
+    /**
+     * Smoothed average of the values of another indicator, the days it has no value are skipped.
+     */
+    private static class Smoothed implements IndicatorNode {
+        private final SmoothedAverage average;
+        private final IndicatorNode input;
+
+        private Smoothed(SmoothedAverage average, IndicatorNode input) {
+            this.average = average;
+            this.input = input;
+        }
+
+        @Override
+        public void add(PriceWindow window, int index) {
+            if (input.getValue() != null) {
+                average.add(input.getValue());
+            }
+        }
+
+        @Override
+        public BigDecimal getValue() {
+            return average.getValue();
+        }
+    }
+
+    /**
+     * Moving average seeded by simple average of the first {@code period} values, every next value moves it by
+     * {@code factor} of the difference. The factor is 2/(period+1) for EMA and 1/period for Wilder's average.
+     */
+    private static class SmoothedAverage {
+        private final int period;
+        private final BigDecimal factor;
+        private BigDecimal sum = BigDecimal.ZERO;
+        private int count;
+        private BigDecimal value;
+
+        private SmoothedAverage(int period, BigDecimal factor) {
+            this.period = period;
+            this.factor = factor;
+        }
+
+        private void add(BigDecimal term) {
+            if (value != null) {
+                value = value.add(factor.multiply(term.subtract(value), MATH), MATH);
+                return;
+            }
+            sum = sum.add(term);
+            if (++count == period) {
+                value = sum.divide(BigDecimal.valueOf(period), MATH);
+            }
+        }
+
+        private BigDecimal getValue() {
+            return value;
+        }
+    }
+}
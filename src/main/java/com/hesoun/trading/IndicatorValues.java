@@ -0,0 +1,20 @@
+package com.hesoun.trading;
+
+import java.math.BigDecimal;
+
+/**
+ * Values of the indicators of one stock for the current day.
+ * <p>
+ * Values stay {@link BigDecimal}, so strategies compare prices and ranks exactly like the original calculation. The
+ * indicators update their state in primitives and create a value only when it is read.
+ *
+ * @author Jakub Hesoun
+ */
+public interface IndicatorValues {
+
+    /**
+     * @return value of the indicator or null if there have not been enough prices to calculate it yet
+     * @throws IllegalArgumentException if the indicator is not provided
+     */
+    BigDecimal get(IndicatorSpec spec);
+}
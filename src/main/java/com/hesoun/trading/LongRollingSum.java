@@ -0,0 +1,261 @@
+package com.hesoun.trading;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * Sum of the terms added during the last {@code length} steps. Every step adds at most one term and the term which
+ * falls out of the window is subtracted, so both operations take constant time.
+ * <p>
+ * Terms are decimals given as unscaled longs and scales, like they are stored in {@link com.hesoun.model.PriceSeries},
+ * so adding a term creates no objects. The sum is held as a long at the maximal scale added so far. Prices with many
+ * decimal places do not fit into a long when they are summed, in such case the sum falls back to an exact
+ * {@link BigDecimal} and stays in it, which creates objects again but keeps the result.
+ * <p>
+ * {@link BigDecimal#divide(BigDecimal, int)} keeps the scale of the dividend, so the scale of the sum matters for
+ * the result. {@link #getSum()} therefore returns the sum with exactly the scale it would have if the terms in the
+ * window were added to {@link BigDecimal#ZERO} one by one. The maximal scale in the window is tracked by a monotonic
+ * queue.
+ *
+ * @author Jakub Hesoun
+ */
+class LongRollingSum {
+    private static final long[] POWERS_OF_TEN = new long[19];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private final int length;
+    //terms of the last length steps, present is false when no term has been added in given step
+    private final long[] unscaledTerms;
+    private final int[] scales;
+    private final boolean[] present;
+    //terms whose unscaled value does not fit into a long, created only when there is such a term
+    private BigDecimal[] bigTerms;
+    private long sum;
+    private int sumScale;
+    //exact sum once the long overflows, null before
+    private BigDecimal bigSum;
+    private long step;
+
+    //monotonic queue of (step, scale) with decreasing scales, head holds the maximal scale in the window
+    private final long[] queueSteps;
+    private final int[] queueScales;
+    private int queueHead;
+    private int queueSize;
+
+    LongRollingSum(int length) {
+        if (length <= 0) {
+            throw new IllegalArgumentException("Length of the rolling sum has to be positive but was " + length);
+        }
+        this.length = length;
+        this.unscaledTerms = new long[length];
+        this.scales = new int[length];
+        this.present = new boolean[length];
+        this.queueSteps = new long[length];
+        this.queueScales = new int[length];
+    }
+
+    /**
+     * Moves the window by one step and adds the term {@code unscaledValue * 10^-scale} into it.
+     */
+    void add(long unscaledValue, int scale) {
+        int slot = move();
+        unscaledTerms[slot] = unscaledValue;
+        scales[slot] = scale;
+        present[slot] = true;
+        if (bigSum == null) {
+            try {
+                int newScale = Math.max(scale, sumScale);
+                long newSum = rescale(sum, sumScale, newScale);
+                sum = Math.addExact(newSum, rescale(unscaledValue, scale, newScale));
+                sumScale = newScale;
+            } catch (ArithmeticException e) {
+                bigSum = sumTerms();
+            }
+        } else {
+            bigSum = bigSum.add(BigDecimal.valueOf(unscaledValue, scale));
+        }
+        enqueue(scale);
+    }
+
+    /**
+     * Moves the window by one step and adds {@param term} into it. Use {@link #add(long, int)} where possible, this
+     * is meant for the terms which may not fit into a long.
+     */
+    void add(BigDecimal term) {
+        if (term.unscaledValue().bitLength() < Long.SIZE) {
+            add(term.unscaledValue().longValue(), term.scale());
+            return;
+        }
+        int slot = move();
+        if (bigTerms == null) {
+            bigTerms = new BigDecimal[length];
+        }
+        bigTerms[slot] = term;
+        scales[slot] = term.scale();
+        present[slot] = true;
+        bigSum = bigSum == null ? sumTerms() : bigSum.add(term);
+        enqueue(term.scale());
+    }
+
+    /**
+     * Moves the window by one step without adding a term.
+     */
+    void skip() {
+        move();
+        step++;
+    }
+
+    /**
+     * Removes the term which falls out of the window.
+     *
+     * @return slot of the current step
+     */
+    private int move() {
+        int slot = (int) (step % length);
+        if (present[slot]) {
+            present[slot] = false;
+            if (bigSum != null) {
+                bigSum = bigSum.subtract(getTerm(slot));
+            } else {
+                try {
+                    sum = Math.subtractExact(sum, rescale(unscaledTerms[slot], scales[slot], sumScale));
+                } catch (ArithmeticException e) {
+                    bigSum = sumTerms();
+                }
+            }
+            if (bigTerms != null) {
+                bigTerms[slot] = null;
+            }
+        }
+        if (queueSize > 0 && queueSteps[queueHead] <= step - length) {
+            queueHead = (queueHead + 1) % length;
+            queueSize--;
+        }
+        return slot;
+    }
+
+    private void enqueue(int scale) {
+        while (queueSize > 0 && queueScales[(queueHead + queueSize - 1) % length] <= scale) {
+            queueSize--;
+        }
+        int tail = (queueHead + queueSize) % length;
+        queueSteps[tail] = step;
+        queueScales[tail] = scale;
+        queueSize++;
+        step++;
+    }
+
+    private BigDecimal getTerm(int slot) {
+        if (bigTerms != null && bigTerms[slot] != null) {
+            return bigTerms[slot];
+        }
+        return BigDecimal.valueOf(unscaledTerms[slot], scales[slot]);
+    }
+
+    /**
+     * @return exact sum of the terms present in the window, used when the long sum overflows
+     */
+    private BigDecimal sumTerms() {
+        BigDecimal result = BigDecimal.ZERO;
+        for (int slot = 0; slot < length; slot++) {
+            if (present[slot]) {
+                result = result.add(getTerm(slot));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return exact sum of the terms in the window
+     */
+    BigDecimal getSum() {
+        int scale = queueSize == 0 ? 0 : Math.max(0, queueScales[queueHead]);
+        if (bigSum != null) {
+            //the value is exact at this scale, so no rounding happens
+            return bigSum.setScale(scale, BigDecimal.ROUND_UNNECESSARY);
+        }
+        //all the terms in the window have at most this scale, so the division is exact, a sum which is a multiple of
+        //a power of ten greater than a long can only be zero
+        long unscaledSum = sumScale - scale < POWERS_OF_TEN.length ? sum / powerOfTen(sumScale - scale) : 0;
+        return BigDecimal.valueOf(unscaledSum, scale);
+    }
+
+    /**
+     * Writes the terms of the window, the sum and the queue are not written as they are derived from the terms.
+     */
+    void writeTo(DataOutput out) throws IOException {
+        out.writeInt(length);
+        out.writeLong(step);
+        for (long i = Math.max(0, step - length); i < step; i++) {
+            int slot = (int) (i % length);
+            writeDecimal(out, present[slot] ? getTerm(slot) : null);
+        }
+    }
+
+    /**
+     * Reads the window written by {@link #writeTo(DataOutput)} into this sum, which has no term yet. The terms are
+     * added again in their original steps.
+     */
+    void readFrom(DataInput in) throws IOException {
+        int writtenLength = in.readInt();
+        if (writtenLength != length || step != 0) {
+            throw new IOException("Rolling sum of " + writtenLength + " terms cannot be read into sum of " + length
+                    + " terms at step " + step);
+        }
+        long writtenStep = in.readLong();
+        step = Math.max(0, writtenStep - length);
+        while (step < writtenStep) {
+            BigDecimal term = readDecimal(in);
+            if (term == null) {
+                skip();
+            } else {
+                add(term);
+            }
+        }
+    }
+
+    private static void writeDecimal(DataOutput out, BigDecimal value) throws IOException {
+        if (value == null) {
+            out.writeShort(-1);
+            return;
+        }
+        byte[] unscaled = value.unscaledValue().toByteArray();
+        out.writeShort(unscaled.length);
+        out.write(unscaled);
+        out.writeInt(value.scale());
+    }
+
+    private static BigDecimal readDecimal(DataInput in) throws IOException {
+        short length = in.readShort();
+        if (length < 0) {
+            return null;
+        }
+        byte[] unscaled = new byte[length];
+        in.readFully(unscaled);
+        return new BigDecimal(new BigInteger(unscaled), in.readInt());
+    }
+
+    /**
+     * @return {@param unscaledValue} of {@param scale} converted to {@param newScale}, which is not lower
+     * @throws ArithmeticException if the result does not fit into a long
+     */
+    static long rescale(long unscaledValue, int scale, int newScale) {
+        return newScale == scale ? unscaledValue : Math.multiplyExact(unscaledValue, powerOfTen(newScale - scale));
+    }
+
+    private static long powerOfTen(int exponent) {
+        if (exponent >= POWERS_OF_TEN.length) {
+            throw new ArithmeticException("10^" + exponent + " does not fit into a long");
+        }
+        return POWERS_OF_TEN[exponent];
+    }
+}
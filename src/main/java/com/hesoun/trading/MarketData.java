@@ -0,0 +1,133 @@
+package com.hesoun.trading;
+
+import com.hesoun.AosException;
+import com.hesoun.Config;
+import com.hesoun.data.DailyIndicatorDao;
+import com.hesoun.data.PriceSource;
+import com.hesoun.data.PriceStore;
+import com.hesoun.data.Storage;
+import com.hesoun.data.Universe;
+import com.hesoun.model.IndicatorSeries;
+import com.hesoun.model.PriceSeries;
+import com.hesoun.model.Stock;
+import com.hesoun.model.TradingCalendar;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stocks and their prices loaded once for the whole simulation period. The data is not modified by simulations, so
+ * it can be shared by simulations running at the same time.
+ * <p>
+ * Indicators of the default strategy may be loaded precomputed from DB, then only the last price before the start is
+ * loaded and {@link #getIndicators()} is not null.
+ * <p>
+ * If {@link Config#getUniverseFile()} is set, only the stocks which have ever been members of the {@link Universe}
+ * are loaded and the simulation buys them only on the days they are members.
+ *
+ * @author Jakub Hesoun
+ */
+@Getter
+public class MarketData {
+    private final List<Stock> stocks;
+    private final Map<Long, PriceSeries> priceSeries;
+    private final TradingCalendar calendar;
+    //precomputed SMA200, SMA5 and RSI2 by stock id, null if the simulation calculates them from prices
+    private final Map<Long, IndicatorSeries> indicators;
+    //membership of the stocks in time, null if all the stocks are members for all the time
+    private final Universe universe;
+
+    public MarketData(List<Stock> stocks, Map<Long, PriceSeries> priceSeries) {
+        this(stocks, priceSeries, null, null);
+    }
+
+    public MarketData(List<Stock> stocks, Map<Long, PriceSeries> priceSeries, Map<Long, IndicatorSeries> indicators) {
+        this(stocks, priceSeries, indicators, null);
+    }
+
+    public MarketData(List<Stock> stocks, Map<Long, PriceSeries> priceSeries, Map<Long, IndicatorSeries> indicators,
+                      Universe universe) {
+        this.stocks = Collections.unmodifiableList(stocks);
+        this.priceSeries = Collections.unmodifiableMap(priceSeries);
+        this.calendar = TradingCalendar.fromPriceSeries(priceSeries.values());
+        this.indicators = indicators == null ? null : Collections.unmodifiableMap(indicators);
+        this.universe = universe;
+    }
+
+    /**
+     * @return the same data where only the members of the {@param universe} are kept
+     */
+    public MarketData withUniverse(Universe universe) {
+        List<Stock> members = new ArrayList<>();
+        Map<Long, PriceSeries> memberPrices = new HashMap<>();
+        for (Stock stock : stocks) {
+            if (universe.contains(stock.getSymbol())) {
+                members.add(stock);
+                PriceSeries series = priceSeries.get(stock.getId());
+                if (series != null) {
+                    memberPrices.put(stock.getId(), series);
+                }
+            }
+        }
+        return new MarketData(members, memberPrices, indicators, universe);
+    }
+
+    /**
+     * Loads all the stocks and their prices between {@link Config#getFrom()} and {@link Config#getTo()} including
+     * {@param warmUpDays} prices before the start. They are read from {@link Config#getPriceStore()} if it is set,
+     * otherwise from {@link Storage}.
+     */
+    public static MarketData load(Config config, int warmUpDays) {
+        return withUniverse(config, load(openPriceSource(config), config.getFrom(), config.getTo(), warmUpDays));
+    }
+
+    /**
+     * Loads all the stocks and their prices between {@link Config#getFrom()} and {@link Config#getTo()} together with
+     * their indicators precomputed in DB. Only one price before the start is loaded, no indicator is calculated from
+     * the earlier ones.
+     */
+    public static MarketData loadWithIndicators(Config config) {
+        MarketData prices = load(openPriceSource(config), config.getFrom(), config.getTo(), 1);
+        Map<Long, IndicatorSeries> indicators = new DailyIndicatorDao(config).getIndicatorSeries(config.getFrom(),
+                config.getTo());
+        return withUniverse(config, new MarketData(prices.getStocks(), prices.getPriceSeries(), indicators));
+    }
+
+    public static MarketData load(PriceSource source, LocalDate from, LocalDate to, int warmUpDays) {
+        List<Stock> stocks = source.getAllStock();
+        Map<Long, PriceSeries> priceSeries = source.getPriceSeries(from, to, warmUpDays);
+        return new MarketData(stocks, priceSeries);
+    }
+
+    private static MarketData withUniverse(Config config, MarketData data) {
+        if (config.getUniverseFile() == null) {
+            return data;
+        }
+        try {
+            return data.withUniverse(Universe.load(Paths.get(config.getUniverseFile())));
+        } catch (IOException e) {
+            throw new AosException("Cannot load universe " + config.getUniverseFile(), e);
+        }
+    }
+
+    /**
+     * @return {@link Config#getPriceStore()} if it is set, {@link Storage} otherwise
+     */
+    static PriceSource openPriceSource(Config config) {
+        if (config.getPriceStore() == null) {
+            return Storage.openStored(config);
+        }
+        try {
+            return PriceStore.open(Paths.get(config.getPriceStore()));
+        } catch (IOException e) {
+            throw new AosException("Cannot open price store " + config.getPriceStore(), e);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.hesoun.trading;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static java.text.MessageFormat.format;
+
+/**
+ * The default strategy: stock above its long SMA is bought when its RSI is the lowest one and it is sold when the
+ * price gets above the short SMA.
+ *
+ * @author Jakub Hesoun
+ */
+public class MeanReversionStrategy implements Strategy {
+    private final int longSmaPeriod;
+    private final int shortSmaPeriod;
+    private final int rsiPeriod;
+    private final IndicatorSpec longSma;
+    private final IndicatorSpec shortSma;
+    private final IndicatorSpec rsi;
+
+    public MeanReversionStrategy(int longSmaPeriod, int shortSmaPeriod, int rsiPeriod) {
+        this.longSmaPeriod = longSmaPeriod;
+        this.shortSmaPeriod = shortSmaPeriod;
+        this.rsiPeriod = rsiPeriod;
+        this.longSma = IndicatorSpec.sma(longSmaPeriod);
+        this.shortSma = IndicatorSpec.sma(shortSmaPeriod);
+        this.rsi = IndicatorSpec.rsi(rsiPeriod);
+    }
+
+    @Override
+    public Set<IndicatorSpec> getIndicators() {
+        return Collections.unmodifiableSet(new HashSet<>(Arrays.asList(longSma, shortSma, rsi)));
+    }
+
+    @Override
+    public int getWarmUpDays() {
+        return Math.max(Math.max(longSmaPeriod, shortSmaPeriod), rsiPeriod + 1);
+    }
+
+    @Override
+    public boolean isEntry(BigDecimal price, IndicatorValues indicators) {
+        return price.compareTo(indicators.get(longSma)) > 0;
+    }
+
+    @Override
+    public boolean isExit(BigDecimal price, IndicatorValues indicators) {
+        return price.compareTo(indicators.get(shortSma)) > 0;
+    }
+
+    @Override
+    public BigDecimal getRank(BigDecimal price, IndicatorValues indicators) {
+        return indicators.get(rsi);
+    }
+
+    @Override
+    public String getDescription() {
+        return format("SMA{0}/SMA{1}/RSI{2}", longSmaPeriod, shortSmaPeriod, rsiPeriod);
+    }
+}
@@ -0,0 +1,94 @@
+package com.hesoun.trading;
+
+import com.hesoun.model.Money;
+import com.hesoun.model.Position;
+import com.hesoun.model.PriceWindow;
+import com.hesoun.model.Stock;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tracks equity of a simulation day by day to get its return and maximal drawdown. Open positions are valued by the
+ * last known adjusted close price of their stock.
+ *
+ * @author Jakub Hesoun
+ */
+class PerformanceTracker {
+    private final StrategyParameters parameters;
+    private final String description;
+    private final Money initialBalance;
+    private Money realizedProfit = Money.ZERO;
+    private Money equity;
+    private Money peakEquity;
+    private double maxDrawdown;
+    private int trades;
+
+    PerformanceTracker(StrategyParameters parameters, String description) {
+        this.parameters = parameters;
+        this.description = description;
+        this.initialBalance = Money.of(parameters.getInitialBalance());
+        this.equity = initialBalance;
+        this.peakEquity = initialBalance;
+    }
+
+    void onBuy(Position position) {
+        trades++;
+    }
+
+    /**
+     * Realizes profit of all the open positions of {@param stock} which are going to be sold for today's price.
+     */
+    void onSell(Stock stock) {
+        Money sellPrice = stock.getTodayAdjustedClose();
+        for (Position position : stock.getOpenPositions()) {
+            realizedProfit = realizedProfit.add(profit(position, sellPrice));
+        }
+    }
+
+    /**
+     * Values all the {@param openPositions} at the end of a trading day and updates the drawdown.
+     *
+     * @param openPositions open positions keyed by stock id
+     * @param stocksById    simulated stocks holding their last prices
+     */
+    void onEndOfDay(Map<Long, List<Position>> openPositions, Map<Long, Stock> stocksById) {
+        Money unrealizedProfit = Money.ZERO;
+        for (Map.Entry<Long, List<Position>> entry : openPositions.entrySet()) {
+            Stock stock = stocksById.get(entry.getKey());
+            for (Position position : entry.getValue()) {
+                unrealizedProfit = unrealizedProfit.add(profit(position, lastPrice(stock, position)));
+            }
+        }
+        equity = initialBalance.add(realizedProfit).add(unrealizedProfit);
+        if (equity.compareTo(peakEquity) > 0) {
+            peakEquity = equity;
+        } else {
+            double drawdown = peakEquity.subtract(equity).divide(peakEquity);
+            maxDrawdown = Math.max(maxDrawdown, drawdown);
+        }
+    }
+
+    SimulationResult getResult() {
+        return SimulationResult.builder()
+                .parameters(parameters)
+                .description(description)
+                .finalEquity(equity)
+                .totalReturn(equity.subtract(initialBalance).divide(initialBalance))
+                .maxDrawdown(maxDrawdown)
+                .trades(trades)
+                .build();
+    }
+
+    private static Money lastPrice(Stock stock, Position position) {
+        PriceWindow priceWindow = stock == null ? null : stock.getPriceWindow();
+        if (priceWindow == null || priceWindow.isEmpty()) {
+            return position.getBuyPrice();
+        }
+        return priceWindow.getAdjustedClosePrice(0);
+    }
+
+    private static Money profit(Position position, Money price) {
+        return price.subtract(position.getBuyPrice()).multiply(position.getShares());
+    }
+}
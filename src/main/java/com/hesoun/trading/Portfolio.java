@@ -0,0 +1,34 @@
+package com.hesoun.trading;
+
+import com.hesoun.model.Money;
+import com.hesoun.model.Position;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Holds positions bought during trading. Every simulation works with its own portfolio, so more simulations can run
+ * at the same time.
+ *
+ * @author Jakub Hesoun
+ */
+public interface Portfolio {
+
+    /**
+     * @return open positions of all the stocks, keyed by stock id
+     */
+    Map<Long, List<Position>> getOpenPositions();
+
+    /**
+     * @return total amount of all the open positions
+     */
+    int getTotalAllocation();
+
+    void buyPosition(Position position);
+
+    /**
+     * Closes already bought position with given {@param sellPrice} and {@param sellDate}.
+     */
+    void sellPosition(Position position, Money sellPrice, LocalDate sellDate);
+}
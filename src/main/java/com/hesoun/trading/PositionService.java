@@ -1,12 +1,12 @@
 package com.hesoun.trading;
 
-import com.hesoun.data.PositionDao;
-import com.hesoun.model.Account;
 import com.hesoun.model.Position;
 import com.hesoun.model.Position.Status;
 import com.hesoun.model.Stock;
 
 import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
 /**
@@ -15,38 +15,47 @@ import java.util.Objects;
  * @author Jakub Hesoun
  */
 public class PositionService {
-    private final PositionDao positionDao;
+    private final Portfolio portfolio;
+    private final StrategyParameters parameters;
 
-    public PositionService(PositionDao positionDao) {
-        this.positionDao = positionDao;
+    public PositionService(Portfolio portfolio, StrategyParameters parameters) {
+        this.portfolio = portfolio;
+        this.parameters = parameters;
     }
 
     /**
-     * Buys a position of given stock. It means that it inserts a row in DB with specific buy date and
+     * Buys a position of given stock. It means that it is added into the portfolio with specific buy date and
      * buy price.
      */
     public void buyPosition(Position position) {
         Objects.requireNonNull(position, "position cannot be null");
 
-        positionDao.buyPosition(position);
+        portfolio.buyPosition(position);
     }
 
     /**
      * Sells all open position for given {@param stock} on {@param today}.
-     * It performs DB update and adds sell date and sell price to given row. Also state is changes to {@link Status.CLOSED}
+     * It adds sell date and sell price to given position. Also state is changes to {@link Status.CLOSED}
      */
     public void sellOpenPositions(Stock stock, LocalDate today) {
         for (Position position : stock.getOpenPositions()) {
-            positionDao.sellPosition(position, stock.getTodayPrices().getAdjustedClose(),today);
+            portfolio.sellPosition(position, stock.getTodayAdjustedClose(), today);
         }
     }
 
+    /**
+     * @return open positions of all the stocks, keyed by stock id
+     */
+    public Map<Long, List<Position>> getOpenPositions() {
+        return portfolio.getOpenPositions();
+    }
+
     /**
      * Checks if money management allows to buy given slice. If not, another stock will have to be tried.
      */
     public boolean canBuySlice(Position.Slice slice) {
-        int totalAllocation = positionDao.getTotalAllocation();
-        return slice.getAmount() + totalAllocation <= Account.INITIAL_BALANCE;
+        int totalAllocation = portfolio.getTotalAllocation();
+        return parameters.getSliceAmount(slice) + totalAllocation <= parameters.getInitialBalance();
     }
 
 
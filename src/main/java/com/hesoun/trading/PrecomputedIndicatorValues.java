@@ -0,0 +1,43 @@
+package com.hesoun.trading;
+
+import com.hesoun.model.Indicators;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Indicators of one stock loaded from {@code daily_indicator} table. The instance is reused every day for the same
+ * stock and only the indicators of the day are replaced.
+ *
+ * @author Jakub Hesoun
+ */
+class PrecomputedIndicatorValues implements IndicatorValues {
+    private static final IndicatorSpec SMA200 = IndicatorSpec.sma(200);
+    private static final IndicatorSpec SMA5 = IndicatorSpec.sma(5);
+    private static final IndicatorSpec RSI2 = IndicatorSpec.rsi(2);
+    //indicators which are precomputed in DB
+    static final Set<IndicatorSpec> SPECS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(SMA200, SMA5, RSI2)));
+
+    private Indicators indicators;
+
+    void setIndicators(Indicators indicators) {
+        this.indicators = indicators;
+    }
+
+    @Override
+    public BigDecimal get(IndicatorSpec spec) {
+        if (SMA200.equals(spec)) {
+            return indicators.getSma200();
+        }
+        if (SMA5.equals(spec)) {
+            return indicators.getSma5();
+        }
+        if (RSI2.equals(spec)) {
+            return indicators.getRsi2();
+        }
+        throw new IllegalArgumentException("Indicator " + spec + " is not precomputed");
+    }
+}
@@ -0,0 +1,52 @@
+package com.hesoun.trading;
+
+import com.hesoun.data.PositionRepository;
+import com.hesoun.model.Money;
+import com.hesoun.model.Position;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Portfolio stored in a {@link PositionRepository}. Every operation goes to the repository, with the Postgres one it
+ * is a DB round trip.
+ * <p>
+ * The repository keeps only the slices of the positions, the allocation is priced by the {@link StrategyParameters}
+ * of the portfolio, so a sweep with other slices or balance does not use the amounts of the default ladder.
+ *
+ * @author Jakub Hesoun
+ */
+public class RepositoryPortfolio implements Portfolio {
+    private final PositionRepository positions;
+    private final StrategyParameters parameters;
+
+    public RepositoryPortfolio(PositionRepository positions, StrategyParameters parameters) {
+        this.positions = positions;
+        this.parameters = parameters;
+    }
+
+    @Override
+    public Map<Long, List<Position>> getOpenPositions() {
+        return positions.getOpenPositions();
+    }
+
+    @Override
+    public int getTotalAllocation() {
+        int totalAllocation = 0;
+        for (Map.Entry<Position.Slice, Integer> sliceCount : positions.getOpenSliceCounts().entrySet()) {
+            totalAllocation += parameters.getSliceAmount(sliceCount.getKey()) * sliceCount.getValue();
+        }
+        return totalAllocation;
+    }
+
+    @Override
+    public void buyPosition(Position position) {
+        positions.buyPosition(position);
+    }
+
+    @Override
+    public void sellPosition(Position position, Money sellPrice, LocalDate sellDate) {
+        positions.sellPosition(position, sellPrice, sellDate);
+    }
+}
@@ -0,0 +1,26 @@
+package com.hesoun.trading;
+
+import com.hesoun.extracting.Pair;
+import com.hesoun.model.Position;
+import com.hesoun.model.Stock;
+import lombok.Data;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Trades of the default strategy for the close of one day computed by {@link SignalGenerator}.
+ *
+ * @author Jakub Hesoun
+ */
+@Data
+public class Signal {
+    //day of the newest prices the signal is computed from
+    private final LocalDate date;
+    //stocks whose all open positions are sold
+    private final List<Stock> sells;
+    //stocks meeting the entry rule ordered by rank, the first one is bought first
+    private final List<Stock> candidates;
+    //stock and slice chosen from the candidates after the sells, null if nothing is bought
+    private final Pair<Stock, Position.Slice> buy;
+}
@@ -0,0 +1,354 @@
+package com.hesoun.trading;
+
+import com.hesoun.AosException;
+import com.hesoun.Config;
+import com.hesoun.data.PositionRepository;
+import com.hesoun.data.PriceSource;
+import com.hesoun.data.Storage;
+import com.hesoun.data.Universe;
+import com.hesoun.extracting.Pair;
+import com.hesoun.metrics.Histogram;
+import com.hesoun.metrics.Metrics;
+import com.hesoun.model.Money;
+import com.hesoun.model.Position;
+import com.hesoun.model.PriceSeries;
+import com.hesoun.model.PriceWindow;
+import com.hesoun.model.Stock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import static java.text.MessageFormat.format;
+
+/**
+ * Computes today's trades of the default strategy without simulating the past. SMA200, SMA5 and RSI2 of every stock
+ * are kept in the same {@link IndicatorState}s as the simulation uses, written into
+ * {@link Config#getSignalStateFile()}, so every run loads only the prices after the last run and adds each of them in
+ * constant time. Stocks without a state are warmed up from their last 200 prices. Prices are read from {@link Config#getPriceStore()} if it is set, the same way as
+ * the simulation reads them.
+ * <p>
+ * Open positions whose stock closed above its short SMA are sold. The stocks closing above their long SMA are ranked
+ * by RSI and the stock and slice to buy is selected by {@link TradingService#selectAndGetBuyCandidate(SortedSet)}
+ * after the sells, the same way as the simulation buys. Nothing is written into the positions, the trades are only
+ * reported.
+ *
+ * @author Jakub Hesoun
+ */
+public class SignalGenerator {
+    private static final Logger LOG = LoggerFactory.getLogger(SignalGenerator.class);
+    private static final Histogram SIGNAL_TIME = Metrics.INSTANCE.histogram("signal.time");
+    private static final Histogram UPDATE_TIME = Metrics.INSTANCE.histogram("signal.update");
+    private static final int MAGIC = 0x414F5353;
+    private static final int VERSION = 2;
+
+    private final StrategyParameters parameters;
+    private final Strategy strategy;
+    private final IndicatorGraph graph;
+    private final PriceSource prices;
+    private final PositionRepository positions;
+    //null if all the stored stocks are members
+    private final Universe universe;
+    private final Path stateFile;
+
+    public SignalGenerator(Config config) {
+        this(StrategyParameters.defaults(config.getInitialBalance()), MarketData.openPriceSource(config),
+                Storage.open(config).getPositions(), loadUniverse(config), Paths.get(config.getSignalStateFile()));
+    }
+
+    SignalGenerator(StrategyParameters parameters, PriceSource prices, PositionRepository positions, Universe universe,
+                    Path stateFile) {
+        this.parameters = parameters;
+        this.strategy = parameters.createStrategy();
+        this.graph = new IndicatorGraph(strategy.getIndicators());
+        for (IndicatorSpec spec : graph.getSpecs()) {
+            if (spec.getType() != IndicatorType.SMA && spec.getType() != IndicatorType.RSI) {
+                throw new AosException("Signal state can be kept only for SMA and RSI, not for " + spec);
+            }
+        }
+        this.prices = prices;
+        this.positions = positions;
+        this.universe = universe;
+        this.stateFile = stateFile;
+    }
+
+    private static Universe loadUniverse(Config config) {
+        if (config.getUniverseFile() == null) {
+            return null;
+        }
+        try {
+            return Universe.load(Paths.get(config.getUniverseFile()));
+        } catch (IOException e) {
+            throw new AosException("Cannot load universe " + config.getUniverseFile(), e);
+        }
+    }
+
+    /**
+     * Adds the prices up to {@param date} into the indicator state and computes the trades for the close of the
+     * newest day with prices. The state is written back before the trades are computed.
+     */
+    public Signal generate(LocalDate date) throws IOException {
+        long startTime = System.nanoTime();
+        Map<Long, IndicatorState> states = readState(stateFile, graph);
+        List<Stock> stocks = new ArrayList<>();
+        for (Stock stock : prices.getAllStock()) {
+            if (universe == null || universe.contains(stock.getSymbol())) {
+                stocks.add(stock);
+            }
+        }
+        Map<Long, IndicatorState> updated = update(stocks, states, date);
+        writeState(stateFile, graph, updated);
+
+        Signal signal = evaluate(stocks, updated);
+        SIGNAL_TIME.recordSince(startTime);
+        LOG.info("Signal of {} computed in {}ms: sell {}, {} buy candidates, buy {}", signal.getDate(),
+                (System.nanoTime() - startTime) / 1_000_000, getSymbols(signal.getSells()),
+                signal.getCandidates().size(), signal.getBuy() == null ? "nothing"
+                        : signal.getBuy().getRight() + " of " + signal.getBuy().getLeft().getSymbol());
+        return signal;
+    }
+
+    /**
+     * Feeds the prices after the newest day of the states into the state of every stock. Only prices after that day
+     * are loaded, so states of halted or delisted stocks do not move the load back, they just stay on their last
+     * price. A state which misses prices before that day, and a stock without any state, is warmed up again from
+     * the last prices in a separate query, which is run only if there is such a stock. Stocks without any price get
+     * an empty state, so they are not warmed up again in the next run.
+     *
+     * @return states of the {@param stocks} keyed by stock id
+     * @throws AosException if the states already contain prices after {@param date}
+     */
+    private Map<Long, IndicatorState> update(List<Stock> stocks, Map<Long, IndicatorState> states, LocalDate date) {
+        long startTime = System.nanoTime();
+        Map<Long, IndicatorState> updated = new HashMap<>(stocks.size());
+        List<Long> missing = new ArrayList<>();
+        int newestDay = Integer.MIN_VALUE;
+        for (Stock stock : stocks) {
+            IndicatorState state = states.get(stock.getId());
+            if (state == null) {
+                missing.add(stock.getId());
+            } else {
+                updated.put(stock.getId(), state);
+                newestDay = Math.max(newestDay, state.getLastEpochDay());
+            }
+        }
+        if (newestDay == Integer.MIN_VALUE) {
+            //no state has a price yet, there is nothing to continue
+            missing.addAll(updated.keySet());
+            updated.clear();
+        }
+        if (newestDay > date.toEpochDay()) {
+            throw new AosException(format("Signal state {0} already contains prices of {1}, signal of {2} cannot be "
+                    + "computed from it", stateFile, LocalDate.ofEpochDay(newestDay), date));
+        }
+
+        if (newestDay != Integer.MIN_VALUE && newestDay < date.toEpochDay()) {
+            LocalDate from = LocalDate.ofEpochDay(newestDay + 1L);
+            //the price before from tells whether the new prices continue the state
+            Map<Long, PriceSeries> priceSeries = prices.getPriceSeries(from, date, 1);
+            int updatedCount = 0;
+            for (Map.Entry<Long, PriceSeries> entry : priceSeries.entrySet()) {
+                IndicatorState state = updated.get(entry.getKey());
+                if (state == null) {
+                    continue; //not traded or warmed up below
+                }
+                PriceWindow window = entry.getValue().getLastPrices(date, Integer.MAX_VALUE);
+                if (!continues(state, window, from)) {
+                    updated.remove(entry.getKey());
+                    missing.add(entry.getKey());
+                    continue;
+                }
+                state.update(window);
+                updatedCount++;
+            }
+            LOG.info("Indicators of {} stocks updated with prices from {} to {}", updatedCount, from, date);
+        }
+
+        if (!missing.isEmpty()) {
+            int warmUpDays = parameters.getWarmUpDays();
+            Map<Long, PriceSeries> priceSeries = prices.getPriceSeries(date, date, warmUpDays);
+            for (Long stockId : missing) {
+                IndicatorState state = graph.newState();
+                PriceSeries series = priceSeries.get(stockId);
+                if (series != null) {
+                    state.update(series.getLastPrices(date, Integer.MAX_VALUE));
+                }
+                updated.put(stockId, state);
+            }
+            LOG.info("Indicators of {} stocks warmed up from their last {} prices up to {}", missing.size(),
+                    warmUpDays + 1, date);
+        }
+        UPDATE_TIME.recordSince(startTime);
+        return updated;
+    }
+
+    /**
+     * @param window prices from {@param from} and the one price before it if there is any
+     * @return true if no price is missing between the last price of the {@param state} and the {@param window}
+     */
+    private static boolean continues(IndicatorState state, PriceWindow window, LocalDate from) {
+        int oldest = window.getEpochDay(window.size() - 1);
+        int previousDay = oldest < from.toEpochDay() ? oldest : Integer.MIN_VALUE;
+        return state.getLastEpochDay() == previousDay;
+    }
+
+    /**
+     * Evaluates the stocks which have a price on the newest day, the other ones have not traded.
+     */
+    private Signal evaluate(List<Stock> stocks, Map<Long, IndicatorState> states) {
+        int signalDay = Integer.MIN_VALUE;
+        for (IndicatorState state : states.values()) {
+            signalDay = Math.max(signalDay, state.getLastEpochDay());
+        }
+        if (signalDay == Integer.MIN_VALUE) {
+            throw new AosException("There are no prices to compute the signal from");
+        }
+        LocalDate today = LocalDate.ofEpochDay(signalDay);
+
+        //sells are done in a copy of the portfolio, so they release the allocation before the buy is selected
+        InMemoryPortfolio portfolio = new InMemoryPortfolio(parameters);
+        for (List<Position> stockPositions : positions.getOpenPositions().values()) {
+            for (Position position : stockPositions) {
+                portfolio.buyPosition(position.toBuilder().build());
+            }
+        }
+        TradingService tradingService = new TradingService(
+                new AccountService(parameters.getInitialBalance(), portfolio),
+                new PositionService(portfolio, parameters), parameters);
+
+        List<Stock> sells = new ArrayList<>();
+        SortedSet<Stock> candidates = new TreeSet<>(Comparator.comparing(Stock::getRank)
+                .thenComparing(Stock::getId));
+        for (Stock stock : stocks) {
+            IndicatorState state = states.get(stock.getId());
+            if (state.getLastEpochDay() != signalDay || !isReady(state)) {
+                continue; //no price today or not enough data
+            }
+            BigDecimal price = state.getLastPrice();
+            List<Position> openPositions = portfolio.getOpenPositions().get(stock.getId());
+            if (openPositions != null && strategy.isExit(price, state)) {
+                for (Position position : openPositions) {
+                    portfolio.sellPosition(position, Money.of(price), today);
+                }
+                sells.add(stock);
+            }
+            if ((universe == null || universe.getMember(stock.getSymbol()).isMember(today))
+                    && strategy.isEntry(price, state)) {
+                stock.setRank(strategy.getRank(price, state));
+                candidates.add(stock);
+            }
+        }
+        for (Stock candidate : candidates) {
+            candidate.setOpenPositions(portfolio.getOpenPositions().get(candidate.getId()));
+        }
+        Pair<Stock, Position.Slice> buy = tradingService.selectAndGetBuyCandidate(candidates);
+        return new Signal(today, sells, new ArrayList<>(candidates), buy);
+    }
+
+    private boolean isReady(IndicatorValues values) {
+        for (IndicatorSpec indicator : strategy.getIndicators()) {
+            if (values.get(indicator) == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return states of the indicators of the {@param graph} keyed by stock id, empty if the {@param file} does not
+     * exist
+     * @throws AosException if the states have been written for other indicators
+     */
+    static Map<Long, IndicatorState> readState(Path file, IndicatorGraph graph) throws IOException {
+        Map<Long, IndicatorState> states = new HashMap<>();
+        if (!Files.exists(file)) {
+            LOG.info("There is no signal state {}, indicators are warmed up from the stored prices", file);
+            return states;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new AosException(format("{0} is not a signal state", file));
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new AosException(format("Signal state {0} has unsupported version {1}", file, version));
+            }
+            List<String> specs = new ArrayList<>();
+            for (int i = in.readInt(); i > 0; i--) {
+                specs.add(in.readUTF());
+            }
+            if (!specs.equals(getNames(graph.getSpecs()))) {
+                throw new AosException(format("Signal state {0} contains indicators {1}, not {2}", file, specs,
+                        graph.getSpecs()));
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                long stockId = in.readLong();
+                IndicatorState state = graph.newState();
+                state.readFrom(in);
+                states.put(stockId, state);
+            }
+        }
+        return states;
+    }
+
+    /**
+     * Writes the {@param states} aside and moves them into {@param file}, so a failed run keeps the previous state.
+     */
+    static void writeState(Path file, IndicatorGraph graph, Map<Long, IndicatorState> states) throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, "signal", ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            List<String> specs = getNames(graph.getSpecs());
+            out.writeInt(specs.size());
+            for (String spec : specs) {
+                out.writeUTF(spec);
+            }
+            out.writeInt(states.size());
+            for (Map.Entry<Long, IndicatorState> entry : states.entrySet()) {
+                out.writeLong(entry.getKey());
+                entry.getValue().writeTo(out);
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static List<String> getNames(List<IndicatorSpec> specs) {
+        List<String> names = new ArrayList<>(specs.size());
+        for (IndicatorSpec spec : specs) {
+            names.add(spec.toString());
+        }
+        return names;
+    }
+
+    private static List<String> getSymbols(List<Stock> stocks) {
+        List<String> symbols = new ArrayList<>(stocks.size());
+        for (Stock stock : stocks) {
+            symbols.add(stock.getSymbol());
+        }
+        return symbols;
+    }
+}
@@ -0,0 +1,26 @@
+package com.hesoun.trading;
+
+import com.hesoun.model.Money;
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * Summary of one finished simulation.
+ *
+ * @author Jakub Hesoun
+ */
+@Builder
+@Data
+public class SimulationResult {
+    private final StrategyParameters parameters;
+    //strategy and slices of the simulation
+    private final String description;
+    //initial balance plus realized and unrealized profit at the end of the simulation
+    private final Money finalEquity;
+    //e.g. 0.12 for 12% gain
+    private final double totalReturn;
+    //the biggest drop of equity from its previous peak, e.g. 0.08 for 8%
+    private final double maxDrawdown;
+    //number of bought slices
+    private final int trades;
+}
@@ -1,117 +1,449 @@
 package com.hesoun.trading;
 
+import com.hesoun.AosException;
 import com.hesoun.Config;
-import com.hesoun.data.HistoricalDailyPriceDao;
-import com.hesoun.data.PositionDao;
-import com.hesoun.data.StockDao;
-import com.hesoun.extracting.Pair;
-import com.hesoun.model.*;
+import com.hesoun.data.Storage;
+import com.hesoun.data.Universe;
+import com.hesoun.metrics.Counter;
+import com.hesoun.metrics.Histogram;
+import com.hesoun.metrics.Metrics;
+import com.hesoun.model.IndicatorSeries;
+import com.hesoun.model.Indicators;
+import com.hesoun.model.Position;
+import com.hesoun.model.PriceSeries;
+import com.hesoun.model.PriceWindow;
+import com.hesoun.model.Stock;
+import com.hesoun.model.TradingCalendar;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.math.BigDecimal;
-import java.sql.SQLException;
-import java.time.DayOfWeek;
 import java.time.LocalDate;
-import java.util.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.IntStream;
 
 /**
+ * Simulates trading of given strategies day by day between {@link Config#getFrom()} and {@link Config#getTo()}.
+ * <p>
+ * All the strategies are simulated in lock-step. Every day the indicators required by any of them are calculated
+ * once per stock by {@link IndicatorGraph}, then every {@link StrategySimulation} trades with the shared values.
+ * <p>
+ * With more threads the stocks are split into {@link Config#getSimulationShards()} ranges of consecutive symbols, the
+ * same way as the extraction splits them, and the ranges are balanced between the threads by the fork-join pool.
+ * Stocks are bought only on the days they are members of {@link MarketData#getUniverse()}.
+ *
  * @author Jakub Hesoun
  */
 public class Simulator {
     private static final Logger LOG = LoggerFactory.getLogger(Simulator.class);
+    private static final Histogram LOAD_TIME = Metrics.INSTANCE.histogram("simulation.load");
+    private static final Histogram DAY_TIME = Metrics.INSTANCE.histogram("simulation.day");
+    private static final Histogram INDICATOR_TIME = Metrics.INSTANCE.histogram("simulation.indicators");
+    private static final Histogram PERSIST_TIME = Metrics.INSTANCE.histogram("simulation.persist");
+    private static final Counter DAYS = Metrics.INSTANCE.counter("simulation.days");
+    //more shards than threads let the pool balance ranges of stocks with long and short histories
+    private static final int SHARDS_PER_THREAD = 4;
 
     private final Config config;
-    //TODO JH replace daos with services
-    private final StockDao stockDao;
-    private final HistoricalDailyPriceDao priceDao;
-    private final TradingService tradingService;
-    private final PositionService positionService;
+    private final List<StrategySimulation> simulations;
+    private final IndicatorGraph graph;
+    private final int parallelism;
 
     private List<Stock> stocks;
+    //following arrays are indexed the same way as stocks
+    private PriceSeries[] priceSeries;
+    private IndicatorState[] indicatorStates;
+    //precomputed indicators, null if they are calculated from prices
+    private IndicatorSeries[] indicatorSeries;
+    //windows of the series moved to the current day, created on the first day and reused then
+    private PriceWindow[] lastPrices;
+    //results of the per-stock part of the daily session, null if the stock has no prices yet
+    private PriceWindow[] priceWindows;
+    private IndicatorValues[] indicatorValues;
+    private PrecomputedIndicatorValues[] precomputedValues;
+    //membership in the universe and whether the stock is a member today, null if all the stocks are always members
+    private Universe.Member[] universeMembers;
+    private boolean[] members;
+    //indexes of the stocks ordered by symbol and the starts of the shards in it
+    private int[] symbolOrder;
+    private int[] shardStarts;
+    //tasks are created once and reused every day, they simulate currentDay
+    private ForkJoinPool pool;
+    private IndicatorTask indicatorTask;
+    private StrategiesTask strategiesTask;
+    private LocalDate currentDay;
 
-    public Simulator(Config config) throws SQLException {
+    /**
+     * Creates simulator of the default strategy. Positions are held in memory and stored into {@link Storage} when the
+     * simulation finishes, or read and written directly in the storage if {@link Config#isSimulationInMemory()} is
+     * false.
+     */
+    public Simulator(Config config) {
+        this(config, StrategyParameters.defaults(config.getInitialBalance()), config.getSimulationParallelism());
+    }
+
+    private Simulator(Config config, StrategyParameters parameters, int parallelism) {
+        this(config, parameters, config.isSimulationInMemory()
+                ? new InMemoryPortfolio(parameters)
+                : new RepositoryPortfolio(Storage.open(config).getPositions(), parameters), parallelism);
+    }
+
+    /**
+     * Creates simulator of {@link MeanReversionStrategy} with the periods of {@param parameters}.
+     *
+     * @param parallelism number of threads calculating indicators, 1 means that everything runs in the calling thread
+     */
+    public Simulator(Config config, StrategyParameters parameters, Portfolio portfolio, int parallelism) {
+        this(config, parameters, parameters.createStrategy(), portfolio, parallelism);
+    }
+
+    /**
+     * Creates simulator of a custom {@param strategy}, {@param parameters} give the slices and the initial balance.
+     *
+     * @param parallelism number of threads calculating indicators, 1 means that everything runs in the calling thread
+     */
+    public Simulator(Config config, StrategyParameters parameters, Strategy strategy, Portfolio portfolio,
+                     int parallelism) {
+        this(config, Collections.singletonList(new StrategySimulation(parameters, strategy, portfolio)), parallelism);
+    }
+
+    /**
+     * @param parallelism number of threads calculating indicators and running the simulations
+     */
+    Simulator(Config config, List<StrategySimulation> simulations, int parallelism) {
+        if (simulations.isEmpty()) {
+            throw new IllegalArgumentException("There has to be at least one strategy to simulate");
+        }
         this.config = config;
-        this.stockDao = new StockDao(config);
-        this.priceDao = new HistoricalDailyPriceDao(config);
-        PositionDao positionDao = new PositionDao(config);
-        AccountService accountService = new AccountService(config, positionDao);
-        positionService = new PositionService(positionDao);
-        this.tradingService = new TradingService(accountService, positionService);
-    }
-
-    public void simulate() throws SQLException {
-        stocks = stockDao.getAllStock();
-
-        LocalDate today = config.getFrom();
-        final int periodLength = 200;
-        while (today.isBefore(config.getTo())) {
-            //skip non-trading days
-            if (!isTradingDay(today)) {
-                today = today.plusDays(1);
-                continue;
+        this.simulations = simulations;
+        this.parallelism = parallelism;
+        Set<IndicatorSpec> indicators = new HashSet<>();
+        for (StrategySimulation simulation : simulations) {
+            indicators.addAll(simulation.getStrategy().getIndicators());
+        }
+        this.graph = new IndicatorGraph(indicators);
+    }
+
+    /**
+     * Loads market data and runs the simulation. Indicators precomputed in DB are used if
+     * {@link Config#isIndicatorsDatabase()} is set and the strategies use only the precomputed indicators.
+     */
+    public SimulationResult simulate() {
+        long startTime = System.nanoTime();
+        MarketData marketData = config.isIndicatorsDatabase() && hasPrecomputedIndicators()
+                ? MarketData.loadWithIndicators(config)
+                : MarketData.load(config, getWarmUpDays());
+        LOAD_TIME.recordSince(startTime);
+        SimulationResult result = simulate(marketData);
+        if (config.isSimulationPersistPositions()) {
+            for (StrategySimulation simulation : simulations) {
+                if (simulation.getPortfolio() instanceof InMemoryPortfolio) {
+                    persistPositions((InMemoryPortfolio) simulation.getPortfolio());
+                }
+            }
+        }
+        return result;
+    }
+
+    private void persistPositions(InMemoryPortfolio portfolio) {
+        List<Position> positions = portfolio.getPositions();
+        LOG.info("Persisting {} positions", positions.size());
+        long startTime = System.nanoTime();
+        Storage.open(config).getPositions().insertPositions(positions);
+        PERSIST_TIME.recordSince(startTime);
+    }
+
+    /**
+     * Runs the simulation on already loaded {@param marketData}. Stocks are copied, so the data can be shared by
+     * more simulators at the same time. Precomputed {@link MarketData#getIndicators()} are used instead of
+     * calculating the indicators if they are loaded.
+     *
+     * @return result of the first strategy
+     * @throws AosException if the simulation of the first strategy has failed
+     */
+    public SimulationResult simulate(MarketData marketData) {
+        run(marketData);
+        return simulations.get(0).getResult();
+    }
+
+    /**
+     * Runs the simulations of all the strategies on already loaded {@param marketData}.
+     *
+     * @return results of the simulations which have not failed, in the order of the strategies
+     */
+    List<SimulationResult> simulateAll(MarketData marketData) {
+        run(marketData);
+        List<SimulationResult> results = new ArrayList<>(simulations.size());
+        for (StrategySimulation simulation : simulations) {
+            if (!simulation.isFailed()) {
+                results.add(simulation.getResult());
             }
-            SortedSet<Stock> possibleBuys = new TreeSet<>(new RSIComparator());
+        }
+        return results;
+    }
 
-            //simulate daily trading session for all the stock -> fills possibleBuys Set
-            simulateDailyTradingSession(today, possibleBuys, periodLength);
+    private void run(MarketData marketData) {
+        TradingCalendar calendar = marketData.getCalendar();
+        LOG.info("Simulating {} strategies with {} distinct indicators between {} and {} ({} trading days)",
+                simulations.size(), graph.getSpecs().size(), config.getFrom(), config.getTo(),
+                calendar.tradingDaysBetween(config.getFrom(), config.getTo()));
+        prepare(marketData);
+        try {
+            //non-trading days are skipped
+            for (LocalDate today = calendar.firstTradingDayFrom(config.getFrom());
+                 today != null && today.isBefore(config.getTo());
+                 today = calendar.nextTradingDay(today)) {
+                simulateTradingDay(today);
+            }
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+                pool = null;
+            }
+        }
+    }
+
+    /**
+     * @return number of prices needed before the indicators of all the strategies are known
+     */
+    private int getWarmUpDays() {
+        int warmUpDays = 0;
+        for (StrategySimulation simulation : simulations) {
+            warmUpDays = Math.max(warmUpDays, simulation.getStrategy().getWarmUpDays());
+        }
+        return warmUpDays;
+    }
 
-            Pair<Stock, Position.Slice> buyWinner = tradingService.selectAndGetBuyCandidate(possibleBuys);
-            if (buyWinner == null) {
-                LOG.info("Not buying anything on {}", today);
+    private boolean hasPrecomputedIndicators() {
+        return PrecomputedIndicatorValues.SPECS.containsAll(graph.getSpecs());
+    }
+
+    /**
+     * Copies the stocks of {@param marketData} and sets up the per-stock state, trading days can be simulated then.
+     */
+    void prepare(MarketData marketData) {
+        if (marketData.getIndicators() != null && !hasPrecomputedIndicators()) {
+            throw new AosException("Precomputed indicators cannot be used by strategies using " + graph.getSpecs());
+        }
+        stocks = marketData.getStocks();
+        int stockCount = stocks.size();
+        priceSeries = new PriceSeries[stockCount];
+        indicatorStates = new IndicatorState[stockCount];
+        indicatorSeries = marketData.getIndicators() == null ? null : new IndicatorSeries[stockCount];
+        precomputedValues = indicatorSeries == null ? null : new PrecomputedIndicatorValues[stockCount];
+        for (int i = 0; i < stockCount; i++) {
+            long stockId = stocks.get(i).getId();
+            priceSeries[i] = marketData.getPriceSeries().get(stockId);
+            if (indicatorSeries != null) {
+                indicatorSeries[i] = marketData.getIndicators().get(stockId);
+                precomputedValues[i] = new PrecomputedIndicatorValues();
             } else {
-                LOG.info("Buy candidate on {} is {} with price {}, sma200 {} and rsi2 {}", today, buyWinner.getLeft().getName(), buyWinner.getLeft().getTodayPrices().getAdjustedClose(),
-                        buyWinner.getLeft().getCurrentIndicators().getSma200(), buyWinner.getLeft().getCurrentIndicators().getRsi2());
+                indicatorStates[i] = graph.newState();
+            }
+        }
+        lastPrices = new PriceWindow[stockCount];
+        priceWindows = new PriceWindow[stockCount];
+        indicatorValues = new IndicatorValues[stockCount];
+        prepareUniverse(marketData.getUniverse());
+        for (StrategySimulation simulation : simulations) {
+            simulation.prepare(stocks);
+        }
+        if (parallelism > 1) {
+            prepareShards();
+            LOG.info("Simulating in {} threads with {} shards", parallelism, shardStarts.length - 1);
+            pool = new ForkJoinPool(parallelism);
+            indicatorTask = new IndicatorTask(0, shardStarts.length - 1);
+            strategiesTask = new StrategiesTask();
+        }
+    }
 
-                tradingService.buySlice(buyWinner.getLeft(), buyWinner.getRight(), today);
+    private void prepareUniverse(Universe universe) {
+        if (universe == null) {
+            universeMembers = null;
+            members = null;
+            return;
+        }
+        universeMembers = new Universe.Member[stocks.size()];
+        members = new boolean[stocks.size()];
+        for (int i = 0; i < stocks.size(); i++) {
+            universeMembers[i] = universe.getMember(stocks.get(i).getSymbol());
+        }
+    }
+
+    /**
+     * Splits the stocks ordered by symbol into ranges of about the same size. The stocks themselves are not reordered,
+     * the order of the candidates of the same rank depends on it.
+     */
+    private void prepareShards() {
+        int stockCount = stocks.size();
+        int shards = config.getSimulationShards() > 0
+                ? Math.max(parallelism, config.getSimulationShards())
+                : parallelism * SHARDS_PER_THREAD;
+        shards = Math.max(1, Math.min(shards, stockCount));
+        symbolOrder = IntStream.range(0, stockCount).boxed()
+                .sorted(Comparator.comparing(index -> stocks.get(index).getSymbol(),
+                        Comparator.nullsFirst(Comparator.naturalOrder())))
+                .mapToInt(Integer::intValue)
+                .toArray();
+        shardStarts = new int[shards + 1];
+        for (int i = 0; i <= shards; i++) {
+            shardStarts[i] = (int) ((long) i * stockCount / shards);
+        }
+    }
+
+    /**
+     * Simulates one trading day of all the strategies. Days have to be simulated in the order of their dates.
+     */
+    void simulateTradingDay(LocalDate today) {
+        LOG.debug("Simulating a trading session on {}...", today);
+        long startTime = System.nanoTime();
+        if (pool != null) {
+            currentDay = today;
+            indicatorTask.reinitialize();
+            pool.invoke(indicatorTask);
+        } else {
+            for (int i = 0; i < stocks.size(); i++) {
+                updateIndicators(i, today);
             }
+        }
+        INDICATOR_TIME.recordSince(startTime);
 
-            possibleBuys.clear();
-            today = today.plusDays(1);
+        //strategies only read the shared indicators, so they can trade concurrently
+        if (pool != null && simulations.size() > 1) {
+            strategiesTask.reinitialize();
+            pool.invoke(strategiesTask);
+        } else {
+            for (int i = 0; i < simulations.size(); i++) {
+                simulations.get(i).simulateTradingDay(today, priceWindows, indicatorValues, members);
+            }
         }
+        DAYS.increment();
+        DAY_TIME.recordSince(startTime);
+    }
 
+    /**
+     * Calculates indicators of the stock on {@param index}. It touches only the data of given stock, so it can run
+     * concurrently for different stocks.
+     */
+    private void updateIndicators(int index, LocalDate today) {
+        priceWindows[index] = null;
+        indicatorValues[index] = null;
+        if (members != null) {
+            members[index] = universeMembers[index] != null && universeMembers[index].isMember(today);
+        }
+        PriceSeries series = priceSeries[index];
+        if (series == null) {
+            LOG.debug("There are no prices for {}", stocks.get(index).getName());
+            return;
+        }
+        //the whole loaded history is fed into the indicators, so they do not depend on the other strategies
+        int days = indicatorSeries != null ? 1 : Integer.MAX_VALUE;
+        PriceWindow priceWindow = lastPrices[index] == null
+                ? series.getLastPrices(today, days)
+                : series.getLastPrices(today, days, lastPrices[index]);
+        lastPrices[index] = priceWindow;
+        if (indicatorSeries != null) {
+            readIndicators(index, priceWindow);
+            return;
+        }
+        if (priceWindow.isEmpty()) {
+            return;
+        }
+        indicatorStates[index].update(priceWindow);
+        priceWindows[index] = priceWindow;
+        indicatorValues[index] = indicatorStates[index];
+    }
+
+    /**
+     * Sets indicators of the stock on {@param index} precomputed for the day of its last price.
+     */
+    private void readIndicators(int index, PriceWindow priceWindow) {
+        Indicators indicators = priceWindow.isEmpty() || indicatorSeries[index] == null
+                ? null
+                : indicatorSeries[index].get(priceWindow.getEpochDay(0));
+        if (indicators == null) {
+            LOG.debug("There are no indicators of {}", stocks.get(index).getName());
+            return; //not enough data
+        }
+        precomputedValues[index].setIndicators(indicators);
+        priceWindows[index] = priceWindow;
+        indicatorValues[index] = precomputedValues[index];
     }
 
-    private void simulateDailyTradingSession(LocalDate today, SortedSet<Stock> possibleBuys, int periodLength) {
-        LOG.info("Simulating a trading session on {}...", today);
-        //possible stock to buy ordered by RSI
-        Map<Stock, Stock> stocksWithOpenPositionMap = stockDao.getStockWithOpenPosition();
+    /**
+     * Splits the shards into halves and calculates indicators of their stocks in the fork-join pool. The whole tree
+     * of tasks is created once and reinitialized before it is run again.
+     */
+    private class IndicatorTask extends RecursiveAction {
+        private final int fromShard;
+        private final int toShard;
+        private final IndicatorTask left;
+        private final IndicatorTask right;
 
-        for (Stock stock : stocks) {
-//            LOG.info("Loading stock prices for {} on {} for last {} days", stock.getName(), today, periodLength);
-            //TODO JH get historical daily prices for all stock in one GO instead of getting it for every stock
-            List<HistoricalDailyPrice> priceList = priceDao.getLastPricesForStock(stock.getId(), periodLength, today);
-            if (priceList.size() != periodLength) {
-                LOG.debug("There are only {} prices for {} but {} requested", priceList.size(), stock.getName(), periodLength);
-                continue; //not enough data
+        IndicatorTask(int fromShard, int toShard) {
+            this.fromShard = fromShard;
+            this.toShard = toShard;
+            if (toShard - fromShard <= 1) {
+                left = null;
+                right = null;
+            } else {
+                int middle = (fromShard + toShard) >>> 1;
+                left = new IndicatorTask(fromShard, middle);
+                right = new IndicatorTask(middle, toShard);
             }
-            stock.setHistoricalDailyPrices(priceList);
-            IndicatorCalculatorService service = new IndicatorCalculatorService(priceList);
-            BigDecimal actualPrice = priceList.get(0).getAdjustedClose();
-            Indicators indicators = service.calculateIndicators();
-            if (stocksWithOpenPositionMap.containsKey(stock)) {
-                List<Position> openPositions = stocksWithOpenPositionMap.get(stock).getOpenPositions();
-                stock.setOpenPositions(openPositions);
-                if (actualPrice.compareTo(indicators.getSma5()) > 0) {
-                    positionService.sellOpenPositions(stock, today);
+        }
+
+        @Override
+        protected void compute() {
+            if (left == null) {
+                for (int i = shardStarts[fromShard]; i < shardStarts[toShard]; i++) {
+                    updateIndicators(symbolOrder[i], currentDay);
                 }
-                //TODO JH add to possible buys to buy additional slice
+                return;
             }
-            stock.setCurrentIndicators(indicators);
-            if (actualPrice.compareTo(indicators.getSma200()) > 0) {
-                //add possible buy if price is bigger than 200day moving average
-                possibleBuys.add(stock);
+            left.reinitialize();
+            right.reinitialize();
+            invokeAll(left, right);
+        }
+    }
+
+    /**
+     * Runs the trading day of every strategy in the fork-join pool.
+     */
+    private class StrategiesTask extends RecursiveAction {
+        private final List<StrategyTask> tasks = new ArrayList<>(simulations.size());
+
+        StrategiesTask() {
+            for (StrategySimulation simulation : simulations) {
+                tasks.add(new StrategyTask(simulation));
             }
+        }
 
-//            LOG.info("SMA200 for {} on {} is {} ", stock.getName(), today, indicators.getSma200());
-//            LOG.info("RSI(2) for {} is {}", stock.getName(), indicators.getRsi2());
+        @Override
+        protected void compute() {
+            for (int i = 0; i < tasks.size(); i++) {
+                tasks.get(i).reinitialize();
+            }
+            invokeAll(tasks);
         }
     }
 
-    private boolean isTradingDay(LocalDate date) throws SQLException {
-        if (EnumSet.of(DayOfWeek.SATURDAY, DayOfWeek.SUNDAY).contains(date.getDayOfWeek())) {
-            return false;
+    private class StrategyTask extends RecursiveAction {
+        private final StrategySimulation simulation;
+
+        StrategyTask(StrategySimulation simulation) {
+            this.simulation = simulation;
+        }
+
+        @Override
+        protected void compute() {
+            simulation.simulateTradingDay(currentDay, priceWindows, indicatorValues, members);
         }
-        return priceDao.hasPriceForGivenDate(date);
     }
 }
@@ -0,0 +1,46 @@
+package com.hesoun.trading;
+
+import java.math.BigDecimal;
+import java.util.Set;
+
+/**
+ * Trading strategy deciding from the indicators of one stock. The simulator calculates the declared indicators once
+ * for all the strategies, then every day it sells open positions of the stocks with exit signal and buys the next
+ * slice of the best ranked stock with entry signal.
+ * <p>
+ * Signals are evaluated only when all the declared indicators of the stock are known. Implementations have to be
+ * stateless, the same instance may be asked from more threads.
+ *
+ * @author Jakub Hesoun
+ */
+public interface Strategy {
+
+    /**
+     * @return indicators used by the signals
+     */
+    Set<IndicatorSpec> getIndicators();
+
+    /**
+     * @return number of prices needed before all the indicators are known
+     */
+    int getWarmUpDays();
+
+    /**
+     * @param price today's adjusted close price
+     * @return true if the stock should be bought
+     */
+    boolean isEntry(BigDecimal price, IndicatorValues indicators);
+
+    /**
+     * @param price today's adjusted close price
+     * @return true if open positions of the stock should be sold
+     */
+    boolean isExit(BigDecimal price, IndicatorValues indicators);
+
+    /**
+     * @return rank of a stock with entry signal, stocks with lower rank are bought first
+     */
+    BigDecimal getRank(BigDecimal price, IndicatorValues indicators);
+
+    String getDescription();
+}
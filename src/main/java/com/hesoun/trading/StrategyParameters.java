@@ -0,0 +1,79 @@
+package com.hesoun.trading;
+
+import com.hesoun.model.Position;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static java.text.MessageFormat.format;
+
+/**
+ * Parameters of the trading strategy: periods of the indicators and the ladder of slices in which a position is
+ * bought. Every slice is given as a percentage of the initial balance.
+ *
+ * @author Jakub Hesoun
+ */
+@Builder
+@Data
+public class StrategyParameters {
+    private static final List<Integer> DEFAULT_SLICE_PERCENTAGES = Arrays.asList(10, 20, 30, 40);
+
+    private final int longSmaPeriod;
+    private final int shortSmaPeriod;
+    private final int rsiPeriod;
+    //percentages of the initial balance for TEN, TWENTY, THIRTY and FOURTY slices
+    private final List<Integer> slicePercentages;
+    private final int initialBalance;
+
+    /**
+     * @return SMA200, SMA5, RSI2 and 10/20/30/40 slices
+     */
+    public static StrategyParameters defaults(int initialBalance) {
+        return StrategyParameters.builder()
+                .longSmaPeriod(200)
+                .shortSmaPeriod(5)
+                .rsiPeriod(2)
+                .slicePercentages(DEFAULT_SLICE_PERCENTAGES)
+                .initialBalance(initialBalance)
+                .build();
+    }
+
+    /**
+     * @return amount of money to be invested into given {@param slice}
+     */
+    public int getSliceAmount(Position.Slice slice) {
+        int index = Position.Slice.getSlices().indexOf(slice);
+        if (index < 0) {
+            return 0;
+        }
+        return (int) ((long) initialBalance * slicePercentages.get(index) / 100);
+    }
+
+    /**
+     * @return {@link MeanReversionStrategy} with the periods of these parameters
+     */
+    public Strategy createStrategy() {
+        return new MeanReversionStrategy(longSmaPeriod, shortSmaPeriod, rsiPeriod);
+    }
+
+    /**
+     * @return number of prices needed before indicators can be calculated
+     */
+    public int getWarmUpDays() {
+        return Math.max(Math.max(longSmaPeriod, shortSmaPeriod), rsiPeriod + 1);
+    }
+
+    public String getDescription() {
+        return format("SMA{0}/SMA{1}/RSI{2} {3}", longSmaPeriod, shortSmaPeriod, rsiPeriod, getSlicesDescription());
+    }
+
+    /**
+     * @return slice percentages, e.g. 10-20-30-40
+     */
+    public String getSlicesDescription() {
+        return slicePercentages.stream().map(String::valueOf).collect(Collectors.joining("-"));
+    }
+}
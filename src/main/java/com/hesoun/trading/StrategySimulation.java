@@ -0,0 +1,224 @@
+package com.hesoun.trading;
+
+import com.hesoun.AosException;
+import com.hesoun.metrics.Counter;
+import com.hesoun.metrics.Histogram;
+import com.hesoun.metrics.Metrics;
+import com.hesoun.model.Position;
+import com.hesoun.model.PriceWindow;
+import com.hesoun.model.Stock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Trading of one {@link Strategy} with one set of {@link StrategyParameters} inside {@link Simulator}. It has its own
+ * portfolio and copies of the stocks, the indicators are calculated by the simulator and shared.
+ * <p>
+ * Stocks are addressed by their dense index in the market data. Open positions and buy candidates are held in arrays
+ * allocated once in {@link #prepare(List)}, so the daily loop does not allocate anything but the trades.
+ * <p>
+ * A failure stops only this simulation, the others simulated together with it go on.
+ *
+ * @author Jakub Hesoun
+ */
+class StrategySimulation {
+    private static final Logger LOG = LoggerFactory.getLogger(StrategySimulation.class);
+    private static final Histogram SELECTION_TIME = Metrics.INSTANCE.histogram("simulation.selection");
+    private static final Histogram BUY_TIME = Metrics.INSTANCE.histogram("simulation.buy");
+    private static final Histogram SELL_TIME = Metrics.INSTANCE.histogram("simulation.sell");
+    private static final Counter BUYS = Metrics.INSTANCE.counter("simulation.buys");
+    private static final Counter SELLS = Metrics.INSTANCE.counter("simulation.sells");
+
+    private final Strategy strategy;
+    private final IndicatorSpec[] indicators;
+    private final String description;
+    private final Portfolio portfolio;
+    private final TradingService tradingService;
+    private final PositionService positionService;
+    private final PerformanceTracker performanceTracker;
+
+    private Stock[] stocks;
+    private Map<Long, Stock> stocksById;
+    private Map<Long, Integer> indexesById;
+    //open positions indexed the same way as the stocks and the indexes of the stocks which have them
+    private List<Position>[] openPositions;
+    private int[] openPositionIndexes;
+    private int openPositionCount;
+    private CandidateHeap candidates;
+    private RuntimeException failure;
+
+    StrategySimulation(StrategyParameters parameters, Strategy strategy, Portfolio portfolio) {
+        this.strategy = strategy;
+        this.indicators = strategy.getIndicators().toArray(new IndicatorSpec[0]);
+        this.description = strategy.getDescription() + " " + parameters.getSlicesDescription();
+        this.portfolio = portfolio;
+        AccountService accountService = new AccountService(parameters.getInitialBalance(), portfolio);
+        this.positionService = new PositionService(portfolio, parameters);
+        this.tradingService = new TradingService(accountService, positionService, parameters);
+        this.performanceTracker = new PerformanceTracker(parameters, description);
+    }
+
+    Strategy getStrategy() {
+        return strategy;
+    }
+
+    Portfolio getPortfolio() {
+        return portfolio;
+    }
+
+    String getDescription() {
+        return description;
+    }
+
+    boolean isFailed() {
+        return failure != null;
+    }
+
+    /**
+     * Copies the {@param marketStocks}, so the data can be shared by more simulations.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    void prepare(List<Stock> marketStocks) {
+        int stockCount = marketStocks.size();
+        stocks = new Stock[stockCount];
+        stocksById = new HashMap<>(stockCount);
+        indexesById = new HashMap<>(stockCount);
+        for (int i = 0; i < stockCount; i++) {
+            Stock stock = marketStocks.get(i).toBuilder().build();
+            stocks[i] = stock;
+            stocksById.put(stock.getId(), stock);
+            indexesById.put(stock.getId(), i);
+        }
+        openPositions = new List[stockCount];
+        openPositionIndexes = new int[stockCount];
+        openPositionCount = 0;
+        candidates = new CandidateHeap(stockCount);
+    }
+
+    /**
+     * Simulates one trading day: sells, buys and updates the performance. Days have to be simulated in the order of
+     * their dates.
+     *
+     * @param windows last prices of the stocks, indexed the same way as the stocks, null if there are no prices
+     * @param values  indicators of the stocks, indexed the same way as the stocks, null if there are no prices
+     * @param members whether the stocks are members of the universe today, indexed the same way as the stocks, null
+     *                if all of them are; positions of the other stocks can only be sold
+     */
+    void simulateTradingDay(LocalDate today, PriceWindow[] windows, IndicatorValues[] values, boolean[] members) {
+        if (failure != null) {
+            return;
+        }
+        try {
+            trade(today, windows, values, members);
+        } catch (RuntimeException e) {
+            LOG.error("Simulation of {} failed on {}", description, today, e);
+            failure = e;
+        }
+    }
+
+    private void trade(LocalDate today, PriceWindow[] windows, IndicatorValues[] values, boolean[] members) {
+        //possible stock to buy ordered by rank
+        candidates.clear();
+        loadOpenPositions();
+        for (int i = 0; i < stocks.length; i++) {
+            if (values[i] == null || !isReady(values[i])) {
+                continue; //not enough data
+            }
+            Stock stock = stocks[i];
+            stock.setPriceWindow(windows[i]);
+            BigDecimal actualPrice = windows[i].getAdjustedClose(0);
+            stock.setOpenPositions(openPositions[i]);
+            if (openPositions[i] != null) {
+                if (strategy.isExit(actualPrice, values[i])) {
+                    performanceTracker.onSell(stock);
+                    long sellStartTime = System.nanoTime();
+                    positionService.sellOpenPositions(stock, today);
+                    SELL_TIME.recordSince(sellStartTime);
+                    SELLS.increment();
+                    //the sold positions stay on the stock, so buying it again today continues with the next slice
+                }
+                //TODO JH add to possible buys to buy additional slice
+            }
+            if ((members == null || members[i]) && strategy.isEntry(actualPrice, values[i])) {
+                BigDecimal rank = strategy.getRank(actualPrice, values[i]);
+                stock.setRank(rank);
+                candidates.add(i, rank);
+            }
+        }
+
+        long selectionStartTime = System.nanoTime();
+        Stock buyWinner = null;
+        Position.Slice sliceToBuy = null;
+        for (int i = candidates.poll(); i >= 0; i = candidates.poll()) {
+            sliceToBuy = tradingService.getSliceToBuy(stocks[i]);
+            if (sliceToBuy != Position.Slice.NO_SLICE) {
+                buyWinner = sliceToBuy == null ? null : stocks[i];
+                break;
+            }
+        }
+        SELECTION_TIME.recordSince(selectionStartTime);
+        if (buyWinner == null) {
+            LOG.debug("Not buying anything on {}", today);
+        } else {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Buy candidate on {} is {} with price {} and rank {}", today, buyWinner.getName(),
+                        buyWinner.getTodayPrices().getAdjustedClose(), buyWinner.getRank());
+            }
+
+            long buyStartTime = System.nanoTime();
+            Position position = tradingService.buySlice(buyWinner, sliceToBuy, today);
+            BUY_TIME.recordSince(buyStartTime);
+            BUYS.increment();
+            performanceTracker.onBuy(position);
+        }
+        performanceTracker.onEndOfDay(positionService.getOpenPositions(), stocksById);
+    }
+
+    /**
+     * Moves the open positions of the portfolio into {@link #openPositions}, only the stocks which had open positions
+     * yesterday are cleared.
+     */
+    private void loadOpenPositions() {
+        for (int i = 0; i < openPositionCount; i++) {
+            openPositions[openPositionIndexes[i]] = null;
+        }
+        openPositionCount = 0;
+        for (Map.Entry<Long, List<Position>> entry : positionService.getOpenPositions().entrySet()) {
+            Integer index = indexesById.get(entry.getKey());
+            if (index == null) {
+                continue; //stock is not simulated
+            }
+            openPositions[index] = entry.getValue();
+            openPositionIndexes[openPositionCount++] = index;
+        }
+    }
+
+    private boolean isReady(IndicatorValues values) {
+        for (IndicatorSpec indicator : indicators) {
+            if (values.get(indicator) == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @throws AosException if the simulation has failed
+     */
+    SimulationResult getResult() {
+        if (failure != null) {
+            throw new AosException("Simulation of " + description + " failed", failure);
+        }
+        SimulationResult result = performanceTracker.getResult();
+        LOG.info("Simulation of {} finished with return {}%, max drawdown {}% and {} trades", description,
+                String.format("%.2f", result.getTotalReturn() * 100), String.format("%.2f", result.getMaxDrawdown() * 100),
+                result.getTrades());
+        return result;
+    }
+}
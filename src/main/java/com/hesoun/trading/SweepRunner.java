@@ -0,0 +1,141 @@
+package com.hesoun.trading;
+
+import com.hesoun.AosException;
+import com.hesoun.Config;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.stream.Collectors;
+
+import static java.text.MessageFormat.format;
+
+/**
+ * Runs many simulations with different {@link StrategyParameters} at the same time. Market data is loaded only once
+ * and shared, every simulation has its own {@link InMemoryPortfolio} and the simulations run in lock-step sharing
+ * their indicators.
+ * <p>
+ * The grid file is a properties file where every key holds comma separated values to try, all the combinations are
+ * simulated. Missing keys use the default value:
+ * <pre>
+ * sma.long=150,200
+ * sma.short=5,10
+ * rsi=2,3
+ * slices=10-20-30-40,5-10-15-20
+ * </pre>
+ *
+ * @author Jakub Hesoun
+ */
+public class SweepRunner {
+    private static final Logger LOG = LoggerFactory.getLogger(SweepRunner.class);
+
+    private final Config config;
+
+    public SweepRunner(Config config) {
+        this.config = config;
+    }
+
+    public List<SimulationResult> sweep(Path gridFile) throws IOException {
+        List<StrategyParameters> grid = loadGrid(gridFile, config.getInitialBalance());
+        int warmUpDays = grid.stream().mapToInt(StrategyParameters::getWarmUpDays).max().orElse(0);
+        LOG.info("Running {} simulations in {} threads", grid.size(), config.getSweepParallelism());
+
+        long startTime = System.currentTimeMillis();
+        MarketData marketData = MarketData.load(config, warmUpDays);
+        List<SimulationResult> results = runSimulations(grid, marketData);
+        LOG.info("{} simulations finished in {}ms", results.size(), System.currentTimeMillis() - startTime);
+        printSummary(results);
+        return results;
+    }
+
+    /**
+     * Runs all the configurations by one {@link Simulator} day by day, so indicators shared by more configurations
+     * are calculated only once. Failed configurations are left out of the results.
+     */
+    List<SimulationResult> runSimulations(List<StrategyParameters> grid, MarketData marketData) {
+        List<StrategySimulation> simulations = new ArrayList<>(grid.size());
+        for (StrategyParameters parameters : grid) {
+            simulations.add(new StrategySimulation(parameters, parameters.createStrategy(),
+                    new InMemoryPortfolio(parameters)));
+        }
+        return new Simulator(config, simulations, config.getSweepParallelism()).simulateAll(marketData);
+    }
+
+    /**
+     * Reads the grid file and creates parameters for all the combinations of its values.
+     */
+    static List<StrategyParameters> loadGrid(Path gridFile, int initialBalance) throws IOException {
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(gridFile)) {
+            properties.load(in);
+        }
+        StrategyParameters defaults = StrategyParameters.defaults(initialBalance);
+        List<Integer> longSmaPeriods = parseIntegers(properties.getProperty("sma.long"), defaults.getLongSmaPeriod());
+        List<Integer> shortSmaPeriods = parseIntegers(properties.getProperty("sma.short"), defaults.getShortSmaPeriod());
+        List<Integer> rsiPeriods = parseIntegers(properties.getProperty("rsi"), defaults.getRsiPeriod());
+        List<List<Integer>> sliceLadders = parseSliceLadders(properties.getProperty("slices"), defaults.getSlicePercentages());
+
+        List<StrategyParameters> grid = new ArrayList<>();
+        for (int longSma : longSmaPeriods) {
+            for (int shortSma : shortSmaPeriods) {
+                for (int rsi : rsiPeriods) {
+                    for (List<Integer> slices : sliceLadders) {
+                        grid.add(StrategyParameters.builder()
+                                .longSmaPeriod(longSma)
+                                .shortSmaPeriod(shortSma)
+                                .rsiPeriod(rsi)
+                                .slicePercentages(slices)
+                                .initialBalance(initialBalance)
+                                .build());
+                    }
+                }
+            }
+        }
+        return grid;
+    }
+
+    private static List<Integer> parseIntegers(String values, int defaultValue) {
+        if (values == null || values.trim().isEmpty()) {
+            return Collections.singletonList(defaultValue);
+        }
+        return Arrays.stream(values.split(","))
+                .map(String::trim)
+                .map(Integer::valueOf)
+                .collect(Collectors.toList());
+    }
+
+    private static List<List<Integer>> parseSliceLadders(String values, List<Integer> defaultValue) {
+        if (values == null || values.trim().isEmpty()) {
+            return Collections.singletonList(defaultValue);
+        }
+        List<List<Integer>> ladders = new ArrayList<>();
+        for (String ladder : values.split(",")) {
+            List<Integer> percentages = Arrays.stream(ladder.trim().split("-"))
+                    .map(String::trim)
+                    .map(Integer::valueOf)
+                    .collect(Collectors.toList());
+            if (percentages.size() != defaultValue.size()) {
+                throw new AosException(format("Slice ladder {0} has to have {1} slices", ladder, defaultValue.size()));
+            }
+            ladders.add(percentages);
+        }
+        return ladders;
+    }
+
+    private static void printSummary(List<SimulationResult> results) {
+        StringBuilder table = new StringBuilder(String.format("%n%-32s %10s %10s %8s%n", "configuration", "return %", "drawdown %", "trades"));
+        for (SimulationResult result : results) {
+            table.append(String.format("%-32s %10.2f %10.2f %8d%n", result.getDescription(),
+                    result.getTotalReturn() * 100, result.getMaxDrawdown() * 100, result.getTrades()));
+        }
+        LOG.info("Parameter sweep summary:{}", table);
+    }
+}
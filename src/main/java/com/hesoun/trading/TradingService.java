@@ -1,12 +1,12 @@
 package com.hesoun.trading;
 
 import com.hesoun.extracting.Pair;
+import com.hesoun.model.Money;
 import com.hesoun.model.Position;
 import com.hesoun.model.Stock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Objects;
@@ -22,10 +22,12 @@ public class TradingService {
     //TODO JH these service can be changed to daos
     private final AccountService accountService;
     private final PositionService positionService;
+    private final StrategyParameters parameters;
 
-    public TradingService(AccountService accountService, PositionService positionService) {
+    public TradingService(AccountService accountService, PositionService positionService, StrategyParameters parameters) {
         this.accountService = accountService;
         this.positionService = positionService;
+        this.parameters = parameters;
     }
 
     /**
@@ -38,25 +40,40 @@ public class TradingService {
         Objects.requireNonNull(possibleBuys, "possible buys cannot be null");
 
         for (Stock stock : possibleBuys) {
-            Position.Slice sliceToBuy = Position.Slice.TEN;
-            if (stock.getOpenPositions() != null) {
-                sliceToBuy = getBiggestSlice(stock.getOpenPositions()).getNext();
-            }
+            Position.Slice sliceToBuy = getSliceToBuy(stock);
             if (sliceToBuy == Position.Slice.NO_SLICE) {
-                //this position has all slices possible, try the next stock with second lowest RSI2
-                LOG.info("Stock {} is fully invested in. Trying the next possible candidate...", stock.getName());
                 continue;
             }
-            if (!positionService.canBuySlice(sliceToBuy)) {
-                LOG.info("Cannot buy slice {} for stock {}. There is not enough resources. {} already allocated.", sliceToBuy.getAmount(), stock.getName(), accountService.getAllocation());
-                //TODO JH shouldnt I try to buy smaller slice for the next possibleBuy
-                return null;
-            }
-            return new Pair<>(stock, sliceToBuy);
+            return sliceToBuy == null ? null : new Pair<>(stock, sliceToBuy);
         }
         return null;
     }
 
+    /**
+     * Selects the next slice of {@param stock} to buy. Candidates have to be tried in the order of their rank until a
+     * slice is returned or null is returned.
+     *
+     * @return slice to buy, {@link Position.Slice#NO_SLICE} if all the slices of the stock are bought and the next
+     * candidate should be tried or null if money management does not allow to buy anything today
+     */
+    public Position.Slice getSliceToBuy(Stock stock) {
+        Position.Slice sliceToBuy = Position.Slice.TEN;
+        if (stock.getOpenPositions() != null) {
+            sliceToBuy = getBiggestSlice(stock.getOpenPositions()).getNext();
+        }
+        if (sliceToBuy == Position.Slice.NO_SLICE) {
+            //this position has all slices possible, try the next stock with second lowest RSI2
+            LOG.debug("Stock {} is fully invested in. Trying the next possible candidate...", stock.getName());
+            return Position.Slice.NO_SLICE;
+        }
+        if (!positionService.canBuySlice(sliceToBuy)) {
+            LOG.debug("Cannot buy slice {} for stock {}. There is not enough resources. {} already allocated.", parameters.getSliceAmount(sliceToBuy), stock.getName(), accountService.getAllocation());
+            //TODO JH shouldnt I try to buy smaller slice for the next possibleBuy
+            return null;
+        }
+        return sliceToBuy;
+    }
+
     private Position.Slice getBiggestSlice(List<Position> positions) {
         Position.Slice biggestSlice = Position.Slice.NO_SLICE;
         for (Position position : positions) {
@@ -67,20 +84,23 @@ public class TradingService {
         return biggestSlice;
     }
 
-    public void buySlice(Stock stock, Position.Slice slice, LocalDate buyDate) {
+    /**
+     * Buys given {@param slice} of {@param stock} for today's adjusted close price.
+     *
+     * @return bought position
+     */
+    public Position buySlice(Stock stock, Position.Slice slice, LocalDate buyDate) {
         Objects.requireNonNull(stock, format("stock {0} cannot be null", stock.getName()));
-        Objects.requireNonNull(stock.getHistoricalDailyPrices(), format("historical daily prices for stock {0} cannot be null", stock.getName()));
+        Objects.requireNonNull(stock.getTodayPrices(), format("today prices for stock {0} cannot be null", stock.getName()));
         Objects.requireNonNull(slice, format("slice cannot be null for stock {0}", stock.getName()));
 
         if (!positionService.canBuySlice(slice)) {
-            throw new IllegalArgumentException("Cannot buy slice " + slice.getAmount() + " for stock " + stock.getName() + ". There is not enough resources. " + accountService.getAllocation() + " already allocated.");
+            throw new IllegalArgumentException("Cannot buy slice " + parameters.getSliceAmount(slice) + " for stock " + stock.getName() + ". There is not enough resources. " + accountService.getAllocation() + " already allocated.");
         }
 
-        BigDecimal actualPrice = stock.getTodayPrices().getAdjustedClose();
-        int numOfShares = BigDecimal.valueOf(slice.getAmount()).divide(actualPrice, BigDecimal.ROUND_DOWN).intValueExact();
-        BigDecimal totalPrice = actualPrice.multiply(new BigDecimal(numOfShares));
-        BigDecimal allocation = accountService.getAllocation();
-        LOG.info("Buying a {} slice of {} for {}",slice, stock.getName(), actualPrice);
+        Money actualPrice = stock.getTodayAdjustedClose();
+        int numOfShares = Math.toIntExact(Money.of(parameters.getSliceAmount(slice)).divideToIntegral(actualPrice));
+        LOG.debug("Buying a {} slice of {} for {}",slice, stock.getName(), actualPrice);
         Position position = Position.builder()
                 .stock(stock)
                 .buyDate(buyDate)
@@ -90,8 +110,9 @@ public class TradingService {
                 .status(Position.Status.OPEN)
                 .build();
         positionService.buyPosition(position);
-        LOG.info("Bought");
+        LOG.debug("Bought");
         //TODO JH finish buying process
+        return position;
     }
 
 }
@@ -0,0 +1,9 @@
+-- there can be only one price of a stock per day, prices are upserted by this constraint
+DELETE FROM historical_eod_price AS p
+USING historical_eod_price AS duplicate
+WHERE p.stock_id = duplicate.stock_id
+  AND p.date = duplicate.date
+  AND p.id > duplicate.id;
+
+ALTER TABLE historical_eod_price
+  ADD CONSTRAINT unique_price_date UNIQUE (stock_id, date);
@@ -0,0 +1,10 @@
+-- indicators of the default strategy computed by DailyIndicatorDao from adjusted closes, one row per stock and
+-- trading day which has at least 200 prices up to it
+CREATE TABLE daily_indicator (
+  stock_id BIGINT  NOT NULL REFERENCES stock,
+  date     DATE    NOT NULL,
+  sma200   NUMERIC NOT NULL,
+  sma5     NUMERIC NOT NULL,
+  rsi2     NUMERIC NOT NULL,
+  PRIMARY KEY (stock_id, date)
+);
@@ -0,0 +1,91 @@
+package com.hesoun.data;
+
+import com.hesoun.AosException;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author Jakub Hesoun
+ */
+public class ConnectionPoolTest {
+    private final AtomicInteger openedConnections = new AtomicInteger();
+    private final AtomicInteger preparedStatements = new AtomicInteger();
+
+    @Test
+    public void releasedConnectionIsReusedWithItsStatements() throws Exception {
+        ConnectionPool pool = new ConnectionPool(this::openConnection, 2, 100);
+
+        PreparedStatement first;
+        try (PooledConnection connection = pool.getConnection()) {
+            first = connection.prepareStatement("SELECT 1");
+            assertThat(connection.prepareStatement("SELECT 1")).isSameAs(first);
+        }
+        try (PooledConnection connection = pool.getConnection()) {
+            assertThat(connection.prepareStatement("SELECT 1")).isSameAs(first);
+            assertThat(connection.prepareStatement("SELECT 2")).isNotSameAs(first);
+        }
+
+        assertThat(openedConnections.get()).isEqualTo(1);
+        assertThat(preparedStatements.get()).isEqualTo(2);
+        assertThat(pool.getIdleCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void waitsForReleasedConnection() throws Exception {
+        ConnectionPool pool = new ConnectionPool(this::openConnection, 1, 5_000);
+        PooledConnection borrowed = pool.getConnection();
+
+        CompletableFuture<PooledConnection> waiting = CompletableFuture.supplyAsync(pool::getConnection);
+        Thread.sleep(50);
+        assertThat(waiting).isNotDone();
+        borrowed.close();
+
+        assertThat(waiting.get(5, TimeUnit.SECONDS)).isSameAs(borrowed);
+        assertThat(openedConnections.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void failsWhenNoConnectionIsReleasedInTime() {
+        ConnectionPool pool = new ConnectionPool(this::openConnection, 1, 10);
+        pool.getConnection();
+
+        assertThatThrownBy(pool::getConnection)
+                .isInstanceOf(AosException.class)
+                .hasMessageContaining("10ms");
+    }
+
+    private Connection openConnection() {
+        openedConnections.incrementAndGet();
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{Connection.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "prepareStatement":
+                            preparedStatements.incrementAndGet();
+                            return Proxy.newProxyInstance(getClass().getClassLoader(),
+                                    new Class[]{PreparedStatement.class}, (statement, m, a) -> defaultValue(m.getReturnType()));
+                        case "getAutoCommit":
+                            return true;
+                        default:
+                            return defaultValue(method.getReturnType());
+                    }
+                });
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) {
+            return false;
+        } else if (type == int.class) {
+            return 0;
+        }
+        return null;
+    }
+}
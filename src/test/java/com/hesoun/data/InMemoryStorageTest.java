@@ -0,0 +1,111 @@
+package com.hesoun.data;
+
+import com.hesoun.model.HistoricalDailyPrice;
+import com.hesoun.model.Money;
+import com.hesoun.model.Position;
+import com.hesoun.model.PriceSeries;
+import com.hesoun.model.PriceWindow;
+import com.hesoun.model.Stock;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+/**
+ * @author Jakub Hesoun
+ */
+public class InMemoryStorageTest {
+    private static final LocalDate START = LocalDate.of(2017, 1, 2);
+
+    private final InMemoryStorage storage = new InMemoryStorage();
+
+    @Test
+    public void persistingSameStockAgainUpdatesItAndReplacesPricesOfSameDates() {
+        Stock first = storage.persist(createStock("AAA", 0, 10, 1));
+        Stock second = storage.persist(createStock("BBB", 0, 5, 1));
+        Stock again = storage.persist(createStock("AAA", 5, 10, 2));
+
+        assertThat(again.getId()).isEqualTo(first.getId()).isNotEqualTo(second.getId());
+        assertThat(storage.getAllStock()).extracting(Stock::getSymbol).containsExactly("AAA", "BBB");
+        assertThat(storage.getLastPriceDates()).containsEntry("AAA", START.plusDays(14)).containsEntry("BBB", START.plusDays(4));
+        assertThat(storage.getTradingCalendar().size()).isEqualTo(15);
+
+        PriceWindow prices = storage.getAllPriceSeries().get(first.getId()).getLastPrices(START.plusDays(100), 100);
+        assertThat(prices.size()).isEqualTo(15);
+        assertThat(prices.getPrice(14).getAdjustedClose()).isEqualByComparingTo("1");
+        assertThat(prices.getPrice(0).getAdjustedClose()).isEqualByComparingTo("2");
+    }
+
+    @Test
+    public void loadsPricesOfPeriodWithWarmUpDays() {
+        long id = storage.persist(createStock("AAA", 0, 30, 1)).getId();
+        storage.persist(createStock("BBB", 40, 5, 1));
+
+        Map<Long, PriceSeries> series = storage.getPriceSeries(START.plusDays(10), START.plusDays(19), 5);
+
+        assertThat(series).containsOnlyKeys(id);
+        PriceWindow window = series.get(id).getLastPrices(START.plusDays(100), 100);
+        assertThat(window.size()).isEqualTo(15);
+        assertThat(window.getDate(0)).isEqualTo(START.plusDays(19));
+        assertThat(window.getDate(14)).isEqualTo(START.plusDays(5));
+    }
+
+    @Test
+    public void storedPositionsAreCopies() {
+        Stock stock = storage.persist(createStock("AAA", 0, 1, 1));
+        Position bought = Position.builder()
+                .buyPrice(Money.of(10))
+                .buyDate(START)
+                .slice(Position.Slice.TEN)
+                .shares(10)
+                .stock(stock)
+                .build();
+        storage.buyPosition(bought);
+        bought.setShares(20);
+
+        Map<Long, List<Position>> openPositions = storage.getOpenPositions();
+        assertThat(openPositions).containsOnlyKeys(stock.getId());
+        Position stored = openPositions.get(stock.getId()).get(0);
+        assertThat(stored.getId()).isEqualTo(bought.getId());
+        assertThat(stored.getShares()).isEqualTo(10);
+        assertThat(stored.getStatus()).isEqualTo(Position.Status.OPEN);
+        assertThat(stored.getStock().getOpenPositions()).containsExactly(stored);
+        assertThat(storage.getOpenSliceCounts()).containsOnly(entry(Position.Slice.TEN, 1));
+
+        storage.sellPosition(stored, Money.of(11), START.plusDays(1));
+
+        assertThat(storage.getOpenPositions()).isEmpty();
+        assertThat(storage.getOpenSliceCounts()).isEmpty();
+    }
+
+    private static Stock createStock(String symbol, int firstDay, int days, int adjustedClose) {
+        List<HistoricalDailyPrice> prices = new ArrayList<>();
+        for (int day = firstDay; day < firstDay + days; day++) {
+            BigDecimal price = BigDecimal.valueOf(adjustedClose);
+            prices.add(HistoricalDailyPrice.builder()
+                    .date(START.plusDays(day).atStartOfDay())
+                    .open(price)
+                    .high(price)
+                    .low(price)
+                    .close(price)
+                    .adjustedClose(price)
+                    .unadjustedClose(price)
+                    .build());
+        }
+        return Stock.builder()
+                .symbol(symbol)
+                .name(symbol + " Inc.")
+                .exchange("NMS")
+                .currencyCode("USD")
+                .firstTradedDate(START)
+                .historicalDailyPrices(prices)
+                .build();
+    }
+}
@@ -0,0 +1,134 @@
+package com.hesoun.data;
+
+import com.hesoun.model.HistoricalDailyPrice;
+import com.hesoun.model.PriceSeries;
+import com.hesoun.model.PriceWindow;
+import com.hesoun.model.Stock;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Jakub Hesoun
+ */
+public class PriceStoreTest {
+    private static final LocalDate START = LocalDate.of(2010, 1, 4);
+
+    private final Map<Long, List<HistoricalDailyPrice>> prices = new HashMap<>();
+    private final List<Stock> stocks = Arrays.asList(
+            createStock(1, "AAA", "Alpha Inc."),
+            createStock(2, "BBB", null),
+            createStock(3, "CCC", "Charlie Corp."));
+    private Path file;
+
+    @Before
+    public void writeStore() throws IOException {
+        Random random = new Random(7);
+        Map<Long, PriceSeries> priceSeries = new HashMap<>();
+        //stock 2 has no prices
+        for (long id : new long[]{1, 3}) {
+            List<HistoricalDailyPrice> stockPrices = new ArrayList<>();
+            PriceSeries.Builder builder = PriceSeries.builder(id);
+            LocalDate date = START.plusDays(id);
+            for (int i = 0; i < 500; i++) {
+                HistoricalDailyPrice price = HistoricalDailyPrice.builder()
+                        .date(date.atStartOfDay())
+                        .open(randomPrice(random))
+                        .high(randomPrice(random))
+                        .low(randomPrice(random))
+                        .close(randomPrice(random))
+                        .volume(random.nextInt(Integer.MAX_VALUE))
+                        .adjustedClose(randomPrice(random))
+                        .unadjustedClose(randomPrice(random))
+                        .stockId(id)
+                        .build();
+                stockPrices.add(price);
+                builder.add(price);
+                date = date.plusDays(1 + random.nextInt(3));
+            }
+            prices.put(id, stockPrices);
+            priceSeries.put(id, builder.build());
+        }
+        file = Files.createTempFile("prices", ".store");
+        PriceStore.write(file, stocks, priceSeries);
+    }
+
+    @After
+    public void deleteStore() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void readsStocksWrittenIntoStore() throws IOException {
+        List<Stock> read = PriceStore.open(file).getAllStock();
+
+        assertThat(read).isEqualTo(stocks);
+        for (int i = 0; i < stocks.size(); i++) {
+            assertThat(read.get(i)).isEqualToComparingFieldByField(stocks.get(i));
+        }
+    }
+
+    @Test
+    public void readsSamePricesAsDatabaseQuery() throws IOException {
+        PriceStore store = PriceStore.open(file);
+
+        assertPrices(store, START.plusDays(300), START.plusDays(600), 20);
+        assertPrices(store, START, START.plusDays(100), 20);
+        assertPrices(store, START.plusDays(900), START.plusDays(2000), 250);
+        assertThat(store.getPriceSeries(START.minusDays(100), START, 10)).isEmpty();
+    }
+
+    private void assertPrices(PriceStore store, LocalDate from, LocalDate to, int warmUpDays) {
+        Map<Long, PriceSeries> series = store.getPriceSeries(from, to, warmUpDays);
+
+        assertThat(series).containsOnlyKeys(1L, 3L);
+        for (Map.Entry<Long, PriceSeries> entry : series.entrySet()) {
+            List<HistoricalDailyPrice> stockPrices = prices.get(entry.getKey());
+            List<HistoricalDailyPrice> before = stockPrices.stream()
+                    .filter(price -> price.getDate().toLocalDate().isBefore(from))
+                    .collect(Collectors.toList());
+            List<HistoricalDailyPrice> expected = new ArrayList<>(before.subList(Math.max(0, before.size() - warmUpDays), before.size()));
+            stockPrices.stream()
+                    .filter(price -> !price.getDate().toLocalDate().isBefore(from) && !price.getDate().toLocalDate().isAfter(to))
+                    .forEach(expected::add);
+
+            PriceWindow window = entry.getValue().getLastPrices(to, Integer.MAX_VALUE);
+            assertThat(window.size()).isEqualTo(expected.size());
+            for (int i = 0; i < window.size(); i++) {
+                assertThat(window.getPrice(window.size() - 1 - i)).isEqualTo(expected.get(i));
+            }
+        }
+    }
+
+    private static BigDecimal randomPrice(Random random) {
+        return BigDecimal.valueOf(random.nextInt(1_000_000), random.nextInt(7));
+    }
+
+    private static Stock createStock(long id, String symbol, String name) {
+        return Stock.builder()
+                .id(id)
+                .symbol(symbol)
+                .name(name)
+                .exchange("NMS")
+                .currencyCode("USD")
+                .firstTradedDate(START.minusYears(id))
+                .inserted(LocalDateTime.of(2017, 8, 15, 10, 30, 5))
+                .build();
+    }
+}
@@ -0,0 +1,195 @@
+package com.hesoun.data;
+
+import com.hesoun.model.HistoricalDailyPrice;
+import com.hesoun.model.Stock;
+import org.junit.Test;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.core.BaseConnection;
+import org.postgresql.core.Encoding;
+import org.postgresql.core.QueryExecutor;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the DAO against a fake connection which records the SQL and the copied rows, there is no DB in the tests.
+ *
+ * @author Jakub Hesoun
+ */
+public class StockDaoTest {
+    private static final Pattern TEMPORARY_COLUMNS = Pattern.compile("CREATE TEMPORARY TABLE .*? copied_eod_price \\((.*)\\) ON COMMIT");
+    private static final Pattern COPIED_COLUMNS = Pattern.compile("COPY copied_eod_price \\((.*?)\\)");
+
+    private final List<String> executed = new ArrayList<>();
+    private final List<String> copies = new ArrayList<>();
+    private final ByteArrayOutputStream copiedRows = new ByteArrayOutputStream();
+    private int closedStatements;
+    private boolean committed;
+
+    @Test
+    public void copiedRowsFillEveryColumnOfTemporaryTable() {
+        StockDao dao = new StockDao(new ConnectionPool(this::openConnection, 1, 100), 1000, true);
+
+        dao.persist(Stock.builder()
+                .symbol("AAA")
+                .name("Alpha")
+                .exchange("NYSE")
+                .currencyCode("USD")
+                .firstTradedDate(LocalDate.of(2017, 1, 3))
+                .historicalDailyPrices(Arrays.asList(createPrice(LocalDate.of(2017, 1, 3), "55.579750061035156"),
+                        createPrice(LocalDate.of(2017, 1, 4), "56.1")))
+                .build());
+
+        assertThat(executed).hasSize(2);
+        assertThat(copies).hasSize(1);
+        //the temporary table has no id, which is not copied and would be null
+        Matcher temporary = TEMPORARY_COLUMNS.matcher(executed.get(0));
+        Matcher copied = COPIED_COLUMNS.matcher(copies.get(0));
+        assertThat(temporary.find()).isTrue();
+        assertThat(copied.find()).isTrue();
+        List<String> temporaryColumns = new ArrayList<>();
+        for (String column : temporary.group(1).split(",")) {
+            temporaryColumns.add(column.trim().split(" ")[0]);
+        }
+        assertThat(temporaryColumns).containsExactly(copied.group(1).split(","));
+        assertThat(executed.get(1)).startsWith("INSERT INTO historical_eod_price").contains("FROM copied_eod_price");
+        assertThat(new String(copiedRows.toByteArray(), StandardCharsets.UTF_8).split("\n")).containsExactly(
+                "2017-01-03,55.579750061035156,55.579750061035156,55.579750061035156,55.579750061035156,1000,"
+                        + "55.579750061035156,55.579750061035156,7",
+                "2017-01-04,56.1,56.1,56.1,56.1,1000,56.1,56.1,7");
+        assertThat(closedStatements).isEqualTo(executed.size());
+        assertThat(committed).isTrue();
+    }
+
+    private static HistoricalDailyPrice createPrice(LocalDate date, String value) {
+        BigDecimal price = new BigDecimal(value);
+        return HistoricalDailyPrice.builder()
+                .date(date.atStartOfDay())
+                .open(price)
+                .high(price)
+                .low(price)
+                .close(price)
+                .volume(1000)
+                .adjustedClose(price)
+                .unadjustedClose(price)
+                .build();
+    }
+
+    private Connection openConnection() {
+        return createProxy(Connection.class, (name, args) -> {
+            switch (name) {
+                case "prepareStatement":
+                    //only the stock is inserted by a prepared statement, it gets id 7
+                    return createProxy(PreparedStatement.class, (statementName, a) -> {
+                        switch (statementName) {
+                            case "executeUpdate":
+                                return 1;
+                            case "getGeneratedKeys":
+                                return createGeneratedKeys();
+                            default:
+                                return null;
+                        }
+                    });
+                case "createStatement":
+                    return createProxy(Statement.class, (statementName, a) -> {
+                        if (statementName.equals("execute")) {
+                            executed.add((String) a[0]);
+                        } else if (statementName.equals("close")) {
+                            closedStatements++;
+                        }
+                        return null;
+                    });
+                case "unwrap":
+                    return createCopyConnection();
+                case "commit":
+                    committed = true;
+                    return null;
+                default:
+                    return null;
+            }
+        });
+    }
+
+    private ResultSet createGeneratedKeys() {
+        boolean[] read = {false};
+        return createProxy(ResultSet.class, (name, a) -> {
+            switch (name) {
+                case "next":
+                    boolean next = !read[0];
+                    read[0] = true;
+                    return next;
+                case "getLong":
+                    return 7L;
+                default:
+                    return null;
+            }
+        });
+    }
+
+    private BaseConnection createCopyConnection() {
+        QueryExecutor executor = createProxy(QueryExecutor.class, (name, a) -> {
+            if (!name.equals("startCopy")) {
+                return null;
+            }
+            copies.add((String) a[0]);
+            return createProxy(CopyIn.class, (copyName, b) -> {
+                switch (copyName) {
+                    case "writeToCopy":
+                        copiedRows.write((byte[]) b[0], (int) b[1], (int) b[2]);
+                        return null;
+                    case "endCopy":
+                        return 2L;
+                    case "isActive":
+                        return false;
+                    default:
+                        return null;
+                }
+            });
+        });
+        return createProxy(BaseConnection.class, (name, a) -> {
+            switch (name) {
+                case "getEncoding":
+                    return Encoding.getJVMEncoding("UTF-8");
+                case "getQueryExecutor":
+                    return executor;
+                case "getAutoCommit":
+                    return false;
+                default:
+                    return null;
+            }
+        });
+    }
+
+    private interface Handler {
+        Object invoke(String method, Object[] args) throws Exception;
+    }
+
+    private <T> T createProxy(Class<T> type, Handler handler) {
+        return type.cast(Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{type},
+                (proxy, method, args) -> {
+                    Object result = handler.invoke(method.getName(), args);
+                    if (result != null || !method.getReturnType().isPrimitive()) {
+                        return result;
+                    } else if (method.getReturnType() == boolean.class) {
+                        return false;
+                    } else if (method.getReturnType() == long.class) {
+                        return 0L;
+                    }
+                    return method.getReturnType() == void.class ? null : 0;
+                }));
+    }
+}
@@ -0,0 +1,47 @@
+package com.hesoun.data;
+
+import com.hesoun.AosException;
+import com.hesoun.Config;
+import org.junit.Test;
+
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author Jakub Hesoun
+ */
+public class StorageTest {
+
+    @Test
+    public void storedDataCannotBeReadFromEmptyMemory() {
+        Config config = createConfig(null);
+
+        assertThatThrownBy(() -> Storage.openStored(config))
+                .isInstanceOf(AosException.class)
+                .hasMessageContaining("price.store");
+        //commands which write into the storage can still use it
+        assertThat(Storage.open(config).getStocks()).isInstanceOf(InMemoryStorage.class);
+    }
+
+    @Test
+    public void memoryIsOpenedWithPriceStore() {
+        Storage storage = Storage.openStored(createConfig("prices.store"));
+
+        assertThat(storage.getPositions()).isInstanceOf(InMemoryStorage.class);
+    }
+
+    private static Config createConfig(String priceStore) {
+        Properties properties = new Properties();
+        properties.setProperty("yahoo.url", "http://localhost/");
+        properties.setProperty("date.from", "2017-01-01");
+        properties.setProperty("date.to", "2017-12-31");
+        properties.setProperty("initial.balance", "30000");
+        properties.setProperty("storage", Storage.MEMORY);
+        if (priceStore != null) {
+            properties.setProperty("price.store", priceStore);
+        }
+        return new Config(properties);
+    }
+}
@@ -0,0 +1,84 @@
+package com.hesoun.data;
+
+import com.hesoun.AosException;
+import com.hesoun.extracting.Pair;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author Jakub Hesoun
+ */
+public class UniverseTest {
+
+    @Test
+    public void membershipIsPointInTime() throws IOException {
+        Universe universe = load(
+                "# symbol,from,to,name",
+                "MSFT,,,Microsoft Corporation",
+                "",
+                "TSLA,2020-12-21,,Tesla, Inc.",
+                "XOM,,2020-08-31,Exxon Mobil Corporation",
+                "XOM,2021-06-01,",
+                "AAPL");
+
+        assertThat(universe.size()).isEqualTo(4);
+        assertThat(universe.getComponents()).extracting(Pair::getLeft).containsExactly("AAPL", "MSFT", "TSLA", "XOM");
+        assertThat(universe.getMember("TSLA").getName()).isEqualTo("Tesla, Inc.");
+        assertThat(universe.getMember("AAPL").getName()).isEqualTo("AAPL");
+        assertThat(universe.getComponents(LocalDate.of(2020, 8, 30))).extracting(Pair::getLeft)
+                .containsExactly("AAPL", "MSFT", "XOM");
+        assertThat(universe.getComponents(LocalDate.of(2020, 8, 31))).extracting(Pair::getLeft)
+                .containsExactly("AAPL", "MSFT");
+        assertThat(universe.getComponents(LocalDate.of(2021, 6, 1))).extracting(Pair::getLeft)
+                .containsExactly("AAPL", "MSFT", "TSLA", "XOM");
+        assertThat(universe.contains("GE")).isFalse();
+    }
+
+    @Test
+    public void invalidLineIsReported() {
+        assertThatThrownBy(() -> load("AAPL", "XOM,2020-08-31,2020-01-01"))
+                .isInstanceOf(AosException.class)
+                .hasMessageContaining("line 2");
+        assertThatThrownBy(() -> load("AAPL,2020-13-01"))
+                .isInstanceOf(AosException.class)
+                .hasMessageContaining("line 1");
+    }
+
+    @Test
+    public void shardsAreRangesOfSymbols() {
+        List<Pair<String, String>> components = new ArrayList<>();
+        for (int i = 10; i > 0; i--) {
+            components.add(new Pair<>("S" + (char) ('A' + i), null));
+        }
+
+        List<List<Pair<String, String>>> shards = Universe.shard(components, 3);
+        List<List<Pair<String, String>>> tooMany = Universe.shard(components.subList(0, 2), 5);
+
+        assertThat(shards).hasSize(3);
+        assertThat(shards.get(0)).extracting(Pair::getLeft).containsExactly("SB", "SC", "SD");
+        assertThat(shards.get(1)).extracting(Pair::getLeft).containsExactly("SE", "SF", "SG");
+        assertThat(shards.get(2)).extracting(Pair::getLeft).containsExactly("SH", "SI", "SJ", "SK");
+        assertThat(tooMany).hasSize(2);
+        assertThat(Universe.sp100().shard(4)).hasSize(4);
+    }
+
+    private static Universe load(String... lines) throws IOException {
+        Path file = Files.createTempFile("universe", ".csv");
+        try {
+            Files.write(file, Arrays.asList(lines));
+            return Universe.load(file);
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
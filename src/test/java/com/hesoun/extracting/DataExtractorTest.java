@@ -0,0 +1,197 @@
+package com.hesoun.extracting;
+
+import com.hesoun.Config;
+import com.hesoun.data.HistoricalDailyPriceDao;
+import com.hesoun.data.StockDao;
+import com.hesoun.model.Stock;
+import com.hesoun.model.TradingCalendar;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+/**
+ * Extracts stocks from a local stub of the Yahoo endpoint serving data.json.
+ *
+ * @author Jakub Hesoun
+ */
+public class DataExtractorTest {
+    private static final String ERROR_JSON =
+            "{\"chart\":{\"result\":null,\"error\":{\"code\":\"Not Found\",\"description\":\"No data found\"}}}";
+
+    private final Map<String, AtomicInteger> requests = new ConcurrentHashMap<>();
+    private final Map<String, String> queries = new ConcurrentHashMap<>();
+    private final Map<String, LocalDate> lastPriceDates = new HashMap<>();
+    private final List<Stock> persisted = Collections.synchronizedList(new ArrayList<>());
+    private Path cacheDirectory;
+    private byte[] data;
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+
+    @Before
+    public void startServer() throws Exception {
+        data = Files.readAllBytes(Paths.get(getClass().getResource("/data.json").toURI()));
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this::handle);
+        serverExecutor = Executors.newFixedThreadPool(4);
+        server.setExecutor(serverExecutor);
+        server.start();
+    }
+
+    @After
+    public void stopServer() throws IOException {
+        server.stop(0);
+        serverExecutor.shutdownNow();
+        if (cacheDirectory != null) {
+            Files.walk(cacheDirectory).sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Test
+    public void extractsAllSymbolsAndIsolatesFailures() throws Exception {
+        List<Pair<String, String>> components = Arrays.asList(
+                new Pair<>("AAA", "A"), new Pair<>("FLAKY", "Flaky"), new Pair<>("MISSING", "Missing"),
+                new Pair<>("BBB", "B"), new Pair<>("CCC", "C"), new Pair<>("DOWN", "Down"));
+
+        int count = createExtractor().extract(components);
+
+        assertThat(count).isEqualTo(4);
+        assertThat(persisted.stream().map(Stock::getName).collect(Collectors.toList()))
+                .containsExactlyInAnyOrder("A", "Flaky", "B", "C");
+        assertThat(persisted).allSatisfy(stock -> assertThat(stock.getHistoricalDailyPrices()).isNotEmpty());
+        //one failure and one retry for the flaky symbol, all the retries for the one which is down
+        assertThat(requests.get("FLAKY").get()).isEqualTo(2);
+        assertThat(requests.get("DOWN").get()).isEqualTo(3);
+        assertThat(requests.get("MISSING").get()).isEqualTo(1);
+    }
+
+    @Test
+    public void requestsAndPersistsOnlyNewPrices() throws Exception {
+        lastPriceDates.put("AAA", LocalDate.of(2017, 7, 24));
+        lastPriceDates.put("BBB", LocalDate.of(2017, 8, 14));
+
+        int count = createExtractor().extract(Arrays.asList(
+                new Pair<>("AAA", "A"), new Pair<>("BBB", "B"), new Pair<>("CCC", "C")));
+
+        //BBB is skipped, it is not counted as persisted
+        assertThat(count).isEqualTo(2);
+        long july25 = LocalDate.of(2017, 7, 25).atStartOfDay(ZoneId.systemDefault()).toEpochSecond();
+        long january1 = LocalDate.of(2017, 1, 1).atStartOfDay(ZoneId.systemDefault()).toEpochSecond();
+        assertThat(queries.get("AAA")).contains("period1=" + july25);
+        assertThat(queries.get("CCC")).contains("period1=" + january1);
+        //prices of BBB are up to date
+        assertThat(requests).doesNotContainKey("BBB");
+
+        Map<String, Integer> persistedPrices = persisted.stream()
+                .collect(Collectors.toMap(Stock::getName, stock -> stock.getHistoricalDailyPrices().size()));
+        assertThat(persistedPrices).containsOnly(entry("A", 6), entry("C", 253));
+    }
+
+    @Test
+    public void reingestsCachedResponsesWithoutRequests() throws Exception {
+        cacheDirectory = Files.createTempDirectory("cache");
+        List<Pair<String, String>> components = Arrays.asList(new Pair<>("AAA", "A"), new Pair<>("MISSING", "Missing"));
+        createExtractor().extract(components);
+        createExtractor().extract(components);
+        //second extraction is served from the cache, the failed response has not been cached
+        assertThat(requests.get("AAA").get()).isEqualTo(1);
+        assertThat(requests.get("MISSING").get()).isEqualTo(2);
+        requests.clear();
+        List<Stock> extracted = new ArrayList<>(persisted);
+        persisted.clear();
+
+        int count = createExtractor().reingest(components);
+
+        assertThat(count).isEqualTo(1);
+        assertThat(requests).isEmpty();
+        assertThat(persisted).hasSize(1);
+        assertThat(persisted.get(0).getHistoricalDailyPrices()).isEqualTo(extracted.get(0).getHistoricalDailyPrices());
+    }
+
+    private DataExtractor createExtractor() {
+        Properties properties = new Properties();
+        properties.setProperty("yahoo.url", "http://127.0.0.1:" + server.getAddress().getPort() + "/");
+        properties.setProperty("date.from", "2017-01-01");
+        properties.setProperty("date.to", "2017-08-15");
+        properties.setProperty("database.url", "jdbc:postgresql://localhost/test");
+        properties.setProperty("database.user", "test");
+        properties.setProperty("database.password", "test");
+        properties.setProperty("initial.balance", "30000");
+        properties.setProperty("extract.parallelism", "3");
+        properties.setProperty("extract.rate", "0");
+        properties.setProperty("extract.retries", "2");
+        properties.setProperty("extract.retry.backoff", "10");
+        if (cacheDirectory != null) {
+            properties.setProperty("cache.directory", cacheDirectory.toString());
+        }
+        Config config = new Config(properties);
+
+        StockDao stockDao = new StockDao(config) {
+            @Override
+            public Stock persist(Stock stock) {
+                persisted.add(stock);
+                return stock;
+            }
+
+            @Override
+            public Map<String, LocalDate> getLastPriceDates() {
+                return lastPriceDates;
+            }
+        };
+        HistoricalDailyPriceDao priceDao = new HistoricalDailyPriceDao(config) {
+            @Override
+            public TradingCalendar getTradingCalendar() {
+                return TradingCalendar.of(Collections.emptyList());
+            }
+        };
+        return new DataExtractor(config, stockDao, priceDao);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String symbol = exchange.getRequestURI().getPath().substring(1);
+        queries.put(symbol, exchange.getRequestURI().getQuery());
+        int attempt = requests.computeIfAbsent(symbol, key -> new AtomicInteger()).incrementAndGet();
+        if (symbol.equals("DOWN") || symbol.equals("FLAKY") && attempt == 1) {
+            respond(exchange, 503, "Service Unavailable".getBytes(StandardCharsets.UTF_8));
+        } else if (symbol.equals("MISSING")) {
+            respond(exchange, 404, ERROR_JSON.getBytes(StandardCharsets.UTF_8));
+        } else {
+            respond(exchange, 200, data);
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
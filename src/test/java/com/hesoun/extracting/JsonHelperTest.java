@@ -0,0 +1,45 @@
+package com.hesoun.extracting;
+
+import com.hesoun.AosException;
+import com.hesoun.model.Stock;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author Jakub Hesoun
+ */
+public class JsonHelperTest {
+    private static final Pair<String, String> MSFT = new Pair<>("MSFT", "Microsoft Corp.");
+
+    @Test
+    public void streamingParserCreatesSameStockAsTreeParser() throws Exception {
+        byte[] json = Files.readAllBytes(Paths.get(getClass().getResource("/data.json").toURI()));
+
+        Stock expected = JsonHelper.parseJsonAndCreateStock(new String(json, StandardCharsets.UTF_8), MSFT);
+        Stock actual = JsonHelper.parseJsonAndCreateStock(new ByteArrayInputStream(json), MSFT);
+
+        assertThat(actual.getHistoricalDailyPrices()).hasSize(253);
+        assertThat(actual).isEqualToComparingFieldByField(expected);
+        assertThat(actual.getHistoricalDailyPrices()).isEqualTo(expected.getHistoricalDailyPrices());
+    }
+
+    @Test
+    public void streamingParserReportsYahooError() {
+        InputStream in = new ByteArrayInputStream(("{\"chart\":{\"result\":null," +
+                "\"error\":{\"code\":\"Not Found\",\"description\":\"No data found, symbol may be delisted\"}}}")
+                .getBytes(StandardCharsets.UTF_8));
+
+        assertThatThrownBy(() -> JsonHelper.parseJsonAndCreateStock(in, MSFT))
+                .isInstanceOf(AosException.class)
+                .hasMessageContaining("errorCode=Not Found")
+                .hasMessageContaining("symbol may be delisted");
+    }
+}
@@ -0,0 +1,96 @@
+package com.hesoun.extracting;
+
+import com.hesoun.metrics.Metrics;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Jakub Hesoun
+ */
+public class PipelineTest {
+
+    @Test
+    public void passesAllItemsThroughStagesAndIsolatesFailures() throws InterruptedException {
+        List<Integer> items = IntStream.range(0, 100).boxed().collect(Collectors.toList());
+        List<Integer> failed = Collections.synchronizedList(new ArrayList<>());
+        List<Integer> finished = Collections.synchronizedList(new ArrayList<>());
+
+        new Pipeline<Integer>("test.isolation", 2, (item, e) -> failed.add(item))
+                .addStage("first", 3, item -> {
+                    if (item % 10 == 0) {
+                        throw new IllegalStateException("failed " + item);
+                    }
+                    return true;
+                })
+                //odd items are finished by the second stage
+                .addStage("second", 2, item -> item % 2 == 0)
+                .addStage("third", 1, finished::add)
+                .run(items);
+
+        assertThat(failed).containsOnlyElementsOf(items.stream().filter(i -> i % 10 == 0).collect(Collectors.toList()))
+                .hasSize(10);
+        assertThat(finished).containsOnlyElementsOf(items.stream().filter(i -> i % 2 == 0 && i % 10 != 0)
+                .collect(Collectors.toList())).hasSize(40);
+    }
+
+    @Test
+    public void slowStageHoldsPreviousStageBack() throws InterruptedException {
+        int capacity = 2;
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger passed = new AtomicInteger();
+        Thread pipeline = new Thread(() -> {
+            try {
+                new Pipeline<Integer>("test.backpressure", capacity, (item, e) -> {
+                })
+                        .addStage("fast", 1, item -> {
+                            passed.incrementAndGet();
+                            return true;
+                        })
+                        .addStage("slow", 1, item -> {
+                            release.await();
+                            return true;
+                        })
+                        .run(IntStream.range(0, 20).boxed().collect(Collectors.toList()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        pipeline.start();
+        Thread.sleep(200);
+
+        //one item is processed by the slow stage, the queue is full and the fast stage waits with the next one
+        assertThat(passed.get()).isEqualTo(capacity + 2);
+        assertThat(Metrics.INSTANCE.gauge("test.backpressure.queue.slow").getMax()).isEqualTo(capacity);
+
+        release.countDown();
+        pipeline.join(TimeUnit.SECONDS.toMillis(10));
+        assertThat(pipeline.isAlive()).isFalse();
+        assertThat(passed.get()).isEqualTo(20);
+    }
+
+    @Test
+    public void everyItemIsProcessedOnceByEveryStage() throws InterruptedException {
+        ConcurrentHashMap<Integer, AtomicInteger> counts = new ConcurrentHashMap<>();
+        List<Integer> items = IntStream.range(0, 1000).boxed().collect(Collectors.toList());
+
+        new Pipeline<Integer>("test.once", 4, (item, e) -> {
+        })
+                .addStage("first", 4, item -> counts.computeIfAbsent(item, i -> new AtomicInteger()).incrementAndGet() > 0)
+                .addStage("second", 3, item -> counts.get(item).incrementAndGet() > 0)
+                .run(items);
+
+        assertThat(counts).hasSize(1000);
+        assertThat(counts.values()).allMatch(count -> count.get() == 2);
+    }
+}
@@ -0,0 +1,110 @@
+package com.hesoun.extracting;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Jakub Hesoun
+ */
+public class ResponseCacheTest {
+    private Path directory;
+
+    @Before
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("cache");
+    }
+
+    @After
+    public void deleteDirectory() throws IOException {
+        Files.walk(directory).sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+    }
+
+    @Test
+    public void expiredResponseIsNotReturnedButCanBeReplayed() throws IOException {
+        ResponseCache cache = new ResponseCache(directory, Duration.ofHours(1), Long.MAX_VALUE);
+        cache.put("AAA", "AAA?period1=1", "first".getBytes(StandardCharsets.UTF_8));
+        cache.put("AAA", "AAA?period1=2", "second".getBytes(StandardCharsets.UTF_8));
+        Path first = cache.getEntries("AAA").get(0);
+        Files.setLastModifiedTime(first, FileTime.fromMillis(System.currentTimeMillis() - Duration.ofDays(1).toMillis()));
+
+        assertThat(read(cache.get("AAA", "AAA?period1=2"))).isEqualTo("second");
+        assertThat(cache.getEntries("AAA")).hasSize(2);
+        assertThat(read(cache.open(cache.getEntries("AAA").get(0)))).isEqualTo("first");
+        assertThat(cache.get("AAA", "AAA?period1=1")).isNull();
+        //expired entry is kept until it is refetched
+        assertThat(cache.getEntries("AAA")).hasSize(2);
+        assertThat(read(cache.open(cache.getEntries("AAA").get(0)))).isEqualTo("first");
+
+        cache.put("AAA", "AAA?period1=1", "refetched".getBytes(StandardCharsets.UTF_8));
+
+        assertThat(read(cache.get("AAA", "AAA?period1=1"))).isEqualTo("refetched");
+        assertThat(cache.getEntries("AAA")).hasSize(2);
+    }
+
+    @Test
+    public void oldestResponsesAreEvictedWhenCacheIsFull() throws IOException {
+        //random bytes are not compressed, so every entry takes a bit more than 1kB
+        ResponseCache cache = new ResponseCache(directory, Duration.ofHours(1), 3500);
+        Random random = new Random(1);
+        for (int i = 0; i < 5; i++) {
+            byte[] response = new byte[1000];
+            random.nextBytes(response);
+            cache.put("S" + i, "S" + i, response);
+            Files.setLastModifiedTime(cache.getEntries("S" + i).get(0), FileTime.fromMillis(1000L * i));
+        }
+
+        assertThat(cache.getEntries("S0")).isEmpty();
+        assertThat(cache.getEntries("S1")).isEmpty();
+        assertThat(cache.getEntries("S2")).hasSize(1);
+        assertThat(cache.getEntries("S3")).hasSize(1);
+        assertThat(cache.getEntries("S4")).hasSize(1);
+    }
+
+    @Test
+    public void entriesDeletedByOthersAreSkipped() throws IOException {
+        ResponseCache cache = new ResponseCache(directory, Duration.ofHours(1), 3500);
+        Random random = new Random(2);
+        for (int i = 0; i < 8; i++) {
+            byte[] response = new byte[1000];
+            random.nextBytes(response);
+            cache.put("S" + i, "S" + i, response);
+            Files.setLastModifiedTime(cache.getEntries("S" + i).get(0), FileTime.fromMillis(1000L * i));
+            //another process cleans the cache up
+            if (i % 3 == 0) {
+                Files.delete(cache.getEntries("S" + i).get(0));
+            }
+        }
+
+        assertThat(cache.get("S6", "S6")).isNull();
+        assertThat(cache.getEntries("S7")).hasSize(1);
+        long size = 0;
+        for (int i = 0; i < 8; i++) {
+            for (Path entry : cache.getEntries("S" + i)) {
+                size += Files.size(entry);
+            }
+        }
+        assertThat(size).isLessThanOrEqualTo(3500);
+    }
+
+    private static String read(InputStream in) throws IOException {
+        try (InputStream stream = in) {
+            byte[] buffer = new byte[64];
+            int length = stream.read(buffer);
+            return new String(buffer, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+}
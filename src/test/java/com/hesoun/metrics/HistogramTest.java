@@ -0,0 +1,44 @@
+package com.hesoun.metrics;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * @author Jakub Hesoun
+ */
+public class HistogramTest {
+
+    @Test
+    public void bucketHoldsValuesWithRelativeErrorBelowOneSixtyFourth() {
+        Random random = new Random(1);
+        for (int i = 0; i < 100_000; i++) {
+            long value = (random.nextLong() & Long.MAX_VALUE) >>> random.nextInt(63);
+            long lowest = Histogram.lowestValue(Histogram.index(value));
+
+            assertThat(lowest).isLessThanOrEqualTo(value);
+            assertThat(value - lowest).isLessThanOrEqualTo(value / 64);
+        }
+        assertThat(Histogram.index(Long.MAX_VALUE)).isLessThan((Long.SIZE - 6) * 64);
+        assertThat(Histogram.lowestValue(Histogram.index(127))).isEqualTo(127);
+    }
+
+    @Test
+    public void percentilesOfUniformValues() {
+        Histogram histogram = new Histogram();
+        for (long value = 1; value <= 10_000; value++) {
+            histogram.record(value * 1000);
+        }
+
+        assertThat(histogram.getCount()).isEqualTo(10_000);
+        assertThat(histogram.getMax()).isEqualTo(10_000_000);
+        assertThat(histogram.getMean()).isEqualTo(5_000_500.0);
+        assertThat((double) histogram.getPercentile(50)).isCloseTo(5_000_000, within(5_000_000 / 64.0));
+        assertThat((double) histogram.getPercentile(99)).isCloseTo(9_900_000, within(9_900_000 / 64.0));
+        assertThat(histogram.getPercentile(100)).isLessThanOrEqualTo(histogram.getMax());
+        assertThat(new Histogram().getPercentile(50)).isZero();
+    }
+}
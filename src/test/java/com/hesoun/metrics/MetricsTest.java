@@ -0,0 +1,38 @@
+package com.hesoun.metrics;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * @author Jakub Hesoun
+ */
+public class MetricsTest {
+
+    @Test
+    public void summaryAndJsonContainUsedMetrics() throws Exception {
+        Metrics.INSTANCE.counter("test.counter").add(3);
+        Metrics.INSTANCE.gauge("test.gauge").set(7);
+        Metrics.INSTANCE.gauge("test.gauge").set(2);
+        Metrics.INSTANCE.histogram("test.timer").record(2_000_000);
+        Path file = Files.createTempFile("metrics", ".json");
+
+        Metrics.INSTANCE.writeJson(file);
+        JsonNode json = new ObjectMapper().readTree(file.toFile());
+        Files.delete(file);
+
+        assertThat(Metrics.INSTANCE.counter("test.counter")).isSameAs(Metrics.INSTANCE.counter("test.counter"));
+        assertThat(Metrics.INSTANCE.getSummary()).contains("test.counter", "test.gauge", "test.timer", "2.000");
+        assertThat(json.at("/counters/test.counter").asLong()).isEqualTo(3);
+        assertThat(json.at("/gauges/test.gauge/value").asLong()).isEqualTo(2);
+        assertThat(json.at("/gauges/test.gauge/max").asLong()).isEqualTo(7);
+        assertThat(json.at("/timers/test.timer/count").asLong()).isEqualTo(1);
+        assertThat(json.at("/timers/test.timer/p50").asDouble()).isEqualTo(2.0, within(2.0 / 64));
+    }
+}
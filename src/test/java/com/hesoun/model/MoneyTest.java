@@ -0,0 +1,67 @@
+package com.hesoun.model;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author Jakub Hesoun
+ */
+public class MoneyTest {
+
+    @Test
+    public void decimalsAreRoundedHalfUp() {
+        assertThat(Money.of(new BigDecimal("12.3456785")).getUnits()).isEqualTo(12_345_679);
+        assertThat(Money.of(new BigDecimal("12.3456784999")).getUnits()).isEqualTo(12_345_678);
+        assertThat(Money.of(new BigDecimal("-12.3456785")).getUnits()).isEqualTo(-12_345_679);
+        assertThat(Money.of(new BigDecimal("1E+3")).getUnits()).isEqualTo(1_000_000_000);
+        assertThat(Money.of(25).toBigDecimal()).isEqualTo(new BigDecimal("25"));
+        assertThat(Money.ofUnits(12_500_000).toString()).isEqualTo("12.5");
+    }
+
+    @Test
+    public void unscaledValuesAreConvertedSameAsBigDecimals() {
+        Random random = new Random(3);
+        for (int i = 0; i < 10_000; i++) {
+            long unscaledValue = random.nextLong() >> random.nextInt(64);
+            int scale = random.nextInt(20) - 2;
+            BigDecimal value = BigDecimal.valueOf(unscaledValue, scale);
+            if (value.abs().compareTo(BigDecimal.valueOf(Long.MAX_VALUE, Money.SCALE)) >= 0) {
+                continue;
+            }
+            assertThat(Money.of(unscaledValue, scale)).as("%s", value).isEqualTo(Money.of(value));
+        }
+    }
+
+    @Test
+    public void sharesAreRoundedDown() {
+        Money amount = Money.of(3000);
+        Money price = Money.of(new BigDecimal("123.45"));
+
+        assertThat(amount.divideToIntegral(price))
+                .isEqualTo(BigDecimal.valueOf(3000).divide(new BigDecimal("123.45"), BigDecimal.ROUND_DOWN).longValue());
+        assertThat(price.multiply(24).subtract(price).add(price)).isEqualTo(Money.of(new BigDecimal("2962.80")));
+        assertThatThrownBy(() -> amount.divideToIntegral(Money.ZERO)).isInstanceOf(ArithmeticException.class);
+    }
+
+    @Test
+    public void overflowIsNotSilent() {
+        assertThatThrownBy(() -> Money.ofUnits(Long.MAX_VALUE).add(Money.ofUnits(1)))
+                .isInstanceOf(ArithmeticException.class);
+        assertThatThrownBy(() -> Money.of(new BigDecimal("1E+13"))).isInstanceOf(ArithmeticException.class);
+    }
+
+    @Test
+    public void isWrittenToJsonAsNumber() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        Money money = Money.of(new BigDecimal("1234.567891"));
+
+        assertThat(mapper.writeValueAsString(money)).isEqualTo("1234.567891");
+        assertThat(mapper.readValue("1234.567891", Money.class)).isEqualTo(money);
+    }
+}
@@ -0,0 +1,68 @@
+package com.hesoun.model;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Jakub Hesoun
+ */
+public class PriceSeriesTest {
+    private static final LocalDate START = LocalDate.of(2017, 1, 2);
+
+    @Test
+    public void getLastPricesIsOrderedDescending() {
+        PriceSeries series = createSeries(10);
+
+        PriceWindow prices = series.getLastPrices(START.plusDays(5), 3);
+
+        assertThat(prices.size()).isEqualTo(3);
+        assertThat(prices.getAdjustedCloses()).containsExactly(
+                new BigDecimal("5.5"), new BigDecimal("4.5"), new BigDecimal("3.5"));
+        assertThat(prices.getDate(0)).isEqualTo(START.plusDays(5));
+        assertThat(prices.getDate(2)).isEqualTo(START.plusDays(3));
+    }
+
+    @Test
+    public void getPriceKeepsValuesAndScales() {
+        PriceSeries series = createSeries(3);
+
+        HistoricalDailyPrice price = series.getLastPrices(START.plusDays(1), 1).getPrice(0);
+
+        assertThat(price.getDate()).isEqualTo(START.plusDays(1).atStartOfDay());
+        assertThat(price.getOpen()).isEqualTo(new BigDecimal("1.50"));
+        assertThat(price.getAdjustedClose()).isEqualTo(new BigDecimal("1.5"));
+        assertThat(price.getVolume()).isEqualTo(1000);
+        assertThat(price.getStockId()).isEqualTo(1);
+    }
+
+    @Test
+    public void getLastPricesReturnsOnlyAvailableHistory() {
+        PriceSeries series = createSeries(10);
+
+        assertThat(series.getLastPrices(START.minusDays(1), 3).isEmpty()).isTrue();
+        assertThat(series.getLastPrices(START.plusDays(1), 3).size()).isEqualTo(2);
+        assertThat(series.getLastPrices(START.plusDays(100), 3).getAdjustedClose(0)).isEqualTo(new BigDecimal("9.5"));
+    }
+
+    @Test
+    public void getLastPricesCanGoBackInTime() {
+        PriceSeries series = createSeries(10);
+
+        series.getLastPrices(START.plusDays(8), 1);
+
+        assertThat(series.getLastPrices(START.plusDays(2), 1).getAdjustedClose(0)).isEqualTo(new BigDecimal("2.5"));
+    }
+
+    private static PriceSeries createSeries(int days) {
+        PriceSeries.Builder builder = PriceSeries.builder(1);
+        for (int i = 0; i < days; i++) {
+            BigDecimal price = BigDecimal.valueOf(i).add(new BigDecimal("0.5"));
+            builder.add(START.plusDays(i), price.setScale(2), price, price, price, 1000, price, price);
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,58 @@
+package com.hesoun.model;
+
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Jakub Hesoun
+ */
+public class TradingCalendarTest {
+    private static final LocalDate FRIDAY = LocalDate.of(2017, 8, 11);
+    private static final LocalDate MONDAY = LocalDate.of(2017, 8, 14);
+    private static final LocalDate TUESDAY = LocalDate.of(2017, 8, 15);
+
+    private final TradingCalendar calendar = TradingCalendar.of(Arrays.asList(TUESDAY, FRIDAY, MONDAY, FRIDAY));
+
+    @Test
+    public void isTradingDay() {
+        assertThat(calendar.size()).isEqualTo(3);
+        assertThat(calendar.isTradingDay(FRIDAY)).isTrue();
+        assertThat(calendar.isTradingDay(FRIDAY.plusDays(1))).isFalse();
+        assertThat(calendar.isTradingDay(TUESDAY)).isTrue();
+        assertThat(calendar.isTradingDay(FRIDAY.minusDays(1))).isFalse();
+        assertThat(calendar.isTradingDay(TUESDAY.plusDays(1))).isFalse();
+    }
+
+    @Test
+    public void nextTradingDay() {
+        assertThat(calendar.nextTradingDay(FRIDAY.minusYears(1))).isEqualTo(FRIDAY);
+        assertThat(calendar.nextTradingDay(FRIDAY)).isEqualTo(MONDAY);
+        assertThat(calendar.nextTradingDay(FRIDAY.plusDays(1))).isEqualTo(MONDAY);
+        assertThat(calendar.nextTradingDay(MONDAY)).isEqualTo(TUESDAY);
+        assertThat(calendar.nextTradingDay(TUESDAY)).isNull();
+        assertThat(calendar.firstTradingDayFrom(MONDAY)).isEqualTo(MONDAY);
+        assertThat(calendar.firstTradingDayFrom(MONDAY.minusDays(1))).isEqualTo(MONDAY);
+    }
+
+    @Test
+    public void tradingDaysBetween() {
+        assertThat(calendar.tradingDaysBetween(FRIDAY, TUESDAY)).isEqualTo(2);
+        assertThat(calendar.tradingDaysBetween(FRIDAY.minusYears(1), TUESDAY.plusYears(1))).isEqualTo(3);
+        assertThat(calendar.tradingDaysBetween(FRIDAY.plusDays(1), MONDAY)).isEqualTo(0);
+        assertThat(calendar.tradingDaysBetween(TUESDAY, FRIDAY)).isEqualTo(0);
+    }
+
+    @Test
+    public void emptyCalendar() {
+        TradingCalendar empty = TradingCalendar.of(Collections.emptyList());
+
+        assertThat(empty.isTradingDay(FRIDAY)).isFalse();
+        assertThat(empty.nextTradingDay(FRIDAY)).isNull();
+        assertThat(empty.tradingDaysBetween(FRIDAY, TUESDAY)).isEqualTo(0);
+    }
+}
@@ -0,0 +1,83 @@
+package com.hesoun.synthetic;
+
+import com.hesoun.model.HistoricalDailyPrice;
+import com.hesoun.model.Stock;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Jakub Hesoun
+ */
+public class MarketGeneratorTest {
+    private static final LocalDate START = LocalDate.of(1990, 1, 1);
+    private static final LocalDate TO = LocalDate.of(2020, 1, 1);
+
+    @Test
+    public void sameSeedGivesSamePrices() {
+        Stock first = new MarketGenerator(7, START).generate("S00001", TO);
+        Stock second = new MarketGenerator(7, START).generate("S00001", TO);
+        Stock otherSeed = new MarketGenerator(8, START).generate("S00001", TO);
+        Stock otherSymbol = new MarketGenerator(7, START).generate("S00002", TO);
+
+        assertThat(first.getHistoricalDailyPrices()).isNotEmpty().isEqualTo(second.getHistoricalDailyPrices());
+        assertThat(first.getFirstTradedDate()).isEqualTo(second.getFirstTradedDate());
+        assertThat(otherSeed.getHistoricalDailyPrices()).isNotEqualTo(first.getHistoricalDailyPrices());
+        assertThat(otherSymbol.getHistoricalDailyPrices()).isNotEqualTo(first.getHistoricalDailyPrices());
+    }
+
+    @Test
+    public void pricesAreConsistentTradingDays() {
+        MarketGenerator generator = new MarketGenerator(1, START);
+        int splits = 0;
+        for (int i = 1; i <= 20; i++) {
+            Stock stock = generator.generate(String.format("S%05d", i), TO);
+            List<HistoricalDailyPrice> prices = stock.getHistoricalDailyPrices();
+            assertThat(prices.get(0).getDate().toLocalDate()).isAfterOrEqualTo(stock.getFirstTradedDate());
+            LocalDate previous = null;
+            for (HistoricalDailyPrice price : prices) {
+                LocalDate date = price.getDate().toLocalDate();
+                assertThat(date).isBefore(TO);
+                assertThat(date.getDayOfWeek()).isNotIn(DayOfWeek.SATURDAY, DayOfWeek.SUNDAY);
+                assertThat(generator.isTradingDay(date)).isTrue();
+                if (previous != null) {
+                    assertThat(date).isAfter(previous);
+                }
+                previous = date;
+                assertThat(price.getLow()).isLessThanOrEqualTo(price.getOpen()).isLessThanOrEqualTo(price.getHigh());
+                assertThat(price.getLow()).isLessThanOrEqualTo(price.getClose()).isLessThanOrEqualTo(price.getHigh());
+                assertThat(price.getVolume()).isPositive();
+                //adjusted close has more decimal places than the rounded close
+                assertThat(price.getAdjustedClose()).isLessThanOrEqualTo(price.getClose().add(new BigDecimal("0.005")));
+            }
+            //unadjusted closes of the last day are not adjusted by any split
+            HistoricalDailyPrice first = prices.get(0);
+            HistoricalDailyPrice last = prices.get(prices.size() - 1);
+            assertThat(last.getUnadjustedClose()).isEqualByComparingTo(last.getClose());
+            if (first.getUnadjustedClose().compareTo(first.getClose().multiply(BigDecimal.valueOf(1.5))) > 0) {
+                splits++;
+            }
+        }
+        assertThat(splits).isPositive();
+    }
+
+    @Test
+    public void laterEndKeepsEarlierQuotes() {
+        MarketGenerator generator = new MarketGenerator(3, START);
+        for (int i = 1; i <= 5; i++) {
+            String symbol = String.format("S%05d", i);
+            List<HistoricalDailyPrice> shorter = generator.generate(symbol, LocalDate.of(2005, 1, 1)).getHistoricalDailyPrices();
+            List<HistoricalDailyPrice> longer = generator.generate(symbol, TO).getHistoricalDailyPrices();
+
+            for (int day = 0; day < shorter.size(); day++) {
+                assertThat(longer.get(day).getDate()).isEqualTo(shorter.get(day).getDate());
+                assertThat(longer.get(day).getUnadjustedClose()).isEqualTo(shorter.get(day).getUnadjustedClose());
+            }
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.hesoun.synthetic;
+
+import com.hesoun.AosException;
+import com.hesoun.extracting.JsonHelper;
+import com.hesoun.extracting.Pair;
+import com.hesoun.model.HistoricalDailyPrice;
+import com.hesoun.model.Stock;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author Jakub Hesoun
+ */
+public class YahooStubTest {
+    private static final LocalDate START = LocalDate.of(1990, 1, 1);
+
+    private final MarketGenerator generator = new MarketGenerator(5, START);
+    private YahooStub stub;
+
+    @Before
+    public void startStub() throws IOException {
+        stub = YahooStub.start(generator, 0, 2);
+    }
+
+    @After
+    public void stopStub() {
+        stub.close();
+    }
+
+    @Test
+    public void servesGeneratedPricesOfRequestedPeriod() throws IOException {
+        LocalDate from = LocalDate.of(2010, 1, 1);
+        LocalDate to = LocalDate.of(2012, 1, 1);
+        Pair<String, String> component = new Pair<>("S00042", "Synthetic S00042");
+
+        Stock stock = request(component, from, to);
+
+        Stock generated = generator.generate("S00042", to);
+        List<HistoricalDailyPrice> expected = generated.getHistoricalDailyPrices().stream()
+                .filter(price -> !price.getDate().toLocalDate().isBefore(from))
+                .collect(Collectors.toList());
+        assertThat(stock.getSymbol()).isEqualTo("S00042");
+        assertThat(stock.getExchange()).isEqualTo(MarketGenerator.EXCHANGE);
+        assertThat(stock.getFirstTradedDate()).isEqualTo(generated.getFirstTradedDate());
+        assertThat(stock.getHistoricalDailyPrices()).isNotEmpty().isEqualTo(expected);
+    }
+
+    @Test
+    public void requestWithoutPeriodIsAnswered404WithYahooError() throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(stub.getUrl() + "S00001").openConnection();
+
+        assertThat(connection.getResponseCode()).isEqualTo(404);
+        try (InputStream error = connection.getErrorStream()) {
+            assertThatThrownBy(() -> JsonHelper.parseJsonAndCreateStock(error, new Pair<>("S00001", "S00001")))
+                    .isInstanceOf(AosException.class)
+                    .hasMessageContaining("Not Found");
+        }
+    }
+
+    private Stock request(Pair<String, String> component, LocalDate from, LocalDate to) throws IOException {
+        String query = component.getLeft() + "?period1=" + from.atStartOfDay(ZoneId.systemDefault()).toEpochSecond()
+                + "&period2=" + to.atStartOfDay(ZoneId.systemDefault()).toEpochSecond() + "&interval=1d";
+        try (InputStream in = new URL(stub.getUrl() + query).openStream()) {
+            return JsonHelper.parseJsonAndCreateStock(in, component);
+        }
+    }
+}
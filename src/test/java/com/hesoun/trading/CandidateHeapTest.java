@@ -0,0 +1,48 @@
+package com.hesoun.trading;
+
+import com.hesoun.model.RankComparator;
+import com.hesoun.model.Stock;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Jakub Hesoun
+ */
+public class CandidateHeapTest {
+
+    @Test
+    public void pollsInSameOrderAsSortedSetOfRanks() {
+        Random random = new Random(13);
+        CandidateHeap heap = new CandidateHeap(4);
+
+        //heap is reused and grows, ranks are often equal like integer RSI
+        for (int day = 0; day < 50; day++) {
+            heap.clear();
+            List<Stock> stocks = new ArrayList<>();
+            SortedSet<Stock> possibleBuys = new TreeSet<>(new RankComparator());
+            int candidateCount = random.nextInt(40);
+            for (int i = 0; i < candidateCount; i++) {
+                Stock stock = Stock.builder().id(i).symbol("S" + i).exchange("NMS").build();
+                stock.setRank(BigDecimal.valueOf(random.nextInt(20)));
+                stocks.add(stock);
+                possibleBuys.add(stock);
+                heap.add(i, stock.getRank());
+            }
+
+            List<Stock> polled = new ArrayList<>();
+            for (int i = heap.poll(); i >= 0; i = heap.poll()) {
+                polled.add(stocks.get(i));
+            }
+            assertThat(polled).containsExactlyElementsOf(possibleBuys);
+            assertThat(heap.isEmpty()).isTrue();
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.hesoun.trading;
+
+import com.hesoun.Config;
+import com.hesoun.data.InMemoryStorage;
+import com.hesoun.model.Money;
+import com.hesoun.model.Position;
+import com.hesoun.model.Stock;
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author Jakub Hesoun
+ */
+public class InMemoryPortfolioTest {
+    private static final LocalDate DAY = LocalDate.of(2016, 3, 1);
+
+    private final StrategyParameters parameters = StrategyParameters.defaults(30000);
+    private final InMemoryPortfolio portfolio = new InMemoryPortfolio(parameters);
+    private final Stock first = Stock.builder().id(1).symbol("AAA").exchange("NMS").build();
+    private final Stock second = Stock.builder().id(2).symbol("BBB").exchange("NMS").build();
+
+    @Test
+    public void allocationAndOpenPositionsFollowBuysAndSells() {
+        Position firstTen = buy(first, Position.Slice.TEN);
+        Position firstTwenty = buy(first, Position.Slice.TWENTY);
+        Position secondTen = buy(second, Position.Slice.TEN);
+        List<Position> firstBeforeSell = portfolio.getOpenPositions().get(1L);
+
+        assertThat(portfolio.getTotalAllocation()).isEqualTo(3000 + 6000 + 3000);
+        assertThat(portfolio.getOpenPositions()).containsOnlyKeys(1L, 2L);
+        assertThat(firstBeforeSell).containsExactly(firstTen, firstTwenty);
+
+        portfolio.sellPosition(firstTen, Money.of(12), DAY.plusDays(1));
+
+        assertThat(portfolio.getTotalAllocation()).isEqualTo(6000 + 3000);
+        assertThat(portfolio.getOpenPositions().get(1L)).containsExactly(firstTwenty);
+        //lists already handed out are not modified
+        assertThat(firstBeforeSell).containsExactly(firstTen, firstTwenty);
+
+        portfolio.sellPosition(firstTwenty, Money.of(12), DAY.plusDays(1));
+        portfolio.sellPosition(secondTen, Money.of(9), DAY.plusDays(2));
+
+        assertThat(portfolio.getTotalAllocation()).isZero();
+        assertThat(portfolio.getOpenPositions()).isEmpty();
+        assertThat(portfolio.getPositions()).containsExactly(firstTen, firstTwenty, secondTen);
+        assertThat(portfolio.getPositions()).extracting(Position::getStatus).containsOnly(Position.Status.CLOSED);
+        assertThatThrownBy(() -> portfolio.sellPosition(secondTen, Money.of(9), DAY.plusDays(3)))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    public void flushedPositionsAreSameAsStoredOnEveryDecision() {
+        Config config = SimulationFixtures.createConfig(LocalDate.of(2015, 10, 28), LocalDate.of(2016, 12, 1));
+        MarketData marketData = SimulatorTest.createMarketData(30, 720, new Random(3));
+        InMemoryStorage flushed = new InMemoryStorage();
+        InMemoryStorage perDecision = new InMemoryStorage();
+
+        new Simulator(config, parameters, portfolio, 1).simulate(marketData);
+        flushed.insertPositions(portfolio.getPositions());
+        new Simulator(config, parameters, new RepositoryPortfolio(perDecision, parameters), 1).simulate(marketData);
+
+        assertThat(flushed.getPositions()).isNotEmpty();
+        assertThat(flushed.getPositions()).isEqualTo(perDecision.getPositions());
+        assertThat(flushed.getOpenSliceCounts()).isEqualTo(perDecision.getOpenSliceCounts());
+    }
+
+    private Position buy(Stock stock, Position.Slice slice) {
+        Position position = Position.builder()
+                .stock(stock)
+                .buyDate(DAY)
+                .buyPrice(Money.of(10))
+                .slice(slice)
+                .shares(100)
+                .status(Position.Status.OPEN)
+                .build();
+        portfolio.buyPosition(position);
+        return position;
+    }
+}
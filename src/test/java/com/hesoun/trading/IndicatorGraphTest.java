@@ -0,0 +1,339 @@
+package com.hesoun.trading;
+
+import com.hesoun.extracting.JsonHelper;
+import com.hesoun.extracting.Pair;
+import com.hesoun.model.HistoricalDailyPrice;
+import com.hesoun.model.Indicators;
+import com.hesoun.model.PriceSeries;
+import com.hesoun.model.PriceWindow;
+import com.hesoun.model.Stock;
+import com.sun.management.ThreadMXBean;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * @author Jakub Hesoun
+ */
+public class IndicatorGraphTest {
+    private static final LocalDate START = LocalDate.of(2010, 1, 1);
+    private static final int DAYS = 300;
+
+    private final PriceSeries series = createRandomWalk(new Random(11));
+
+    @Test
+    public void sharedIndicatorsAreCalculatedOnce() {
+        IndicatorGraph graph = new IndicatorGraph(Arrays.asList(IndicatorSpec.macdHistogram(12, 26, 9),
+                IndicatorSpec.ema(12), IndicatorSpec.sma(26), IndicatorSpec.macd(12, 26)));
+
+        List<IndicatorSpec> specs = graph.getSpecs();
+        assertThat(specs).containsOnly(IndicatorSpec.sma(12), IndicatorSpec.ema(12), IndicatorSpec.sma(26),
+                IndicatorSpec.ema(26), IndicatorSpec.macd(12, 26), IndicatorSpec.macdSignal(12, 26, 9),
+                IndicatorSpec.macdHistogram(12, 26, 9));
+        assertThat(specs).doesNotHaveDuplicates();
+        for (IndicatorSpec spec : specs) {
+            for (IndicatorSpec input : spec.getInputs()) {
+                assertThat(graph.indexOf(input)).as("input %s of %s", input, spec).isLessThan(graph.indexOf(spec));
+            }
+        }
+    }
+
+    @Test
+    public void smaAndRsiAreSameAsCalculatorService() {
+        assertSameAsCalculatorService(series);
+    }
+
+    @Test
+    public void smaAndRsiKeepScalesOfPrices() {
+        Random random = new Random(5);
+        PriceSeries.Builder builder = PriceSeries.builder(1);
+        BigDecimal close = BigDecimal.ONE;
+        for (int day = 0; day < DAYS; day++) {
+            //scales from 0 to 6 like the prices of different sources, flat days are where rounding differences show up
+            if (random.nextInt(10) != 0) {
+                close = BigDecimal.valueOf(1 + random.nextInt(100_000_000), random.nextInt(7));
+            }
+            builder.add(START.plusDays(day), close, close, close, close, 1000, close, close);
+        }
+        assertSameAsCalculatorService(builder.build());
+    }
+
+    @Test
+    public void stateWrittenAndReadContinuesWithNextPrice() throws IOException {
+        IndicatorGraph graph = new IndicatorGraph(Arrays.asList(IndicatorSpec.sma(200), IndicatorSpec.sma(5),
+                IndicatorSpec.rsi(2)));
+        IndicatorState state = graph.newState();
+        state.update(series.getLastPrices(START.plusDays(250), Integer.MAX_VALUE));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        state.writeTo(new DataOutputStream(bytes));
+        IndicatorState read = graph.newState();
+        read.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertThat(read.getLastEpochDay()).isEqualTo(state.getLastEpochDay());
+        assertThat(read.getLastPrice()).isEqualTo(state.getLastPrice());
+        for (int day = 251; day < DAYS; day++) {
+            PriceWindow priceWindow = series.getLastPrices(START.plusDays(day), Integer.MAX_VALUE);
+            state.update(priceWindow);
+            read.update(priceWindow);
+            for (IndicatorSpec spec : graph.getSpecs()) {
+                assertThat(read.get(spec)).as("%s on day %d", spec, day).isEqualTo(state.get(spec));
+            }
+        }
+    }
+
+    @Test
+    public void smaAndRsiOfYahooPricesAreSameAsCalculatorService() throws Exception {
+        byte[] json = Files.readAllBytes(Paths.get(getClass().getResource("/data.json").toURI()));
+        Stock stock = JsonHelper.parseJsonAndCreateStock(new ByteArrayInputStream(json),
+                new Pair<>("MSFT", "Microsoft Corp."));
+        PriceSeries.Builder builder = PriceSeries.builder(1);
+        stock.getHistoricalDailyPrices().forEach(builder::add);
+        PriceSeries yahooSeries = builder.build();
+        IndicatorState state = new IndicatorGraph(Arrays.asList(IndicatorSpec.sma(200), IndicatorSpec.sma(5),
+                IndicatorSpec.rsi(2))).newState();
+
+        //the prices have about 15 decimal places, so 200 of them do not fit into a long
+        PriceWindow priceWindow = null;
+        for (HistoricalDailyPrice price : stock.getHistoricalDailyPrices()) {
+            priceWindow = yahooSeries.getLastPrices(price.getDate().toLocalDate(), Integer.MAX_VALUE);
+            state.update(priceWindow);
+            if (priceWindow.size() > 200) {
+                Indicators expected = new IndicatorCalculatorService(priceWindow).calculateIndicators();
+                assertThat(state.get(IndicatorSpec.sma(200))).isEqualTo(expected.getSma200());
+                assertThat(state.get(IndicatorSpec.sma(5))).isEqualTo(expected.getSma5());
+                assertThat(state.get(IndicatorSpec.rsi(2))).isEqualTo(expected.getRsi2());
+            }
+        }
+        assertThat(priceWindow.size()).isEqualTo(253);
+        assertThat(state.get(IndicatorSpec.sma(200))).isEqualTo(new BigDecimal("64.955506362915039"));
+    }
+
+    @Test
+    public void changesOfPricesBeyondLongAreExact() {
+        PriceSeries.Builder builder = PriceSeries.builder(1);
+        for (int day = 0; day < 210; day++) {
+            //a change between these prices has 21 digits at scale 15
+            BigDecimal close = day % 3 == 0 ? new BigDecimal("1.234567890123456") : BigDecimal.valueOf(100_000 + day);
+            builder.add(START.plusDays(day), close, close, close, close, 1000, close, close);
+        }
+        PriceSeries wideSeries = builder.build();
+        IndicatorState state = new IndicatorGraph(Arrays.asList(IndicatorSpec.sma(200), IndicatorSpec.sma(5),
+                IndicatorSpec.rsi(2))).newState();
+
+        for (int day = 0; day < 210; day++) {
+            PriceWindow priceWindow = wideSeries.getLastPrices(START.plusDays(day), Integer.MAX_VALUE);
+            state.update(priceWindow);
+            if (priceWindow.size() > 200) {
+                Indicators expected = new IndicatorCalculatorService(priceWindow).calculateIndicators();
+                assertThat(state.get(IndicatorSpec.sma(200))).isEqualTo(expected.getSma200());
+                assertThat(state.get(IndicatorSpec.sma(5))).isEqualTo(expected.getSma5());
+                assertThat(state.get(IndicatorSpec.rsi(2))).isEqualTo(expected.getRsi2());
+            }
+        }
+    }
+
+    /**
+     * Compares SMA200, SMA5 and RSI2 with {@link IndicatorCalculatorService} on every day with enough prices.
+     */
+    private static void assertSameAsCalculatorService(PriceSeries prices) {
+        IndicatorState state = new IndicatorGraph(Arrays.asList(IndicatorSpec.sma(200), IndicatorSpec.sma(5),
+                IndicatorSpec.rsi(2))).newState();
+
+        int compared = 0;
+        for (int day = 0; day < DAYS; day++) {
+            PriceWindow priceWindow = prices.getLastPrices(START.plusDays(day), Integer.MAX_VALUE);
+            state.update(priceWindow);
+            if (priceWindow.size() < 200) {
+                assertThat(state.get(IndicatorSpec.sma(200))).isNull();
+                continue;
+            }
+            //equals on BigDecimal compares also scale
+            Indicators expected = new IndicatorCalculatorService(priceWindow).calculateIndicators();
+            assertThat(state.get(IndicatorSpec.sma(200))).as("SMA200 on day %d", day).isEqualTo(expected.getSma200());
+            assertThat(state.get(IndicatorSpec.sma(5))).as("SMA5 on day %d", day).isEqualTo(expected.getSma5());
+            assertThat(state.get(IndicatorSpec.rsi(2))).as("RSI2 on day %d", day).isEqualTo(expected.getRsi2());
+            compared++;
+        }
+        assertThat(compared).isPositive();
+    }
+
+    @Test
+    public void dailyUpdateOfSmaAndRsiCreatesNoObjects() {
+        IndicatorState state = new IndicatorGraph(Arrays.asList(IndicatorSpec.sma(50), IndicatorSpec.sma(5),
+                IndicatorSpec.rsi(2))).newState();
+        LocalDate[] dates = new LocalDate[DAYS];
+        for (int day = 0; day < DAYS; day++) {
+            dates[day] = START.plusDays(day);
+        }
+        PriceWindow window = series.getLastPrices(dates[0], Integer.MAX_VALUE);
+        state.update(window);
+
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        for (int day = 1; day < DAYS; day++) {
+            state.update(series.getLastPrices(dates[day], Integer.MAX_VALUE, window));
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        //only the measurement itself allocates a few bytes
+        assertThat(allocated).as("bytes allocated in %s days", DAYS - 1).isLessThan(DAYS);
+        assertThat(state.get(IndicatorSpec.sma(50))).isNotNull();
+    }
+
+    @Test
+    public void indicatorsMatchReferenceCalculation() {
+        IndicatorSpec ema = IndicatorSpec.ema(10);
+        IndicatorSpec wilderRsi = IndicatorSpec.wilderRsi(14);
+        IndicatorSpec atr = IndicatorSpec.atr(14);
+        IndicatorSpec upper = IndicatorSpec.bollingerUpper(20, 2);
+        IndicatorSpec lower = IndicatorSpec.bollingerLower(20, 2);
+        IndicatorSpec macd = IndicatorSpec.macd(12, 26);
+        IndicatorSpec signal = IndicatorSpec.macdSignal(12, 26, 9);
+        IndicatorSpec histogram = IndicatorSpec.macdHistogram(12, 26, 9);
+        IndicatorState state = new IndicatorGraph(Arrays.asList(ema, wilderRsi, atr, upper, lower, macd, signal,
+                histogram)).newState();
+
+        double[] closes = new double[DAYS];
+        double[] trueRanges = new double[DAYS];
+        PriceWindow all = series.getLastPrices(START.plusDays(DAYS), Integer.MAX_VALUE);
+        for (int day = 0; day < DAYS; day++) {
+            int index = DAYS - 1 - day;
+            double adjustment = all.getAdjustedClose(index).doubleValue() / all.getClose(index).doubleValue();
+            double high = all.getHigh(index).doubleValue() * adjustment;
+            double low = all.getLow(index).doubleValue() * adjustment;
+            closes[day] = all.getAdjustedClose(index).doubleValue();
+            trueRanges[day] = day == 0 ? high - low
+                    : Math.max(high - low, Math.max(Math.abs(high - closes[day - 1]), Math.abs(low - closes[day - 1])));
+        }
+        double[] expectedEma = ema(closes, 10);
+        double[] expectedRsi = wilderRsi(closes, 14);
+        double[] expectedAtr = smoothed(trueRanges, 0, 14, 1.0 / 14);
+        double[] expectedMacd = subtract(ema(closes, 12), ema(closes, 26));
+        double[] expectedSignal = smoothed(expectedMacd, 25, 9, 2.0 / 10);
+
+        for (int day = 0; day < DAYS; day++) {
+            state.update(series.getLastPrices(START.plusDays(day), Integer.MAX_VALUE));
+            assertValue(state.get(ema), expectedEma[day]);
+            assertValue(state.get(wilderRsi), expectedRsi[day]);
+            assertValue(state.get(atr), expectedAtr[day]);
+            assertValue(state.get(macd), expectedMacd[day]);
+            assertValue(state.get(signal), expectedSignal[day]);
+            assertValue(state.get(histogram), expectedMacd[day] - expectedSignal[day]);
+            if (day < 19) {
+                assertThat(state.get(upper)).isNull();
+                continue;
+            }
+            double mean = 0;
+            for (int i = day - 19; i <= day; i++) {
+                mean += closes[i] / 20;
+            }
+            double variance = 0;
+            for (int i = day - 19; i <= day; i++) {
+                variance += (closes[i] - mean) * (closes[i] - mean) / 20;
+            }
+            assertValue(state.get(upper), mean + 2 * Math.sqrt(variance));
+            assertValue(state.get(lower), mean - 2 * Math.sqrt(variance));
+        }
+    }
+
+    @Test
+    public void squareRootIsRoundedToSixteenDigits() {
+        assertThat(IndicatorType.sqrt(BigDecimal.valueOf(2))).isEqualTo(new BigDecimal("1.414213562373095"));
+        assertThat(IndicatorType.sqrt(new BigDecimal("1.44"))).isEqualByComparingTo("1.2");
+        assertThat(IndicatorType.sqrt(new BigDecimal("123456789.0123456789")))
+                .isEqualTo(new BigDecimal("11111.11106111111"));
+        assertThat(IndicatorType.sqrt(BigDecimal.ZERO)).isEqualTo(BigDecimal.ZERO);
+    }
+
+    private static void assertValue(BigDecimal actual, double expected) {
+        if (Double.isNaN(expected)) {
+            assertThat(actual).isNull();
+        } else {
+            assertThat(actual).isNotNull();
+            //EMAs are seeded by SMA rounded to the scale of the prices
+            assertThat(actual.doubleValue()).isCloseTo(expected, within(1e-4));
+        }
+    }
+
+    /**
+     * @return EMA seeded by SMA of the first {@param period} values, NaN before
+     */
+    private static double[] ema(double[] values, int period) {
+        return smoothed(values, 0, period, 2.0 / (period + 1));
+    }
+
+    /**
+     * @return average of the values from {@param start} seeded by simple average of the first {@param period} values
+     */
+    private static double[] smoothed(double[] values, int start, int period, double factor) {
+        double[] result = new double[values.length];
+        Arrays.fill(result, Double.NaN);
+        double sum = 0;
+        for (int i = start; i < values.length; i++) {
+            if (i < start + period - 1) {
+                sum += values[i];
+            } else if (i == start + period - 1) {
+                result[i] = (sum + values[i]) / period;
+            } else {
+                result[i] = result[i - 1] + factor * (values[i] - result[i - 1]);
+            }
+        }
+        return result;
+    }
+
+    private static double[] wilderRsi(double[] closes, int period) {
+        double[] gains = new double[closes.length];
+        double[] loses = new double[closes.length];
+        for (int i = 1; i < closes.length; i++) {
+            gains[i] = Math.max(0, closes[i] - closes[i - 1]);
+            loses[i] = Math.max(0, closes[i - 1] - closes[i]);
+        }
+        double[] averageGains = smoothed(gains, 1, period, 1.0 / period);
+        double[] averageLoses = smoothed(loses, 1, period, 1.0 / period);
+        double[] result = new double[closes.length];
+        for (int i = 0; i < closes.length; i++) {
+            result[i] = averageLoses[i] == 0 ? 100 : 100 - 100 / (1 + averageGains[i] / averageLoses[i]);
+        }
+        return result;
+    }
+
+    private static double[] subtract(double[] minuends, double[] subtrahends) {
+        double[] result = new double[minuends.length];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = minuends[i] - subtrahends[i];
+        }
+        return result;
+    }
+
+    private static PriceSeries createRandomWalk(Random random) {
+        PriceSeries.Builder builder = PriceSeries.builder(1);
+        double price = 100;
+        for (int day = 0; day < DAYS; day++) {
+            price = Math.max(1, price * (1 + random.nextGaussian() * 0.02));
+            BigDecimal close = BigDecimal.valueOf(price).setScale(2, BigDecimal.ROUND_HALF_UP);
+            BigDecimal high = close.add(BigDecimal.valueOf(random.nextInt(300), 2));
+            BigDecimal low = close.subtract(BigDecimal.valueOf(random.nextInt(300), 2));
+            //adjusted by a dividend, so high and low have to be adjusted too
+            BigDecimal adjustedClose = close.multiply(BigDecimal.valueOf(97, 2)).setScale(4, BigDecimal.ROUND_HALF_UP);
+            builder.add(START.plusDays(day), close, high, low, close, 1000, adjustedClose, close);
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,257 @@
+package com.hesoun.trading;
+
+import com.hesoun.AosException;
+import com.hesoun.data.InMemoryStorage;
+import com.hesoun.data.PriceSource;
+import com.hesoun.model.HistoricalDailyPrice;
+import com.hesoun.model.Indicators;
+import com.hesoun.model.Money;
+import com.hesoun.model.Position;
+import com.hesoun.model.PriceSeries;
+import com.hesoun.model.PriceWindow;
+import com.hesoun.model.Stock;
+import com.hesoun.synthetic.MarketGenerator;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @author Jakub Hesoun
+ */
+public class SignalGeneratorTest {
+    private static final LocalDate TO = LocalDate.of(2013, 1, 1);
+    private static final LocalDate LAST_DAY = LocalDate.of(2012, 12, 31);
+
+    private final StrategyParameters parameters = StrategyParameters.defaults(30000);
+    private final InMemoryStorage storage = new InMemoryStorage();
+    //from, to and warm-up days of every price query
+    private final List<List<Object>> queries = new ArrayList<>();
+    private final PriceSource prices = new PriceSource() {
+        @Override
+        public List<Stock> getAllStock() {
+            return storage.getAllStock();
+        }
+
+        @Override
+        public Map<Long, PriceSeries> getPriceSeries(LocalDate from, LocalDate to, int warmUpDays) {
+            queries.add(Arrays.asList(from, to, warmUpDays));
+            return storage.getPriceSeries(from, to, warmUpDays);
+        }
+    };
+    private Path directory;
+
+    @Before
+    public void generateMarket() throws IOException {
+        new MarketGenerator(5, LocalDate.of(2000, 1, 1)).populate(storage, 40, TO);
+        directory = Files.createTempDirectory("signal");
+    }
+
+    @After
+    public void deleteState() throws IOException {
+        for (Path file : Files.newDirectoryStream(directory)) {
+            Files.delete(file);
+        }
+        Files.delete(directory);
+    }
+
+    @Test
+    public void dailyUpdatedStateGivesSameSignalAsWarmUp() throws IOException {
+        SignalGenerator daily = createGenerator("daily.state");
+        for (LocalDate date = LAST_DAY.minusDays(20); date.isBefore(LAST_DAY); date = date.plusDays(1)) {
+            daily.generate(date);
+        }
+
+        Signal updated = daily.generate(LAST_DAY);
+        Signal again = daily.generate(LAST_DAY.plusDays(3));
+        Signal warmedUp = createGenerator("warm-up.state").generate(LAST_DAY);
+
+        assertThat(updated.getCandidates()).isNotEmpty();
+        assertThat(updated).isEqualTo(warmedUp);
+        assertThat(again).isEqualTo(warmedUp);
+        assertThat(getRanks(updated.getCandidates())).isEqualTo(getRanks(warmedUp.getCandidates()));
+    }
+
+    @Test
+    public void rulesAreEvaluatedOnLastClose() throws IOException {
+        for (Stock stock : storage.getAllStock()) {
+            storage.buyPosition(Position.builder()
+                    .stock(stock)
+                    .buyDate(LAST_DAY.minusDays(10))
+                    .buyPrice(Money.of(10))
+                    .slice(Position.Slice.TEN)
+                    .shares(1)
+                    .build());
+        }
+        List<String> expectedSells = new ArrayList<>();
+        List<String> expectedCandidates = new ArrayList<>();
+        for (Stock stock : storage.getAllStock()) {
+            PriceWindow window = storage.getPriceSeries(LAST_DAY, LAST_DAY, 200).get(stock.getId())
+                    .getLastPrices(LAST_DAY, 200);
+            if (window.size() < 200 || window.getEpochDay(0) != LAST_DAY.toEpochDay()) {
+                continue;
+            }
+            Indicators indicators = new IndicatorCalculatorService(window).calculateIndicators();
+            if (window.getAdjustedClose(0).compareTo(indicators.getSma5()) > 0) {
+                expectedSells.add(stock.getSymbol());
+            }
+            if (window.getAdjustedClose(0).compareTo(indicators.getSma200()) > 0) {
+                expectedCandidates.add(stock.getSymbol());
+            }
+        }
+
+        Signal signal = createGenerator("signal.state").generate(LAST_DAY);
+
+        assertThat(expectedSells).isNotEmpty();
+        assertThat(signal.getDate()).isEqualTo(LAST_DAY);
+        assertThat(getSymbols(signal.getSells())).containsOnlyElementsOf(expectedSells).hasSameSizeAs(expectedSells);
+        assertThat(getSymbols(signal.getCandidates())).containsOnlyElementsOf(expectedCandidates).hasSameSizeAs(expectedCandidates);
+        assertThat(getRanks(signal.getCandidates())).isSorted();
+        //the signal does not trade
+        assertThat(storage.getOpenPositions()).hasSize(storage.getAllStock().size());
+    }
+
+    @Test
+    public void haltedAndEmptyStocksDoNotReloadPrices() throws IOException {
+        persistStock("HALT", LocalDate.of(2012, 1, 2), LocalDate.of(2012, 6, 29));
+        persistStock("EMPTY", LAST_DAY, LAST_DAY.minusDays(1));
+        SignalGenerator generator = createGenerator("signal.state");
+        generator.generate(LAST_DAY.minusDays(7));
+        queries.clear();
+
+        generator.generate(LAST_DAY);
+
+        //only the prices after the newest state are loaded, none of the stocks is warmed up again
+        assertThat(queries).hasSize(1);
+        assertThat((LocalDate) queries.get(0).get(0)).isAfter(LAST_DAY.minusDays(8));
+        assertThat(queries.get(0).get(2)).isEqualTo(1);
+    }
+
+    @Test
+    public void stateMissingPricesIsWarmedUpAgain() throws IOException {
+        long stockId = persistStock("GAP", LocalDate.of(2012, 1, 2), LocalDate.of(2012, 6, 29)).getId();
+        SignalGenerator generator = createGenerator("signal.state");
+        generator.generate(LAST_DAY.minusDays(7));
+        //prices of the gap are stored later
+        persistStock("GAP", LocalDate.of(2012, 7, 2), LAST_DAY);
+        queries.clear();
+
+        generator.generate(LAST_DAY);
+        createGenerator("warm-up.state").generate(LAST_DAY);
+
+        assertThat(queries.get(1)).containsExactly(LAST_DAY, LAST_DAY, parameters.getWarmUpDays());
+        IndicatorGraph graph = new IndicatorGraph(parameters.createStrategy().getIndicators());
+        IndicatorState updated = SignalGenerator.readState(directory.resolve("signal.state"), graph).get(stockId);
+        IndicatorState warmedUp = SignalGenerator.readState(directory.resolve("warm-up.state"), graph).get(stockId);
+        assertThat(updated.getLastEpochDay()).isEqualTo((int) LAST_DAY.toEpochDay());
+        for (IndicatorSpec spec : graph.getSpecs()) {
+            assertThat(updated.get(spec)).as("%s", spec).isNotNull().isEqualTo(warmedUp.get(spec));
+        }
+    }
+
+    @Test
+    public void candidatesAreSameAsInSimulationOfSameDay() throws IOException {
+        List<BigDecimal> simulatedRanks = new ArrayList<>();
+        Strategy strategy = new MeanReversionStrategy(parameters.getLongSmaPeriod(), parameters.getShortSmaPeriod(),
+                parameters.getRsiPeriod()) {
+            @Override
+            public BigDecimal getRank(BigDecimal price, IndicatorValues indicators) {
+                BigDecimal rank = super.getRank(price, indicators);
+                simulatedRanks.add(rank);
+                return rank;
+            }
+        };
+        //only the last day is simulated, the indicators are warmed up from the prices before it
+        MarketData marketData = MarketData.load(prices, LAST_DAY, LAST_DAY, parameters.getWarmUpDays());
+        new Simulator(SimulationFixtures.createConfig(LAST_DAY, TO), parameters, strategy,
+                new InMemoryPortfolio(parameters), 1).simulate(marketData);
+
+        Signal signal = createGenerator("signal.state").generate(LAST_DAY);
+
+        assertThat(signal.getCandidates()).isNotEmpty();
+        List<BigDecimal> signalRanks = new ArrayList<>();
+        for (Stock candidate : signal.getCandidates()) {
+            signalRanks.add(candidate.getRank());
+        }
+        simulatedRanks.sort(null);
+        //equals on BigDecimal compares also scale
+        assertThat(signalRanks).isEqualTo(simulatedRanks);
+    }
+
+    @Test
+    public void dateBeforeStateIsRejected() throws IOException {
+        SignalGenerator generator = createGenerator("signal.state");
+        generator.generate(LAST_DAY);
+        byte[] state = Files.readAllBytes(directory.resolve("signal.state"));
+
+        assertThatThrownBy(() -> generator.generate(LAST_DAY.minusDays(10)))
+                .isInstanceOf(AosException.class)
+                .hasMessageContaining(LAST_DAY.toString());
+        assertThat(Files.readAllBytes(directory.resolve("signal.state"))).isEqualTo(state);
+    }
+
+    /**
+     * Persists stock with prices of the weekdays between {@param from} and {@param to}.
+     */
+    private Stock persistStock(String symbol, LocalDate from, LocalDate to) {
+        Random random = new Random(from.toEpochDay());
+        BigDecimal price = BigDecimal.valueOf(50);
+        List<HistoricalDailyPrice> stockPrices = new ArrayList<>();
+        for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+            if (day.getDayOfWeek() == DayOfWeek.SATURDAY || day.getDayOfWeek() == DayOfWeek.SUNDAY) {
+                continue;
+            }
+            price = price.add(BigDecimal.valueOf(random.nextInt(201) - 100, 2)).max(BigDecimal.ONE);
+            stockPrices.add(HistoricalDailyPrice.builder()
+                    .date(day.atStartOfDay())
+                    .open(price)
+                    .high(price)
+                    .low(price)
+                    .close(price)
+                    .volume(1000)
+                    .adjustedClose(price)
+                    .unadjustedClose(price)
+                    .build());
+        }
+        return storage.persist(Stock.builder()
+                .symbol(symbol)
+                .name(symbol)
+                .exchange("NYSE")
+                .historicalDailyPrices(stockPrices)
+                .build());
+    }
+
+    private SignalGenerator createGenerator(String stateFile) {
+        return new SignalGenerator(parameters, prices, storage, null, directory.resolve(stateFile));
+    }
+
+    private static List<String> getSymbols(List<Stock> stocks) {
+        List<String> symbols = new ArrayList<>();
+        for (Stock stock : stocks) {
+            symbols.add(stock.getSymbol());
+        }
+        return symbols;
+    }
+
+    private static List<Double> getRanks(List<Stock> stocks) {
+        List<Double> ranks = new ArrayList<>();
+        for (Stock stock : stocks) {
+            ranks.add(stock.getRank().doubleValue());
+        }
+        return ranks;
+    }
+}
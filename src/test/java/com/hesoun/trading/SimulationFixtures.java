@@ -0,0 +1,36 @@
+package com.hesoun.trading;
+
+import com.hesoun.Config;
+
+import java.time.LocalDate;
+import java.util.Properties;
+
+/**
+ * Fixtures shared by the simulation tests and the benchmarks.
+ *
+ * @author Jakub Hesoun
+ */
+public final class SimulationFixtures {
+
+    private SimulationFixtures() {
+        throw new AssertionError("No SimulationFixtures instance for you! This is static helper class.");
+    }
+
+    /**
+     * @return config of a simulation between {@param from} and {@param to} with the balance of 30000, the DB is
+     * configured but the positions are not persisted into it
+     */
+    public static Config createConfig(LocalDate from, LocalDate to) {
+        Properties properties = new Properties();
+        properties.setProperty("yahoo.url", "http://localhost/");
+        properties.setProperty("date.from", from.toString());
+        properties.setProperty("date.to", to.toString());
+        properties.setProperty("database.url", "jdbc:postgresql://localhost/test");
+        properties.setProperty("database.user", "test");
+        properties.setProperty("database.password", "test");
+        properties.setProperty("initial.balance", "30000");
+        properties.setProperty("sweep.parallelism", "4");
+        properties.setProperty("simulation.persist.positions", "false");
+        return new Config(properties);
+    }
+}
@@ -0,0 +1,294 @@
+package com.hesoun.trading;
+
+import com.hesoun.Config;
+import com.hesoun.data.InMemoryStorage;
+import com.hesoun.data.Universe;
+import com.hesoun.model.IndicatorSeries;
+import com.hesoun.model.Indicators;
+import com.hesoun.model.Position;
+import com.hesoun.model.PriceSeries;
+import com.hesoun.model.PriceWindow;
+import com.hesoun.model.Stock;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @author Jakub Hesoun
+ */
+public class SimulatorTest {
+    private static final LocalDate START = LocalDate.of(2015, 1, 1);
+    private static final Config CONFIG = SimulationFixtures.createConfig(START.plusDays(300), START.plusDays(700));
+
+    private final MarketData marketData = createMarketData(30, 720, new Random(3));
+    private final StrategyParameters parameters = StrategyParameters.defaults(CONFIG.getInitialBalance());
+
+    @Test
+    public void parallelSimulationBuysAndSellsSameAsSequential() {
+        InMemoryPortfolio sequential = new InMemoryPortfolio(parameters);
+        InMemoryPortfolio parallel = new InMemoryPortfolio(parameters);
+
+        SimulationResult sequentialResult = new Simulator(CONFIG, parameters, sequential, 1).simulate(marketData);
+        SimulationResult parallelResult = new Simulator(CONFIG, parameters, parallel, 4).simulate(marketData);
+
+        assertThat(sequential.getPositions()).isNotEmpty();
+        assertThat(parallel.getPositions()).isEqualTo(sequential.getPositions());
+        assertThat(parallelResult).isEqualTo(sequentialResult);
+    }
+
+    @Test
+    public void tradesDoNotDependOnNumberOfThreads() {
+        MarketData wideMarket = createMarketData(120, 720, new Random(5));
+        InMemoryPortfolio sequential = new InMemoryPortfolio(parameters);
+        new Simulator(CONFIG, parameters, sequential, 1).simulate(wideMarket);
+
+        assertThat(sequential.getPositions()).isNotEmpty();
+        for (int parallelism : new int[]{2, 3, 7, 16}) {
+            //candidates of all the stocks are merged in one thread, so the ranges of stocks do not matter
+            InMemoryPortfolio parallel = new InMemoryPortfolio(parameters);
+            new Simulator(CONFIG, parameters, parallel, parallelism).simulate(wideMarket);
+            assertThat(parallel.getPositions()).as("positions of %d threads", parallelism)
+                    .isEqualTo(sequential.getPositions());
+        }
+    }
+
+    @Test
+    public void repositoryPortfolioUsesSlicesOfParameters() {
+        StrategyParameters custom = StrategyParameters.builder()
+                .longSmaPeriod(200)
+                .shortSmaPeriod(5)
+                .rsiPeriod(2)
+                .slicePercentages(Arrays.asList(5, 10, 15, 20))
+                .initialBalance(100_000)
+                .build();
+
+        SimulationResult inMemory = new Simulator(CONFIG, custom, new InMemoryPortfolio(custom), 1)
+                .simulate(marketData);
+        SimulationResult repository = new Simulator(CONFIG, custom,
+                new RepositoryPortfolio(new InMemoryStorage(), custom), 1).simulate(marketData);
+
+        assertThat(inMemory.getTrades()).isPositive();
+        assertThat(repository).isEqualTo(inMemory);
+    }
+
+    @Test
+    public void sweepSimulationsDoNotShareState() throws Exception {
+        Path gridFile = Files.createTempFile("grid", ".properties");
+        Files.write(gridFile, Arrays.asList("sma.long=100,200", "rsi=2,3", "slices=10-20-30-40,5-10-15-20"));
+        List<StrategyParameters> grid = SweepRunner.loadGrid(gridFile, CONFIG.getInitialBalance());
+        Files.delete(gridFile);
+
+        List<SimulationResult> results = new SweepRunner(CONFIG).runSimulations(grid, marketData);
+
+        assertThat(grid).hasSize(8);
+        assertThat(results).hasSize(8);
+        for (SimulationResult result : results) {
+            SimulationResult alone = new Simulator(CONFIG, result.getParameters(),
+                    new InMemoryPortfolio(result.getParameters()), 1).simulate(marketData);
+            assertThat(result).isEqualTo(alone);
+        }
+    }
+
+    @Test
+    public void precomputedIndicatorsGiveSameResultAsCalculatedOnes() {
+        Map<Long, IndicatorSeries> indicators = new HashMap<>();
+        for (PriceSeries series : marketData.getPriceSeries().values()) {
+            IndicatorState state = new IndicatorGraph(PrecomputedIndicatorValues.SPECS).newState();
+            IndicatorSeries.Builder builder = IndicatorSeries.builder(series.getStockId());
+            for (int day = 0; day < 720; day++) {
+                PriceWindow prices = series.getLastPrices(START.plusDays(day), Integer.MAX_VALUE);
+                state.update(prices);
+                if (state.get(IndicatorSpec.sma(200)) != null) {
+                    builder.add(prices.getDate(0), new Indicators(state.get(IndicatorSpec.sma(200)),
+                            state.get(IndicatorSpec.rsi(2)), state.get(IndicatorSpec.sma(5))));
+                }
+            }
+            indicators.put(series.getStockId(), builder.build());
+        }
+        MarketData precomputed = new MarketData(marketData.getStocks(), marketData.getPriceSeries(), indicators);
+        InMemoryPortfolio calculated = new InMemoryPortfolio(parameters);
+        InMemoryPortfolio read = new InMemoryPortfolio(parameters);
+
+        SimulationResult calculatedResult = new Simulator(CONFIG, parameters, calculated, 1).simulate(marketData);
+        SimulationResult readResult = new Simulator(CONFIG, parameters, read, 1).simulate(precomputed);
+
+        assertThat(calculated.getPositions()).isNotEmpty();
+        assertThat(read.getPositions()).isEqualTo(calculated.getPositions());
+        assertThat(readResult).isEqualTo(calculatedResult);
+    }
+
+    @Test
+    public void strategiesSimulatedTogetherGiveSameResultsAsAlone() {
+        Strategy bollinger = new BollingerStrategy();
+        List<StrategySimulation> simulations = Arrays.asList(
+                new StrategySimulation(parameters, parameters.createStrategy(), new InMemoryPortfolio(parameters)),
+                new StrategySimulation(parameters, bollinger, new InMemoryPortfolio(parameters)));
+
+        List<SimulationResult> together = new Simulator(CONFIG, simulations, 4).simulateAll(marketData);
+        SimulationResult defaultAlone = new Simulator(CONFIG, parameters, new InMemoryPortfolio(parameters), 1)
+                .simulate(marketData);
+        SimulationResult bollingerAlone = new Simulator(CONFIG, parameters, bollinger,
+                new InMemoryPortfolio(parameters), 1).simulate(marketData);
+
+        assertThat(bollingerAlone.getTrades()).isPositive();
+        assertThat(bollingerAlone.getDescription()).isEqualTo("lower Bollinger band 10-20-30-40");
+        assertThat(together).containsExactly(defaultAlone, bollingerAlone);
+    }
+
+    @Test
+    public void stocksAreBoughtOnlyWhenTheyAreMembers() throws Exception {
+        LocalDate joined = START.plusDays(450);
+        LocalDate left = START.plusDays(550);
+        List<String> lines = new ArrayList<>();
+        for (int id = 1; id <= 30; id++) {
+            //odd stocks are members for all the time, the even ones only for 100 days and S30 never
+            lines.add(id == 30 ? "# S30" : id % 2 == 1 ? "S" + id : "S" + id + "," + joined + "," + left);
+        }
+        Path universeFile = Files.createTempFile("universe", ".csv");
+        Files.write(universeFile, lines);
+        Universe universe = Universe.load(universeFile);
+        Files.delete(universeFile);
+        MarketData members = marketData.withUniverse(universe);
+        InMemoryPortfolio sequential = new InMemoryPortfolio(parameters);
+        InMemoryPortfolio parallel = new InMemoryPortfolio(parameters);
+
+        new Simulator(CONFIG, parameters, sequential, 1).simulate(members);
+        new Simulator(CONFIG, parameters, parallel, 3).simulate(members);
+
+        assertThat(members.getStocks()).hasSize(29);
+        assertThat(sequential.getPositions()).isNotEmpty();
+        int evenPositions = 0;
+        for (Position position : sequential.getPositions()) {
+            assertThat(position.getStock().getSymbol()).isNotEqualTo("S30");
+            if (position.getStock().getSymbol().matches("S\\d*[02468]")) {
+                assertThat(position.getBuyDate()).isBetween(joined, left.minusDays(1));
+                evenPositions++;
+            }
+        }
+        assertThat(evenPositions).isPositive();
+        assertThat(parallel.getPositions()).isEqualTo(sequential.getPositions());
+    }
+
+    @Test
+    public void stockBoughtAgainAfterSellContinuesWithNextSlice() {
+        Config config = SimulationFixtures.createConfig(START.plusDays(1), START.plusDays(6));
+        MarketData oneStock = createMarketData(1, 7, new Random(7));
+        InMemoryPortfolio portfolio = new InMemoryPortfolio(parameters);
+
+        new Simulator(config, parameters, new AlwaysTradingStrategy(), portfolio, 1).simulate(oneStock);
+
+        List<Position.Slice> slices = new ArrayList<>();
+        for (Position position : portfolio.getPositions()) {
+            slices.add(position.getSlice());
+        }
+        //a stock which is sold and entered on the same day keeps its sold slices, so the next one is bought
+        assertThat(slices).containsExactly(Position.Slice.TEN, Position.Slice.TWENTY, Position.Slice.THIRTY,
+                Position.Slice.FOURTY);
+    }
+
+    static MarketData createMarketData(int stockCount, int days, Random random) {
+        List<Stock> stocks = new ArrayList<>();
+        Map<Long, PriceSeries> priceSeries = new HashMap<>();
+        for (long id = 1; id <= stockCount; id++) {
+            stocks.add(Stock.builder().id(id).symbol("S" + id).name("Stock " + id).exchange("NMS").build());
+            PriceSeries.Builder builder = PriceSeries.builder(id);
+            double price = 20 + random.nextInt(100);
+            for (int day = 0; day < days; day++) {
+                price = Math.max(1, price * (1.0005 + random.nextGaussian() * 0.02));
+                BigDecimal close = BigDecimal.valueOf(price).setScale(2, BigDecimal.ROUND_HALF_UP);
+                builder.add(START.plusDays(day), close, close, close, close, 1000, close, close);
+            }
+            priceSeries.put(id, builder.build());
+        }
+        return new MarketData(stocks, priceSeries);
+    }
+
+    /**
+     * Sells and buys the stock every day.
+     */
+    private static class AlwaysTradingStrategy implements Strategy {
+        private static final IndicatorSpec PRICE = IndicatorSpec.sma(1);
+
+        @Override
+        public Set<IndicatorSpec> getIndicators() {
+            return new HashSet<>(Arrays.asList(PRICE));
+        }
+
+        @Override
+        public int getWarmUpDays() {
+            return 1;
+        }
+
+        @Override
+        public boolean isEntry(BigDecimal price, IndicatorValues indicators) {
+            return true;
+        }
+
+        @Override
+        public boolean isExit(BigDecimal price, IndicatorValues indicators) {
+            return true;
+        }
+
+        @Override
+        public BigDecimal getRank(BigDecimal price, IndicatorValues indicators) {
+            return indicators.get(PRICE);
+        }
+
+        @Override
+        public String getDescription() {
+            return "always trading";
+        }
+    }
+
+    /**
+     * Buys below the lower Bollinger band with the lowest Wilder's RSI first and sells above the middle band.
+     */
+    private static class BollingerStrategy implements Strategy {
+        private static final IndicatorSpec MIDDLE = IndicatorSpec.sma(20);
+        private static final IndicatorSpec LOWER = IndicatorSpec.bollingerLower(20, 2);
+        private static final IndicatorSpec RSI = IndicatorSpec.wilderRsi(14);
+
+        @Override
+        public Set<IndicatorSpec> getIndicators() {
+            return new HashSet<>(Arrays.asList(MIDDLE, LOWER, RSI));
+        }
+
+        @Override
+        public int getWarmUpDays() {
+            return 20;
+        }
+
+        @Override
+        public boolean isEntry(BigDecimal price, IndicatorValues indicators) {
+            return price.compareTo(indicators.get(LOWER)) < 0;
+        }
+
+        @Override
+        public boolean isExit(BigDecimal price, IndicatorValues indicators) {
+            return price.compareTo(indicators.get(MIDDLE)) > 0;
+        }
+
+        @Override
+        public BigDecimal getRank(BigDecimal price, IndicatorValues indicators) {
+            return indicators.get(RSI);
+        }
+
+        @Override
+        public String getDescription() {
+            return "lower Bollinger band";
+        }
+    }
+}